@@ -0,0 +1,146 @@
+package com.riskguard.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pools, sized and bounded separately so CPU-bound scoring does not
+ * compete with request threads and database or network I/O:
+ *
+ * - ingestExecutor: stores ingested batches, and runs @Async work
+ * - loaderExecutor: loads entities and events for rescoring, and forwards
+ *   rescoring to the owning node, so scoring threads never wait on I/O
+ * - scoringPool: work-stealing pool with one thread per core for scoring
+ * - persistenceExecutor: score write-behind flushes
+ * - alertExecutor: alert delivery to sinks
+ * - taskScheduler: @Scheduled jobs, so a slow job does not delay the rest
+ *
+ * The I/O pools have bounded queues and run rejected work on the caller,
+ * which slows the submitter down instead of dropping work; rejections are
+ * counted in risk.executors.rejected. Queue depth, active threads and task
+ * latency are published as the executor.* meters tagged with the pool name.
+ */
+@Configuration
+public class ExecutorConfig implements AsyncConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorConfig.class);
+
+    private final BeanFactory beanFactory;
+
+    public ExecutorConfig(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Bean
+    public ExecutorService ingestExecutor(MeterRegistry meterRegistry,
+                                          @Value("${risk.executors.ingest.threads:4}") int threads,
+                                          @Value("${risk.executors.ingest.queue-capacity:8}") int queueCapacity) {
+        return boundedPool("ingest", threads, queueCapacity, meterRegistry);
+    }
+
+    /**
+     * Loader pool; loads are coalesced per entity, so its queue holds at
+     * most one load per entity and is sized accordingly
+     */
+    @Bean
+    public ExecutorService loaderExecutor(MeterRegistry meterRegistry,
+                                          @Value("${risk.executors.loader.threads:8}") int threads,
+                                          @Value("${risk.executors.loader.queue-capacity:10000}") int queueCapacity) {
+        return boundedPool("loader", threads, queueCapacity, meterRegistry);
+    }
+
+    /**
+     * Scoring pool; tasks reach it through the tenant scoring scheduler,
+     * whose per-tenant queues bound the work waiting for it
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool scoringPool(MeterRegistry meterRegistry,
+                                    @Value("${risk.executors.scoring.threads:0}") int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("scoring-" + thread.getPoolIndex());
+            return thread;
+        }, (thread, e) -> logger.error("Uncaught error in {}", thread.getName(), e), true);
+        new ExecutorServiceMetrics(pool, "scoring", Tags.empty()).bindTo(meterRegistry);
+        logger.info("Scoring pool with {} threads", parallelism);
+        return pool;
+    }
+
+    @Bean
+    public ExecutorService persistenceExecutor(MeterRegistry meterRegistry,
+                                               @Value("${risk.executors.persistence.threads:1}") int threads,
+                                               @Value("${risk.executors.persistence.queue-capacity:16}") int queueCapacity) {
+        return boundedPool("persistence", threads, queueCapacity, meterRegistry);
+    }
+
+    @Bean
+    public ExecutorService alertExecutor(MeterRegistry meterRegistry,
+                                         @Value("${risk.executors.alerts.threads:2}") int threads,
+                                         @Value("${risk.executors.alerts.queue-capacity:16}") int queueCapacity) {
+        return boundedPool("alerts", threads, queueCapacity, meterRegistry);
+    }
+
+    /**
+     * Scheduler for @Scheduled jobs; its executor.* meters are bound by
+     * Spring Boot under the name taskScheduler
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${risk.executors.scheduler.threads:4}") int threads) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("scheduler-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return beanFactory.getBean("ingestExecutor", Executor.class);
+    }
+
+    /**
+     * Fixed-size pool with a bounded queue that runs rejected tasks on the
+     * submitting thread, wrapped to time queueing and execution
+     */
+    private static ExecutorService boundedPool(String name, int threads, int queueCapacity,
+                                               MeterRegistry meterRegistry) {
+        AtomicInteger counter = new AtomicInteger();
+        Counter rejected = Counter.builder("risk.executors.rejected")
+                .description("Tasks run on the submitting thread because the pool was saturated")
+                .tag("name", name)
+                .register(meterRegistry);
+        RejectedExecutionHandler callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (task, executor) -> {
+            rejected.increment();
+            callerRuns.rejectedExecution(task, executor);
+        });
+        return ExecutorServiceMetrics.monitor(meterRegistry, pool, name);
+    }
+}
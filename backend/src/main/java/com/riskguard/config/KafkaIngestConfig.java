@@ -0,0 +1,74 @@
+package com.riskguard.config;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Kafka consumer setup for event ingestion. The default consumer is
+ * configured for String values; event records carry raw bytes. Records
+ * whose ingestion fails are retried with exponential backoff and then
+ * published unchanged to the dead letter topic before their offset is
+ * committed.
+ */
+@Configuration
+@ConditionalOnProperty(value = "risk.ingest.kafka.enabled", havingValue = "true")
+public class KafkaIngestConfig {
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> binaryEventListenerContainerFactory(
+            KafkaProperties kafkaProperties, DefaultErrorHandler ingestErrorHandler) {
+        Map<String, Object> properties = kafkaProperties.buildConsumerProperties(null);
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(properties));
+        factory.setCommonErrorHandler(ingestErrorHandler);
+        return factory;
+    }
+
+    @Bean
+    public DefaultErrorHandler ingestErrorHandler(
+            KafkaProperties kafkaProperties,
+            @Value("${risk.ingest.kafka.dead-letter-topic:risk-events.DLT}") String deadLetterTopic,
+            @Value("${risk.ingest.kafka.retry.max-attempts:10}") int maxAttempts,
+            @Value("${risk.ingest.kafka.retry.initial-interval:1s}") Duration initialInterval,
+            @Value("${risk.ingest.kafka.retry.max-interval:30s}") Duration maxInterval) {
+        Map<String, Object> properties = kafkaProperties.buildProducerProperties(null);
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        KafkaTemplate<String, byte[]> deadLetterTemplate = new KafkaTemplate<>(
+                new DefaultKafkaProducerFactory<>(properties));
+
+        // Partition -1 lets the producer pick one; the topic may have fewer partitions
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(deadLetterTemplate,
+                (record, e) -> new TopicPartition(deadLetterTopic, -1));
+
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(maxAttempts - 1);
+        backOff.setInitialInterval(initialInterval.toMillis());
+        backOff.setMultiplier(2.0);
+        backOff.setMaxInterval(maxInterval.toMillis());
+        return new DefaultErrorHandler(recoverer, backOff);
+    }
+}
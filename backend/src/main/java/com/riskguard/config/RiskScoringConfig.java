@@ -0,0 +1,38 @@
+package com.riskguard.config;
+
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.service.time.CachedClock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.time.ZoneId;
+
+/**
+ * Risk scoring configuration shared by the scoring, decay and alerting services
+ */
+@Configuration
+public class RiskScoringConfig {
+
+    @Bean
+    public RiskThresholds riskThresholds(
+            @Value("${risk.scoring.thresholds.critical:45}") double critical,
+            @Value("${risk.scoring.thresholds.high:40}") double high,
+            @Value("${risk.scoring.thresholds.medium:25}") double medium,
+            @Value("${risk.scoring.thresholds.hysteresis:2}") double hysteresis) {
+        return new RiskThresholds(critical, high, medium, hysteresis);
+    }
+
+    /**
+     * Cached clock for the scoring path; hour-of-day and weekday features are
+     * evaluated in the configured zone (the JVM default if blank)
+     */
+    @Bean(destroyMethod = "close")
+    public CachedClock scoringClock(
+            @Value("${risk.scoring.clock.zone:}") String zone,
+            @Value("${risk.scoring.clock.resolution:5ms}") Duration resolution) {
+        ZoneId businessZone = zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        return new CachedClock(businessZone, ZoneId.systemDefault(), resolution);
+    }
+}
@@ -0,0 +1,30 @@
+package com.riskguard.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.web.SecurityFilterChain;
+
+/**
+ * Security configuration
+ *
+ * Keeps Spring Boot's defaults (every request authenticated, HTTP basic and
+ * form login) but exempts the machine-to-machine ingest and replay endpoints
+ * from CSRF protection, since they are called with basic auth and no session.
+ */
+@Configuration
+public class SecurityConfig {
+
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+        http
+                .authorizeHttpRequests(requests -> requests.anyRequest().authenticated())
+                .csrf(csrf -> csrf.ignoringRequestMatchers("/api/risk/events/**", "/api/risk/events",
+                        "/api/risk/events:batch", "/api/risk/replay", "/api/risk/replay/**",
+                        "/api/risk/models/retrain", "/api/risk/cluster/**"))
+                .httpBasic(Customizer.withDefaults())
+                .formLogin(Customizer.withDefaults());
+        return http.build();
+    }
+}
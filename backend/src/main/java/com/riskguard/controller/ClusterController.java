@@ -0,0 +1,90 @@
+package com.riskguard.controller;
+
+import com.riskguard.service.RiskAssessmentService;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.ingest.BinaryEventCodec;
+import com.riskguard.service.ingest.EventIngestionService;
+import com.riskguard.service.query.EntityIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Node-to-node endpoints for sharded scoring. Requests arriving here are
+ * always executed locally and never forwarded again.
+ */
+@RestController
+@RequestMapping("/api/risk/cluster")
+public class ClusterController {
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private RiskAssessmentService riskAssessmentService;
+
+    @Autowired
+    private EventIngestionService eventIngestionService;
+
+    @Autowired
+    private EntityIndexService entityIndexService;
+
+    @GetMapping("/ping")
+    public ResponseEntity<Map<String, Object>> ping() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("nodeId", clusterService.getNodeId());
+        status.put("members", clusterService.getMembers());
+        return ResponseEntity.ok(status);
+    }
+
+    @GetMapping("/owner/{entityId}")
+    public ResponseEntity<Map<String, Object>> getOwner(@PathVariable String entityId) {
+        Map<String, Object> owner = new HashMap<>();
+        owner.put("entityId", entityId);
+        owner.put("owner", clusterService.ownerOf(entityId));
+        return ResponseEntity.ok(owner);
+    }
+
+    @GetMapping("/assess/{entityId}")
+    public ResponseEntity<Map<String, Object>> assessLocally(@PathVariable String entityId) {
+        return ResponseEntity.ok(riskAssessmentService.assessEntityRiskLocally(entityId));
+    }
+
+    @PostMapping("/rescore/{entityId}")
+    public ResponseEntity<Map<String, Object>> rescoreLocally(@PathVariable String entityId) {
+        riskAssessmentService.rescoreEntityLocally(entityId);
+        Map<String, Object> result = new HashMap<>();
+        result.put("entityId", entityId);
+        result.put("rescored", true);
+        return ResponseEntity.ok(result);
+    }
+
+    // This node's share of a query another node received
+    @GetMapping("/query")
+    public ResponseEntity<Map<String, Object>> queryLocally(@RequestParam String q, @RequestParam int limit) {
+        try {
+            return ResponseEntity.ok(entityIndexService.queryLocally(q, limit));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Events another node stored for entities owned here
+    @PostMapping(path = "/events", consumes = BinaryEventCodec.CONTENT_TYPE)
+    public ResponseEntity<Map<String, Object>> applyEvents(@RequestBody byte[] payload) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            result.put("applied", eventIngestionService.applyForwarded(ByteBuffer.wrap(payload)));
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            result.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+}
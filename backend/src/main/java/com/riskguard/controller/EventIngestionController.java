@@ -0,0 +1,51 @@
+package com.riskguard.controller;
+
+import com.riskguard.service.RiskAssessmentService;
+import com.riskguard.service.ingest.BinaryEventCodec;
+import com.riskguard.service.ingest.EventIngestionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/risk")
+@CrossOrigin(origins = "*")
+public class EventIngestionController {
+
+    @Autowired
+    private RiskAssessmentService riskAssessmentService;
+
+    @Autowired
+    private EventIngestionService eventIngestionService;
+
+    // Single event as JSON
+    @PostMapping(path = "/events", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> submitEvent(@RequestBody Map<String, Object> event) {
+        return ResponseEntity.ok(riskAssessmentService.processRiskEvent(event));
+    }
+
+    // One or more batches in the compact binary format
+    @PostMapping(path = "/events", consumes = BinaryEventCodec.CONTENT_TYPE)
+    public ResponseEntity<Map<String, Object>> submitBinaryEvents(@RequestBody byte[] payload) {
+        try {
+            return ResponseEntity.ok(eventIngestionService.ingestBinary(ByteBuffer.wrap(payload)).toMap());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Newline-delimited JSON, streamed line by line
+    @PostMapping(path = "/events:batch", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<Map<String, Object>> submitEventBatch(InputStream body) throws IOException {
+        return ResponseEntity.ok(eventIngestionService.ingestNdjson(body).toMap());
+    }
+}
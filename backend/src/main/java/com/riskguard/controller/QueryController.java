@@ -0,0 +1,79 @@
+package com.riskguard.controller;
+
+import com.riskguard.service.query.EntityIndexService;
+import com.riskguard.service.query.EventSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ad-hoc entity searches over the in-memory index, e.g.
+ * q=type = SERVER and department = Finance and score > 35 and events(LOGIN_FAILURE, 1h) > 3,
+ * and searches of stored events by tag and metadata
+ */
+@RestController
+@RequestMapping("/api/risk/query")
+public class QueryController {
+
+    @Autowired
+    private EntityIndexService entityIndexService;
+
+    @Autowired
+    private EventSearchService eventSearchService;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> query(@RequestParam String q,
+                                                     @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(entityIndexService.query(q, limit));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    // Stored events carrying all tags and metadata entries (key:value), last 24 hours unless a range is given
+    @GetMapping("/events")
+    public ResponseEntity<Map<String, Object>> events(
+            @RequestParam(required = false) List<String> tag,
+            @RequestParam(required = false) List<String> metadata,
+            @RequestParam(required = false) String entityId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            Map<String, String> entries = new LinkedHashMap<>();
+            for (String entry : metadata != null ? metadata : List.<String>of()) {
+                int separator = entry.indexOf(':');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Metadata filter must be key:value: " + entry);
+                }
+                entries.put(entry.substring(0, separator), entry.substring(separator + 1));
+            }
+            LocalDateTime end = to != null ? to : LocalDateTime.now();
+            LocalDateTime start = from != null ? from : end.minusDays(1);
+
+            List<Map<String, Object>> events = eventSearchService.search(
+                    new LinkedHashSet<>(tag != null ? tag : List.of()), entries, entityId, start, end, limit);
+            Map<String, Object> response = new HashMap<>();
+            response.put("events", events);
+            response.put("count", events.size());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+}
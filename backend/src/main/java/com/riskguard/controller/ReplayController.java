@@ -0,0 +1,54 @@
+package com.riskguard.controller;
+
+import com.riskguard.service.replay.ReplayRequest;
+import com.riskguard.service.replay.ReplayService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Offline replay of historical events for backtesting scoring changes
+ */
+@RestController
+@RequestMapping("/api/risk/replay")
+public class ReplayController {
+
+    @Autowired
+    private ReplayService replayService;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> replay(@RequestBody ReplayRequest request) throws IOException {
+        try {
+            return ResponseEntity.ok(replayService.replay(request).toMap(request.getTopEntities()));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    @PostMapping("/export")
+    public ResponseEntity<Map<String, Object>> export(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam String file) throws IOException {
+        try {
+            Map<String, Object> result = new HashMap<>();
+            result.put("file", file);
+            result.put("events", replayService.exportEvents(from, to, file));
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+}
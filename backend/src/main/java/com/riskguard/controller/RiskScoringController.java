@@ -4,10 +4,17 @@ import com.riskguard.domain.MonitoredEntity;
 import com.riskguard.domain.RiskEvent;
 import com.riskguard.service.MachineLearningService;
 import com.riskguard.service.RiskAssessmentService;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.recommendation.RecommendationService;
+import com.riskguard.service.recommendation.Recommendations;
+import com.riskguard.service.sequence.SequenceDetectorService;
+import com.riskguard.service.sequence.SequenceMatch;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
@@ -23,6 +30,15 @@ public class RiskScoringController {
     @Autowired
     private MachineLearningService mlService;
 
+    @Autowired
+    private SequenceDetectorService sequenceDetectorService;
+
+    @Autowired
+    private EntityGraphService entityGraphService;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
     // Dashboard Statistics
     @GetMapping("/dashboard/stats")
     public ResponseEntity<Map<String, Object>> getDashboardStats() {
@@ -85,26 +101,40 @@ public class RiskScoringController {
         return ResponseEntity.ok(entities);
     }
 
-    // Risk Assessment for Entity
+    // Risk Assessment for Entity, with the points each feature and rule contributed
     @GetMapping("/assessment/{entityId}")
     public ResponseEntity<Map<String, Object>> assessEntityRisk(@PathVariable String entityId) {
-        Map<String, Object> assessment = new HashMap<>();
-
-        // Generate dynamic risk score based on entity ID
-        int baseScore = Math.abs(entityId.hashCode() % 50) + 5;
-        int riskScore = baseScore + ThreadLocalRandom.current().nextInt(-5, 10);
-        riskScore = Math.max(5, Math.min(50, riskScore));
+        Map<String, Object> assessment = new HashMap<>(riskAssessmentService.assessEntityRisk(entityId));
+        if (assessment.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
 
-        assessment.put("entityId", entityId);
-        assessment.put("overallScore", riskScore);
-        assessment.put("riskLevel", getRiskLevel(riskScore));
-        assessment.put("factors", generateRiskFactors(riskScore));
-        assessment.put("history", generateEntityHistory(entityId));
-        assessment.put("recommendations", generateRecommendations(riskScore));
+        LocalDateTime now = LocalDateTime.now();
+        List<Map<String, Object>> history = new ArrayList<>();
+        for (Map<String, Object> point : riskAssessmentService.getEntityHistory(entityId, now.minusDays(7), now)) {
+            Map<String, Object> event = new HashMap<>(point);
+            event.put("event", point.get("summary"));
+            history.add(event);
+        }
+        assessment.put("history", history);
+        Recommendations recommendations = recommendationService.getRecommendations(assessment);
+        assessment.putIfAbsent("recommendations", recommendations.titles());
+        assessment.put("recommendationStatus", recommendations.status());
 
         return ResponseEntity.ok(assessment);
     }
 
+    // Detailed recommendations for an entity, waiting up to waitMs for the model
+    @GetMapping("/assessment/{entityId}/recommendations")
+    public ResponseEntity<Recommendations> getEntityRecommendations(@PathVariable String entityId,
+                                                                    @RequestParam(defaultValue = "0") long waitMs) {
+        Map<String, Object> assessment = riskAssessmentService.assessEntityRisk(entityId);
+        if (assessment.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(recommendationService.getRecommendations(assessment, Duration.ofMillis(waitMs)));
+    }
+
     // Get All Entities
     @GetMapping("/entities")
     public ResponseEntity<List<Map<String, Object>>> getAllEntities() {
@@ -131,6 +161,42 @@ public class RiskScoringController {
         return ResponseEntity.ok(entities);
     }
 
+    // Score history of an entity, last 7 days unless a range is given
+    @GetMapping("/entities/{entityId}/history")
+    public ResponseEntity<List<Map<String, Object>>> getEntityHistory(
+            @PathVariable String entityId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(7);
+        return ResponseEntity.ok(riskAssessmentService.getEntityHistory(entityId, start, end));
+    }
+
+    // Attack sequences recently completed by an entity, newest first
+    @GetMapping("/entities/{entityId}/sequences")
+    public ResponseEntity<List<SequenceMatch>> getEntitySequences(@PathVariable String entityId) {
+        return ResponseEntity.ok(sequenceDetectorService.getMatches(entityId));
+    }
+
+    // Related entities by edge weight, with the risk they inherited
+    @GetMapping("/entities/{entityId}/neighbours")
+    public ResponseEntity<List<Map<String, Object>>> getEntityNeighbours(@PathVariable String entityId,
+                                                                         @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(entityGraphService.getNeighbours(entityId, limit));
+    }
+
+    // Configured attack sequence patterns with their match counts
+    @GetMapping("/sequences/patterns")
+    public ResponseEntity<List<Map<String, Object>>> getSequencePatterns() {
+        return ResponseEntity.ok(sequenceDetectorService.getPatterns());
+    }
+
+    // Retrain anomaly models on recent events
+    @PostMapping("/models/retrain")
+    public ResponseEntity<Map<String, Object>> retrainModels() {
+        return ResponseEntity.ok(riskAssessmentService.retrainModels());
+    }
+
     // Analytics Data
     @GetMapping("/analytics")
     public ResponseEntity<Map<String, Object>> getAnalytics() {
@@ -249,73 +315,11 @@ public class RiskScoringController {
         return ThreadLocalRandom.current().nextBoolean() ? "increasing" : "decreasing";
     }
 
-    private String getRiskLevel(int score) {
-        if (score >= 40)
-            return "Critical";
-        if (score >= 30)
-            return "High";
-        if (score >= 20)
-            return "Medium";
-        return "Low";
-    }
-
     private String getRandomStatus() {
         String[] statuses = { "High", "Medium", "Low" };
         return statuses[ThreadLocalRandom.current().nextInt(statuses.length)];
     }
 
-    private List<Map<String, Object>> generateRiskFactors(int riskScore) {
-        List<Map<String, Object>> factors = new ArrayList<>();
-        String[] factorNames = { "Unusual Login Time", "Large File Transfer", "Failed Authentication",
-                "Privilege Escalation", "Network Anomaly" };
-        double[] weights = { 0.15, 0.25, 0.20, 0.30, 0.10 };
-
-        for (int i = 0; i < 5; i++) {
-            Map<String, Object> factor = new HashMap<>();
-            factor.put("id", i + 1);
-            factor.put("name", factorNames[i]);
-            factor.put("weight", weights[i]);
-            factor.put("score", ThreadLocalRandom.current().nextInt(3, 15));
-            factor.put("description", "Risk factor description for " + factorNames[i]);
-            factors.add(factor);
-        }
-
-        return factors;
-    }
-
-    private List<Map<String, Object>> generateEntityHistory(String entityId) {
-        List<Map<String, Object>> history = new ArrayList<>();
-        String[] events = { "Login from new IP", "Large file download", "Access to admin panel", "Failed login attempt",
-                "Database query execution" };
-
-        for (int i = 0; i < 5; i++) {
-            Map<String, Object> event = new HashMap<>();
-            event.put("timestamp", "2024-01-15 " + (14 + i) + ":30");
-            event.put("event", events[i]);
-            event.put("score", ThreadLocalRandom.current().nextInt(3, 15));
-            history.add(event);
-        }
-
-        return history;
-    }
-
-    private List<String> generateRecommendations(int riskScore) {
-        List<String> recommendations = new ArrayList<>();
-        if (riskScore > 35) {
-            recommendations.add("Immediate review of user access patterns");
-            recommendations.add("Implement additional authentication measures");
-            recommendations.add("Monitor file transfer activities closely");
-        } else if (riskScore > 25) {
-            recommendations.add("Review recent login patterns");
-            recommendations.add("Monitor file transfer activities");
-            recommendations.add("Implement additional authentication for admin access");
-        } else {
-            recommendations.add("Continue monitoring for unusual activity");
-            recommendations.add("Regular security training for user");
-        }
-        return recommendations;
-    }
-
     private List<Map<String, Object>> generateThreatTypes() {
         List<Map<String, Object>> threats = new ArrayList<>();
         String[] types = { "Privilege Escalation", "Data Exfiltration", "Unauthorized Access", "Malware Activity",
@@ -3,13 +3,21 @@ package com.riskguard.domain;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * MonitoredEntity represents users, servers, and other assets monitored for risk assessment
@@ -19,6 +27,12 @@ import java.util.List;
 @EntityListeners(AuditingEntityListener.class)
 public class MonitoredEntity {
 
+    /** Floor of the risk score range; decayed scores converge towards it */
+    public static final double MIN_RISK_SCORE = 5.0;
+
+    /** Tenant of entities created before tenants existed or without one */
+    public static final String DEFAULT_TENANT = "default";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -39,6 +53,11 @@ public class MonitoredEntity {
     @Column(nullable = false)
     private String department;
 
+    // Business unit owning the entity; models, caches and scoring capacity are per tenant
+    @ColumnDefault("'default'")
+    @Column(nullable = false, length = 64)
+    private String tenantId = DEFAULT_TENANT;
+
     @Column
     private String ipAddress;
 
@@ -77,8 +96,11 @@ public class MonitoredEntity {
     @Column
     private Boolean isActive = true;
 
-    @Column
-    private String tags;
+    // JSON array, GIN-indexed on PostgreSQL
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "tag_set")
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private Set<String> tags = new TreeSet<>();
 
     @CreatedDate
     @Column(nullable = false, updatable = false)
@@ -145,6 +167,14 @@ public class MonitoredEntity {
         this.department = department;
     }
 
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
     public String getIpAddress() {
         return ipAddress;
     }
@@ -205,11 +235,26 @@ public class MonitoredEntity {
         return currentRiskScore;
     }
 
-    public void setCurrentRiskScore(Double currentRiskScore) {
+    /**
+     * @param assessedAt when the score was calculated, from the scoring clock
+     */
+    public void setCurrentRiskScore(Double currentRiskScore, RiskThresholds thresholds, LocalDateTime assessedAt) {
         this.previousRiskScore = this.currentRiskScore;
         this.currentRiskScore = currentRiskScore;
-        this.currentRiskLevel = calculateRiskLevel(currentRiskScore);
-        this.lastRiskAssessment = LocalDateTime.now();
+        this.currentRiskLevel = thresholds.levelFor(currentRiskScore);
+        this.lastRiskAssessment = assessedAt;
+    }
+
+    /**
+     * Put back a score recorded earlier, with the level and time it was
+     * recorded with
+     */
+    public void restoreRiskScore(Double currentRiskScore, Double previousRiskScore, RiskLevel currentRiskLevel,
+                                 LocalDateTime assessedAt) {
+        this.currentRiskScore = currentRiskScore;
+        this.previousRiskScore = previousRiskScore;
+        this.currentRiskLevel = currentRiskLevel;
+        this.lastRiskAssessment = assessedAt;
     }
 
     public Double getPreviousRiskScore() {
@@ -244,12 +289,12 @@ public class MonitoredEntity {
         this.isActive = isActive;
     }
 
-    public String getTags() {
-        return tags;
+    public Set<String> getTags() {
+        return Tags.orEmpty(tags);
     }
 
-    public void setTags(String tags) {
-        this.tags = tags;
+    public void setTags(Collection<String> tags) {
+        this.tags = Tags.normalise(tags);
     }
 
     public LocalDateTime getCreatedAt() {
@@ -290,7 +335,7 @@ public class MonitoredEntity {
     }
 
     public boolean isHighRisk() {
-        return currentRiskLevel == RiskLevel.HIGH;
+        return currentRiskLevel == RiskLevel.HIGH || currentRiskLevel == RiskLevel.CRITICAL;
     }
 
     public boolean isMediumRisk() {
@@ -301,6 +346,20 @@ public class MonitoredEntity {
         return currentRiskLevel == RiskLevel.LOW;
     }
 
+    /**
+     * Current score with the part above the floor decayed exponentially since
+     * the last assessment. Runs in O(1) from the stored score and timestamp,
+     * so idle entities cool down without being rescored.
+     */
+    public double getDecayedRiskScore(LocalDateTime now, Duration halfLife) {
+        if (lastRiskAssessment == null || halfLife.isZero() || !now.isAfter(lastRiskAssessment)) {
+            return currentRiskScore;
+        }
+        double elapsed = Duration.between(lastRiskAssessment, now).toMillis();
+        double factor = Math.pow(0.5, elapsed / halfLife.toMillis());
+        return MIN_RISK_SCORE + (currentRiskScore - MIN_RISK_SCORE) * factor;
+    }
+
     public double getRiskScoreChange() {
         if (previousRiskScore == null) {
             return 0.0;
@@ -308,16 +367,6 @@ public class MonitoredEntity {
         return currentRiskScore - previousRiskScore;
     }
 
-    private RiskLevel calculateRiskLevel(Double score) {
-        if (score >= 40) {
-            return RiskLevel.HIGH;
-        } else if (score >= 25) {
-            return RiskLevel.MEDIUM;
-        } else {
-            return RiskLevel.LOW;
-        }
-    }
-
     @Override
     public String toString() {
         return "MonitoredEntity{" +
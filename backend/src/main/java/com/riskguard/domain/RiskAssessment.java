@@ -2,6 +2,7 @@ package com.riskguard.domain;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -11,9 +12,16 @@ import java.time.LocalDateTime;
 /**
  * RiskAssessment records the detailed scoring and category during an entity's
  * assessment.
+ *
+ * Older history is compacted into HOUR and DAY rollups: score and level are
+ * those of the last assessment in the bucket, createdAt is its time, and
+ * min/max score and the sample count summarize the bucket.
  */
 @Entity
-@Table(name = "risk_assessments")
+@Table(name = "risk_assessments", indexes = {
+        @Index(name = "idx_risk_assessments_entity_created", columnList = "entity_id, createdAt"),
+        @Index(name = "idx_risk_assessments_resolution_created", columnList = "resolution, createdAt")
+})
 @EntityListeners(AuditingEntityListener.class)
 public class RiskAssessment {
 
@@ -34,6 +42,17 @@ public class RiskAssessment {
 
     private String summary;
 
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'RAW'")
+    @Column(nullable = false, length = 8)
+    private Resolution resolution = Resolution.RAW;
+
+    private Double minScore;
+
+    private Double maxScore;
+
+    private Integer sampleCount;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -90,6 +109,38 @@ public class RiskAssessment {
         this.summary = summary;
     }
 
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    public Double getMinScore() {
+        return minScore != null ? minScore : score;
+    }
+
+    public void setMinScore(Double minScore) {
+        this.minScore = minScore;
+    }
+
+    public Double getMaxScore() {
+        return maxScore != null ? maxScore : score;
+    }
+
+    public void setMaxScore(Double maxScore) {
+        this.maxScore = maxScore;
+    }
+
+    public int getSampleCount() {
+        return sampleCount != null ? sampleCount : 1;
+    }
+
+    public void setSampleCount(Integer sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -106,8 +157,16 @@ public class RiskAssessment {
                 ", score=" + score +
                 ", riskLevel=" + riskLevel +
                 ", summary='" + summary + '\'' +
+                ", resolution=" + resolution +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
     }
+
+    /**
+     * Time resolution of a history row
+     */
+    public enum Resolution {
+        RAW, HOUR, DAY
+    }
 }
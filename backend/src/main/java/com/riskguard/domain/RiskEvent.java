@@ -1,21 +1,28 @@
 package com.riskguard.domain;
 
-import com.riskguard.domain.MonitoredEntity;
+import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * RiskEvent represents security events and incidents that contribute to risk
  * scoring
  */
 @Entity
-@Table(name = "risk_events")
+@Table(name = "risk_events", indexes = {
+        @Index(name = "idx_risk_events_entity_ts", columnList = "entity_id, eventTimestamp")
+})
 @EntityListeners(AuditingEntityListener.class)
 public class RiskEvent {
 
@@ -92,8 +99,11 @@ public class RiskEvent {
     @Column
     private Boolean isFalsePositive = false;
 
-    @Column
-    private String tags;
+    // JSON array, GIN-indexed on PostgreSQL
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "tag_set")
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private Set<String> tags = new TreeSet<>();
 
     @CreatedDate
     @Column(nullable = false, updatable = false)
@@ -102,10 +112,9 @@ public class RiskEvent {
     @Column(nullable = false)
     private LocalDateTime eventTimestamp;
 
-    @ElementCollection
-    @CollectionTable(name = "risk_event_metadata", joinColumns = @JoinColumn(name = "risk_event_id"))
-    @MapKeyColumn(name = "metadata_key")
-    @Column(name = "metadata_value", columnDefinition = "TEXT")
+    // JSON object stored with the row, GIN-indexed on PostgreSQL
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "metadata")
     private Map<String, String> metadata = new HashMap<>();
 
     // Constructors
@@ -300,12 +309,12 @@ public class RiskEvent {
         this.isFalsePositive = isFalsePositive;
     }
 
-    public String getTags() {
-        return tags;
+    public Set<String> getTags() {
+        return Tags.orEmpty(tags);
     }
 
-    public void setTags(String tags) {
-        this.tags = tags;
+    public void setTags(Collection<String> tags) {
+        this.tags = Tags.normalise(tags);
     }
 
     public LocalDateTime getCreatedAt() {
@@ -325,6 +334,9 @@ public class RiskEvent {
     }
 
     public Map<String, String> getMetadata() {
+        if (metadata == null) {
+            metadata = new HashMap<>();
+        }
         return metadata;
     }
 
@@ -355,11 +367,11 @@ public class RiskEvent {
     }
 
     public void addMetadata(String key, String value) {
-        this.metadata.put(key, value);
+        getMetadata().put(key, value);
     }
 
     public String getMetadataValue(String key) {
-        return this.metadata.get(key);
+        return getMetadata().get(key);
     }
 
     @Override
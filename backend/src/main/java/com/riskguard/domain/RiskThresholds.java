@@ -0,0 +1,105 @@
+package com.riskguard.domain;
+
+import com.riskguard.domain.MonitoredEntity.RiskLevel;
+
+/**
+ * RiskThresholds maps risk scores to risk levels, optionally with a
+ * hysteresis band so that scores hovering around a threshold do not flap
+ * between levels.
+ */
+public class RiskThresholds {
+
+    public static final RiskThresholds DEFAULT = new RiskThresholds(45, 40, 25, 0);
+
+    private final double critical;
+    private final double high;
+    private final double medium;
+    private final double hysteresis;
+
+    public RiskThresholds(double critical, double high, double medium, double hysteresis) {
+        if (!(medium <= high && high <= critical)) {
+            throw new IllegalArgumentException("Thresholds must satisfy medium <= high <= critical");
+        }
+        if (hysteresis < 0) {
+            throw new IllegalArgumentException("Hysteresis must not be negative");
+        }
+        this.critical = critical;
+        this.high = high;
+        this.medium = medium;
+        this.hysteresis = hysteresis;
+    }
+
+    public double getCritical() {
+        return critical;
+    }
+
+    public double getHigh() {
+        return high;
+    }
+
+    public double getMedium() {
+        return medium;
+    }
+
+    public double getHysteresis() {
+        return hysteresis;
+    }
+
+    /**
+     * Risk level for a score without hysteresis
+     */
+    public RiskLevel levelFor(double score) {
+        if (score >= critical) {
+            return RiskLevel.CRITICAL;
+        } else if (score >= high) {
+            return RiskLevel.HIGH;
+        } else if (score >= medium) {
+            return RiskLevel.MEDIUM;
+        }
+        return RiskLevel.LOW;
+    }
+
+    /**
+     * Risk level for a score given the current level. Escalation happens as
+     * soon as a threshold is reached; de-escalation only once the score has
+     * dropped a full hysteresis band below the threshold of the current level.
+     */
+    public RiskLevel levelFor(double score, RiskLevel current) {
+        RiskLevel level = levelFor(score);
+        if (current == null || level.ordinal() >= current.ordinal()) {
+            return level;
+        }
+
+        RiskLevel result = current;
+        while (result.ordinal() > level.ordinal() && score < lowerBound(result) - hysteresis) {
+            result = RiskLevel.values()[result.ordinal() - 1];
+        }
+        return result;
+    }
+
+    /**
+     * Minimum score of a level
+     */
+    public double lowerBound(RiskLevel level) {
+        switch (level) {
+            case CRITICAL:
+                return critical;
+            case HIGH:
+                return high;
+            case MEDIUM:
+                return medium;
+            default:
+                return Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RiskThresholds{" +
+                "critical=" + critical +
+                ", high=" + high +
+                ", medium=" + medium +
+                ", hysteresis=" + hysteresis +
+                '}';
+    }
+}
@@ -0,0 +1,58 @@
+package com.riskguard.domain;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Normalised tag sets: trimmed, lower-cased, without blanks and sorted.
+ * Comma-separated input, as the old free-text columns held, is split.
+ */
+public final class Tags {
+
+    private Tags() {
+    }
+
+    public static SortedSet<String> normalise(Collection<String> tags) {
+        SortedSet<String> normalised = new TreeSet<>();
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null) {
+                    addAll(normalised, tag);
+                }
+            }
+        }
+        return normalised;
+    }
+
+    public static SortedSet<String> parse(String tags) {
+        SortedSet<String> parsed = new TreeSet<>();
+        if (tags != null) {
+            addAll(parsed, tags);
+        }
+        return parsed;
+    }
+
+    /**
+     * Comma-separated form, e.g. for the binary event format
+     */
+    public static String format(Set<String> tags) {
+        return tags == null ? "" : String.join(",", tags);
+    }
+
+    public static Set<String> orEmpty(Set<String> tags) {
+        return tags != null ? tags : Collections.emptySet();
+    }
+
+    private static void addAll(Set<String> target, String tags) {
+        for (String tag : tags.split(",")) {
+            String normalised = tag.trim().toLowerCase(Locale.ROOT);
+            if (!normalised.isEmpty()) {
+                target.add(normalised);
+            }
+        }
+    }
+}
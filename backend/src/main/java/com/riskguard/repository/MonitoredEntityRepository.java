@@ -0,0 +1,22 @@
+package com.riskguard.repository;
+
+import com.riskguard.domain.MonitoredEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for MonitoredEntity
+ */
+@Repository
+public interface MonitoredEntityRepository extends JpaRepository<MonitoredEntity, Long> {
+
+    Optional<MonitoredEntity> findByEntityId(String entityId);
+
+    List<MonitoredEntity> findByEntityIdIn(Collection<String> entityIds);
+
+    List<MonitoredEntity> findByIsActiveTrue();
+}
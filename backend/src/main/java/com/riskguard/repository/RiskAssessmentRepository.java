@@ -0,0 +1,44 @@
+package com.riskguard.repository;
+
+import com.riskguard.domain.RiskAssessment;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * Repository for RiskAssessment history
+ */
+@Repository
+public interface RiskAssessmentRepository extends JpaRepository<RiskAssessment, Long> {
+
+    /**
+     * Assessments of one entity within [from, to), oldest first
+     */
+    @Query("select a from RiskAssessment a " +
+            "where a.entity.id = :entityId " +
+            "and a.createdAt >= :from and a.createdAt < :to " +
+            "order by a.createdAt")
+    List<RiskAssessment> findByEntityInWindow(@Param("entityId") Long entityId,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to);
+
+    /**
+     * All assessments within [from, to), grouped by entity and oldest first
+     * within each; must be consumed inside a transaction
+     */
+    @Query("select a from RiskAssessment a join fetch a.entity " +
+            "where a.createdAt >= :from and a.createdAt < :to " +
+            "order by a.entity.id, a.createdAt")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<RiskAssessment> streamAllInWindow(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,100 @@
+package com.riskguard.repository;
+
+import com.riskguard.domain.RiskEvent;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * Repository for RiskEvent
+ *
+ * risk_events is range partitioned on event_timestamp (see
+ * EventPartitionService), so every query here carries a bounded
+ * eventTimestamp predicate. That lets PostgreSQL prune partitions
+ * at plan or execution time instead of touching the full history.
+ */
+@Repository
+public interface RiskEventRepository extends JpaRepository<RiskEvent, Long> {
+
+    /**
+     * Events for one entity within [from, to), newest first
+     */
+    @Query("select e from RiskEvent e " +
+            "where e.entity.id = :entityId " +
+            "and e.eventTimestamp >= :from and e.eventTimestamp < :to " +
+            "order by e.eventTimestamp desc")
+    List<RiskEvent> findByEntityInWindow(@Param("entityId") Long entityId,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to);
+
+    /**
+     * Events for one entity since the given timestamp, newest first
+     */
+    @Query("select e from RiskEvent e " +
+            "where e.entity.id = :entityId and e.eventTimestamp >= :since " +
+            "order by e.eventTimestamp desc")
+    List<RiskEvent> findRecentByEntity(@Param("entityId") Long entityId,
+                                       @Param("since") LocalDateTime since);
+
+    /**
+     * Events for one entity, looked up by its business key, since the given timestamp
+     */
+    @Query("select e from RiskEvent e " +
+            "where e.entity.entityId = :entityId and e.eventTimestamp >= :since " +
+            "order by e.eventTimestamp desc")
+    List<RiskEvent> findRecentByEntityId(@Param("entityId") String entityId,
+                                         @Param("since") LocalDateTime since);
+
+    /**
+     * All events within [from, to), used for model retraining
+     */
+    @Query("select e from RiskEvent e join fetch e.entity " +
+            "where e.eventTimestamp >= :from and e.eventTimestamp < :to")
+    List<RiskEvent> findAllInWindow(@Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to);
+
+    /**
+     * A page of events within [from, before), plus those at before with an id
+     * below beforeId, optionally of one entity, newest first. Passing the
+     * last event's timestamp and id pages backwards through a range without
+     * an offset; start with Long.MIN_VALUE.
+     */
+    @Query("select e from RiskEvent e join fetch e.entity m " +
+            "where e.eventTimestamp >= :from " +
+            "and (e.eventTimestamp < :before or (e.eventTimestamp = :before and e.id < :beforeId)) " +
+            "and (:entityId is null or m.entityId = :entityId) " +
+            "order by e.eventTimestamp desc, e.id desc")
+    List<RiskEvent> findPageBefore(@Param("from") LocalDateTime from,
+                                   @Param("before") LocalDateTime before,
+                                   @Param("beforeId") long beforeId,
+                                   @Param("entityId") String entityId,
+                                   Pageable page);
+
+    /**
+     * All events within [from, to) in timestamp order, for replays; must be
+     * consumed inside a transaction
+     */
+    @Query("select e from RiskEvent e join fetch e.entity " +
+            "where e.eventTimestamp >= :from and e.eventTimestamp < :to " +
+            "order by e.eventTimestamp, e.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<RiskEvent> streamAllInWindow(@Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to);
+
+    @Query("select count(e) from RiskEvent e " +
+            "where e.entity.id = :entityId and e.eventType = :eventType " +
+            "and e.eventTimestamp >= :since")
+    long countRecentByEntityAndType(@Param("entityId") Long entityId,
+                                    @Param("eventType") RiskEvent.EventType eventType,
+                                    @Param("since") LocalDateTime since);
+}
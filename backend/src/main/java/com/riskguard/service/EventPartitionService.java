@@ -0,0 +1,282 @@
+package com.riskguard.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+
+/**
+ * Event Partition Service
+ *
+ * Keeps risk_events range partitioned on event_timestamp in PostgreSQL:
+ * converts the plain table Hibernate creates under ddl-auto into a
+ * partitioned one on first start, creates partitions ahead of time and
+ * enforces retention by dropping whole partitions instead of DELETEs.
+ * Does nothing on databases other than PostgreSQL.
+ */
+@Service
+public class EventPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventPartitionService.class);
+
+    // Startup listeners that change the risk_events schema run after this one
+    public static final int STARTUP_ORDER = 0;
+
+    private static final String PARENT_TABLE = "risk_events";
+    private static final String LEGACY_TABLE = "risk_events_legacy";
+    private static final String DEFAULT_PARTITION = "risk_events_default";
+    private static final String METADATA_TABLE = "risk_event_metadata";
+    private static final String ID_SEQUENCE = "risk_events_part_id_seq";
+    private static final String PARTITION_PREFIX = "risk_events_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Value("${risk.events.partitioning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${risk.events.partitioning.interval:DAILY}")
+    private PartitionInterval interval;
+
+    @Value("${risk.events.partitioning.premake:7}")
+    private int premake;
+
+    @Value("${risk.events.partitioning.retention-days:90}")
+    private int retentionDays;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Boolean postgres;
+
+    public EventPartitionService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Migrate and prepare partitions once the schema has been created by Hibernate
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(STARTUP_ORDER)
+    public void initializePartitions() {
+        if (!isActive()) {
+            logger.info("risk_events partitioning disabled or database is not PostgreSQL");
+            return;
+        }
+
+        try {
+            migrateToPartitionedTable();
+            maintainPartitions();
+        } catch (Exception e) {
+            logger.error("Error initializing risk_events partitions", e);
+        }
+    }
+
+    /**
+     * Create upcoming partitions and drop expired ones
+     */
+    @Scheduled(cron = "${risk.events.partitioning.maintenance-cron:0 15 0 * * *}")
+    public void maintainPartitions() {
+        if (!isActive() || !isPartitioned()) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        LocalDate start = interval.floor(today);
+        for (int i = 0; i <= premake; i++) {
+            createPartition(start);
+            start = interval.next(start);
+        }
+
+        dropExpiredPartitions(today.minusDays(retentionDays));
+    }
+
+    /**
+     * Convert a plain risk_events table into a partitioned one.
+     *
+     * Migration path from ddl-auto: update: the existing table is renamed to
+     * risk_events_legacy, a partitioned parent with the same columns is
+     * created, partitions covering the legacy data are added, rows are copied
+     * and the legacy table is dropped, all in one transaction. The primary key
+     * becomes (id, event_timestamp) because PostgreSQL requires the partition
+     * key in every unique constraint, so the foreign key from
+     * risk_event_metadata is dropped.
+     */
+    public void migrateToPartitionedTable() {
+        if (isPartitioned() || !tableExists(PARENT_TABLE)) {
+            return;
+        }
+
+        logger.info("Migrating {} to a partitioned table ({} partitions)", PARENT_TABLE, interval);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + PARENT_TABLE + " IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " RENAME TO " + LEGACY_TABLE);
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS risk_events_pkey RENAME TO " + LEGACY_TABLE + "_pkey");
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_risk_events_entity_ts RENAME TO idx_"
+                    + LEGACY_TABLE + "_entity_ts");
+
+            if (tableExists(METADATA_TABLE)) {
+                List<String> foreignKeys = jdbcTemplate.queryForList(
+                        "SELECT conname FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'f'",
+                        String.class, METADATA_TABLE);
+                for (String foreignKey : foreignKeys) {
+                    jdbcTemplate.execute("ALTER TABLE " + METADATA_TABLE + " DROP CONSTRAINT \"" + foreignKey + "\"");
+                }
+            }
+
+            jdbcTemplate.execute("CREATE TABLE " + PARENT_TABLE + " (LIKE " + LEGACY_TABLE
+                    + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS) PARTITION BY RANGE (event_timestamp)");
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + ID_SEQUENCE + " OWNED BY " + PARENT_TABLE + ".id");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " ALTER COLUMN id SET DEFAULT nextval('"
+                    + ID_SEQUENCE + "')");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " ADD PRIMARY KEY (id, event_timestamp)");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE
+                    + " ADD CONSTRAINT fk_risk_events_entity FOREIGN KEY (entity_id) REFERENCES entities (id)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_risk_events_entity_ts ON " + PARENT_TABLE
+                    + " (entity_id, event_timestamp)");
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + PARENT_TABLE + " DEFAULT");
+
+            // Partitions covering the legacy data up to today
+            java.sql.Date oldest = jdbcTemplate.queryForObject(
+                    "SELECT min(event_timestamp)::date FROM " + LEGACY_TABLE, java.sql.Date.class);
+            LocalDate end = LocalDate.now();
+            LocalDate start = interval.floor(oldest != null ? oldest.toLocalDate() : end);
+            while (!start.isAfter(end)) {
+                createPartition(start);
+                start = interval.next(start);
+            }
+
+            int copied = jdbcTemplate.update("INSERT INTO " + PARENT_TABLE + " SELECT * FROM " + LEGACY_TABLE);
+            jdbcTemplate.execute("SELECT setval('" + ID_SEQUENCE + "', coalesce((SELECT max(id) FROM "
+                    + PARENT_TABLE + "), 0) + 1, false)");
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+
+            logger.info("Migrated {} rows into partitioned {}", copied, PARENT_TABLE);
+        });
+    }
+
+    /**
+     * Create the partition starting at the given date if it does not exist yet.
+     * Rows that already landed in the default partition for that range are
+     * moved into the new partition.
+     */
+    private void createPartition(LocalDate start) {
+        String name = PARTITION_PREFIX + start.format(PARTITION_SUFFIX);
+        if (tableExists(name)) {
+            return;
+        }
+
+        LocalDate end = interval.next(start);
+        String bounds = "FOR VALUES FROM ('" + start + "') TO ('" + end + "')";
+
+        transactionTemplate.executeWithoutResult(status -> {
+            boolean strayRows = tableExists(DEFAULT_PARTITION) && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION
+                            + " WHERE event_timestamp >= ?::timestamp AND event_timestamp < ?::timestamp)",
+                    Boolean.class, start.toString(), end.toString()));
+
+            if (strayRows) {
+                jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + PARENT_TABLE
+                        + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE event_timestamp >= ?::timestamp AND event_timestamp < ?::timestamp RETURNING *) "
+                        + "INSERT INTO " + name + " SELECT * FROM moved", start.toString(), end.toString());
+                jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + name + " " + bounds);
+            } else {
+                jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + PARENT_TABLE + " " + bounds);
+            }
+        });
+
+        logger.debug("Created partition {} [{}, {})", name, start, end);
+    }
+
+    /**
+     * Drop every partition whose whole range lies before the cutoff
+     */
+    private void dropExpiredPartitions(LocalDate cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ? AND c.relname LIKE ?",
+                String.class, PARENT_TABLE, PARTITION_PREFIX + "%");
+
+        for (String partition : partitions) {
+            LocalDate start;
+            try {
+                start = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+            } catch (DateTimeParseException e) {
+                logger.warn("Skipping partition with unexpected name: {}", partition);
+                continue;
+            }
+
+            if (interval.next(start).isAfter(cutoff)) {
+                continue;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                // Metadata has no foreign key to the partitioned table, so clear it explicitly
+                if (tableExists(METADATA_TABLE)) {
+                    jdbcTemplate.update("DELETE FROM " + METADATA_TABLE
+                            + " WHERE risk_event_id IN (SELECT id FROM " + partition + ")");
+                }
+                jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            });
+
+            logger.info("Dropped expired partition {} (retention {} days)", partition, retentionDays);
+        }
+    }
+
+    private boolean isActive() {
+        if (!enabled) {
+            return false;
+        }
+        if (postgres == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return postgres;
+    }
+
+    private boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt " +
+                        "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = ?)",
+                Boolean.class, PARENT_TABLE);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    private boolean tableExists(String table) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    public enum PartitionInterval {
+        DAILY, WEEKLY;
+
+        LocalDate floor(LocalDate date) {
+            return this == DAILY ? date : date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        LocalDate next(LocalDate start) {
+            return this == DAILY ? start.plusDays(1) : start.plusWeeks(1);
+        }
+    }
+}
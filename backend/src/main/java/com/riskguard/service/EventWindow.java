@@ -0,0 +1,199 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.service.time.ScoringClock;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Rolling event window of one entity with its scoring counters kept up to
+ * date as events arrive and expire, so scoring a window costs the same
+ * however many events it holds. Used by replays, which rescore an entity
+ * on every event; live scoring still gathers counters from the event list.
+ *
+ * Events are expected in timestamp order. Expiry walks from the oldest
+ * event added and stops at the first one still inside the window, so a
+ * late event only leaves once every event added before it has; until
+ * then it is counted as if it were still inside, as a rescan of the
+ * same list would count it. Not thread-safe.
+ */
+public final class EventWindow {
+
+    private static final int EVENT_TYPES = RiskEvent.EventType.values().length;
+    private static final byte AFTER_HOURS = 1;
+    private static final byte WEEKEND = 2;
+
+    private final long windowMillis;
+    private final Duration halfLife;
+    private final ScoringClock clock;
+
+    // Events in [head, tail), of which [recentHead, tail) are recent
+    private RiskEvent[] events = new RiskEvent[16];
+    private long[] timestamps = new long[16];
+    private byte[] flags = new byte[16];
+    private int head;
+    private int recentHead;
+    private int tail;
+
+    private final long[] eventTypeCounts = new long[EVENT_TYPES];
+    private int afterHoursCount;
+    private int weekendCount;
+    private int highSeverityCount;
+    private long severitySum;
+    private long fileBytes;
+    private double decayedHighSeverity;
+    private long decayedAt = Long.MIN_VALUE;
+
+    public EventWindow(Duration window, Duration halfLife, ScoringClock clock) {
+        this.windowMillis = window.toMillis();
+        this.halfLife = halfLife;
+        this.clock = clock;
+    }
+
+    public Duration getHalfLife() {
+        return halfLife;
+    }
+
+    public ScoringClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Add an event as of the clock's current time, which must not be before
+     * the event
+     */
+    public void add(RiskEvent event) {
+        advanceTo(clock.millis());
+        long timestamp = clock.toEpochMillis(event.getEventTimestamp());
+        if (tail == events.length) {
+            grow();
+        }
+        byte flag = 0;
+        int hour = clock.hourOfDay(timestamp);
+        if (hour < 6 || hour > 22) {
+            flag |= AFTER_HOURS;
+        }
+        if (clock.dayOfWeek(timestamp) > 5) {
+            flag |= WEEKEND;
+        }
+        events[tail] = event;
+        timestamps[tail] = timestamp;
+        flags[tail] = flag;
+        tail++;
+        count(event, flag, 1);
+        if (event.isHighSeverity()) {
+            decayedHighSeverity += ScoreDecayService.decayFactor(decayedAt - timestamp, halfLife);
+        }
+        // Recent until the clock moves past it, like every event after it
+        advanceRecent(decayedAt);
+    }
+
+    public int size() {
+        return tail - head;
+    }
+
+    /**
+     * Expire events that left the window and decay the high-severity sum
+     * to the given time; earlier times are ignored
+     */
+    public void advanceTo(long now) {
+        if (now <= decayedAt) {
+            return;
+        }
+        if (decayedAt != Long.MIN_VALUE) {
+            decayedHighSeverity *= ScoreDecayService.decayFactor(now - decayedAt, halfLife);
+        }
+        decayedAt = now;
+
+        long cutoff = now - windowMillis;
+        while (head < tail && timestamps[head] < cutoff) {
+            RiskEvent event = events[head];
+            count(event, flags[head], -1);
+            if (event.isHighSeverity()) {
+                decayedHighSeverity -= ScoreDecayService.decayFactor(now - timestamps[head], halfLife);
+            }
+            events[head] = null;
+            head++;
+        }
+        if (head == tail || highSeverityCount == 0) {
+            // Drop what rounding left behind
+            decayedHighSeverity = 0.0;
+        }
+        recentHead = Math.max(recentHead, head);
+        advanceRecent(now);
+
+        // Compact once the expired prefix dominates the arrays
+        if (head > 64 && head * 2 > tail) {
+            compact();
+        }
+    }
+
+    /**
+     * Copy the counters into a scoring context, as of the context's time
+     */
+    void fill(ScoringContext context) {
+        advanceTo(context.now);
+        context.setEventTypeCounts(eventTypeCounts);
+        context.eventCount = tail - head;
+        context.recentCount = tail - recentHead;
+        context.afterHoursCount = afterHoursCount;
+        context.weekendCount = weekendCount;
+        context.highSeverityCount = highSeverityCount;
+        context.severitySum = severitySum;
+        context.fileBytes = fileBytes;
+        context.decayedHighSeverity = Math.max(0.0, decayedHighSeverity);
+    }
+
+    private void advanceRecent(long now) {
+        long recentCutoff = now - MachineLearningService.RECENT_MILLIS;
+        while (recentHead < tail && timestamps[recentHead] <= recentCutoff) {
+            recentHead++;
+        }
+    }
+
+    private void count(RiskEvent event, byte flag, int sign) {
+        if (event.getEventType() != null) {
+            eventTypeCounts[event.getEventType().ordinal()] += sign;
+        }
+        if (event.getSeverity() != null) {
+            severitySum += sign * event.getSeverity().getLevel();
+        }
+        if (event.isHighSeverity()) {
+            highSeverityCount += sign;
+        }
+        if ((flag & AFTER_HOURS) != 0) {
+            afterHoursCount += sign;
+        }
+        if ((flag & WEEKEND) != 0) {
+            weekendCount += sign;
+        }
+        if (event.getFileSize() != null) {
+            fileBytes += sign * event.getFileSize();
+        }
+    }
+
+    private void grow() {
+        if (head > 0) {
+            compact();
+            if (tail < events.length) {
+                return;
+            }
+        }
+        int capacity = events.length * 2;
+        events = Arrays.copyOf(events, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    private void compact() {
+        int size = tail - head;
+        System.arraycopy(events, head, events, 0, size);
+        System.arraycopy(timestamps, head, timestamps, 0, size);
+        System.arraycopy(flags, head, flags, 0, size);
+        Arrays.fill(events, size, tail, null);
+        recentHead -= head;
+        tail = size;
+        head = 0;
+    }
+}
@@ -2,15 +2,34 @@ package com.riskguard.service;
 
 import com.riskguard.domain.MonitoredEntity;
 import com.riskguard.domain.RiskEvent;
-import org.apache.commons.math3.random.RandomDataGenerator;
+import com.riskguard.service.cluster.ShardRebalanceEvent;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.feature.CardinalitySketchService.Dimension;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.intern.IntObjectMap;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.ml.AnomalyModel;
+import com.riskguard.service.ml.IsolationForest;
+import com.riskguard.service.ml.RandomCutForest;
+import com.riskguard.service.ml.RandomForestClassifier;
+import com.riskguard.service.sequence.SequenceDetectorService;
+import com.riskguard.service.tenant.Tenant;
+import com.riskguard.service.tenant.TenantService;
+import com.riskguard.service.time.ScoringClock;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.stream.Collectors;
 
 /**
@@ -24,8 +43,50 @@ public class MachineLearningService {
 
     private static final Logger logger = LoggerFactory.getLogger(MachineLearningService.class);
 
-    @Value("${risk.scoring.ml.isolation-forest.contamination:0.1}")
-    private double contamination;
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    static final long RECENT_MILLIS = DAY_MILLIS;
+
+    // Names of the features in extractFeatures order, for attribution
+    private static final String[] FEATURE_NAMES = {
+            "Current Risk Score", "Entity Age", "Recent Activity",
+            "Login Failures", "Privilege Escalation", "Large File Transfers", "Unauthorized File Access",
+            "Suspicious Activity",
+            "Recent Events", "After-Hours Activity", "Weekend Activity",
+            "High-Severity Events", "Average Severity",
+            "Distinct Source IPs", "Port Scans", "Distinct Destination IPs", "Distinct Ports", "Distinct Sessions",
+            "File Transfer Count", "File Transfer Volume"
+    };
+
+    // Names of the rules in applyRuleBasedAdjustments order
+    private static final String[] RULE_NAMES = {
+            "High-Severity Events (decayed)", "After-Hours Activity", "Multiple Failed Logins",
+            "Large File Transfers", "Privilege Escalation Attempts", "Rapid Succession of Events",
+            "Attack Sequences (decayed)", "Related Entity Risk (decayed)"
+    };
+
+    // Features, then rules, then the clamp to the score bounds, as laid out
+    // in the points of a RiskScore
+    private static final String[] CONTRIBUTION_NAMES = new String[FEATURE_NAMES.length + RULE_NAMES.length + 1];
+    private static final RiskScore.Source[] CONTRIBUTION_SOURCES = new RiskScore.Source[CONTRIBUTION_NAMES.length];
+
+    static {
+        for (int i = 0; i < CONTRIBUTION_NAMES.length; i++) {
+            if (i < FEATURE_NAMES.length) {
+                CONTRIBUTION_NAMES[i] = FEATURE_NAMES[i];
+                CONTRIBUTION_SOURCES[i] = RiskScore.Source.MODEL;
+            } else if (i < FEATURE_NAMES.length + RULE_NAMES.length) {
+                CONTRIBUTION_NAMES[i] = RULE_NAMES[i - FEATURE_NAMES.length];
+                CONTRIBUTION_SOURCES[i] = RiskScore.Source.RULE;
+            } else {
+                CONTRIBUTION_NAMES[i] = "Score Bounds";
+                CONTRIBUTION_SOURCES[i] = RiskScore.Source.BOUNDS;
+            }
+        }
+    }
+
+    // Returned when scoring fails
+    private static final double DEFAULT_SCORE = 15.0;
 
     @Value("${risk.scoring.ml.isolation-forest.n-estimators:100}")
     private int nEstimators;
@@ -33,347 +94,652 @@ public class MachineLearningService {
     @Value("${risk.scoring.ml.isolation-forest.max-samples:256}")
     private int maxSamples;
 
-    @Value("${risk.scoring.thresholds.high:40}")
-    private double highThreshold;
+    @Value("${risk.scoring.ml.random-forest.n-estimators:100}")
+    private int classifierEstimators;
 
-    @Value("${risk.scoring.thresholds.medium:25}")
-    private double mediumThreshold;
+    @Value("${risk.scoring.ml.random-forest.max-depth:10}")
+    private int classifierMaxDepth;
 
-    @Value("${risk.scoring.thresholds.low:15}")
-    private double lowThreshold;
+    @Value("${risk.scoring.ml.random-forest.min-samples-split:2}")
+    private int classifierMinSamplesSplit;
 
-    // In-memory storage for ML models (in production, use proper model persistence)
-    private final Map<String, IsolationForestModel> models = new ConcurrentHashMap<>();
-    private final RandomDataGenerator random = new RandomDataGenerator();
+    // Share of the blended score taken from the classifier once trained
+    @Value("${risk.scoring.ml.random-forest.weight:0.5}")
+    private double classifierWeight;
 
-    /**
-     * Calculate risk score for an entity using Isolation Forest
-     */
-    @Cacheable(value = "riskScores", key = "#entity.entityId")
-    public double calculateRiskScore(MonitoredEntity entity, List<RiskEvent> recentEvents) {
-        logger.debug("Calculating risk score for entity: {}", entity.getEntityId());
+    // Labelled rows held out to measure the classifier after training
+    @Value("${risk.scoring.ml.random-forest.validation-fraction:0.2}")
+    private double validationFraction;
 
-        try {
-            // Extract features from entity and events
-            double[] features = extractFeatures(entity, recentEvents);
+    @Value("${risk.scoring.ml.seed:42}")
+    private long seed;
 
-            // Get or create Isolation Forest model for this entity type
-            String modelKey = getModelKey(entity);
-            IsolationForestModel model = models.computeIfAbsent(modelKey,
-                    k -> new IsolationForestModel(nEstimators, maxSamples, contamination));
+    // Threads training trees and models; 0 uses one per core
+    @Value("${risk.scoring.ml.training-parallelism:0}")
+    private int trainingParallelism;
 
-            // Calculate anomaly score
-            double anomalyScore = model.predict(features);
+    // Model keys (TYPE_department) scored by a streaming forest instead of
+    // the batch one, or * for all
+    @Value("${risk.scoring.ml.online.models:}")
+    private Set<String> onlineModels;
 
-            // Convert anomaly score to risk score (0-50 range)
-            double riskScore = convertAnomalyScoreToRiskScore(anomalyScore);
+    @Value("${risk.scoring.ml.online.trees:32}")
+    private int onlineTrees;
 
-            // Apply rule-based adjustments
-            riskScore = applyRuleBasedAdjustments(riskScore, entity, recentEvents);
+    @Value("${risk.scoring.ml.online.window-size:256}")
+    private int onlineWindowSize;
 
-            // Ensure score is within bounds
-            riskScore = Math.max(5.0, Math.min(50.0, riskScore));
+    @Autowired
+    private ScoreDecayService scoreDecayService;
 
-            logger.debug("Risk score for entity {}: {}", entity.getEntityId(), riskScore);
-            return riskScore;
+    @Autowired
+    private CardinalitySketchService cardinalitySketchService;
 
-        } catch (Exception e) {
-            logger.error("Error calculating risk score for entity: {}", entity.getEntityId(), e);
-            return 15.0; // Default medium risk score
-        }
-    }
+    @Autowired
+    private TenantService tenantService;
 
-    /**
-     * Extract numerical features from entity and events for ML model
-     */
-    private double[] extractFeatures(MonitoredEntity entity, List<RiskEvent> events) {
-        List<Double> features = new ArrayList<>();
+    @Autowired
+    private KeyDictionaryService keyDictionaryService;
 
-        // Entity-based features
-        features.add(entity.getCurrentRiskScore());
-        features.add(getEntityAgeInDays(entity));
-        features.add(getEntityActivityScore(entity));
+    @Autowired
+    private SequenceDetectorService sequenceDetectorService;
 
-        // Event-based features
-        features.add((double) getEventCount(events, RiskEvent.EventType.LOGIN_FAILURE));
-        features.add((double) getEventCount(events, RiskEvent.EventType.PRIVILEGE_ESCALATION));
-        features.add((double) getEventCount(events, RiskEvent.EventType.LARGE_FILE_TRANSFER));
-        features.add((double) getEventCount(events, RiskEvent.EventType.UNAUTHORIZED_FILE_ACCESS));
-        features.add((double) getEventCount(events, RiskEvent.EventType.SUSPICIOUS_ACTIVITY));
+    @Autowired
+    private EntityGraphService entityGraphService;
 
-        // Time-based features
-        features.add(getRecentActivityScore(events));
-        features.add(getAfterHoursActivityScore(events));
-        features.add(getWeekendActivityScore(events));
+    @Autowired
+    private ScoringClock clock;
 
-        // Severity-based features
-        features.add((double) getHighSeverityEventCount(events));
-        features.add(getAverageEventSeverity(events));
+    // Feature buffer and counters reused by each scoring thread
+    private final ThreadLocal<ScoringContext> scoringContext =
+            ThreadLocal.withInitial(() -> new ScoringContext(cardinalitySketchService.getBucketCount()));
 
-        // Network features
-        features.add((double) getUniqueIpCount(events));
-        features.add((double) getPortScanAttempts(events));
+    private ForkJoinPool trainingPool;
 
-        // File system features
-        features.add((double) getLargeFileTransferCount(events));
-        features.add(getTotalDataTransferred(events));
+    @PostConstruct
+    void initialize() {
+        int parallelism = trainingParallelism > 0 ? trainingParallelism : Runtime.getRuntime().availableProcessors();
+        trainingPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("ml-training-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
 
-        return features.stream().mapToDouble(Double::doubleValue).toArray();
+    @PreDestroy
+    void shutdown() {
+        trainingPool.shutdownNow();
     }
 
     /**
-     * Convert anomaly score to risk score in 5-50 range
+     * Score cached for an entity since its last rescoring, or null
      */
-    private double convertAnomalyScoreToRiskScore(double anomalyScore) {
-        // Isolation Forest returns lower scores for anomalies
-        // We invert and scale to our risk score range
-        double normalizedScore = 1.0 - anomalyScore; // Invert the score
-        return 5.0 + (normalizedScore * 45.0); // Scale to 5-50 range
+    public RiskScore getCachedScore(MonitoredEntity entity) {
+        return tenantService.tenantOf(entity).scores().getIfPresent(entity.getEntityId());
     }
 
     /**
-     * Apply rule-based adjustments to ML-calculated risk score
+     * Calculate risk score for an entity using Isolation Forest, with the
+     * contribution of each feature and rule; both are cached together in
+     * the entity's tenant, replacing any cached score. Streaming models
+     * learn the entity's current features, so call this once per rescoring.
      */
-    private double applyRuleBasedAdjustments(double baseScore, MonitoredEntity entity, List<RiskEvent> events) {
-        double adjustedScore = baseScore;
+    public RiskScore calculateRiskScore(MonitoredEntity entity, List<RiskEvent> recentEvents) {
+        RiskScore score = score(entity, recentEvents, clock, cardinalitySketchService,
+                scoreDecayService.getHalfLife(), true);
+        tenantService.tenantOf(entity).scores().put(entity.getEntityId(), score);
+        return score;
+    }
 
-        // Rule 1: Recent high-severity events
-        long recentHighSeverityEvents = events.stream()
-                .filter(e -> e.isHighSeverity() && e.isRecent())
-                .count();
-        adjustedScore += recentHighSeverityEvents * 5.0;
+    /**
+     * Score cached for an entity, or one calculated like
+     * {@link #calculateRiskScore} but without streaming models learning
+     * from it, for reads that found no cached score. A score cached
+     * meanwhile by a rescoring wins.
+     */
+    public RiskScore readRiskScore(MonitoredEntity entity, List<RiskEvent> recentEvents) {
+        Tenant tenant = tenantService.tenantOf(entity);
+        RiskScore cached = tenant.scores().getIfPresent(entity.getEntityId());
+        if (cached != null) {
+            return cached;
+        }
 
-        // Rule 2: After-hours activity
-        if (hasAfterHoursActivity(events)) {
-            adjustedScore += 3.0;
+        RiskScore score = score(entity, recentEvents, clock, cardinalitySketchService,
+                scoreDecayService.getHalfLife(), false);
+        cached = tenant.scores().asMap().putIfAbsent(entity.getEntityId(), score);
+        return cached != null ? cached : score;
+    }
+
+    /**
+     * Models of all tenants as they are now, for {@link #scoreAt}
+     */
+    public ModelSnapshot snapshotModels() {
+        Map<String, IntObjectMap<AnomalyModel>> models = new HashMap<>();
+        Map<String, RandomForestClassifier> classifiers = new HashMap<>();
+        for (Tenant tenant : tenantService.tenants()) {
+            IntObjectMap<AnomalyModel> current = new IntObjectMap<>();
+            synchronized (tenant.models()) {
+                tenant.models().forEach((model, key) -> current.put(key, model));
+            }
+            // Streaming forests are copied outside the tenant's lock, each under its own
+            IntObjectMap<AnomalyModel> frozen = new IntObjectMap<>(current.size());
+            current.forEach((model, key) -> frozen.put(key,
+                    model instanceof RandomCutForest online ? online.snapshot() : model));
+            models.put(tenant.getId(), frozen);
+            if (tenant.getClassifier() != null) {
+                classifiers.put(tenant.getId(), tenant.getClassifier());
+            }
         }
+        return new ModelSnapshot(models, classifiers);
+    }
 
-        // Rule 3: Multiple failed logins
-        long failedLogins = getEventCount(events, RiskEvent.EventType.LOGIN_FAILURE);
-        if (failedLogins > 3) {
-            adjustedScore += failedLogins * 2.0;
+    /**
+     * Calculate a risk score against an explicit time source, sketch state,
+     * decay half-life and model snapshot. The sketches must already contain
+     * the events. Used by replays, which must not read or write live state;
+     * results are not cached and no model learns from them. Allocates
+     * nothing once the thread's scoring context exists.
+     */
+    public double scoreAt(MonitoredEntity entity, List<RiskEvent> recentEvents, ScoringClock clock,
+                          CardinalitySketchService sketches, Duration halfLife, ModelSnapshot models) {
+        try {
+            return scoreInto(scoringContext.get(), entity, recentEvents, null, clock, sketches, halfLife, models,
+                    false);
+        } catch (Exception e) {
+            logger.error("Error calculating risk score for entity: {}", entity.getEntityId(), e);
+            return DEFAULT_SCORE;
         }
+    }
 
-        // Rule 4: Large file transfers
-        long largeTransfers = getEventCount(events, RiskEvent.EventType.LARGE_FILE_TRANSFER);
-        adjustedScore += largeTransfers * 4.0;
+    /**
+     * {@link #scoreAt} against a running event window, at the window's
+     * clock and half-life. Costs the same however many events the window
+     * holds, where the list variant rescans all of them.
+     */
+    public double scoreAt(MonitoredEntity entity, EventWindow window, CardinalitySketchService sketches,
+                          ModelSnapshot models) {
+        try {
+            return scoreInto(scoringContext.get(), entity, List.of(), window, window.getClock(), sketches,
+                    window.getHalfLife(), models, false);
+        } catch (Exception e) {
+            logger.error("Error calculating risk score for entity: {}", entity.getEntityId(), e);
+            return DEFAULT_SCORE;
+        }
+    }
 
-        // Rule 5: Privilege escalation attempts
-        long privilegeEscalations = getEventCount(events, RiskEvent.EventType.PRIVILEGE_ESCALATION);
-        adjustedScore += privilegeEscalations * 8.0;
+    /**
+     * Live score with attribution; the returned score is the only allocation
+     *
+     * @param learn whether streaming models add the entity's features to their window
+     */
+    RiskScore score(MonitoredEntity entity, List<RiskEvent> recentEvents, ScoringClock clock,
+                    CardinalitySketchService sketches, Duration halfLife, boolean learn) {
+        logger.debug("Calculating risk score for entity: {}", entity.getEntityId());
 
-        // Rule 6: Unusual access patterns
-        if (hasUnusualAccessPatterns(events)) {
-            adjustedScore += 6.0;
+        try {
+            ScoringContext context = scoringContext.get();
+            double riskScore = scoreInto(context, entity, recentEvents, null, clock, sketches, halfLife, null,
+                    learn);
+            return explain(context, riskScore);
+        } catch (Exception e) {
+            logger.error("Error calculating risk score for entity: {}", entity.getEntityId(), e);
+            return RiskScore.of(DEFAULT_SCORE);
         }
-
-        return adjustedScore;
     }
 
     /**
-     * Simplified Isolation Forest implementation
+     * Score into the context. Live scores use the tenant's current models,
+     * leave their attribution in the context and, when learning, update
+     * streaming models; replays pass the snapshot they score against and
+     * skip all of that. Counters come from the window when there is one,
+     * otherwise from the events.
      */
-    private static class IsolationForestModel {
-        private final int nEstimators;
-        private final int maxSamples;
-        private final double contamination;
-        private final List<IsolationTree> trees;
-
-        public IsolationForestModel(int nEstimators, int maxSamples, double contamination) {
-            this.nEstimators = nEstimators;
-            this.maxSamples = maxSamples;
-            this.contamination = contamination;
-            this.trees = new ArrayList<>();
-
-            // Initialize trees (simplified implementation)
-            for (int i = 0; i < nEstimators; i++) {
-                trees.add(new IsolationTree(maxSamples));
+    private double scoreInto(ScoringContext context, MonitoredEntity entity, List<RiskEvent> recentEvents,
+                             EventWindow window, ScoringClock clock, CardinalitySketchService sketches,
+                             Duration halfLife, ModelSnapshot replayModels, boolean learn) {
+        boolean live = replayModels == null;
+
+        // Extract features from entity and events
+        context.begin(clock, sketches, halfLife);
+        double[] features = extractFeatures(context, entity, recentEvents, window);
+
+        // Model for this entity type in its tenant; batch forests are untrained
+        // until the first retraining, streaming ones start on the first learning score
+        Tenant tenant = tenantService.tenantOf(entity);
+        int modelKey = keyDictionaryService.modelKey(entity);
+        AnomalyModel model;
+        RandomForestClassifier supervised;
+        if (live) {
+            IntObjectMap<AnomalyModel> models = tenant.models();
+            synchronized (models) {
+                model = models.get(modelKey);
+                if (model == null && learn && isOnline(keyDictionaryService.modelName(modelKey))) {
+                    model = new RandomCutForest(onlineTrees, onlineWindowSize, features.length,
+                            modelSeed(tenant, keyDictionaryService.modelName(modelKey)));
+                    models.put(modelKey, model);
+                }
             }
+            supervised = tenant.getClassifier();
+        } else {
+            model = replayModels.model(tenant.getId(), modelKey);
+            supervised = replayModels.classifier(tenant.getId());
         }
 
-        public double predict(double[] features) {
-            if (trees.isEmpty()) {
-                return 0.5; // Default score
-            }
+        // Calculate anomaly score, before the point joins the window it is scored against
+        double[] anomalyAttribution = live ? context.anomalyAttribution : null;
+        double isolationScore = (model != null ? model : IsolationForest.EMPTY).score(features, anomalyAttribution);
+        if (learn && model instanceof RandomCutForest online) {
+            online.update(features);
+        }
 
-            // Calculate average path length across all trees
-            double totalPathLength = 0.0;
-            for (IsolationTree tree : trees) {
-                totalPathLength += tree.getPathLength(features);
-            }
+        // Blend in the supervised estimate once labels have trained a classifier
+        double anomalyScore = isolationScore;
+        double probability = 0.0;
+        if (supervised != null) {
+            probability = supervised.probability(features, live ? context.classifierAttribution : null);
+            anomalyScore = (1.0 - classifierWeight) * isolationScore + classifierWeight * probability;
+        }
 
-            double avgPathLength = totalPathLength / trees.size();
+        // Convert anomaly score to risk score (0-50 range)
+        double modelScore = convertAnomalyScoreToRiskScore(anomalyScore);
 
-            // Convert to anomaly score (0-1 range)
-            return Math.exp(-avgPathLength / getExpectedPathLength(features.length));
+        // Apply rule-based adjustments; sequence matches and inherited risk
+        // are live state, replays go without
+        if (live) {
+            context.sequencePoints = sequenceDetectorService.matchPoints(entity.getEntityId(), context.now,
+                    halfLife);
+            context.inheritedPoints = entityGraphService.inheritedPoints(entity.getEntityId(), context.now);
         }
+        double adjustedScore = applyRuleBasedAdjustments(modelScore, context);
+
+        // Ensure score is within bounds
+        double riskScore = Math.max(5.0, Math.min(50.0, adjustedScore));
 
-        private double getExpectedPathLength(int n) {
-            if (n <= 1)
-                return 0;
-            if (n == 2)
-                return 1;
-            return 2 * (Math.log(n - 1) + 0.5772156649) - 2 * (n - 1) / n;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Risk score for entity {}: {}", entity.getEntityId(), riskScore);
         }
+        context.isolationScore = isolationScore;
+        context.classifierShare = supervised != null ? classifierWeight : 0.0;
+        context.probability = probability;
+        context.adjustedScore = adjustedScore;
+        return riskScore;
     }
 
     /**
-     * Simplified Isolation Tree implementation
+     * Split a score into points per feature and rule. The isolation share of
+     * the model points is divided by each feature's isolation weight; the
+     * classifier share by each feature's move of the probability away from
+     * the forest's prior. What no feature accounts for stays in the baseline.
      */
-    private static class IsolationTree {
-        private final int maxSamples;
-        private final Random random = new Random();
+    private RiskScore explain(ScoringContext context, double riskScore) {
+        double weight = context.classifierShare;
+        double isolationPoints = (1.0 - weight) * context.isolationScore * 45.0;
+        double isolationWeights = 0.0;
+        for (double w : context.anomalyAttribution) {
+            isolationWeights += w;
+        }
 
-        public IsolationTree(int maxSamples) {
-            this.maxSamples = maxSamples;
+        double baseline = 5.0 + weight * context.probability * 45.0;
+        if (isolationWeights == 0.0) {
+            baseline += isolationPoints;
         }
 
-        public double getPathLength(double[] features) {
-            // Simplified path length calculation
-            // In a real implementation, this would traverse the actual tree structure
-            double pathLength = 0.0;
-            for (int i = 0; i < features.length; i++) {
-                if (random.nextDouble() < 0.5) {
-                    pathLength += 1.0;
-                }
+        double[] points = new double[CONTRIBUTION_NAMES.length];
+        for (int f = 0; f < FEATURE_NAMES.length; f++) {
+            double featurePoints = weight * context.classifierAttribution[f] * 45.0;
+            if (isolationWeights > 0.0) {
+                featurePoints += isolationPoints * context.anomalyAttribution[f] / isolationWeights;
+            }
+            baseline -= weight * context.classifierAttribution[f] * 45.0;
+            if (Math.abs(featurePoints) >= 0.01) {
+                points[f] = featurePoints;
+            } else {
+                baseline += featurePoints;
             }
-            return Math.max(1.0, pathLength);
         }
-    }
+        System.arraycopy(context.rulePoints, 0, points, FEATURE_NAMES.length, RULE_NAMES.length);
+        points[points.length - 1] = riskScore - context.adjustedScore;
 
-    // Helper methods for feature extraction
-    private double getEntityAgeInDays(MonitoredEntity entity) {
-        if (entity.getCreatedAt() == null)
-            return 0.0;
-        return java.time.Duration.between(entity.getCreatedAt(),
-                java.time.LocalDateTime.now()).toDays();
+        return new RiskScore(riskScore, baseline, CONTRIBUTION_NAMES, CONTRIBUTION_SOURCES, points);
     }
 
-    private double getEntityActivityScore(MonitoredEntity entity) {
-        if (entity.getLastActivity() == null)
-            return 0.0;
-        long hoursSinceLastActivity = java.time.Duration.between(
-                entity.getLastActivity(), java.time.LocalDateTime.now()).toHours();
-        return Math.max(0.0, 24.0 - hoursSinceLastActivity);
+    /**
+     * Drop the cached score of an entity, e.g. after it received new events
+     */
+    public void evictCachedScore(String entityId) {
+        for (Tenant tenant : tenantService.tenants()) {
+            tenant.scores().invalidate(entityId);
+        }
+        logger.debug("Evicted cached risk score for entity: {}", entityId);
     }
 
-    private long getEventCount(List<RiskEvent> events, RiskEvent.EventType eventType) {
-        return events.stream()
-                .filter(e -> e.getEventType() == eventType)
-                .count();
+    /**
+     * Drop cached scores of entities whose shard moved to another node
+     */
+    @EventListener
+    public void onShardRebalance(ShardRebalanceEvent event) {
+        for (Tenant tenant : tenantService.tenants()) {
+            tenant.scores().asMap().keySet().removeIf(key -> !event.isLocal(key));
+        }
     }
 
-    private double getRecentActivityScore(List<RiskEvent> events) {
-        return events.stream()
-                .filter(RiskEvent::isRecent)
-                .count();
+    /**
+     * Extract numerical features from entity and events for ML model. The
+     * returned array is the context's buffer and is overwritten by the next
+     * call on the same thread.
+     */
+    private double[] extractFeatures(ScoringContext context, MonitoredEntity entity, List<RiskEvent> events,
+                                     EventWindow window) {
+        context.reset();
+        if (window != null) {
+            window.fill(context);
+        } else {
+            accumulate(context, events);
+        }
+
+        double[] features = context.features;
+        int i = 0;
+
+        // Entity-based features
+        features[i++] = entity.getCurrentRiskScore();
+        features[i++] = getEntityAgeInDays(context, entity);
+        features[i++] = getEntityActivityScore(context, entity);
+
+        // Event-based features
+        features[i++] = context.count(RiskEvent.EventType.LOGIN_FAILURE);
+        features[i++] = context.count(RiskEvent.EventType.PRIVILEGE_ESCALATION);
+        features[i++] = context.count(RiskEvent.EventType.LARGE_FILE_TRANSFER);
+        features[i++] = context.count(RiskEvent.EventType.UNAUTHORIZED_FILE_ACCESS);
+        features[i++] = context.count(RiskEvent.EventType.SUSPICIOUS_ACTIVITY);
+
+        // Time-based features
+        features[i++] = context.recentCount;
+        features[i++] = context.afterHoursCount;
+        features[i++] = context.weekendCount;
+
+        // Severity-based features
+        features[i++] = context.highSeverityCount;
+        features[i++] = context.averageSeverity();
+
+        // Network features (distinct counts are HyperLogLog estimates, ~3% error)
+        features[i++] = getDistinctCount(context, entity, Dimension.SOURCE_IP);
+        features[i++] = context.count(RiskEvent.EventType.PORT_SCAN);
+        features[i++] = getDistinctCount(context, entity, Dimension.DESTINATION_IP);
+        features[i++] = getDistinctCount(context, entity, Dimension.PORT);
+        features[i++] = getDistinctCount(context, entity, Dimension.SESSION);
+
+        // File system features
+        features[i++] = context.count(RiskEvent.EventType.LARGE_FILE_TRANSFER);
+        features[i] = context.fileBytes / (1024.0 * 1024.0); // Convert to MB
+
+        return features;
     }
 
-    private double getAfterHoursActivityScore(List<RiskEvent> events) {
-        return events.stream()
-                .filter(e -> e.getEventTimestamp().getHour() < 6 || e.getEventTimestamp().getHour() > 22)
-                .count();
+    /**
+     * Gather all event counters in one pass instead of one stream per feature
+     */
+    private void accumulate(ScoringContext context, List<RiskEvent> events) {
+        ScoringClock clock = context.clock;
+        long now = context.now;
+        long recentCutoff = now - RECENT_MILLIS;
+        for (int i = 0, n = events.size(); i < n; i++) {
+            RiskEvent event = events.get(i);
+            long timestamp = clock.toEpochMillis(event.getEventTimestamp());
+
+            context.eventCount++;
+            context.countEventType(event.getEventType());
+            if (event.getSeverity() != null) {
+                context.severitySum += event.getSeverity().getLevel();
+            }
+            if (event.isHighSeverity()) {
+                context.highSeverityCount++;
+                context.decayedHighSeverity +=
+                        ScoreDecayService.decayFactor(now - timestamp, context.halfLife);
+            }
+            if (timestamp > recentCutoff) {
+                context.recentCount++;
+            }
+            int hour = clock.hourOfDay(timestamp);
+            if (hour < 6 || hour > 22) {
+                context.afterHoursCount++;
+            }
+            if (clock.dayOfWeek(timestamp) > 5) {
+                context.weekendCount++;
+            }
+            if (event.getFileSize() != null) {
+                context.fileBytes += event.getFileSize();
+            }
+        }
     }
 
-    private double getWeekendActivityScore(List<RiskEvent> events) {
-        return events.stream()
-                .filter(e -> e.getEventTimestamp().getDayOfWeek().getValue() > 5)
-                .count();
+    /**
+     * Convert anomaly score to risk score in 5-50 range
+     */
+    private double convertAnomalyScoreToRiskScore(double anomalyScore) {
+        // Isolation Forest returns scores near 1 for anomalies
+        return 5.0 + (anomalyScore * 45.0); // Scale to 5-50 range
     }
 
-    private long getHighSeverityEventCount(List<RiskEvent> events) {
-        return events.stream()
-                .filter(RiskEvent::isHighSeverity)
-                .count();
+    /**
+     * Apply rule-based adjustments to ML-calculated risk score
+     */
+    private double applyRuleBasedAdjustments(double baseScore, ScoringContext context) {
+        double[] rulePoints = context.rulePoints;
+
+        // Rule 1: High-severity events, decayed by age instead of a hard 24h cutoff
+        rulePoints[0] = 5.0 * context.decayedHighSeverity;
+
+        // Rule 2: After-hours activity
+        if (context.afterHoursCount > 0) {
+            rulePoints[1] = 3.0;
+        }
+
+        // Rule 3: Multiple failed logins
+        long failedLogins = context.count(RiskEvent.EventType.LOGIN_FAILURE);
+        if (failedLogins > 3) {
+            rulePoints[2] = failedLogins * 2.0;
+        }
+
+        // Rule 4: Large file transfers
+        long largeTransfers = context.count(RiskEvent.EventType.LARGE_FILE_TRANSFER);
+        rulePoints[3] = largeTransfers * 4.0;
+
+        // Rule 5: Privilege escalation attempts
+        long privilegeEscalations = context.count(RiskEvent.EventType.PRIVILEGE_ESCALATION);
+        rulePoints[4] = privilegeEscalations * 8.0;
+
+        // Rule 6: Unusual access patterns (rapid succession of recent events)
+        if (context.eventCount >= 3 && context.recentCount >= 3) {
+            rulePoints[5] = 6.0;
+        }
+
+        // Rule 7: Completed attack sequences, decayed by age
+        rulePoints[6] = context.sequencePoints;
+
+        // Rule 8: Risk pushed from related entities whose own score jumped
+        rulePoints[7] = context.inheritedPoints;
+
+        double adjustedScore = baseScore;
+        for (double points : rulePoints) {
+            adjustedScore += points;
+        }
+        return adjustedScore;
     }
 
-    private double getAverageEventSeverity(List<RiskEvent> events) {
-        if (events.isEmpty())
+    // Helper methods for feature extraction
+    private double getEntityAgeInDays(ScoringContext context, MonitoredEntity entity) {
+        if (entity.getCreatedAt() == null)
             return 0.0;
-        return events.stream()
-                .mapToDouble(e -> e.getSeverity().getLevel())
-                .average()
-                .orElse(0.0);
+        return (context.now - context.clock.toEpochMillis(entity.getCreatedAt())) / DAY_MILLIS;
     }
 
-    private double getUniqueIpCount(List<RiskEvent> events) {
-        return events.stream()
-                .map(RiskEvent::getSourceIp)
-                .filter(Objects::nonNull)
-                .distinct()
-                .count();
+    private double getEntityActivityScore(ScoringContext context, MonitoredEntity entity) {
+        if (entity.getLastActivity() == null)
+            return 0.0;
+        long hoursSinceLastActivity =
+                (context.now - context.clock.toEpochMillis(entity.getLastActivity())) / HOUR_MILLIS;
+        return Math.max(0.0, 24.0 - hoursSinceLastActivity);
     }
 
-    private long getPortScanAttempts(List<RiskEvent> events) {
-        return events.stream()
-                .filter(e -> e.getEventType() == RiskEvent.EventType.PORT_SCAN)
-                .count();
+    private double getDistinctCount(ScoringContext context, MonitoredEntity entity, Dimension dimension) {
+        return context.sketches.estimateCount(entity.getEntityId(), dimension, context.sketchScratch);
     }
 
-    private long getLargeFileTransferCount(List<RiskEvent> events) {
-        return events.stream()
-                .filter(e -> e.getEventType() == RiskEvent.EventType.LARGE_FILE_TRANSFER)
-                .count();
-    }
+    /**
+     * Retrain models with new data. Features are extracted on the calling
+     * thread; models, and the trees within each model, are then trained in
+     * parallel on the training pool. Streaming models are left alone, they
+     * adapt as they score. Entities with resolved events also train the
+     * classifier. Each tenant trains only on its own entities. Returns per
+     * tenant the training rows per anomaly model and classifier statistics.
+     */
+    public Map<String, Object> retrainModels(List<MonitoredEntity> entities, List<RiskEvent> events) {
+        logger.info("Retraining ML models with {} entities and {} events", entities.size(), events.size());
+        long start = System.currentTimeMillis();
 
-    private double getTotalDataTransferred(List<RiskEvent> events) {
-        return events.stream()
-                .filter(e -> e.getFileSize() != null)
-                .mapToLong(RiskEvent::getFileSize)
-                .sum() / (1024.0 * 1024.0); // Convert to MB
-    }
+        Map<Long, List<RiskEvent>> eventsByEntity = events.stream()
+                .collect(Collectors.groupingBy(e -> e.getEntity().getId()));
+        Map<String, List<MonitoredEntity>> entitiesByTenant = entities.stream()
+                .collect(Collectors.groupingBy(e -> tenantService.tenantOf(e).getId(), TreeMap::new,
+                        Collectors.toList()));
+
+        ScoringContext context = scoringContext.get();
+        context.begin(clock, cardinalitySketchService, scoreDecayService.getHalfLife());
+
+        Map<String, Object> result = new TreeMap<>();
+        entitiesByTenant.forEach((tenantId, tenantEntities) -> result.put(tenantId,
+                retrainTenant(tenantService.tenant(tenantId), tenantEntities, eventsByEntity, context)));
 
-    private boolean hasAfterHoursActivity(List<RiskEvent> events) {
-        return events.stream()
-                .anyMatch(e -> e.getEventTimestamp().getHour() < 6 || e.getEventTimestamp().getHour() > 22);
+        logger.info("Retrained ML models of {} tenants in {} ms", result.size(), System.currentTimeMillis() - start);
+        return result;
     }
 
-    private boolean hasUnusualAccessPatterns(List<RiskEvent> events) {
-        // Check for rapid succession of different types of events
-        if (events.size() < 3)
-            return false;
+    private Map<String, Object> retrainTenant(Tenant tenant, List<MonitoredEntity> entities,
+                                              Map<Long, List<RiskEvent>> eventsByEntity, ScoringContext context) {
+        // Extract training data, grouped by entity type and department
+        Map<Integer, List<double[]>> trainingData = new HashMap<>();
+        List<double[]> labelledRows = new ArrayList<>();
+        List<Boolean> labels = new ArrayList<>();
+        for (MonitoredEntity entity : entities) {
+            List<RiskEvent> entityEvents = eventsByEntity.getOrDefault(entity.getId(), List.of());
+            double[] row = extractFeatures(context, entity, entityEvents, null).clone();
+            trainingData.computeIfAbsent(keyDictionaryService.modelKey(entity), k -> new ArrayList<>()).add(row);
+
+            Boolean label = label(entityEvents);
+            if (label != null) {
+                labelledRows.add(row);
+                labels.add(label);
+            }
+        }
 
-        List<RiskEvent> recentEvents = events.stream()
-                .filter(RiskEvent::isRecent)
-                .collect(Collectors.toList());
+        Map<String, Integer> trained = new TreeMap<>();
+        trainingPool.invoke(ForkJoinTask.adapt(() -> trainingData.entrySet().parallelStream().forEach(group -> {
+            String modelName = keyDictionaryService.modelName(group.getKey());
+            if (isOnline(modelName)) {
+                logger.debug("Skipping streaming model: {}", modelName);
+                return;
+            }
+            try {
+                IsolationForest model = IsolationForest.train(group.getValue(), nEstimators, maxSamples,
+                        modelSeed(tenant, modelName), trainingPool);
+                synchronized (tenant.models()) {
+                    tenant.models().put(group.getKey(), model);
+                }
+                synchronized (trained) {
+                    trained.put(modelName, group.getValue().size());
+                }
+                logger.debug("Retrained model for key: {} of tenant {} on {} rows, {} nodes",
+                        modelName, tenant.getId(), group.getValue().size(), model.getNodeCount());
+            } catch (RuntimeException e) {
+                logger.error("Error retraining model for key: {} of tenant {}", modelName, tenant.getId(), e);
+            }
+        })));
 
-        return recentEvents.size() >= 3;
+        Map<String, Object> result = new HashMap<>();
+        result.put("anomalyModels", trained);
+        result.put("classifier", trainClassifier(tenant, labelledRows, labels));
+        return result;
     }
 
-    private String getModelKey(MonitoredEntity entity) {
-        return entity.getType().name() + "_" + entity.getDepartment();
+    /**
+     * Label of an entity from its resolved events: true if any was confirmed,
+     * false if all were false positives, null without resolved events.
+     * Unresolved events carry no label, even if flagged as false positives.
+     */
+    static Boolean label(List<RiskEvent> events) {
+        Boolean label = null;
+        for (RiskEvent event : events) {
+            if (!Boolean.TRUE.equals(event.getIsResolved())) {
+                continue;
+            }
+            if (!Boolean.TRUE.equals(event.getIsFalsePositive())) {
+                return true;
+            }
+            label = false;
+        }
+        return label;
     }
 
     /**
-     * Retrain models with new data
+     * Train the classifier on most labelled rows and measure it on the rest;
+     * the previous classifier stays in place while both classes are not
+     * represented
      */
-    public void retrainModels(List<MonitoredEntity> entities, List<RiskEvent> events) {
-        logger.info("Retraining ML models with {} entities and {} events", entities.size(), events.size());
+    private Map<String, Object> trainClassifier(Tenant tenant, List<double[]> rows, List<Boolean> labels) {
+        Map<String, Object> summary = new HashMap<>();
+        long positives = labels.stream().filter(Boolean::booleanValue).count();
+        summary.put("rows", rows.size());
+        summary.put("positives", positives);
+        if (positives == 0 || positives == rows.size()) {
+            summary.put("trained", false);
+            return summary;
+        }
 
-        // Group entities by type and department
-        Map<String, List<MonitoredEntity>> entityGroups = entities.stream()
-                .collect(Collectors.groupingBy(this::getModelKey));
+        List<double[]> trainRows = new ArrayList<>();
+        List<Boolean> trainLabels = new ArrayList<>();
+        List<double[]> validationRows = new ArrayList<>();
+        List<Boolean> validationLabels = new ArrayList<>();
+        SplittableRandom split = new SplittableRandom(seed);
+        for (int i = 0; i < rows.size(); i++) {
+            boolean validation = split.nextDouble() < validationFraction;
+            (validation ? validationRows : trainRows).add(rows.get(i));
+            (validation ? validationLabels : trainLabels).add(labels.get(i));
+        }
 
-        // Retrain each model
-        entityGroups.forEach((modelKey, entityGroup) -> {
-            try {
-                // Extract training data
-                List<double[]> trainingData = new ArrayList<>();
-                for (MonitoredEntity entity : entityGroup) {
-                    List<RiskEvent> entityEvents = events.stream()
-                            .filter(e -> e.getEntity().getId().equals(entity.getId()))
-                            .collect(Collectors.toList());
-                    trainingData.add(extractFeatures(entity, entityEvents));
-                }
+        boolean[] trainLabelArray = new boolean[trainLabels.size()];
+        for (int i = 0; i < trainLabelArray.length; i++) {
+            trainLabelArray[i] = trainLabels.get(i);
+        }
+        RandomForestClassifier trained = RandomForestClassifier.train(trainRows, trainLabelArray,
+                classifierEstimators, classifierMaxDepth, classifierMinSamplesSplit, seed, trainingPool);
+        tenant.setClassifier(trained);
+
+        double[] probabilities = trained.probabilities(validationRows, trainingPool);
+        int correct = 0;
+        for (int i = 0; i < probabilities.length; i++) {
+            if (probabilities[i] >= 0.5 == validationLabels.get(i)) {
+                correct++;
+            }
+        }
+        summary.put("trained", true);
+        summary.put("nodes", trained.getNodeCount());
+        summary.put("validationRows", probabilities.length);
+        if (probabilities.length > 0) {
+            summary.put("validationAccuracy", (double) correct / probabilities.length);
+        }
+        logger.info("Trained classifier of tenant {} on {} labelled rows ({} positive), validation accuracy {}/{}",
+                tenant.getId(), trainRows.size(), positives, correct, probabilities.length);
+        return summary;
+    }
 
-                // Create new model
-                IsolationForestModel newModel = new IsolationForestModel(nEstimators, maxSamples, contamination);
-                models.put(modelKey, newModel);
+    private boolean isOnline(String modelName) {
+        return onlineModels.contains(modelName) || onlineModels.contains("*");
+    }
 
-                logger.debug("Retrained model for key: {}", modelKey);
-            } catch (Exception e) {
-                logger.error("Error retraining model for key: {}", modelKey, e);
-            }
-        });
+    /**
+     * Seeded by name, since interned keys depend on interning order
+     */
+    private long modelSeed(Tenant tenant, String modelName) {
+        return seed * 31 + (tenant.getId() + "/" + modelName).hashCode();
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.riskguard.service;
+
+import com.riskguard.service.intern.IntObjectMap;
+import com.riskguard.service.ml.AnomalyModel;
+import com.riskguard.service.ml.RandomForestClassifier;
+
+import java.util.Map;
+
+/**
+ * Models of every tenant as they were at one moment, for replays. Batch
+ * forests and classifiers never change once trained and are shared with
+ * the tenants; streaming forests keep learning and are copied. Replays
+ * scoring against a snapshot get the same result however live traffic
+ * moves on meanwhile.
+ */
+public final class ModelSnapshot {
+
+    private final Map<String, IntObjectMap<AnomalyModel>> models;
+    private final Map<String, RandomForestClassifier> classifiers;
+
+    ModelSnapshot(Map<String, IntObjectMap<AnomalyModel>> models, Map<String, RandomForestClassifier> classifiers) {
+        this.models = models;
+        this.classifiers = classifiers;
+    }
+
+    /**
+     * Model of a tenant by model key, or null if it had none
+     */
+    AnomalyModel model(String tenantId, int modelKey) {
+        IntObjectMap<AnomalyModel> tenantModels = models.get(tenantId);
+        return tenantModels != null ? tenantModels.get(modelKey) : null;
+    }
+
+    RandomForestClassifier classifier(String tenantId) {
+        return classifiers.get(tenantId);
+    }
+}
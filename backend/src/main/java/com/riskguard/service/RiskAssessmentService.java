@@ -1,29 +1,242 @@
 package com.riskguard.service;
 
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskAssessment;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskAssessmentRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.graph.NeighbourRiskChangedEvent;
+import com.riskguard.service.ingest.EventIngestionService;
+import com.riskguard.service.ingest.EventsIngestedEvent;
+import com.riskguard.service.persist.ScoreWriteBehindService;
+import com.riskguard.service.tenant.TenantScoringScheduler;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class RiskAssessmentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskAssessmentService.class);
+
+    @Autowired
+    private MonitoredEntityRepository entityRepository;
+
+    @Autowired
+    private RiskEventRepository eventRepository;
+
+    @Autowired
+    private RiskAssessmentRepository assessmentRepository;
+
+    @Autowired
+    private MachineLearningService mlService;
+
+    @Autowired
+    private ScoreDecayService scoreDecayService;
+
+    @Autowired
+    private ClusterService clusterService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EventIngestionService eventIngestionService;
+
+    @Autowired
+    private ScoreWriteBehindService scoreWriter;
+
+    @Autowired
+    private TenantScoringScheduler scoringScheduler;
+
+    @Autowired
+    @Qualifier("loaderExecutor")
+    private ExecutorService loaderExecutor;
+
+    @Value("${risk.scoring.event-window:7d}")
+    private Duration eventWindow;
+
+    // Scores are written behind, so assessments only read
+    private TransactionTemplate readOnlyTransaction;
+
+    // Entities with a rescoring load queued or running, mapped to whether
+    // another one was requested meanwhile
+    private final ConcurrentMap<String, Boolean> loads = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void initialize() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
     public Map<String, Object> getDashboardStatistics() {
         return new HashMap<>();
     }
 
+    /**
+     * Assess an entity on the node owning its shard, falling back to a local
+     * assessment if the owner cannot be reached
+     */
     public Map<String, Object> assessEntityRisk(String id) {
-        return new HashMap<>();
+        if (!clusterService.isLocal(id)) {
+            try {
+                return clusterService.forward(id, "/api/risk/cluster/assess/" + id);
+            } catch (RuntimeException e) {
+                logger.warn("Forwarding assessment of {} to node {} failed, assessing locally",
+                        id, clusterService.ownerOf(id), e);
+            }
+        }
+        return assessEntityRiskLocally(id);
+    }
+
+    /**
+     * Assess an entity on this node regardless of shard ownership. Only
+     * reads: the score is the stored one decayed to now, the factors are
+     * those of the cached score. Scores are recorded by rescoring alone.
+     */
+    public Map<String, Object> assessEntityRiskLocally(String id) {
+        return readOnlyTransaction.execute(status -> {
+            Optional<MonitoredEntity> found = entityRepository.findByEntityId(id);
+            if (found.isEmpty()) {
+                return new HashMap<>();
+            }
+
+            MonitoredEntity entity = scoreWriter.applyPending(found.get());
+            RiskScore score = mlService.getCachedScore(entity);
+            if (score == null) {
+                score = mlService.readRiskScore(entity, eventRepository.findRecentByEntity(entity.getId(),
+                        LocalDateTime.now().minus(eventWindow)));
+            }
+
+            Map<String, Object> assessment = new HashMap<>();
+            assessment.put("entityId", entity.getEntityId());
+            assessment.put("entityType", entity.getType());
+            assessment.put("overallScore", scoreDecayService.currentScore(entity));
+            assessment.put("previousScore", entity.getPreviousRiskScore());
+            assessment.put("riskLevel", entity.getCurrentRiskLevel());
+            assessment.put("baseline", score.getBaseline());
+            assessment.put("factors", score.toFactors());
+            return assessment;
+        });
+    }
+
+    /**
+     * Rescore an entity on the node owning its shard, falling back to this
+     * node if the owner cannot be reached
+     */
+    public void rescoreEntity(String id) {
+        loadForRescoring(id).ifPresent(Runnable::run);
+    }
+
+    /**
+     * Score an entity from its events in the scoring window and record the
+     * score, on this node regardless of shard ownership
+     */
+    public void rescoreEntityLocally(String id) {
+        loadLocally(id).ifPresent(Runnable::run);
+    }
+
+    /**
+     * Forward rescoring to the node owning the entity's shard, or load what
+     * rescoring it here needs; returns the scoring left to run, if any
+     */
+    private Optional<Runnable> loadForRescoring(String id) {
+        if (!clusterService.isLocal(id)) {
+            try {
+                clusterService.forwardPost(id, "/api/risk/cluster/rescore/" + id);
+                return Optional.empty();
+            } catch (RuntimeException e) {
+                logger.warn("Forwarding rescoring of {} to node {} failed, rescoring locally",
+                        id, clusterService.ownerOf(id), e);
+            }
+        }
+        return loadLocally(id);
+    }
+
+    /**
+     * Load an entity and its events in the scoring window; the returned
+     * scoring touches no database or network, only models and memory
+     */
+    private Optional<Runnable> loadLocally(String id) {
+        return Optional.ofNullable(readOnlyTransaction.execute(status -> {
+            Optional<MonitoredEntity> found = entityRepository.findByEntityId(id);
+            if (found.isEmpty()) {
+                return null;
+            }
+
+            MonitoredEntity entity = found.get();
+            List<RiskEvent> events = eventRepository.findRecentByEntity(entity.getId(),
+                    LocalDateTime.now().minus(eventWindow));
+            return () -> {
+                // Scores recorded since the load are still pending
+                scoreWriter.applyPending(entity);
+                RiskScore score = mlService.calculateRiskScore(entity, events);
+                scoreDecayService.recordScore(entity, score.getScore(), "Risk assessment");
+            };
+        }));
     }
 
+    /**
+     * Current score of an entity, decayed since its last assessment
+     */
     public double getEntityRiskScore(String id) {
-        return 0.0;
+        return entityRepository.findByEntityId(id)
+                .map(scoreWriter::applyPending)
+                .map(scoreDecayService::currentScore)
+                .orElse(0.0);
     }
 
     public List<Map<String, Object>> getEntitiesWithRiskScores(int a, int b, String c, String d) {
         return new ArrayList<>();
     }
 
+    /**
+     * Score history of an entity within [from, to), oldest first. Older
+     * stretches come back as hourly or daily rollups.
+     */
+    public List<Map<String, Object>> getEntityHistory(String id, LocalDateTime from, LocalDateTime to) {
+        Optional<MonitoredEntity> entity = entityRepository.findByEntityId(id);
+        if (entity.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Map<String, Object>> history = new ArrayList<>();
+        for (RiskAssessment assessment : assessmentRepository.findByEntityInWindow(entity.get().getId(), from, to)) {
+            Map<String, Object> point = new HashMap<>();
+            point.put("timestamp", assessment.getCreatedAt());
+            point.put("score", assessment.getScore());
+            point.put("riskLevel", assessment.getRiskLevel());
+            point.put("resolution", assessment.getResolution());
+            point.put("minScore", assessment.getMinScore());
+            point.put("maxScore", assessment.getMaxScore());
+            point.put("samples", assessment.getSampleCount());
+            point.put("summary", assessment.getSummary());
+            history.add(point);
+        }
+        return history;
+    }
+
     public List<Map<String, Object>> getEntityEvents(String id, int n) {
         return new ArrayList<>();
     }
@@ -37,15 +250,93 @@ public class RiskAssessmentService {
     }
 
     public Map<String, Object> processRiskEvent(Map<String, Object> map) {
-        return new HashMap<>();
+        return eventIngestionService.ingest(List.of(eventIngestionService.fromJson(map, 0))).toMap();
+    }
+
+    /**
+     * Rescore entities that received new events, queued per tenant so one
+     * tenant's burst does not hold up the others
+     */
+    @EventListener
+    public void onEventsIngested(EventsIngestedEvent event) {
+        rescore(event.getEntityIdsByTenant(), "ingest");
+    }
+
+    /**
+     * Rescore entities whose neighbours' risk jumped
+     */
+    @EventListener
+    public void onNeighbourRiskChanged(NeighbourRiskChangedEvent event) {
+        rescore(event.getEntityIdsByTenant(), "neighbour risk change");
+    }
+
+    /**
+     * Load on the loader pool and score on the scoring pool, so scoring
+     * threads never wait on the database or another node. Loads of one
+     * entity are coalesced and run one at a time, so the scoring submitted
+     * last is always from the latest load.
+     */
+    private void rescore(Map<String, Set<String>> entityIdsByTenant, String cause) {
+        entityIdsByTenant.forEach((tenantId, entityIds) -> {
+            for (String entityId : entityIds) {
+                mlService.evictCachedScore(entityId);
+                if (!loads.merge(entityId, Boolean.FALSE, (queued, requested) -> Boolean.TRUE)) {
+                    loaderExecutor.execute(() -> load(tenantId, entityId, cause));
+                }
+            }
+        });
+    }
+
+    /**
+     * Load an entity for rescoring and queue its scoring, loading again if
+     * rescoring was requested while it loaded. A saturated loader pool runs
+     * the load on the caller, which for neighbour rescoring is a scoring
+     * thread; that one scores in place, as it must not wait on its own pool.
+     */
+    private void load(String tenantId, String entityId, String cause) {
+        do {
+            try {
+                loadForRescoring(entityId).ifPresent(scoring -> {
+                    Runnable guarded = () -> {
+                        try {
+                            scoring.run();
+                        } catch (RuntimeException e) {
+                            logger.error("Error rescoring entity {} after {}", entityId, cause, e);
+                        }
+                    };
+                    if (scoringScheduler.isScoringThread()) {
+                        guarded.run();
+                    } else {
+                        scoringScheduler.submit(tenantId, entityId, guarded);
+                    }
+                });
+            } catch (RuntimeException e) {
+                logger.error("Error loading entity {} for rescoring after {}", entityId, cause, e);
+            }
+        } while (!loads.remove(entityId, Boolean.FALSE) && loads.replace(entityId, Boolean.TRUE, Boolean.FALSE));
     }
 
     public Map<String, Object> bulkRiskAssessment(List<String> ids) {
         return new HashMap<>();
     }
 
+    /**
+     * Retrain the anomaly models on active entities and their events within
+     * the scoring window
+     */
     public Map<String, Object> retrainModels() {
-        return new HashMap<>();
+        long start = System.currentTimeMillis();
+        return readOnlyTransaction.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<MonitoredEntity> entities = entityRepository.findByIsActiveTrue();
+            List<RiskEvent> events = eventRepository.findAllInWindow(now.minus(eventWindow), now);
+            Map<String, Object> result = new HashMap<>();
+            result.put("tenants", mlService.retrainModels(entities, events));
+            result.put("entities", entities.size());
+            result.put("events", events.size());
+            result.put("durationMs", System.currentTimeMillis() - start);
+            return result;
+        });
     }
 
     public Map<String, Object> getSystemMetrics() {
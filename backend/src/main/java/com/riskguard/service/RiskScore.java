@@ -0,0 +1,114 @@
+package com.riskguard.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Risk score together with the points each feature and rule contributed to
+ * it. Contributions plus the baseline add up to the score, so an analyst can
+ * read why an entity scored high without scoring it again.
+ *
+ * Scoring only fills a points array; the contribution list is built the
+ * first time it is read, as most cached scores never are.
+ */
+public final class RiskScore {
+
+    public enum Source {
+        MODEL, RULE, BOUNDS
+    }
+
+    public record Contribution(String name, Source source, double points) {
+    }
+
+    private static final double[] NO_POINTS = {};
+
+    private final double score;
+    private final double baseline;
+    // Points per name; zero entries are not contributions
+    private final String[] names;
+    private final Source[] sources;
+    private final double[] points;
+    private volatile List<Contribution> contributions;
+
+    /**
+     * @param names   shared, never modified
+     * @param sources shared, never modified
+     * @param points  owned by this score from now on
+     */
+    RiskScore(double score, double baseline, String[] names, Source[] sources, double[] points) {
+        this.score = score;
+        this.baseline = baseline;
+        this.names = names;
+        this.sources = sources;
+        this.points = points;
+    }
+
+    static RiskScore of(double score) {
+        return new RiskScore(score, score, null, null, NO_POINTS);
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Points not attributed to any feature or rule, e.g. the neutral model
+     * output before enough data has been seen
+     */
+    public double getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * Contributions, largest absolute first
+     */
+    public List<Contribution> getContributions() {
+        List<Contribution> built = contributions;
+        if (built == null) {
+            List<Contribution> list = new ArrayList<>();
+            for (int i = 0; i < points.length; i++) {
+                if (points[i] != 0.0) {
+                    list.add(new Contribution(names[i], sources[i], points[i]));
+                }
+            }
+            list.sort(Comparator.comparingDouble((Contribution c) -> -Math.abs(c.points())));
+            built = Collections.unmodifiableList(list);
+            contributions = built;
+        }
+        return built;
+    }
+
+    /**
+     * Rough heap footprint, for memory quotas of score caches
+     */
+    public int estimatedBytes() {
+        return 64 + points.length * 8 + (contributions != null ? contributions.size() * 64 : 0);
+    }
+
+    /**
+     * Contributions as response maps: name, source, points and their share
+     * of all attributed points
+     */
+    public List<Map<String, Object>> toFactors() {
+        List<Contribution> contributions = getContributions();
+        double total = 0.0;
+        for (Contribution contribution : contributions) {
+            total += Math.abs(contribution.points());
+        }
+
+        List<Map<String, Object>> factors = new ArrayList<>(contributions.size());
+        for (Contribution contribution : contributions) {
+            double points = Math.round(contribution.points() * 100.0) / 100.0;
+            double weight = total > 0 ? Math.round(Math.abs(contribution.points()) / total * 1000.0) / 1000.0 : 0.0;
+            factors.add(Map.of(
+                    "name", contribution.name(),
+                    "source", contribution.source(),
+                    "score", points,
+                    "weight", weight));
+        }
+        return factors;
+    }
+}
@@ -0,0 +1,233 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.MonitoredEntity.RiskLevel;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.service.alert.AlertService;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.journal.EventJournal;
+import com.riskguard.service.persist.ScoreWriteBehindService;
+import com.riskguard.service.query.EntityIndexService;
+import com.riskguard.service.time.ScoringClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * Score Decay Service
+ *
+ * Scores decay exponentially towards the floor between assessments. Reads
+ * compute the decayed score in O(1) from the stored score and its timestamp.
+ * Instead of rescoring every entity periodically, each score update schedules
+ * a wake-up at the moment the decayed score would drop a hysteresis band
+ * below the next risk level threshold, where alerting de-escalates; only
+ * those entities are touched.
+ */
+@Service
+public class ScoreDecayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScoreDecayService.class);
+
+    @Value("${risk.scoring.decay.half-life:6h}")
+    private Duration halfLife;
+
+    private final MonitoredEntityRepository entityRepository;
+    private final ScoreWriteBehindService scoreWriter;
+    private final RiskThresholds thresholds;
+    private final AlertService alertService;
+    private final ClusterService clusterService;
+    private final ScoringClock clock;
+    private final EventJournal journal;
+    private final EntityIndexService entityIndexService;
+    private final EntityGraphService entityGraphService;
+
+    // Pending wake-ups; the map holds the authoritative due time per entity,
+    // queue entries that no longer match it are stale and skipped
+    private final PriorityBlockingQueue<Wakeup> wakeups = new PriorityBlockingQueue<>();
+    private final Map<String, Long> dueTimes = new ConcurrentHashMap<>();
+
+    public ScoreDecayService(MonitoredEntityRepository entityRepository,
+                             ScoreWriteBehindService scoreWriter, RiskThresholds thresholds,
+                             AlertService alertService, ClusterService clusterService, ScoringClock clock,
+                             EventJournal journal, EntityIndexService entityIndexService,
+                             EntityGraphService entityGraphService) {
+        this.entityRepository = entityRepository;
+        this.scoreWriter = scoreWriter;
+        this.thresholds = thresholds;
+        this.alertService = alertService;
+        this.clusterService = clusterService;
+        this.clock = clock;
+        this.journal = journal;
+        this.entityIndexService = entityIndexService;
+        this.entityGraphService = entityGraphService;
+    }
+
+    public Duration getHalfLife() {
+        return halfLife;
+    }
+
+    /**
+     * Decayed score of an entity at the current time
+     */
+    public double currentScore(MonitoredEntity entity) {
+        return entity.getDecayedRiskScore(LocalDateTime.now(clock), halfLife);
+    }
+
+    /**
+     * Decay factor for a contribution of the given age
+     */
+    public double decayFactor(Duration age) {
+        return decayFactor(age.toMillis());
+    }
+
+    /**
+     * Decay factor for a contribution of the given age in milliseconds
+     */
+    public double decayFactor(long ageMillis) {
+        return decayFactor(ageMillis, halfLife);
+    }
+
+    /**
+     * Decay factor for a contribution of the given age under the given half-life
+     */
+    public static double decayFactor(long ageMillis, Duration halfLife) {
+        if (ageMillis < 0 || halfLife.isZero()) {
+            return 1.0;
+        }
+        return Math.pow(0.5, (double) ageMillis / halfLife.toMillis());
+    }
+
+    /**
+     * Set a freshly calculated score, queue it and its assessment history
+     * row for writing, append it to the journal, index it for queries,
+     * check it for alerts, push a jump to related entities and schedule the
+     * next threshold crossing
+     */
+    public void recordScore(MonitoredEntity entity, double score, String summary) {
+        entity.setCurrentRiskScore(score, thresholds, clock.storageNow());
+        scoreWriter.write(entity, summary);
+        journal.appendScore(entity.getEntityId(), entity.getCurrentRiskScore(),
+                clock.toEpochMillis(entity.getLastRiskAssessment()));
+        entityIndexService.index(entity);
+        alertService.onScoreUpdate(entity);
+        entityGraphService.onScoreUpdate(entity);
+        scheduleNextCrossing(entity);
+    }
+
+    /**
+     * Schedule a wake-up for when the decayed score falls a hysteresis band
+     * below the highest threshold it is not yet that far under
+     */
+    public void scheduleNextCrossing(MonitoredEntity entity) {
+        if (entity.getLastRiskAssessment() == null) {
+            return;
+        }
+        scheduleNextCrossing(entity.getEntityId(), entity.getCurrentRiskScore(),
+                clock.toEpochMillis(entity.getLastRiskAssessment()));
+    }
+
+    /**
+     * Schedule the next crossing for a score set at the given time, e.g. one
+     * read back from the journal
+     */
+    public void scheduleNextCrossing(String entityId, double score, long updatedAtMillis) {
+        if (halfLife.isZero()) {
+            return;
+        }
+
+        double threshold = nextDeEscalation(score);
+
+        if (threshold <= MonitoredEntity.MIN_RISK_SCORE) {
+            dueTimes.remove(entityId);
+            return;
+        }
+
+        // floor + (score - floor) * 2^(-t / halfLife) = threshold
+        double excess = score - MonitoredEntity.MIN_RISK_SCORE;
+        double target = threshold - MonitoredEntity.MIN_RISK_SCORE;
+        long delayMillis = (long) Math.ceil(halfLife.toMillis() * (Math.log(excess / target) / Math.log(2)));
+
+        long due = updatedAtMillis + Math.max(0L, delayMillis) + 1;
+        restoreCrossing(entityId, due);
+    }
+
+    /**
+     * Score below which an entity at the given score can next drop a level,
+     * as {@link RiskThresholds#levelFor(double, RiskLevel)} de-escalates;
+     * negative infinity at the lowest level
+     */
+    private double nextDeEscalation(double score) {
+        RiskLevel[] levels = RiskLevel.values();
+        for (int i = levels.length - 1; i > 0; i--) {
+            double crossing = thresholds.lowerBound(levels[i]) - thresholds.getHysteresis();
+            if (crossing <= score) {
+                return crossing;
+            }
+        }
+        return Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Pending wake-ups by entity, for snapshots
+     */
+    public Map<String, Long> pendingCrossings() {
+        return new HashMap<>(dueTimes);
+    }
+
+    /**
+     * Schedule a wake-up at a known due time, e.g. one from a snapshot
+     */
+    public void restoreCrossing(String entityId, long dueMillis) {
+        dueTimes.put(entityId, dueMillis);
+        wakeups.add(new Wakeup(entityId, dueMillis));
+    }
+
+    /**
+     * Apply the decayed score to entities whose risk level has dropped
+     */
+    @Scheduled(fixedDelayString = "${risk.scoring.decay.check-interval:PT10S}")
+    @Transactional(readOnly = true)
+    public void processDueCrossings() {
+        long now = clock.millis();
+        int processed = 0;
+
+        Wakeup wakeup;
+        while ((wakeup = wakeups.peek()) != null && wakeup.dueMillis <= now) {
+            wakeups.poll();
+            if (!dueTimes.remove(wakeup.entityId, wakeup.dueMillis)) {
+                continue; // Superseded by a newer score update
+            }
+            if (!clusterService.isLocal(wakeup.entityId)) {
+                continue; // Shard moved to another node
+            }
+
+            entityRepository.findByEntityId(wakeup.entityId)
+                    .map(scoreWriter::applyPending)
+                    .ifPresent(entity -> recordScore(entity, currentScore(entity), "Score decayed"));
+            processed++;
+        }
+
+        if (processed > 0) {
+            logger.debug("Applied decayed scores to {} entities", processed);
+        }
+    }
+
+    private record Wakeup(String entityId, long dueMillis) implements Comparable<Wakeup> {
+        @Override
+        public int compareTo(Wakeup other) {
+            return Long.compare(dueMillis, other.dueMillis);
+        }
+    }
+}
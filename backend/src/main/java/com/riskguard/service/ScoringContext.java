@@ -0,0 +1,112 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.feature.HyperLogLog;
+import com.riskguard.service.time.ScoringClock;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch state for one risk score calculation: the time source,
+ * sketches and decay half-life the call runs against, the feature vector,
+ * event counters gathered in a single pass, a scratch array for sketch
+ * estimates, per-feature and per-rule attribution and the model outputs
+ * that attribution is split from. Reused across calls so scoring does not
+ * allocate; nothing in it may escape the call that filled it.
+ */
+final class ScoringContext {
+
+    static final int FEATURE_COUNT = 20;
+    static final int RULE_COUNT = 8;
+
+    private static final int EVENT_TYPES = RiskEvent.EventType.values().length;
+
+    ScoringClock clock;
+    CardinalitySketchService sketches;
+    Duration halfLife;
+    long now;
+
+    final double[] features = new double[FEATURE_COUNT];
+    final double[] anomalyAttribution = new double[FEATURE_COUNT];
+    final double[] classifierAttribution = new double[FEATURE_COUNT];
+    final double[] rulePoints = new double[RULE_COUNT];
+    HyperLogLog[] sketchScratch;
+
+    private final long[] eventTypeCounts = new long[EVENT_TYPES];
+
+    int eventCount;
+    int recentCount;
+    int afterHoursCount;
+    int weekendCount;
+    int highSeverityCount;
+    long severitySum;
+    long fileBytes;
+    double decayedHighSeverity;
+    double sequencePoints;
+    double inheritedPoints;
+
+    double isolationScore;
+    double classifierShare;
+    double probability;
+    double adjustedScore;
+
+    ScoringContext(int sketchBuckets) {
+        this.sketchScratch = new HyperLogLog[sketchBuckets];
+    }
+
+    void begin(ScoringClock clock, CardinalitySketchService sketches, Duration halfLife) {
+        this.clock = clock;
+        this.sketches = sketches;
+        this.halfLife = halfLife;
+        this.now = clock.millis();
+        if (sketchScratch.length < sketches.getBucketCount()) {
+            sketchScratch = new HyperLogLog[sketches.getBucketCount()];
+        }
+        reset();
+    }
+
+    /**
+     * Clear counters between feature extractions of one call
+     */
+    void reset() {
+        Arrays.fill(features, 0.0);
+        Arrays.fill(anomalyAttribution, 0.0);
+        Arrays.fill(classifierAttribution, 0.0);
+        Arrays.fill(rulePoints, 0.0);
+        Arrays.fill(eventTypeCounts, 0L);
+        eventCount = 0;
+        recentCount = 0;
+        afterHoursCount = 0;
+        weekendCount = 0;
+        highSeverityCount = 0;
+        severitySum = 0;
+        fileBytes = 0;
+        decayedHighSeverity = 0.0;
+        sequencePoints = 0.0;
+        inheritedPoints = 0.0;
+        isolationScore = 0.0;
+        classifierShare = 0.0;
+        probability = 0.0;
+        adjustedScore = 0.0;
+    }
+
+    void countEventType(RiskEvent.EventType eventType) {
+        if (eventType != null) {
+            eventTypeCounts[eventType.ordinal()]++;
+        }
+    }
+
+    void setEventTypeCounts(long[] counts) {
+        System.arraycopy(counts, 0, eventTypeCounts, 0, EVENT_TYPES);
+    }
+
+    long count(RiskEvent.EventType eventType) {
+        return eventTypeCounts[eventType.ordinal()];
+    }
+
+    double averageSeverity() {
+        return eventCount == 0 ? 0.0 : (double) severitySum / eventCount;
+    }
+}
@@ -0,0 +1,135 @@
+package com.riskguard.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tag Schema Service
+ *
+ * Tags and event metadata are JSON columns (tag_set, metadata), JSONB on
+ * PostgreSQL, so tag and metadata filters are containment lookups on GIN
+ * indexes instead of LIKE scans over free text and joins against an EAV
+ * table. On first start after the change this moves the old comma-separated
+ * tags columns and the risk_event_metadata table into the JSON columns and
+ * drops them, in one transaction; afterwards it only ensures the indexes.
+ * Runs after risk_events has been partitioned, so the indexes are created
+ * on the partitioned parent and cover every partition. Does nothing on
+ * databases other than PostgreSQL.
+ */
+@Service
+public class TagSchemaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TagSchemaService.class);
+
+    private static final String ENTITY_TABLE = "entities";
+    private static final String EVENT_TABLE = "risk_events";
+    private static final String LEGACY_METADATA_TABLE = "risk_event_metadata";
+    private static final String LEGACY_TAGS_COLUMN = "tags";
+
+    // Normalised like Tags: split on commas, trimmed, lower-cased, distinct and sorted
+    private static final String TAGS_TO_JSON =
+            "(SELECT coalesce(jsonb_agg(DISTINCT lower(trim(t)) ORDER BY lower(trim(t))), '[]'::jsonb) " +
+                    "FROM unnest(string_to_array(" + LEGACY_TAGS_COLUMN + ", ',')) AS t WHERE trim(t) <> '')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public TagSchemaService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(EventPartitionService.STARTUP_ORDER + 1)
+    public void initializeTagStorage() {
+        if (!isPostgres()) {
+            return;
+        }
+
+        try {
+            migrateLegacyColumns();
+            createIndexes();
+        } catch (Exception e) {
+            logger.error("Error preparing tag and metadata indexes", e);
+        }
+    }
+
+    /**
+     * Copy free-text tags and EAV metadata into the JSON columns, then drop
+     * the legacy storage so the copy runs once
+     */
+    public void migrateLegacyColumns() {
+        boolean entityTags = columnExists(ENTITY_TABLE, LEGACY_TAGS_COLUMN);
+        boolean eventTags = columnExists(EVENT_TABLE, LEGACY_TAGS_COLUMN);
+        boolean metadata = tableExists(LEGACY_METADATA_TABLE);
+        if (!entityTags && !eventTags && !metadata) {
+            return;
+        }
+
+        logger.info("Migrating tags and event metadata to JSONB columns");
+        long start = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (entityTags) {
+                int rows = jdbcTemplate.update("UPDATE " + ENTITY_TABLE + " SET tag_set = " + TAGS_TO_JSON +
+                        " WHERE " + LEGACY_TAGS_COLUMN + " IS NOT NULL AND tag_set IS NULL");
+                jdbcTemplate.execute("ALTER TABLE " + ENTITY_TABLE + " DROP COLUMN " + LEGACY_TAGS_COLUMN);
+                logger.info("Migrated tags of {} entities", rows);
+            }
+            if (eventTags) {
+                int rows = jdbcTemplate.update("UPDATE " + EVENT_TABLE + " SET tag_set = " + TAGS_TO_JSON +
+                        " WHERE " + LEGACY_TAGS_COLUMN + " IS NOT NULL AND tag_set IS NULL");
+                jdbcTemplate.execute("ALTER TABLE " + EVENT_TABLE + " DROP COLUMN " + LEGACY_TAGS_COLUMN);
+                logger.info("Migrated tags of {} events", rows);
+            }
+            if (metadata) {
+                int rows = jdbcTemplate.update("UPDATE " + EVENT_TABLE + " e SET metadata = m.entries " +
+                        "FROM (SELECT risk_event_id, jsonb_object_agg(metadata_key, metadata_value) AS entries " +
+                        "FROM " + LEGACY_METADATA_TABLE + " GROUP BY risk_event_id) m " +
+                        "WHERE e.id = m.risk_event_id AND e.metadata IS NULL");
+                jdbcTemplate.execute("DROP TABLE " + LEGACY_METADATA_TABLE);
+                logger.info("Migrated metadata of {} events", rows);
+            }
+        });
+        logger.info("Migrated tags and event metadata in {} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * GIN indexes with jsonb_path_ops, which serve the @> containment
+     * queries and are smaller than the default operator class
+     */
+    public void createIndexes() {
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_entities_tag_set ON " + ENTITY_TABLE +
+                " USING GIN (tag_set jsonb_path_ops)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_risk_events_tag_set ON " + EVENT_TABLE +
+                " USING GIN (tag_set jsonb_path_ops)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_risk_events_metadata ON " + EVENT_TABLE +
+                " USING GIN (metadata jsonb_path_ops)");
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+
+    private boolean columnExists(String table, String column) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?)",
+                Boolean.class, table, column);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    private boolean tableExists(String table) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+        return Boolean.TRUE.equals(exists);
+    }
+}
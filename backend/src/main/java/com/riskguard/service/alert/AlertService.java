@@ -0,0 +1,274 @@
+package com.riskguard.service.alert;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.MonitoredEntity.RiskLevel;
+import com.riskguard.domain.RiskThresholds;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Alert Service
+ *
+ * Detects risk level transitions on every score update and turns them into
+ * alerts. Levels are tracked per entity with hysteresis so scores hovering
+ * around a threshold do not flap, repeated alerts for the same entity and
+ * level are deduplicated over a window, and delivery happens in batches off
+ * the scoring path with a rate limit per sink. Each flush delivers to the
+ * sinks in parallel on the alert pool, so a slow webhook does not hold up
+ * the others.
+ *
+ * Every sink keeps its own backlog in alert order. Alerts over the sink's
+ * rate, or whose delivery failed, stay in the backlog for the next flush;
+ * the rate budget holds up to one flush interval of permits, so the
+ * configured rate is reached whatever the interval. Only a full backlog
+ * drops alerts, oldest first, counted and logged by level. An entity seen
+ * for the first time starts at the level of its stored score, so a
+ * restart does not alert every risky entity again.
+ */
+@Service
+public class AlertService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertService.class);
+
+    @Value("${risk.alerts.enabled:true}")
+    private boolean enabled;
+
+    @Value("${risk.alerts.dedup-window:15m}")
+    private Duration dedupWindow;
+
+    @Value("${risk.alerts.batch-size:500}")
+    private int batchSize;
+
+    @Value("${risk.alerts.backlog-capacity:10000}")
+    private int backlogCapacity;
+
+    private final RiskThresholds thresholds;
+    private final List<AlertSink> sinks;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService alertExecutor;
+    private final BlockingQueue<RiskAlert> queue;
+
+    // Current alert level per entity and when each level was last alerted
+    private final Map<String, AlertState> alertStates = new ConcurrentHashMap<>();
+    private final List<SinkBacklog> backlogs = new ArrayList<>();
+
+    public AlertService(RiskThresholds thresholds, List<AlertSink> sinks, MeterRegistry meterRegistry,
+                        @Qualifier("alertExecutor") ExecutorService alertExecutor,
+                        @Value("${risk.alerts.queue-capacity:10000}") int queueCapacity,
+                        @Value("${risk.alerts.flush-interval:PT2S}") Duration flushInterval) {
+        this.thresholds = thresholds;
+        this.sinks = sinks;
+        this.meterRegistry = meterRegistry;
+        this.alertExecutor = alertExecutor;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        for (AlertSink sink : sinks) {
+            SinkBacklog backlog = new SinkBacklog(sink, flushInterval);
+            backlogs.add(backlog);
+            Gauge.builder("risk.alerts.backlog", backlog, b -> b.size)
+                    .tag("sink", sink.getName())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Check an entity for a level transition after its score was updated.
+     * Never blocks: alerts are queued and dropped if the queue is full.
+     */
+    public void onScoreUpdate(MonitoredEntity entity) {
+        if (!enabled || sinks.isEmpty()) {
+            return;
+        }
+
+        double score = entity.getCurrentRiskScore();
+        long now = System.currentTimeMillis();
+        RiskAlert[] emitted = new RiskAlert[1];
+
+        alertStates.compute(entity.getEntityId(), (entityId, state) -> {
+            AlertState current = state != null ? state : new AlertState(storedLevel(entity));
+            RiskLevel previous = current.level;
+            RiskLevel level = thresholds.levelFor(score, previous);
+            if (level == previous) {
+                return current;
+            }
+            current.level = level;
+
+            // Same entity and level alerted within the window, e.g. HIGH -> MEDIUM -> HIGH
+            long lastAlerted = current.alertedAt[level.ordinal()];
+            if (lastAlerted != 0 && now - lastAlerted < dedupWindow.toMillis()) {
+                count("deduplicated");
+                return current;
+            }
+
+            current.alertedAt[level.ordinal()] = now;
+            emitted[0] = new RiskAlert(entityId, previous, level, score, LocalDateTime.now());
+            return current;
+        });
+
+        if (emitted[0] != null) {
+            if (queue.offer(emitted[0])) {
+                count("queued");
+            } else {
+                count("dropped");
+                logger.warn("Alert queue full, dropping alert for entity {}", entity.getEntityId());
+            }
+        }
+    }
+
+    /**
+     * Level an entity had before this update: that of its previous score,
+     * which is the stored one for an entity loaded after a restart
+     */
+    private RiskLevel storedLevel(MonitoredEntity entity) {
+        Double previous = entity.getPreviousRiskScore();
+        return previous != null ? thresholds.levelFor(previous) : RiskLevel.LOW;
+    }
+
+    /**
+     * Move queued alerts to every sink's backlog and deliver what the sinks'
+     * rates allow
+     */
+    @Scheduled(fixedDelayString = "${risk.alerts.flush-interval:PT2S}")
+    public void flush() {
+        List<RiskAlert> alerts = new ArrayList<>(queue.size());
+        queue.drainTo(alerts);
+        List<Future<?>> deliveries = new ArrayList<>(backlogs.size());
+        for (SinkBacklog backlog : backlogs) {
+            // Backlogs are only touched here and by their delivery, which
+            // finishes before the next flush
+            backlog.addAll(alerts);
+            if (backlog.size > 0) {
+                deliveries.add(alertExecutor.submit(() -> deliver(backlog)));
+            }
+        }
+        for (Future<?> delivery : deliveries) {
+            try {
+                delivery.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Error delivering alerts", e.getCause());
+            }
+        }
+    }
+
+    private void deliver(SinkBacklog backlog) {
+        AlertSink sink = backlog.sink;
+        backlog.refill(System.nanoTime());
+        while (backlog.size > 0) {
+            int permitted = (int) Math.min(Math.min(backlog.size, batchSize), Math.floor(backlog.tokens));
+            if (permitted == 0) {
+                meterRegistry.counter("risk.alerts.delivery", "outcome", "deferred", "sink", sink.getName())
+                        .increment(backlog.size);
+                logger.debug("Rate limit reached for alert sink {}, deferring {} alerts", sink.getName(), backlog.size);
+                return;
+            }
+
+            List<RiskAlert> batch = backlog.peek(permitted);
+            try {
+                sink.deliver(batch);
+            } catch (Exception e) {
+                meterRegistry.counter("risk.alerts.delivery", "outcome", "failed", "sink", sink.getName())
+                        .increment(permitted);
+                logger.error("Error delivering {} alerts to sink {}, will retry", permitted, sink.getName(), e);
+                return;
+            }
+            backlog.remove(permitted);
+            backlog.tokens -= permitted;
+            meterRegistry.counter("risk.alerts.delivery", "outcome", "delivered", "sink", sink.getName())
+                    .increment(permitted);
+        }
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("risk.alerts.emitted", "outcome", outcome).increment();
+    }
+
+    private static class AlertState {
+        private RiskLevel level;
+        private final long[] alertedAt = new long[RiskLevel.values().length];
+
+        AlertState(RiskLevel level) {
+            this.level = level;
+        }
+    }
+
+    /**
+     * Undelivered alerts of one sink and its rate budget
+     */
+    private final class SinkBacklog {
+        private final AlertSink sink;
+        private final ArrayDeque<RiskAlert> alerts = new ArrayDeque<>();
+        private final double maxTokens;
+        private volatile int size;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        SinkBacklog(AlertSink sink, Duration flushInterval) {
+            this.sink = sink;
+            double seconds = Math.max(1.0, flushInterval.toMillis() / 1000.0);
+            this.maxTokens = Math.max(1.0, sink.getRatePerSecond() * seconds);
+            this.tokens = maxTokens;
+        }
+
+        void addAll(List<RiskAlert> added) {
+            alerts.addAll(added);
+            if (alerts.size() > backlogCapacity) {
+                Map<RiskLevel, Integer> dropped = new EnumMap<>(RiskLevel.class);
+                while (alerts.size() > backlogCapacity) {
+                    dropped.merge(alerts.pollFirst().getNewLevel(), 1, Integer::sum);
+                }
+                int total = dropped.values().stream().mapToInt(Integer::intValue).sum();
+                meterRegistry.counter("risk.alerts.delivery", "outcome", "dropped", "sink", sink.getName())
+                        .increment(total);
+                logger.warn("Alert backlog of sink {} is full, dropped the {} oldest alerts by new level: {}",
+                        sink.getName(), total, dropped);
+            }
+            size = alerts.size();
+        }
+
+        void refill(long now) {
+            tokens = Math.min(maxTokens, tokens + sink.getRatePerSecond() * (now - refilledAt) / 1e9);
+            refilledAt = now;
+        }
+
+        List<RiskAlert> peek(int count) {
+            List<RiskAlert> batch = new ArrayList<>(count);
+            for (RiskAlert alert : alerts) {
+                if (batch.size() == count) {
+                    break;
+                }
+                batch.add(alert);
+            }
+            return batch;
+        }
+
+        void remove(int count) {
+            for (int i = 0; i < count; i++) {
+                alerts.pollFirst();
+            }
+            size = alerts.size();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.riskguard.service.alert;
+
+import java.util.List;
+
+/**
+ * Destination for risk alerts. Implementations receive alerts in batches on
+ * the alert dispatcher thread, never on the scoring path.
+ */
+public interface AlertSink {
+
+    /**
+     * Destination name used in logs and metrics
+     */
+    String getName();
+
+    /**
+     * Maximum number of alerts per second delivered to this destination
+     */
+    double getRatePerSecond();
+
+    void deliver(List<RiskAlert> alerts) throws Exception;
+}
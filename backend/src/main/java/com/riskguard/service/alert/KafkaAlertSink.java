@@ -0,0 +1,52 @@
+package com.riskguard.service.alert;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes alerts as JSON to a Kafka topic, keyed by entity id
+ */
+@Component
+@ConditionalOnProperty(value = "risk.alerts.sinks.kafka.enabled", havingValue = "true")
+public class KafkaAlertSink implements AlertSink {
+
+    @Value("${risk.alerts.sinks.kafka.topic:risk-alerts}")
+    private String topic;
+
+    @Value("${risk.alerts.sinks.kafka.rate-per-second:500}")
+    private double ratePerSecond;
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+
+    public KafkaAlertSink(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getName() {
+        return "kafka";
+    }
+
+    @Override
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    @Override
+    public void deliver(List<RiskAlert> alerts) throws Exception {
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[alerts.size()];
+        for (int i = 0; i < alerts.size(); i++) {
+            RiskAlert alert = alerts.get(i);
+            sends[i] = kafkaTemplate.send(topic, alert.getEntityId(), objectMapper.writeValueAsString(alert));
+        }
+        CompletableFuture.allOf(sends).join();
+    }
+}
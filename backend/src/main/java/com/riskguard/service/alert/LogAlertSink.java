@@ -0,0 +1,41 @@
+package com.riskguard.service.alert;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Writes alerts to the application log
+ */
+@Component
+@ConditionalOnProperty(value = "risk.alerts.sinks.log.enabled", havingValue = "true", matchIfMissing = true)
+public class LogAlertSink implements AlertSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogAlertSink.class);
+
+    @Value("${risk.alerts.sinks.log.rate-per-second:50}")
+    private double ratePerSecond;
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+
+    @Override
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    @Override
+    public void deliver(List<RiskAlert> alerts) {
+        for (RiskAlert alert : alerts) {
+            logger.warn("Risk level {} for entity {}: {} -> {} (score {})",
+                    alert.isEscalation() ? "escalated" : "lowered", alert.getEntityId(),
+                    alert.getPreviousLevel(), alert.getNewLevel(), String.format("%.1f", alert.getScore()));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.riskguard.service.alert;
+
+import com.riskguard.domain.MonitoredEntity.RiskLevel;
+
+import java.time.LocalDateTime;
+
+/**
+ * RiskAlert is emitted when an entity crosses a risk level threshold
+ */
+public class RiskAlert {
+
+    private final String entityId;
+    private final RiskLevel previousLevel;
+    private final RiskLevel newLevel;
+    private final double score;
+    private final LocalDateTime timestamp;
+
+    public RiskAlert(String entityId, RiskLevel previousLevel, RiskLevel newLevel, double score,
+                     LocalDateTime timestamp) {
+        this.entityId = entityId;
+        this.previousLevel = previousLevel;
+        this.newLevel = newLevel;
+        this.score = score;
+        this.timestamp = timestamp;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public RiskLevel getPreviousLevel() {
+        return previousLevel;
+    }
+
+    public RiskLevel getNewLevel() {
+        return newLevel;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isEscalation() {
+        return previousLevel == null || newLevel.ordinal() > previousLevel.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return "RiskAlert{" +
+                "entityId='" + entityId + '\'' +
+                ", previousLevel=" + previousLevel +
+                ", newLevel=" + newLevel +
+                ", score=" + score +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -0,0 +1,64 @@
+package com.riskguard.service.alert;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Posts each alert batch as a JSON array to a webhook. Without a configured
+ * URL the sink only logs what it would have sent.
+ */
+@Component
+@ConditionalOnProperty(value = "risk.alerts.sinks.webhook.enabled", havingValue = "true")
+public class WebhookAlertSink implements AlertSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookAlertSink.class);
+
+    @Value("${risk.alerts.sinks.webhook.url:}")
+    private String url;
+
+    @Value("${risk.alerts.sinks.webhook.timeout:5s}")
+    private Duration timeout;
+
+    @Value("${risk.alerts.sinks.webhook.rate-per-second:5}")
+    private double ratePerSecond;
+
+    private final WebClient webClient;
+
+    public WebhookAlertSink(WebClient.Builder webClientBuilder) {
+        this.webClient = webClientBuilder.build();
+    }
+
+    @Override
+    public String getName() {
+        return "webhook";
+    }
+
+    @Override
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    @Override
+    public void deliver(List<RiskAlert> alerts) {
+        if (url == null || url.isBlank()) {
+            logger.debug("Webhook URL not configured, dropping {} alerts", alerts.size());
+            return;
+        }
+
+        webClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(alerts)
+                .retrieve()
+                .toBodilessEntity()
+                .block(timeout);
+    }
+}
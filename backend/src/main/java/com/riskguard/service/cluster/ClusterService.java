@@ -0,0 +1,241 @@
+package com.riskguard.service.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cluster Service
+ *
+ * Partitions entities across scoring nodes by consistent hashing of
+ * entityId. Membership comes from a static peer list; peers are health
+ * checked periodically and removed from the ring after repeated failures,
+ * then added back once they respond again. Every membership change
+ * publishes a {@link ShardRebalanceEvent}.
+ *
+ * With clustering disabled this node owns every entity.
+ */
+@Service
+public class ClusterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterService.class);
+
+    public static final String FORWARDED_HEADER = "X-Risk-Forwarded-By";
+
+    @Value("${risk.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${risk.cluster.node-id:local}")
+    private String nodeId;
+
+    // Entries of the form nodeId=baseUrl, including this node
+    @Value("${risk.cluster.nodes:}")
+    private List<String> nodes;
+
+    @Value("${risk.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${risk.cluster.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${risk.cluster.request-timeout:2s}")
+    private Duration requestTimeout;
+
+    @Value("${risk.cluster.username:${spring.security.user.name:}}")
+    private String username;
+
+    @Value("${risk.cluster.password:${spring.security.user.password:}}")
+    private String password;
+
+    private final WebClient.Builder webClientBuilder;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, String> peerUrls = new LinkedHashMap<>();
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private WebClient webClient;
+    private volatile ConsistentHashRing ring;
+
+    public ClusterService(WebClient.Builder webClientBuilder, ApplicationEventPublisher eventPublisher) {
+        this.webClientBuilder = webClientBuilder;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    void initialize() {
+        for (String node : nodes) {
+            String[] parts = node.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Cluster node must be nodeId=baseUrl: " + node);
+            }
+            if (!parts[0].trim().equals(nodeId)) {
+                peerUrls.put(parts[0].trim(), parts[1].trim());
+            }
+        }
+
+        webClient = webClientBuilder
+                .defaultHeaders(headers -> {
+                    if (!username.isEmpty()) {
+                        headers.setBasicAuth(username, password);
+                    }
+                    headers.set(FORWARDED_HEADER, nodeId);
+                })
+                .build();
+
+        Set<String> members = new HashSet<>(peerUrls.keySet());
+        members.add(nodeId);
+        ring = new ConsistentHashRing(enabled ? members : Set.of(nodeId), virtualNodes);
+
+        if (enabled) {
+            logger.info("Cluster node {} started with peers {}", nodeId, peerUrls.keySet());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Set<String> getMembers() {
+        return ring.getNodes();
+    }
+
+    public String ownerOf(String entityId) {
+        return ring.ownerOf(entityId);
+    }
+
+    /**
+     * Whether this node owns the entity's feature state and cache
+     */
+    public boolean isLocal(String entityId) {
+        return !enabled || nodeId.equals(ring.ownerOf(entityId));
+    }
+
+    /**
+     * Run a GET against the owner of an entity and return its JSON body
+     */
+    public Map<String, Object> forward(String entityId, String path) {
+        return forward(entityId, HttpMethod.GET, path);
+    }
+
+    /**
+     * Run a POST without body against the owner of an entity and return its
+     * JSON body
+     */
+    public Map<String, Object> forwardPost(String entityId, String path) {
+        return forward(entityId, HttpMethod.POST, path);
+    }
+
+    private Map<String, Object> forward(String entityId, HttpMethod method, String path) {
+        return exchange(ring.ownerOf(entityId), method, path, Map.of(), null);
+    }
+
+    /**
+     * Run a GET against a cluster node and return its JSON body; the
+     * variables are expanded into the path's URI template and encoded
+     */
+    public Map<String, Object> get(String node, String path, Map<String, ?> variables) {
+        return exchange(node, HttpMethod.GET, path, variables, null);
+    }
+
+    /**
+     * POST a binary body to a cluster node and return its JSON body
+     */
+    public Map<String, Object> post(String node, String path, byte[] body) {
+        return exchange(node, HttpMethod.POST, path, Map.of(), body);
+    }
+
+    private Map<String, Object> exchange(String node, HttpMethod method, String path, Map<String, ?> variables,
+                                         byte[] body) {
+        String baseUrl = peerUrls.get(node);
+        if (baseUrl == null) {
+            throw new IllegalStateException("No URL known for cluster node " + node);
+        }
+
+        try {
+            WebClient.RequestBodySpec spec = webClient.method(method).uri(baseUrl + path, variables);
+            WebClient.RequestHeadersSpec<?> request = body != null
+                    ? spec.contentType(MediaType.APPLICATION_OCTET_STREAM).bodyValue(body)
+                    : spec;
+            Map<String, Object> response = request
+                    .retrieve()
+                    .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                    .block(requestTimeout);
+            failures.remove(node);
+            return response != null ? response : Collections.emptyMap();
+        } catch (RuntimeException e) {
+            recordFailure(node);
+            throw e;
+        }
+    }
+
+    /**
+     * Health check peers and rebuild the ring when membership changes
+     */
+    @Scheduled(fixedDelayString = "${risk.cluster.heartbeat-interval:PT5S}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+
+        peerUrls.forEach((peer, baseUrl) -> {
+            try {
+                webClient.get()
+                        .uri(baseUrl + "/api/risk/cluster/ping")
+                        .header(HttpHeaders.ACCEPT, "application/json")
+                        .retrieve()
+                        .toBodilessEntity()
+                        .block(requestTimeout);
+                failures.remove(peer);
+            } catch (RuntimeException e) {
+                recordFailure(peer);
+            }
+        });
+
+        Set<String> live = new HashSet<>();
+        live.add(nodeId);
+        for (String peer : peerUrls.keySet()) {
+            if (failures.getOrDefault(peer, 0) < failureThreshold) {
+                live.add(peer);
+            }
+        }
+
+        if (!live.equals(ring.getNodes())) {
+            rebalance(live);
+        }
+    }
+
+    private synchronized void rebalance(Set<String> live) {
+        logger.info("Cluster membership changed: {} -> {}", ring.getNodes(), live);
+        ConsistentHashRing previous = ring;
+        ring = new ConsistentHashRing(live, virtualNodes);
+        eventPublisher.publishEvent(new ShardRebalanceEvent(this, previous, ring, nodeId));
+    }
+
+    private void recordFailure(String peer) {
+        int count = failures.merge(peer, 1, Integer::sum);
+        if (count == failureThreshold) {
+            logger.warn("Cluster node {} unreachable after {} attempts", peer, count);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.riskguard.service.cluster;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when cluster membership changes and entity ownership moves.
+ * Listeners drop local state for entities this node no longer owns and
+ * rebuild what they need for entities it has acquired.
+ */
+public class ShardRebalanceEvent extends ApplicationEvent {
+
+    private final ConsistentHashRing previousRing;
+    private final ConsistentHashRing ring;
+    private final String localNodeId;
+
+    public ShardRebalanceEvent(Object source, ConsistentHashRing previousRing, ConsistentHashRing ring,
+                               String localNodeId) {
+        super(source);
+        this.previousRing = previousRing;
+        this.ring = ring;
+        this.localNodeId = localNodeId;
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public boolean isLocal(String entityId) {
+        return localNodeId.equals(ring.ownerOf(entityId));
+    }
+
+    /**
+     * Whether this node owns the entity now but did not before
+     */
+    public boolean isAcquired(String entityId) {
+        return isLocal(entityId) && !localNodeId.equals(previousRing.ownerOf(entityId));
+    }
+}
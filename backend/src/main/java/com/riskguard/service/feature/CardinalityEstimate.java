@@ -0,0 +1,44 @@
+package com.riskguard.service.feature;
+
+/**
+ * Approximate distinct count with its error bound
+ */
+public class CardinalityEstimate {
+
+    public static final CardinalityEstimate ZERO = new CardinalityEstimate(0, 0.0);
+
+    private final long estimate;
+    private final double relativeStandardError;
+
+    public CardinalityEstimate(long estimate, double relativeStandardError) {
+        this.estimate = estimate;
+        this.relativeStandardError = relativeStandardError;
+    }
+
+    public long getEstimate() {
+        return estimate;
+    }
+
+    public double getRelativeStandardError() {
+        return relativeStandardError;
+    }
+
+    /**
+     * Lower bound of the ~95% confidence interval (two standard errors)
+     */
+    public long getLowerBound() {
+        return Math.max(0L, Math.round(estimate * (1.0 - 2.0 * relativeStandardError)));
+    }
+
+    /**
+     * Upper bound of the ~95% confidence interval (two standard errors)
+     */
+    public long getUpperBound() {
+        return Math.round(estimate * (1.0 + 2.0 * relativeStandardError));
+    }
+
+    @Override
+    public String toString() {
+        return estimate + " ±" + String.format("%.1f%%", relativeStandardError * 100);
+    }
+}
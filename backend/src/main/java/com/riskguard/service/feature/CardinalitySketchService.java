@@ -0,0 +1,277 @@
+package com.riskguard.service.feature;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.service.cluster.ShardRebalanceEvent;
+import com.riskguard.service.time.ScoringClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cardinality Sketch Service
+ *
+ * Keeps per-entity HyperLogLog sketches of distinct source IPs, destination
+ * IPs, ports and session ids over a sliding window made of time buckets.
+ * Memory per entity is fixed regardless of event volume, adding the same
+ * value twice is a no-op, and buckets can be exported and merged so sketches
+ * from several nodes or windows combine into one estimate.
+ */
+@Service
+public class CardinalitySketchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CardinalitySketchService.class);
+
+    public enum Dimension {
+        SOURCE_IP, DESTINATION_IP, PORT, SESSION
+    }
+
+    private final int precision;
+    private final int bucketCount;
+    private final long bucketMillis;
+
+    private final ScoringClock clock;
+    private final Map<String, EntitySketches> sketches = new ConcurrentHashMap<>();
+
+    public CardinalitySketchService(@Value("${risk.scoring.sketches.precision:10}") int precision,
+                                    @Value("${risk.scoring.sketches.window:24h}") Duration window,
+                                    @Value("${risk.scoring.sketches.buckets:24}") int bucketCount,
+                                    ScoringClock clock) {
+        this.clock = clock;
+        this.precision = precision;
+        this.bucketCount = bucketCount;
+        this.bucketMillis = Math.max(1L, window.toMillis() / bucketCount);
+    }
+
+    /**
+     * Add the event's IPs, port and session to its entity's sketches
+     */
+    public void record(RiskEvent event) {
+        if (event.getEntity() == null || event.getEventTimestamp() == null) {
+            return;
+        }
+        record(event.getEntity().getEntityId(), event);
+    }
+
+    /**
+     * Length of the sliding window the sketches cover
+     */
+    public Duration getWindow() {
+        return Duration.ofMillis(bucketMillis * bucketCount);
+    }
+
+    /**
+     * Add one event to the given entity's sketches
+     */
+    public void record(String entityId, RiskEvent event) {
+        long timestamp = clock.toEpochMillis(event.getEventTimestamp());
+        long bucketId = timestamp / bucketMillis;
+        if (bucketId <= currentBucketId() - bucketCount) {
+            return;
+        }
+
+        EntitySketches entitySketches = sketches.computeIfAbsent(entityId, k -> new EntitySketches());
+        synchronized (entitySketches) {
+            int slot = entitySketches.slotFor(bucketId);
+            if (slot < 0) {
+                return;
+            }
+            if (event.getSourceIp() != null) {
+                entitySketches.sketch(Dimension.SOURCE_IP, slot).add(event.getSourceIp());
+            }
+            if (event.getDestinationIp() != null) {
+                entitySketches.sketch(Dimension.DESTINATION_IP, slot).add(event.getDestinationIp());
+            }
+            if (event.getPort() != null) {
+                entitySketches.sketch(Dimension.PORT, slot).add(event.getPort().longValue());
+            }
+            if (event.getSessionId() != null) {
+                entitySketches.sketch(Dimension.SESSION, slot).add(event.getSessionId());
+            }
+        }
+    }
+
+    /**
+     * Approximate number of distinct values seen for an entity within the window
+     */
+    public CardinalityEstimate estimate(String entityId, Dimension dimension) {
+        if (!sketches.containsKey(entityId)) {
+            return CardinalityEstimate.ZERO;
+        }
+        return new CardinalityEstimate(estimateCount(entityId, dimension, new HyperLogLog[bucketCount]),
+                HyperLogLog.relativeStandardError(precision));
+    }
+
+    /**
+     * Distinct count only, using a caller-owned scratch array of at least
+     * {@link #getBucketCount()} entries so the scoring path does not allocate
+     */
+    public long estimateCount(String entityId, Dimension dimension, HyperLogLog[] scratch) {
+        EntitySketches entitySketches = sketches.get(entityId);
+        if (entitySketches == null) {
+            return 0;
+        }
+
+        long oldest = currentBucketId() - bucketCount;
+        synchronized (entitySketches) {
+            int count = 0;
+            for (int slot = 0; slot < bucketCount; slot++) {
+                HyperLogLog sketch = entitySketches.sketches[dimension.ordinal()][slot];
+                if (sketch != null && entitySketches.bucketIds[slot] > oldest) {
+                    scratch[count++] = sketch;
+                }
+            }
+            long estimate = HyperLogLog.estimateUnion(scratch, count);
+            Arrays.fill(scratch, 0, count, null);
+            return estimate;
+        }
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * Serialized live buckets of one dimension, keyed by bucket id, for
+     * merging into another node's sketches
+     */
+    public Map<Long, byte[]> export(String entityId, Dimension dimension) {
+        Map<Long, byte[]> exported = new HashMap<>();
+        EntitySketches entitySketches = sketches.get(entityId);
+        if (entitySketches == null) {
+            return exported;
+        }
+
+        long oldest = currentBucketId() - bucketCount;
+        synchronized (entitySketches) {
+            for (int slot = 0; slot < bucketCount; slot++) {
+                HyperLogLog sketch = entitySketches.sketches[dimension.ordinal()][slot];
+                if (sketch != null && entitySketches.bucketIds[slot] > oldest) {
+                    exported.put(entitySketches.bucketIds[slot], sketch.toBytes());
+                }
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Merge buckets exported by {@link #export} into this node's sketches
+     */
+    public void merge(String entityId, Dimension dimension, Map<Long, byte[]> buckets) {
+        long oldest = currentBucketId() - bucketCount;
+        EntitySketches entitySketches = sketches.computeIfAbsent(entityId, k -> new EntitySketches());
+        synchronized (entitySketches) {
+            buckets.forEach((bucketId, bytes) -> {
+                if (bucketId <= oldest) {
+                    return;
+                }
+                int slot = entitySketches.slotFor(bucketId);
+                if (slot >= 0) {
+                    entitySketches.sketch(dimension, slot).merge(HyperLogLog.fromBytes(bytes));
+                }
+            });
+        }
+    }
+
+    /**
+     * Entities that currently have sketches, for snapshots
+     */
+    public List<String> entityIds() {
+        return new ArrayList<>(sketches.keySet());
+    }
+
+    public void remove(String entityId) {
+        sketches.remove(entityId);
+    }
+
+    /**
+     * Drop sketches of entities whose shard moved to another node
+     */
+    @EventListener
+    public void onShardRebalance(ShardRebalanceEvent event) {
+        sketches.keySet().removeIf(entityId -> !event.isLocal(entityId));
+    }
+
+    /**
+     * Drop entities without any bucket in the current window
+     */
+    @Scheduled(fixedDelayString = "${risk.scoring.sketches.eviction-interval:PT5M}")
+    public void evictIdle() {
+        long oldest = currentBucketId() - bucketCount;
+        int before = sketches.size();
+        sketches.values().removeIf(entitySketches -> {
+            synchronized (entitySketches) {
+                return entitySketches.newestBucketId() <= oldest;
+            }
+        });
+        int evicted = before - sketches.size();
+        if (evicted > 0) {
+            logger.debug("Evicted cardinality sketches for {} idle entities", evicted);
+        }
+    }
+
+    private long currentBucketId() {
+        return clock.millis() / bucketMillis;
+    }
+
+    /**
+     * Ring of time buckets per dimension; a slot is reused once its bucket
+     * falls out of the window
+     */
+    private class EntitySketches {
+        private final long[] bucketIds = new long[bucketCount];
+        private final HyperLogLog[][] sketches = new HyperLogLog[Dimension.values().length][bucketCount];
+
+        EntitySketches() {
+            Arrays.fill(bucketIds, Long.MIN_VALUE);
+        }
+
+        /**
+         * Slot holding the given bucket, recycling a stale slot, or -1 if the
+         * bucket is older than what the slot currently holds
+         */
+        int slotFor(long bucketId) {
+            int slot = (int) Math.floorMod(bucketId, (long) bucketCount);
+            if (bucketIds[slot] == bucketId) {
+                return slot;
+            }
+            if (bucketIds[slot] > bucketId) {
+                return -1;
+            }
+            bucketIds[slot] = bucketId;
+            for (HyperLogLog[] dimensionSketches : sketches) {
+                if (dimensionSketches[slot] != null) {
+                    dimensionSketches[slot].clear();
+                }
+            }
+            return slot;
+        }
+
+        HyperLogLog sketch(Dimension dimension, int slot) {
+            HyperLogLog sketch = sketches[dimension.ordinal()][slot];
+            if (sketch == null) {
+                sketch = new HyperLogLog(precision);
+                sketches[dimension.ordinal()][slot] = sketch;
+            }
+            return sketch;
+        }
+
+        long newestBucketId() {
+            long newest = Long.MIN_VALUE;
+            for (long bucketId : bucketIds) {
+                newest = Math.max(newest, bucketId);
+            }
+            return newest;
+        }
+    }
+}
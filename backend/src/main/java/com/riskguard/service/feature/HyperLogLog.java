@@ -0,0 +1,178 @@
+package com.riskguard.service.feature;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog distinct-count sketch
+ *
+ * Uses 2^precision one-byte registers and estimates cardinality with a
+ * relative standard error of 1.04 / sqrt(2^precision), e.g. 3.25% for
+ * precision 10 (1 KB). Sketches with the same precision are mergeable, so
+ * time buckets or sketches from other nodes can be combined losslessly.
+ * Not thread-safe.
+ */
+public final class HyperLogLog {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(String value) {
+        addHash(HASH.hashString(value, StandardCharsets.UTF_8).asLong());
+    }
+
+    public void add(long value) {
+        addHash(HASH.hashLong(value).asLong());
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Guard bit bounds the rank at 64 - precision + 1
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public long estimate() {
+        return estimateUnion(new HyperLogLog[] { this }, 1);
+    }
+
+    /**
+     * Relative standard error of the estimate; about 95% of estimates fall
+     * within two standard errors of the true cardinality
+     */
+    public double relativeStandardError() {
+        return relativeStandardError(precision);
+    }
+
+    public static double relativeStandardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public void merge(HyperLogLog other) {
+        checkCompatible(other);
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, registers.clone());
+    }
+
+    /**
+     * Serialized form: one precision byte followed by the registers
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        int precision = bytes[0];
+        HyperLogLog sketch = new HyperLogLog(precision);
+        if (bytes.length != sketch.registers.length + 1) {
+            throw new IllegalArgumentException("Invalid sketch length for precision " + precision);
+        }
+        System.arraycopy(bytes, 1, sketch.registers, 0, sketch.registers.length);
+        return sketch;
+    }
+
+    /**
+     * Estimate the cardinality of the union of the first count sketches
+     * without materializing the merged sketch
+     */
+    public static long estimateUnion(HyperLogLog[] sketches, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        int m = sketches[0].registers.length;
+        for (int s = 1; s < count; s++) {
+            sketches[0].checkCompatible(sketches[s]);
+        }
+
+        double sum = 0.0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            byte max = 0;
+            for (int s = 0; s < count; s++) {
+                byte register = sketches[s].registers[i];
+                if (register > max) {
+                    max = register;
+                }
+            }
+            sum += 1.0 / (1L << max);
+            if (max == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+        // Linear counting is more accurate for small cardinalities
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1.0 + 1.079 / m);
+        }
+    }
+
+    private void checkCompatible(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with precision "
+                    + precision + " and " + other.precision);
+        }
+    }
+}
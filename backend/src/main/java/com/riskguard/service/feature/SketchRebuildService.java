@@ -0,0 +1,69 @@
+package com.riskguard.service.feature;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ShardRebalanceEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Sketch Rebuild Service
+ *
+ * Events reach the cardinality sketches at ingest, and a restart restores
+ * them from the state snapshot and journal. The remaining gap is entities
+ * whose shard moves to this node: their events were ingested elsewhere.
+ * On a rebalance the events within the sketch window are streamed once
+ * and those of acquired entities recorded, so scoring never has to
+ * re-hash an entity's event history.
+ */
+@Service
+public class SketchRebuildService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SketchRebuildService.class);
+
+    private final RiskEventRepository eventRepository;
+    private final CardinalitySketchService cardinalitySketchService;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public SketchRebuildService(RiskEventRepository eventRepository,
+                                CardinalitySketchService cardinalitySketchService,
+                                PlatformTransactionManager transactionManager) {
+        this.eventRepository = eventRepository;
+        this.cardinalitySketchService = cardinalitySketchService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener
+    public void onShardRebalance(ShardRebalanceEvent event) {
+        long start = System.currentTimeMillis();
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minus(cardinalitySketchService.getWindow());
+        AtomicLong recorded = new AtomicLong();
+
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<RiskEvent> events = eventRepository.streamAllInWindow(from, to)) {
+                events.forEach(riskEvent -> {
+                    String entityId = riskEvent.getEntity().getEntityId();
+                    if (event.isAcquired(entityId)) {
+                        cardinalitySketchService.record(entityId, riskEvent);
+                        recorded.incrementAndGet();
+                    }
+                });
+            }
+        });
+
+        if (recorded.get() > 0) {
+            logger.info("Rebuilt cardinality sketches from {} events of acquired entities in {} ms",
+                    recorded.get(), System.currentTimeMillis() - start);
+        }
+    }
+}
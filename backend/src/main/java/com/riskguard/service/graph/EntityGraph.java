@@ -0,0 +1,163 @@
+package com.riskguard.service.graph;
+
+import java.util.Arrays;
+
+/**
+ * Weighted undirected graph over dense int node ids, stored as one primitive
+ * neighbour array and weight array per node with no per-edge objects, about
+ * 8 bytes per edge direction. Edges are found by a linear scan of the node's
+ * neighbours, which the degree cap keeps short; a full node replaces its
+ * lightest edge. Each direction is capped separately, so a hub may drop an
+ * edge its neighbour still holds. Not thread-safe; callers synchronize.
+ */
+public class EntityGraph {
+
+    private static final int[] NO_TARGETS = new int[0];
+    private static final float[] NO_WEIGHTS = new float[0];
+
+    private final int maxDegree;
+
+    private int[][] targets = new int[0][];
+    private float[][] weights = new float[0][];
+    private int[] degrees = new int[0];
+    private double[] totalWeights = new double[0];
+    private long directedEdges;
+
+    public EntityGraph(int maxDegree) {
+        this.maxDegree = maxDegree;
+    }
+
+    /**
+     * Add weight to the edge between two nodes, creating it if needed
+     */
+    public void addEdge(int a, int b, float weight) {
+        if (a == b) {
+            return;
+        }
+        ensureCapacity(Math.max(a, b) + 1);
+        if (increment(a, b, weight)) {
+            directedEdges++;
+        }
+        if (increment(b, a, weight)) {
+            directedEdges++;
+        }
+    }
+
+    private boolean increment(int from, int to, float weight) {
+        int[] nodeTargets = targets[from];
+        float[] nodeWeights = weights[from];
+        int degree = degrees[from];
+        for (int i = 0; i < degree; i++) {
+            if (nodeTargets[i] == to) {
+                nodeWeights[i] += weight;
+                totalWeights[from] += weight;
+                return false;
+            }
+        }
+
+        if (degree == maxDegree) {
+            int lightest = 0;
+            for (int i = 1; i < degree; i++) {
+                if (nodeWeights[i] < nodeWeights[lightest]) {
+                    lightest = i;
+                }
+            }
+            totalWeights[from] += weight - nodeWeights[lightest];
+            nodeTargets[lightest] = to;
+            nodeWeights[lightest] = weight;
+            return false;
+        }
+
+        if (degree == nodeTargets.length) {
+            int capacity = Math.min(maxDegree, Math.max(4, degree * 2));
+            targets[from] = nodeTargets = Arrays.copyOf(nodeTargets, capacity);
+            weights[from] = nodeWeights = Arrays.copyOf(nodeWeights, capacity);
+        }
+        nodeTargets[degree] = to;
+        nodeWeights[degree] = weight;
+        degrees[from] = degree + 1;
+        totalWeights[from] += weight;
+        return true;
+    }
+
+    /**
+     * Multiply every edge weight by the factor and drop edges that fall
+     * below the minimum
+     *
+     * @return number of edge directions removed
+     */
+    public long scale(float factor, float minWeight) {
+        long removed = 0;
+        for (int node = 0; node < degrees.length; node++) {
+            int[] nodeTargets = targets[node];
+            float[] nodeWeights = weights[node];
+            int kept = 0;
+            double total = 0.0;
+            for (int i = 0; i < degrees[node]; i++) {
+                float weight = nodeWeights[i] * factor;
+                if (weight >= minWeight) {
+                    nodeTargets[kept] = nodeTargets[i];
+                    nodeWeights[kept] = weight;
+                    total += weight;
+                    kept++;
+                }
+            }
+            removed += degrees[node] - kept;
+            degrees[node] = kept;
+            totalWeights[node] = total;
+            if (kept == 0 && nodeTargets.length > 0) {
+                targets[node] = NO_TARGETS;
+                weights[node] = NO_WEIGHTS;
+            }
+        }
+        directedEdges -= removed;
+        return removed;
+    }
+
+    public int degree(int node) {
+        return node < degrees.length ? degrees[node] : 0;
+    }
+
+    /**
+     * Neighbour ids of a node; only the first degree(node) entries are valid
+     */
+    public int[] neighbours(int node) {
+        return node < targets.length ? targets[node] : NO_TARGETS;
+    }
+
+    /**
+     * Edge weights parallel to neighbours(node)
+     */
+    public float[] weights(int node) {
+        return node < weights.length ? weights[node] : NO_WEIGHTS;
+    }
+
+    public double totalWeight(int node) {
+        return node < totalWeights.length ? totalWeights[node] : 0.0;
+    }
+
+    /**
+     * Edges, counting one held by only one of its nodes as half
+     */
+    public long edgeCount() {
+        return directedEdges / 2;
+    }
+
+    public int nodeCapacity() {
+        return degrees.length;
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (nodes <= degrees.length) {
+            return;
+        }
+        int capacity = Math.max(nodes, Math.max(1024, degrees.length * 2));
+        int from = degrees.length;
+        targets = Arrays.copyOf(targets, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        Arrays.fill(targets, from, capacity, NO_TARGETS);
+        Arrays.fill(weights, from, capacity, NO_WEIGHTS);
+        degrees = Arrays.copyOf(degrees, capacity);
+        totalWeights = Arrays.copyOf(totalWeights, capacity);
+    }
+}
@@ -0,0 +1,486 @@
+package com.riskguard.service.graph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.ScoreDecayService;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.intern.StringDictionary;
+import com.riskguard.service.time.ScoringClock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Entity Graph Service
+ *
+ * Relates entities through their events: an event whose source IP,
+ * destination IP or hostname (metadata) is another entity's address, or whose session
+ * another entity used last, adds weight to the edge between the two. Edges
+ * stay within a tenant and fade with their own half-life.
+ *
+ * When an entity's own score (its score without risk inherited from
+ * neighbours) jumps, the jump is pushed along the edges for a bounded number
+ * of hops, personalized-PageRank style: each hop passes on a damped share
+ * split by edge weight and drops shares below a minimum. Neighbours keep the
+ * inherited points, decayed like scores and capped, and those that gained
+ * enough are rescored. Inherited risk never propagates further, so rescoring
+ * neighbours cannot start a cascade. The work per jump depends on the
+ * neighbourhood reached, not on the size of the graph.
+ */
+@Service
+public class EntityGraphService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityGraphService.class);
+
+    private static final String HOSTNAME_KEY = "hostname";
+
+    private final KeyDictionaryService keyDictionaryService;
+    private final MonitoredEntityRepository entityRepository;
+    private final RiskEventRepository eventRepository;
+    private final ClusterService clusterService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScoringClock clock;
+
+    @Value("${risk.graph.damping:0.3}")
+    private double damping;
+
+    @Value("${risk.graph.max-depth:2}")
+    private int maxDepth;
+
+    // Own-score increase that triggers propagation
+    @Value("${risk.graph.min-jump:5.0}")
+    private double minJump;
+
+    // Shares below this are not passed on
+    @Value("${risk.graph.min-share:0.05}")
+    private double minShare;
+
+    @Value("${risk.graph.max-inherited-points:15.0}")
+    private double maxInheritedPoints;
+
+    // Inherited increase that gets a neighbour rescored
+    @Value("${risk.graph.rescore-threshold:1.0}")
+    private double rescoreThreshold;
+
+    @Value("${risk.graph.edge-half-life:7d}")
+    private Duration edgeHalfLife;
+
+    @Value("${risk.graph.min-edge-weight:0.05}")
+    private float minEdgeWeight;
+
+    @Value("${risk.graph.load-window:24h}")
+    private Duration loadWindow;
+
+    @Value("${risk.scoring.decay.half-life:6h}")
+    private Duration halfLife;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final EntityGraph graph;
+    private final Cache<String, Integer> lastEntityBySession;
+
+    // Per entity key: tenant, last own score, inherited points and when they were set
+    private String[] tenants = new String[0];
+    private double[] ownScores = new double[0];
+    private double[] inherited = new double[0];
+    private long[] inheritedAt = new long[0];
+    // Per address key: owning entity key, or NOT_FOUND
+    private int[] ownerByAddress = new int[0];
+
+    // Propagation scratch, guarded by the write lock
+    private double[] mass = new double[0];
+    private double[] nextMass = new double[0];
+    private int[] frontier = new int[64];
+    private int[] next = new int[64];
+
+    private long lastEdgeDecay;
+
+    private final Timer propagationTimer;
+    private final Counter propagations;
+    private final Counter neighboursRescored;
+
+    public EntityGraphService(KeyDictionaryService keyDictionaryService, MonitoredEntityRepository entityRepository,
+                              RiskEventRepository eventRepository, ClusterService clusterService,
+                              ApplicationEventPublisher eventPublisher, ScoringClock clock, MeterRegistry meterRegistry,
+                              @Value("${risk.graph.max-degree:256}") int maxDegree,
+                              @Value("${risk.graph.sessions.max-size:100000}") long maxSessions,
+                              @Value("${risk.graph.sessions.ttl:1h}") Duration sessionTtl) {
+        this.keyDictionaryService = keyDictionaryService;
+        this.entityRepository = entityRepository;
+        this.eventRepository = eventRepository;
+        this.clusterService = clusterService;
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.graph = new EntityGraph(maxDegree);
+        this.lastEntityBySession = CacheBuilder.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterWrite(sessionTtl)
+                .build();
+        this.lastEdgeDecay = clock.millis();
+
+        this.propagationTimer = Timer.builder("risk.graph.propagation.latency")
+                .description("Time to push a score jump to neighbouring entities")
+                .register(meterRegistry);
+        this.propagations = Counter.builder("risk.graph.propagations")
+                .description("Score jumps pushed to neighbouring entities")
+                .register(meterRegistry);
+        this.neighboursRescored = Counter.builder("risk.graph.rescored")
+                .description("Neighbours queued for rescoring after a propagation")
+                .register(meterRegistry);
+        Gauge.builder("risk.graph.edges", this, EntityGraphService::edgeCount)
+                .description("Edges in the entity relationship graph")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Register active entities and build edges from the events of the
+     * load window
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.currentTimeMillis();
+        List<MonitoredEntity> entities = entityRepository.findByIsActiveTrue();
+        for (MonitoredEntity entity : entities) {
+            register(entity);
+        }
+
+        LocalDateTime now = LocalDateTime.now(clock);
+        List<RiskEvent> events = eventRepository.findAllInWindow(now.minus(loadWindow), now);
+        for (RiskEvent event : events) {
+            recordEvent(event.getEntity().getEntityId(), event.getEntity().getTenantId(), event);
+        }
+        logger.info("Built entity graph with {} edges from {} entities and {} events in {} ms",
+                edgeCount(), entities.size(), events.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Make an entity's IP address and hostname resolve to it
+     */
+    public void register(MonitoredEntity entity) {
+        int key = keyDictionaryService.entityKey(entity.getEntityId());
+        if (key == StringDictionary.NOT_FOUND) {
+            return;
+        }
+        int ipKey = keyDictionaryService.addressKey(entity.getIpAddress());
+        int hostKey = keyDictionaryService.addressKey(entity.getHostname());
+
+        lock.writeLock().lock();
+        try {
+            ensureEntities(key + 1);
+            tenants[key] = entity.getTenantId();
+            setOwner(ipKey, key);
+            setOwner(hostKey, key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add the edges an event implies to its entity
+     */
+    public void recordEvent(String entityId, String tenantId, RiskEvent event) {
+        int key = keyDictionaryService.entityKey(entityId);
+        if (key == StringDictionary.NOT_FOUND) {
+            return;
+        }
+        int sourceKey = keyDictionaryService.findAddressKey(event.getSourceIp());
+        int destinationKey = keyDictionaryService.findAddressKey(event.getDestinationIp());
+        // Events carry no hostname field; collectors put it in the metadata
+        int hostKey = event.getMetadata() != null
+                ? keyDictionaryService.findAddressKey(event.getMetadata().get(HOSTNAME_KEY))
+                : StringDictionary.NOT_FOUND;
+        Integer previousSession = null;
+        if (event.getSessionId() != null) {
+            previousSession = lastEntityBySession.asMap().put(event.getSessionId(), key);
+        }
+
+        lock.writeLock().lock();
+        try {
+            ensureEntities(key + 1);
+            tenants[key] = tenantId;
+            connect(key, owner(sourceKey));
+            connect(key, owner(destinationKey));
+            connect(key, owner(hostKey));
+            if (previousSession != null) {
+                connect(key, previousSession);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Take a freshly recorded score: if the entity's own share of it jumped,
+     * push the jump to its neighbours and queue those that gained for
+     * rescoring. Without an earlier own score, e.g. after a restart, the
+     * entity's previous score is the baseline.
+     */
+    public void onScoreUpdate(MonitoredEntity entity) {
+        int key = keyDictionaryService.entityKey(entity.getEntityId());
+        if (key == StringDictionary.NOT_FOUND || entity.getCurrentRiskScore() == null) {
+            return;
+        }
+        register(entity);
+        long now = clock.millis();
+
+        Map<String, Set<String>> rescore;
+        lock.writeLock().lock();
+        try {
+            ensureEntities(key + 1);
+            double ownScore = entity.getCurrentRiskScore() - inheritedPoints(key, now);
+            double previous = ownScores[key];
+            if (Double.isNaN(previous) && entity.getPreviousRiskScore() != null) {
+                previous = entity.getPreviousRiskScore();
+            }
+            ownScores[key] = ownScore;
+            if (Double.isNaN(previous) || ownScore - previous < minJump || graph.degree(key) == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            rescore = propagate(key, ownScore - previous, now);
+            propagationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            propagations.increment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (!rescore.isEmpty()) {
+            rescore.values().forEach(ids -> neighboursRescored.increment(ids.size()));
+            logger.debug("Score jump of {} propagated to {}", entity.getEntityId(), rescore);
+            eventPublisher.publishEvent(new NeighbourRiskChangedEvent(this, rescore));
+        }
+    }
+
+    /**
+     * Risk points an entity currently holds from its neighbours
+     */
+    public double inheritedPoints(String entityId, long now) {
+        int key = keyDictionaryService.entityKey(entityId);
+        if (key == StringDictionary.NOT_FOUND) {
+            return 0.0;
+        }
+        lock.readLock().lock();
+        try {
+            return inheritedPoints(key, now);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Strongest neighbours of an entity with edge weight and inherited points
+     */
+    public List<Map<String, Object>> getNeighbours(String entityId, int limit) {
+        int key = keyDictionaryService.entityKey(entityId);
+        if (key == StringDictionary.NOT_FOUND) {
+            return List.of();
+        }
+        long now = clock.millis();
+        List<Map<String, Object>> neighbours = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int[] targets = graph.neighbours(key);
+            float[] weights = graph.weights(key);
+            Integer[] order = new Integer[graph.degree(key)];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(weights[b], weights[a]));
+            for (int i = 0; i < Math.min(limit, order.length); i++) {
+                int neighbour = targets[order[i]];
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("entityId", keyDictionaryService.entityId(neighbour));
+                entry.put("weight", weights[order[i]]);
+                entry.put("inheritedPoints", inheritedPoints(neighbour, now));
+                neighbours.add(entry);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return neighbours;
+    }
+
+    public long edgeCount() {
+        lock.readLock().lock();
+        try {
+            return graph.edgeCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Fade edge weights by the time since the last pass and drop edges too
+     * light to matter
+     */
+    @Scheduled(fixedDelayString = "${risk.graph.decay-interval:PT1H}")
+    public void decayEdges() {
+        long now = clock.millis();
+        lock.writeLock().lock();
+        try {
+            float factor = (float) ScoreDecayService.decayFactor(now - lastEdgeDecay, edgeHalfLife);
+            lastEdgeDecay = now;
+            long removed = graph.scale(factor, minEdgeWeight);
+            if (removed > 0) {
+                logger.debug("Dropped {} faded entity graph edge directions", removed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bounded-depth push from the source. Each hop splits a damped share of
+     * a node's mass across its edges by weight; neighbours keep what reaches
+     * them as inherited points.
+     *
+     * @return local entities whose inherited points rose past the rescore
+     * threshold, by tenant
+     */
+    private Map<String, Set<String>> propagate(int source, double jump, long now) {
+        int capacity = graph.nodeCapacity();
+        if (mass.length < capacity) {
+            mass = new double[capacity];
+            nextMass = new double[capacity];
+        }
+
+        Map<String, Set<String>> rescore = new LinkedHashMap<>();
+        frontier[0] = source;
+        mass[source] = jump;
+        int frontierSize = 1;
+        for (int depth = 0; depth < maxDepth && frontierSize > 0; depth++) {
+            int nextSize = 0;
+            for (int f = 0; f < frontierSize; f++) {
+                int node = frontier[f];
+                double nodeMass = mass[node];
+                mass[node] = 0.0;
+                double total = graph.totalWeight(node);
+                if (total <= 0.0) {
+                    continue;
+                }
+                int[] targets = graph.neighbours(node);
+                float[] weights = graph.weights(node);
+                for (int i = 0, degree = graph.degree(node); i < degree; i++) {
+                    int neighbour = targets[i];
+                    double share = damping * nodeMass * weights[i] / total;
+                    if (neighbour == source || share < minShare) {
+                        continue;
+                    }
+                    if (nextMass[neighbour] == 0.0) {
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, nextSize * 2);
+                        }
+                        next[nextSize++] = neighbour;
+                    }
+                    nextMass[neighbour] += share;
+                }
+            }
+
+            for (int n = 0; n < nextSize; n++) {
+                int node = next[n];
+                String entityId = keyDictionaryService.entityId(node);
+                if (entityId == null || !clusterService.isLocal(entityId)) {
+                    continue;
+                }
+                double before = inheritedPoints(node, now);
+                double after = Math.min(maxInheritedPoints, before + nextMass[node]);
+                inherited[node] = after;
+                inheritedAt[node] = now;
+                if (after - before >= rescoreThreshold && tenants[node] != null) {
+                    rescore.computeIfAbsent(tenants[node], t -> new LinkedHashSet<>()).add(entityId);
+                }
+            }
+
+            int[] nodes = frontier;
+            frontier = next;
+            next = nodes;
+            double[] masses = mass;
+            mass = nextMass;
+            nextMass = masses;
+            frontierSize = nextSize;
+        }
+        for (int f = 0; f < frontierSize; f++) {
+            mass[frontier[f]] = 0.0;
+        }
+        return rescore;
+    }
+
+    private double inheritedPoints(int key, long now) {
+        if (key >= inherited.length || inherited[key] == 0.0) {
+            return 0.0;
+        }
+        return inherited[key] * ScoreDecayService.decayFactor(now - inheritedAt[key], halfLife);
+    }
+
+    /**
+     * Edge between two entities of the same tenant
+     */
+    private void connect(int key, int other) {
+        if (other == StringDictionary.NOT_FOUND || other == key) {
+            return;
+        }
+        if (tenants[key] != null && other < tenants.length && tenants[other] != null
+                && !tenants[key].equals(tenants[other])) {
+            return;
+        }
+        graph.addEdge(key, other, 1.0f);
+    }
+
+    private int owner(int addressKey) {
+        return addressKey >= 0 && addressKey < ownerByAddress.length
+                ? ownerByAddress[addressKey] : StringDictionary.NOT_FOUND;
+    }
+
+    private void setOwner(int addressKey, int entityKey) {
+        if (addressKey == StringDictionary.NOT_FOUND) {
+            return;
+        }
+        if (addressKey >= ownerByAddress.length) {
+            int from = ownerByAddress.length;
+            ownerByAddress = Arrays.copyOf(ownerByAddress, Math.max(addressKey + 1, Math.max(1024, from * 2)));
+            Arrays.fill(ownerByAddress, from, ownerByAddress.length, StringDictionary.NOT_FOUND);
+        }
+        ownerByAddress[addressKey] = entityKey;
+    }
+
+    private void ensureEntities(int size) {
+        if (size <= ownScores.length) {
+            return;
+        }
+        int from = ownScores.length;
+        int capacity = Math.max(size, Math.max(1024, from * 2));
+        tenants = Arrays.copyOf(tenants, capacity);
+        ownScores = Arrays.copyOf(ownScores, capacity);
+        Arrays.fill(ownScores, from, capacity, Double.NaN);
+        inherited = Arrays.copyOf(inherited, capacity);
+        inheritedAt = Arrays.copyOf(inheritedAt, capacity);
+    }
+}
@@ -0,0 +1,25 @@
+package com.riskguard.service.graph;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Published after a score jump was pushed to related entities, listing the
+ * entities whose inherited risk rose enough to need rescoring, grouped by
+ * tenant
+ */
+public class NeighbourRiskChangedEvent extends ApplicationEvent {
+
+    private final Map<String, Set<String>> entityIdsByTenant;
+
+    public NeighbourRiskChangedEvent(Object source, Map<String, Set<String>> entityIdsByTenant) {
+        super(source);
+        this.entityIdsByTenant = entityIdsByTenant;
+    }
+
+    public Map<String, Set<String>> getEntityIdsByTenant() {
+        return entityIdsByTenant;
+    }
+}
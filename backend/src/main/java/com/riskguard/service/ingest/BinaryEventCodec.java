@@ -0,0 +1,323 @@
+package com.riskguard.service.ingest;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.Tags;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary encoding of risk events
+ *
+ * <pre>
+ * payload  := batch+
+ * batch    := 'R' 'E' version:u8 count:varint event{count}
+ * event    := type:u8 severity:u8 timestamp:varlong presence:varint entityId:str field*
+ * str      := tag:varint [utf8 bytes]
+ *             tag 0        null
+ *             tag odd      literal of (tag >>> 1) bytes, appended to the batch dictionary
+ *             tag even     dictionary entry (tag >>> 1) - 1
+ * </pre>
+ *
+ * Type and severity are enum ordinals, the timestamp is epoch millis, and
+ * optional fields follow in presence bit order (see {@link #FIELD_TITLE} ..
+ * {@link #FIELD_METADATA}). Repeated strings such as entity ids and IPs are
+ * sent once per batch and referenced afterwards, and decoded once. Decoding
+ * reads straight from the buffer into RiskEvents without an intermediate
+ * tree or map.
+ */
+public final class BinaryEventCodec {
+
+    public static final String CONTENT_TYPE = "application/octet-stream";
+
+    private static final byte MAGIC_0 = 'R';
+    private static final byte MAGIC_1 = 'E';
+    private static final byte VERSION = 1;
+
+    static final int FIELD_TITLE = 0;
+    static final int FIELD_DESCRIPTION = 1;
+    static final int FIELD_SOURCE_IP = 2;
+    static final int FIELD_DESTINATION_IP = 3;
+    static final int FIELD_PORT = 4;
+    static final int FIELD_PROTOCOL = 5;
+    static final int FIELD_USER_AGENT = 6;
+    static final int FIELD_SESSION_ID = 7;
+    static final int FIELD_FILE_PATH = 8;
+    static final int FIELD_FILE_SIZE = 9;
+    static final int FIELD_ACTION = 10;
+    static final int FIELD_RESULT = 11;
+    static final int FIELD_TAGS = 12;
+    static final int FIELD_METADATA = 13;
+
+    private static final RiskEvent.EventType[] EVENT_TYPES = RiskEvent.EventType.values();
+    private static final RiskEvent.Severity[] SEVERITIES = RiskEvent.Severity.values();
+
+    private BinaryEventCodec() {
+    }
+
+    /**
+     * Decode every batch in the buffer, handing each event to the consumer
+     * as soon as it is complete
+     *
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public static int decode(ByteBuffer buffer, ZoneId zone, Consumer<IngestEvent> consumer) {
+        int decoded = 0;
+        List<String> dictionary = new ArrayList<>();
+        try {
+            while (buffer.hasRemaining()) {
+                if (buffer.get() != MAGIC_0 || buffer.get() != MAGIC_1) {
+                    throw new IllegalArgumentException("Bad batch header at offset " + (buffer.position() - 2));
+                }
+                byte version = buffer.get();
+                if (version != VERSION) {
+                    throw new IllegalArgumentException("Unsupported event format version " + version);
+                }
+
+                dictionary.clear();
+                int count = readVarInt(buffer);
+                for (int i = 0; i < count; i++) {
+                    consumer.accept(decodeEvent(buffer, zone, dictionary, decoded));
+                    decoded++;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated event payload after " + decoded + " events", e);
+        }
+        return decoded;
+    }
+
+    private static IngestEvent decodeEvent(ByteBuffer buffer, ZoneId zone, List<String> dictionary,
+                                           long sequence) {
+        int type = buffer.get() & 0xFF;
+        int severity = buffer.get() & 0xFF;
+        if (type >= EVENT_TYPES.length || severity >= SEVERITIES.length) {
+            throw new IllegalArgumentException("Unknown event type " + type + " or severity " + severity);
+        }
+
+        RiskEvent event = new RiskEvent();
+        event.setEventType(EVENT_TYPES[type]);
+        event.setSeverity(SEVERITIES[severity]);
+        event.setEventTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(readVarLong(buffer)), zone));
+
+        long presence = readVarLong(buffer);
+        String entityId = readString(buffer, dictionary);
+
+        if (isSet(presence, FIELD_TITLE)) event.setTitle(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_DESCRIPTION)) event.setDescription(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_SOURCE_IP)) event.setSourceIp(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_DESTINATION_IP)) event.setDestinationIp(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_PORT)) event.setPort(readVarInt(buffer));
+        if (isSet(presence, FIELD_PROTOCOL)) event.setProtocol(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_USER_AGENT)) event.setUserAgent(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_SESSION_ID)) event.setSessionId(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_FILE_PATH)) event.setFilePath(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_FILE_SIZE)) event.setFileSize(readVarLong(buffer));
+        if (isSet(presence, FIELD_ACTION)) event.setAction(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_RESULT)) event.setResult(readString(buffer, dictionary));
+        if (isSet(presence, FIELD_TAGS)) event.setTags(Tags.parse(readString(buffer, dictionary)));
+        if (isSet(presence, FIELD_METADATA)) {
+            int entries = readVarInt(buffer);
+            for (int i = 0; i < entries; i++) {
+                event.addMetadata(readString(buffer, dictionary), readString(buffer, dictionary));
+            }
+        }
+
+        return new IngestEvent(entityId, event, sequence);
+    }
+
+    /**
+     * Encode events as a single batch
+     */
+    public static byte[] encode(List<IngestEvent> events, ZoneId zone) {
+        Writer writer = new Writer(64 + events.size() * 48);
+        writer.put(MAGIC_0);
+        writer.put(MAGIC_1);
+        writer.put(VERSION);
+        writer.putVarLong(events.size());
+
+        for (IngestEvent ingestEvent : events) {
+            RiskEvent event = ingestEvent.getEvent();
+            writer.put((byte) event.getEventType().ordinal());
+            writer.put((byte) event.getSeverity().ordinal());
+            writer.putVarLong(event.getEventTimestamp().atZone(zone).toInstant().toEpochMilli());
+
+            long presence = 0;
+            presence |= bit(FIELD_TITLE, event.getTitle());
+            presence |= bit(FIELD_DESCRIPTION, event.getDescription());
+            presence |= bit(FIELD_SOURCE_IP, event.getSourceIp());
+            presence |= bit(FIELD_DESTINATION_IP, event.getDestinationIp());
+            presence |= bit(FIELD_PORT, event.getPort());
+            presence |= bit(FIELD_PROTOCOL, event.getProtocol());
+            presence |= bit(FIELD_USER_AGENT, event.getUserAgent());
+            presence |= bit(FIELD_SESSION_ID, event.getSessionId());
+            presence |= bit(FIELD_FILE_PATH, event.getFilePath());
+            presence |= bit(FIELD_FILE_SIZE, event.getFileSize());
+            presence |= bit(FIELD_ACTION, event.getAction());
+            presence |= bit(FIELD_RESULT, event.getResult());
+            String tags = event.getTags().isEmpty() ? null : Tags.format(event.getTags());
+            presence |= bit(FIELD_TAGS, tags);
+            Map<String, String> metadata = event.getMetadata();
+            if (metadata != null && !metadata.isEmpty()) {
+                presence |= 1L << FIELD_METADATA;
+            }
+            writer.putVarLong(presence);
+            writer.putString(ingestEvent.getEntityId());
+
+            if (isSet(presence, FIELD_TITLE)) writer.putString(event.getTitle());
+            if (isSet(presence, FIELD_DESCRIPTION)) writer.putString(event.getDescription());
+            if (isSet(presence, FIELD_SOURCE_IP)) writer.putString(event.getSourceIp());
+            if (isSet(presence, FIELD_DESTINATION_IP)) writer.putString(event.getDestinationIp());
+            if (isSet(presence, FIELD_PORT)) writer.putVarLong(event.getPort());
+            if (isSet(presence, FIELD_PROTOCOL)) writer.putString(event.getProtocol());
+            if (isSet(presence, FIELD_USER_AGENT)) writer.putString(event.getUserAgent());
+            if (isSet(presence, FIELD_SESSION_ID)) writer.putString(event.getSessionId());
+            if (isSet(presence, FIELD_FILE_PATH)) writer.putString(event.getFilePath());
+            if (isSet(presence, FIELD_FILE_SIZE)) writer.putVarLong(event.getFileSize());
+            if (isSet(presence, FIELD_ACTION)) writer.putString(event.getAction());
+            if (isSet(presence, FIELD_RESULT)) writer.putString(event.getResult());
+            if (isSet(presence, FIELD_TAGS)) writer.putString(tags);
+            if (isSet(presence, FIELD_METADATA)) {
+                writer.putVarLong(metadata.size());
+                for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                    writer.putString(entry.getKey());
+                    writer.putString(entry.getValue());
+                }
+            }
+        }
+
+        return writer.toByteArray();
+    }
+
+    private static boolean isSet(long presence, int field) {
+        return (presence & (1L << field)) != 0;
+    }
+
+    private static long bit(int field, Object value) {
+        return value != null ? 1L << field : 0L;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative varint");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint " + value + " out of int range");
+        }
+        return (int) value;
+    }
+
+    private static String readString(ByteBuffer buffer, List<String> dictionary) {
+        long tag = readVarLong(buffer);
+        if (tag == 0) {
+            return null;
+        }
+        // Lengths and references must fit an int; a wider tag would wrap
+        long number = tag >>> 1;
+        if (number > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("String tag " + tag + " out of range");
+        }
+        if ((tag & 1) == 0) {
+            int index = (int) number - 1;
+            if (index < 0 || index >= dictionary.size()) {
+                throw new IllegalArgumentException("Unknown string reference " + index);
+            }
+            return dictionary.get(index);
+        }
+
+        int length = (int) number;
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        dictionary.add(value);
+        return value;
+    }
+
+    /**
+     * Growable byte buffer with a per-batch string dictionary
+     */
+    private static final class Writer {
+        private byte[] bytes;
+        private int size;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        Writer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void put(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putVarLong(0);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                putVarLong((long) (index + 1) << 1);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(((long) utf8.length << 1) | 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+            dictionary.put(value, dictionary.size());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.riskguard.service.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.journal.EventJournal;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.query.EntityIndexService;
+import com.riskguard.service.sequence.SequenceDetectorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Event Ingestion Service
+ *
+ * Single entry point for inbound risk events, whether they arrive as JSON
+ * maps, NDJSON streams or in the compact binary format: validates them, resolves their
+ * entities, stores them in one transaction per batch, journals them, feeds
+ * the cardinality sketches and query index and announces the touched
+ * entities for rescoring.
+ *
+ * In a cluster every node stores what it receives, but the per-entity state
+ * (journal, sketches, query index, sequences and graph) lives on the owner
+ * of the entity's shard: events for entities owned elsewhere are forwarded
+ * to their owner in the binary format, which applies them and rescores.
+ */
+@Service
+public class EventIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventIngestionService.class);
+
+    private static final String FORWARD_PATH = "/api/risk/cluster/events";
+
+    @Value("${risk.scoring.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${risk.ingest.max-line-bytes:65536}")
+    private int maxLineBytes;
+
+    @Value("${risk.ingest.max-errors:1000}")
+    private int maxErrors;
+
+    private final MonitoredEntityRepository entityRepository;
+    private final RiskEventRepository eventRepository;
+    private final CardinalitySketchService cardinalitySketchService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader payloadReader;
+    private final KeyDictionaryService keyDictionaryService;
+    private final EventJournal journal;
+    private final EntityIndexService entityIndexService;
+    private final SequenceDetectorService sequenceDetectorService;
+    private final EntityGraphService entityGraphService;
+    private final ClusterService clusterService;
+    private final ExecutorService ingestExecutor;
+
+    // entityId -> primary key and tenant; entities are never renamed or
+    // moved between tenants, so entries stay valid
+    private final Map<String, EntityRef> entityKeys = new ConcurrentHashMap<>();
+
+    public EventIngestionService(MonitoredEntityRepository entityRepository, RiskEventRepository eventRepository,
+                                 CardinalitySketchService cardinalitySketchService,
+                                 TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+                                 ObjectMapper objectMapper, KeyDictionaryService keyDictionaryService,
+                                 EventJournal journal, EntityIndexService entityIndexService,
+                                 SequenceDetectorService sequenceDetectorService,
+                                 EntityGraphService entityGraphService, ClusterService clusterService,
+                                 @Qualifier("ingestExecutor") ExecutorService ingestExecutor) {
+        this.entityRepository = entityRepository;
+        this.eventRepository = eventRepository;
+        this.cardinalitySketchService = cardinalitySketchService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.payloadReader = objectMapper.readerFor(EventPayload.class);
+        this.keyDictionaryService = keyDictionaryService;
+        this.journal = journal;
+        this.entityIndexService = entityIndexService;
+        this.sequenceDetectorService = sequenceDetectorService;
+        this.entityGraphService = entityGraphService;
+        this.clusterService = clusterService;
+        this.ingestExecutor = ingestExecutor;
+    }
+
+    /**
+     * Decode and ingest a binary payload
+     *
+     * @throws IllegalArgumentException if the payload is malformed; nothing is stored in that case
+     */
+    public IngestResult ingestBinary(ByteBuffer payload) {
+        return ingest(decodeBinary(payload));
+    }
+
+    /**
+     * Decode a binary payload without storing it
+     *
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public List<IngestEvent> decodeBinary(ByteBuffer payload) {
+        List<IngestEvent> events = new ArrayList<>();
+        BinaryEventCodec.decode(payload, ZoneId.systemDefault(), events::add);
+        return events;
+    }
+
+    /**
+     * Ingest a newline-delimited JSON stream. Lines are read one at a time
+     * into a reused buffer, bound straight to {@link EventPayload} and handed on in
+     * batches grouped by entity, so memory stays constant regardless of the
+     * body size. Errors are reported per line number. Each full batch is
+     * stored on the ingest pool while the next one is parsed; only one is in
+     * flight at a time, so batches are stored in order.
+     */
+    public IngestResult ingestNdjson(InputStream in) throws IOException {
+        IngestResult result = new IngestResult(maxErrors);
+        List<IngestEvent> batch = new ArrayList<>(batchSize);
+        Future<IngestResult> storing = null;
+
+        NdjsonLineReader reader = new NdjsonLineReader(in, maxLineBytes);
+        while (reader.next()) {
+            long lineNumber = reader.getLineNumber();
+            if (reader.isOverflow()) {
+                result.addError(lineNumber, "Line exceeds " + maxLineBytes + " bytes");
+                continue;
+            }
+            if (reader.isBlank()) {
+                continue;
+            }
+
+            try (JsonParser parser = objectMapper.getFactory()
+                    .createParser(reader.getBuffer(), 0, reader.getLength())) {
+                EventPayload payload = readPayload(parser);
+                if (parser.nextToken() != null) {
+                    throw new IllegalArgumentException("Trailing content after JSON object");
+                }
+                batch.add(payload.toIngestEvent(lineNumber));
+            } catch (IOException | IllegalArgumentException e) {
+                result.addError(lineNumber, "Invalid event: " + e.getMessage());
+                continue;
+            }
+
+            if (batch.size() >= batchSize) {
+                awaitStored(storing, result);
+                List<IngestEvent> full = batch;
+                storing = ingestExecutor.submit(() -> ingestGrouped(full));
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        awaitStored(storing, result);
+        if (!batch.isEmpty()) {
+            result.merge(ingestGrouped(batch));
+        }
+        return result;
+    }
+
+    private static void awaitStored(Future<IngestResult> storing, IngestResult result) {
+        if (storing == null) {
+            return;
+        }
+        try {
+            result.merge(storing.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while storing events", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private IngestResult ingestGrouped(List<IngestEvent> batch) {
+        // Stable sort keeps each entity's events in arrival order
+        batch.sort(Comparator.comparing(IngestEvent::getEntityId, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return ingest(batch);
+    }
+
+    /**
+     * Bind one JSON event from the parser's current position
+     *
+     * @throws IllegalArgumentException if the value is not a JSON object
+     */
+    public EventPayload readPayload(JsonParser parser) throws IOException {
+        EventPayload payload = payloadReader.readValue(parser);
+        if (payload == null) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return payload;
+    }
+
+    /**
+     * Map an already parsed JSON event body to an IngestEvent. The entity is
+     * referenced by its business key in the "entityId" field.
+     */
+    public IngestEvent fromJson(Map<String, Object> json, long sequence) {
+        return objectMapper.convertValue(json, EventPayload.class).toIngestEvent(sequence);
+    }
+
+    /**
+     * Validate and store a batch of events
+     */
+    public IngestResult ingest(List<IngestEvent> events) {
+        IngestResult result = new IngestResult(maxErrors);
+        List<RiskEvent> accepted = new ArrayList<>(events.size());
+        List<IngestEvent> local = new ArrayList<>(events.size());
+        Map<String, List<IngestEvent>> forwarded = new LinkedHashMap<>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < events.size(); i++) {
+                IngestEvent ingestEvent = events.get(i);
+                String error = prepare(ingestEvent);
+                if (error != null) {
+                    result.addError(ingestEvent.getSequence(), error);
+                    continue;
+                }
+                accepted.add(ingestEvent.getEvent());
+                if (clusterService.isLocal(ingestEvent.getEntityId())) {
+                    local.add(ingestEvent);
+                } else {
+                    forwarded.computeIfAbsent(clusterService.ownerOf(ingestEvent.getEntityId()),
+                            k -> new ArrayList<>()).add(ingestEvent);
+                }
+            }
+            eventRepository.saveAll(accepted);
+        });
+
+        forwarded.forEach((owner, ownerEvents) -> {
+            if (!forward(owner, ownerEvents)) {
+                local.addAll(ownerEvents);
+            }
+        });
+        apply(local);
+        result.addAccepted(accepted.size());
+
+        logger.debug("Ingested {} events, {} of them for other nodes, rejected {}",
+                accepted.size(), accepted.size() - local.size(), result.getRejected());
+        return result;
+    }
+
+    /**
+     * Apply events another node stored for entities this node owns. They are
+     * already in risk_events; unknown entities are skipped.
+     *
+     * @return the number of events applied
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public int applyForwarded(ByteBuffer payload) {
+        List<IngestEvent> events = new ArrayList<>();
+        BinaryEventCodec.decode(payload, ZoneId.systemDefault(), ingestEvent -> {
+            if (resolveEntity(ingestEvent.getEntityId()).isEmpty()) {
+                logger.warn("Skipping forwarded event for unknown entity {}", ingestEvent.getEntityId());
+                return;
+            }
+            RiskEvent event = ingestEvent.getEvent();
+            event.setSourceIp(keyDictionaryService.canonicalAddress(event.getSourceIp()));
+            event.setDestinationIp(keyDictionaryService.canonicalAddress(event.getDestinationIp()));
+            events.add(ingestEvent);
+        });
+        apply(events);
+        return events.size();
+    }
+
+    /**
+     * Send stored events to the owner of their entities; returns false if
+     * the owner could not take them, in which case they are applied here
+     */
+    private boolean forward(String owner, List<IngestEvent> events) {
+        try {
+            clusterService.post(owner, FORWARD_PATH, BinaryEventCodec.encode(events, ZoneId.systemDefault()));
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Forwarding {} events to node {} failed, applying them locally", events.size(), owner, e);
+            return false;
+        }
+    }
+
+    /**
+     * Journal stored events, feed them to the per-entity state and announce
+     * their entities for rescoring
+     */
+    private void apply(List<IngestEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        Map<String, Set<String>> entityIdsByTenant = new LinkedHashMap<>();
+        journal.appendEvents(events);
+        for (IngestEvent ingestEvent : events) {
+            String entityId = ingestEvent.getEntityId();
+            String tenantId = entityKeys.get(entityId).tenantId();
+            cardinalitySketchService.record(entityId, ingestEvent.getEvent());
+            entityIndexService.recordEvent(entityId, ingestEvent.getEvent());
+            sequenceDetectorService.onEvent(entityId, ingestEvent.getEvent());
+            entityGraphService.recordEvent(entityId, tenantId, ingestEvent.getEvent());
+            entityIdsByTenant.computeIfAbsent(tenantId, k -> new LinkedHashSet<>())
+                    .add(keyDictionaryService.canonicalEntityId(entityId));
+        }
+        eventPublisher.publishEvent(new EventsIngestedEvent(this, entityIdsByTenant));
+    }
+
+    /**
+     * Validate an event, fill defaults and attach its entity; returns an
+     * error message if the event must be rejected
+     */
+    private String prepare(IngestEvent ingestEvent) {
+        RiskEvent event = ingestEvent.getEvent();
+        if (ingestEvent.getEntityId() == null || ingestEvent.getEntityId().isBlank()) {
+            return "entityId is required";
+        }
+        if (event.getEventType() == null) {
+            return "eventType is required";
+        }
+        if (event.getSeverity() == null) {
+            return "severity is required";
+        }
+        if (event.getEventTimestamp() == null) {
+            event.setEventTimestamp(LocalDateTime.now());
+        }
+        if (event.getTitle() == null || event.getTitle().isBlank()) {
+            event.setTitle(event.getEventType().name());
+        }
+        // Share one instance per address across all buffered events and sketches
+        event.setSourceIp(keyDictionaryService.canonicalAddress(event.getSourceIp()));
+        event.setDestinationIp(keyDictionaryService.canonicalAddress(event.getDestinationIp()));
+
+        Optional<EntityRef> ref = resolveEntity(ingestEvent.getEntityId());
+        if (ref.isEmpty()) {
+            return "Unknown entity: " + ingestEvent.getEntityId();
+        }
+        event.setEntity(entityRepository.getReferenceById(ref.get().id()));
+        return null;
+    }
+
+    private Optional<EntityRef> resolveEntity(String entityId) {
+        EntityRef ref = entityKeys.get(entityId);
+        if (ref != null) {
+            return Optional.of(ref);
+        }
+        Optional<EntityRef> found = entityRepository.findByEntityId(entityId)
+                .map(entity -> new EntityRef(entity.getId(), entity.getTenantId()));
+        found.ifPresent(resolved -> entityKeys.put(entityId, resolved));
+        return found;
+    }
+
+    private record EntityRef(long id, String tenantId) {
+    }
+}
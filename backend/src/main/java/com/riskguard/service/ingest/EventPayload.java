@@ -0,0 +1,145 @@
+package com.riskguard.service.ingest;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskEvent.EventType;
+import com.riskguard.domain.RiskEvent.Severity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inbound JSON form of a risk event. Jackson binds request and record
+ * bodies straight into it, without an intermediate map; the entity is
+ * referenced by its business key in "entityId".
+ */
+public class EventPayload {
+
+    private String entityId;
+    private EventType eventType;
+    private Severity severity;
+    private String title;
+    private String description;
+    private String sourceIp;
+    private String destinationIp;
+    private Integer port;
+    private String protocol;
+    private String userAgent;
+    private String sessionId;
+    private String filePath;
+    private Long fileSize;
+    private String action;
+    private String result;
+    private Double riskScore;
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private List<String> tags;
+    private LocalDateTime eventTimestamp;
+    private Map<String, String> metadata;
+
+    /**
+     * @param sequence position of the event in its source, see {@link IngestEvent}
+     */
+    public IngestEvent toIngestEvent(long sequence) {
+        RiskEvent event = new RiskEvent();
+        event.setEventType(eventType);
+        event.setSeverity(severity);
+        event.setTitle(title);
+        event.setDescription(description);
+        event.setSourceIp(sourceIp);
+        event.setDestinationIp(destinationIp);
+        event.setPort(port);
+        event.setProtocol(protocol);
+        event.setUserAgent(userAgent);
+        event.setSessionId(sessionId);
+        event.setFilePath(filePath);
+        event.setFileSize(fileSize);
+        event.setAction(action);
+        event.setResult(result);
+        event.setRiskScore(riskScore);
+        event.setEventTimestamp(eventTimestamp);
+        if (tags != null) {
+            event.setTags(tags);
+        }
+        if (metadata != null) {
+            event.setMetadata(metadata);
+        }
+        return new IngestEvent(entityId, event, sequence);
+    }
+
+    public void setEntityId(String entityId) {
+        this.entityId = entityId;
+    }
+
+    public void setEventType(EventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public void setSeverity(Severity severity) {
+        this.severity = severity;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public void setSourceIp(String sourceIp) {
+        this.sourceIp = sourceIp;
+    }
+
+    public void setDestinationIp(String destinationIp) {
+        this.destinationIp = destinationIp;
+    }
+
+    public void setPort(Integer port) {
+        this.port = port;
+    }
+
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    public void setRiskScore(Double riskScore) {
+        this.riskScore = riskScore;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public void setEventTimestamp(LocalDateTime eventTimestamp) {
+        this.eventTimestamp = eventTimestamp;
+    }
+
+    public void setMetadata(Map<String, String> metadata) {
+        this.metadata = metadata;
+    }
+}
@@ -0,0 +1,24 @@
+package com.riskguard.service.ingest;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Published after a batch of events has been stored, listing the entities
+ * that received new events and need rescoring, grouped by tenant
+ */
+public class EventsIngestedEvent extends ApplicationEvent {
+
+    private final Map<String, Set<String>> entityIdsByTenant;
+
+    public EventsIngestedEvent(Object source, Map<String, Set<String>> entityIdsByTenant) {
+        super(source);
+        this.entityIdsByTenant = entityIdsByTenant;
+    }
+
+    public Map<String, Set<String>> getEntityIdsByTenant() {
+        return entityIdsByTenant;
+    }
+}
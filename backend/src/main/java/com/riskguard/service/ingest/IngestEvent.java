@@ -0,0 +1,40 @@
+package com.riskguard.service.ingest;
+
+import com.riskguard.domain.RiskEvent;
+
+/**
+ * An inbound event before its entity has been resolved: the decoded
+ * RiskEvent plus the business key of the entity it belongs to
+ */
+public class IngestEvent {
+
+    private final String entityId;
+    private final RiskEvent event;
+    private final long sequence;
+
+    public IngestEvent(String entityId, RiskEvent event) {
+        this(entityId, event, 0);
+    }
+
+    /**
+     * @param sequence position of the event in its source (record index or
+     *                 line number), reported back for rejected events
+     */
+    public IngestEvent(String entityId, RiskEvent event, long sequence) {
+        this.entityId = entityId;
+        this.event = event;
+        this.sequence = sequence;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public RiskEvent getEvent() {
+        return event;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,75 @@
+package com.riskguard.service.ingest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of an ingest call: counts plus one error entry per rejected event,
+ * up to a maximum number of entries
+ */
+public class IngestResult {
+
+    private static final int DEFAULT_MAX_ERRORS = 1000;
+
+    private final int maxErrors;
+    private long accepted;
+    private long rejected;
+    private final List<Map<String, Object>> errors = new ArrayList<>();
+
+    public IngestResult() {
+        this(DEFAULT_MAX_ERRORS);
+    }
+
+    public IngestResult(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    public void addAccepted(long count) {
+        accepted += count;
+    }
+
+    public void addError(long index, String message) {
+        rejected++;
+        if (errors.size() >= maxErrors) {
+            return;
+        }
+        Map<String, Object> error = new HashMap<>();
+        error.put("index", index);
+        error.put("error", message);
+        errors.add(error);
+    }
+
+    public void merge(IngestResult other) {
+        accepted += other.accepted;
+        rejected += other.rejected;
+        for (Map<String, Object> error : other.errors) {
+            if (errors.size() >= maxErrors) {
+                break;
+            }
+            errors.add(error);
+        }
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<Map<String, Object>> getErrors() {
+        return errors;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("accepted", accepted);
+        result.put("rejected", rejected);
+        result.put("errors", errors);
+        result.put("errorsTruncated", rejected > errors.size());
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package com.riskguard.service.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Consumes risk events from Kafka. Record values are binary batches unless
+ * the record carries a content-type header of application/json, in which
+ * case the value is a single JSON event.
+ *
+ * Records that cannot be decoded are logged and skipped. Any other failure,
+ * e.g. the database being unavailable, propagates to the container's error
+ * handler, which retries the record and then publishes it to the dead
+ * letter topic, so stored events are never lost to a transient error.
+ */
+@Component
+@ConditionalOnProperty(value = "risk.ingest.kafka.enabled", havingValue = "true")
+public class KafkaEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaEventListener.class);
+
+    private final EventIngestionService eventIngestionService;
+    private final ObjectMapper objectMapper;
+
+    public KafkaEventListener(EventIngestionService eventIngestionService, ObjectMapper objectMapper) {
+        this.eventIngestionService = eventIngestionService;
+        this.objectMapper = objectMapper;
+    }
+
+    @KafkaListener(topics = "${risk.ingest.kafka.topic:risk-events}",
+            containerFactory = "binaryEventListenerContainerFactory")
+    public void onRecord(ConsumerRecord<String, byte[]> record) throws IOException {
+        List<IngestEvent> events;
+        try {
+            events = decode(record);
+        } catch (JsonProcessingException | IllegalArgumentException | BufferUnderflowException e) {
+            logger.error("Skipping malformed record {}-{}@{}", record.topic(), record.partition(),
+                    record.offset(), e);
+            return;
+        }
+
+        IngestResult result = eventIngestionService.ingest(events);
+        if (result.getRejected() > 0) {
+            logger.warn("Rejected {} events from {}-{}@{}: {}", result.getRejected(), record.topic(),
+                    record.partition(), record.offset(), result.getErrors());
+        }
+    }
+
+    private List<IngestEvent> decode(ConsumerRecord<String, byte[]> record) throws IOException {
+        if (isJson(record)) {
+            try (JsonParser parser = objectMapper.getFactory().createParser(record.value())) {
+                return List.of(eventIngestionService.readPayload(parser).toIngestEvent(record.offset()));
+            }
+        }
+        return eventIngestionService.decodeBinary(ByteBuffer.wrap(record.value()));
+    }
+
+    private boolean isJson(ConsumerRecord<String, byte[]> record) {
+        Header contentType = record.headers().lastHeader("content-type");
+        return contentType != null
+                && new String(contentType.value(), StandardCharsets.UTF_8).startsWith("application/json");
+    }
+}
@@ -0,0 +1,112 @@
+package com.riskguard.service.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits an NDJSON stream into lines without materialising the body. Input
+ * is read in fixed chunks and each line is copied into one reused buffer;
+ * a line longer than the limit is skipped to its end and flagged as overflow.
+ */
+class NdjsonLineReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final int maxLineBytes;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private final byte[] line;
+
+    private int chunkPosition;
+    private int chunkLength;
+    private boolean endOfStream;
+
+    private int length;
+    private boolean overflow;
+    private long lineNumber;
+
+    NdjsonLineReader(InputStream in, int maxLineBytes) {
+        this.in = in;
+        this.maxLineBytes = maxLineBytes;
+        this.line = new byte[maxLineBytes];
+    }
+
+    /**
+     * Advance to the next line
+     *
+     * @return false once the stream is exhausted
+     */
+    boolean next() throws IOException {
+        length = 0;
+        overflow = false;
+        boolean sawData = false;
+
+        while (true) {
+            if (chunkPosition == chunkLength) {
+                if (endOfStream || !fill()) {
+                    if (!sawData) {
+                        return false;
+                    }
+                    break;
+                }
+            }
+
+            byte b = chunk[chunkPosition++];
+            sawData = true;
+            if (b == '\n') {
+                break;
+            }
+            if (length < maxLineBytes) {
+                line[length++] = b;
+            } else {
+                overflow = true;
+            }
+        }
+
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        lineNumber++;
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(chunk, 0, chunk.length);
+        if (read <= 0) {
+            endOfStream = true;
+            return false;
+        }
+        chunkPosition = 0;
+        chunkLength = read;
+        return true;
+    }
+
+    byte[] getBuffer() {
+        return line;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * @return 1-based number of the current line
+     */
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    boolean isOverflow() {
+        return overflow;
+    }
+
+    boolean isBlank() {
+        for (int i = 0; i < length; i++) {
+            byte b = line[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,97 @@
+package com.riskguard.service.intern;
+
+import com.riskguard.domain.MonitoredEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Key Dictionary Service
+ *
+ * Interns the strings the scoring path keys its state by (entity ids, IP
+ * addresses, departments) into dense int ids once at ingest. In-memory
+ * state can then be held in int-keyed maps and repeated values share one
+ * String instance. Ids are local to this node and must not be persisted or
+ * sent to peers.
+ */
+@Service
+public class KeyDictionaryService {
+
+    private static final int ENTITY_TYPES = MonitoredEntity.EntityType.values().length;
+
+    private final StringDictionary entities;
+    private final StringDictionary addresses;
+    private final StringDictionary departments;
+
+    public KeyDictionaryService(@Value("${risk.dictionary.max-entities:1000000}") int maxEntities,
+                                @Value("${risk.dictionary.max-addresses:1000000}") int maxAddresses,
+                                @Value("${risk.dictionary.max-departments:10000}") int maxDepartments) {
+        this.entities = new StringDictionary(maxEntities);
+        this.addresses = new StringDictionary(maxAddresses);
+        this.departments = new StringDictionary(maxDepartments);
+    }
+
+    /**
+     * @return the entity's id, or {@link StringDictionary#NOT_FOUND} if the dictionary is full
+     */
+    public int entityKey(String entityId) {
+        return entities.intern(entityId);
+    }
+
+    public String entityId(int entityKey) {
+        return entities.valueOf(entityKey);
+    }
+
+    public String canonicalEntityId(String entityId) {
+        return entities.canonical(entityId);
+    }
+
+    /**
+     * Id of an IP address or hostname
+     *
+     * @return the id, or {@link StringDictionary#NOT_FOUND} if the dictionary is full
+     */
+    public int addressKey(String address) {
+        return addresses.intern(address);
+    }
+
+    /**
+     * Id of an address seen before, without assigning one
+     */
+    public int findAddressKey(String address) {
+        return addresses.lookup(address);
+    }
+
+    public String canonicalAddress(String address) {
+        return addresses.canonical(address);
+    }
+
+    public String canonicalDepartment(String department) {
+        return departments.canonical(department);
+    }
+
+    /**
+     * Model key for an entity's type and department, replacing the
+     * "TYPE_department" string. Entities without a department, or whose
+     * department could not be interned, share the type's default model.
+     */
+    public int modelKey(MonitoredEntity entity) {
+        int department = departments.intern(entity.getDepartment());
+        return (department + 1) * ENTITY_TYPES + entity.getType().ordinal();
+    }
+
+    /**
+     * Readable form of a model key, for logs
+     */
+    public String modelName(int modelKey) {
+        MonitoredEntity.EntityType type = MonitoredEntity.EntityType.values()[modelKey % ENTITY_TYPES];
+        return type.name() + "_" + departments.valueOf(modelKey / ENTITY_TYPES - 1);
+    }
+
+    public int entityCount() {
+        return entities.size();
+    }
+
+    public int addressCount() {
+        return addresses.size();
+    }
+}
@@ -0,0 +1,88 @@
+package com.riskguard.service.intern;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only, thread-safe mapping between strings and dense int ids.
+ * Ids start at 0 and are never reused, so they can index arrays or serve as
+ * primitive map keys. Lookups by id are a plain array read. Once the
+ * dictionary holds maxSize strings, new strings are no longer interned.
+ */
+public class StringDictionary {
+
+    public static final int NOT_FOUND = -1;
+
+    private final int maxSize;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private volatile int size;
+
+    public StringDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Id of the string, assigning the next free id on first sight
+     *
+     * @return the id, or {@link #NOT_FOUND} for null or when the dictionary is full
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return NOT_FOUND;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        id = ids.computeIfAbsent(value, this::append);
+        return id != null ? id : NOT_FOUND;
+    }
+
+    /**
+     * Id of the string without assigning one
+     */
+    public int lookup(String value) {
+        if (value == null) {
+            return NOT_FOUND;
+        }
+        Integer id = ids.get(value);
+        return id != null ? id : NOT_FOUND;
+    }
+
+    /**
+     * String for an id returned by {@link #intern}
+     */
+    public String valueOf(int id) {
+        String[] current = values;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * The dictionary's instance of an equal string, so repeated values share
+     * one object; returns the argument unchanged if it cannot be interned
+     */
+    public String canonical(String value) {
+        int id = intern(value);
+        return id == NOT_FOUND ? value : values[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private synchronized Integer append(String value) {
+        if (size >= maxSize) {
+            return null;
+        }
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[size] = value;
+        // Publish the array after the slot is written so readers never see a hole
+        values = current;
+        return size++;
+    }
+}
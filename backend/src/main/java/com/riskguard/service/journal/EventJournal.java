@@ -0,0 +1,270 @@
+package com.riskguard.service.journal;
+
+import com.riskguard.service.ingest.BinaryEventCodec;
+import com.riskguard.service.ingest.IngestEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Event Journal
+ *
+ * Append-only log of ingested event batches and score changes, written to
+ * memory-mapped segment files that roll over at a fixed size. Appends are a
+ * copy into the page cache, so a process crash loses nothing already
+ * appended; pages are forced to disk every flush interval to bound the loss
+ * on power failure. Together with the periodic snapshots taken by
+ * {@link StateSnapshotService} it rebuilds in-memory scoring state on
+ * startup without querying risk_events.
+ */
+@Service
+public class EventJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventJournal.class);
+
+    public static final byte EVENTS = 1;
+    public static final byte SCORE = 2;
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    @Value("${risk.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${risk.journal.directory:journal}")
+    private Path directory;
+
+    @Value("${risk.journal.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    // firstSequence -> file, oldest first; the last one is the active segment
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private JournalSegment active;
+    private long lastSequence;
+
+    @PostConstruct
+    synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().matches("\\d{20}\\" + SEGMENT_SUFFIX))
+                    .forEach(file -> segments.put(firstSequenceOf(file), file));
+        }
+
+        if (segments.isEmpty()) {
+            roll(1, 0);
+        } else {
+            active = JournalSegment.open(segments.lastEntry().getValue(), true);
+            lastSequence = active.getLastSequence();
+        }
+        logger.info("Opened event journal in {} at sequence {} ({} segments)",
+                directory.toAbsolutePath(), lastSequence, segments.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sequence of the last appended record, 0 if the journal is empty
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Append a batch of stored events in the binary event format
+     */
+    public void appendEvents(List<IngestEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        append(EVENTS, ByteBuffer.wrap(BinaryEventCodec.encode(events, ZoneId.systemDefault())));
+    }
+
+    /**
+     * Append a score change: entity id, score and its epoch-millis timestamp
+     */
+    public void appendScore(String entityId, double score, long updatedAtMillis) {
+        if (!enabled) {
+            return;
+        }
+        byte[] id = entityId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(4 + id.length + 16);
+        payload.putInt(id.length).put(id).putDouble(score).putLong(updatedAtMillis).flip();
+        append(SCORE, payload);
+    }
+
+    /**
+     * Decode a payload written by {@link #appendScore}
+     */
+    public static ScoreRecord decodeScore(ByteBuffer payload) {
+        byte[] id = new byte[payload.getInt()];
+        payload.get(id);
+        return new ScoreRecord(new String(id, StandardCharsets.UTF_8), payload.getDouble(), payload.getLong());
+    }
+
+    private synchronized void append(byte type, ByteBuffer payload) {
+        if (active == null) {
+            return; // Closed during shutdown
+        }
+        long sequence = lastSequence + 1;
+        if (!active.append(type, sequence, payload.duplicate())) {
+            roll(sequence, payload.remaining());
+            active.append(type, sequence, payload);
+        }
+        lastSequence = sequence;
+    }
+
+    /**
+     * Continue numbering after the given sequence, e.g. that of a snapshot
+     * newer than the journal itself because segments were removed by hand
+     */
+    public synchronized void skipTo(long sequence) {
+        if (enabled && sequence > lastSequence) {
+            roll(sequence + 1, 0);
+            lastSequence = sequence;
+        }
+    }
+
+    /**
+     * Hand every record after the given sequence to the handler, in order.
+     * Holds the append lock throughout; meant for startup recovery.
+     */
+    public synchronized long replay(long afterSequence, JournalRecordHandler handler) {
+        if (!enabled) {
+            return 0;
+        }
+
+        long[] replayed = new long[1];
+        JournalRecordHandler filter = (type, sequence, payload) -> {
+            if (sequence > afterSequence) {
+                handler.handle(type, sequence, payload);
+                replayed[0]++;
+            }
+        };
+
+        for (Map.Entry<Long, Path> entry : segments.entrySet()) {
+            Long next = segments.higherKey(entry.getKey());
+            if (next != null && next - 1 <= afterSequence) {
+                continue;
+            }
+            if (next == null) {
+                active.read(filter);
+                continue;
+            }
+            try (JournalSegment segment = JournalSegment.open(entry.getValue(), false)) {
+                segment.read(filter);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warn("Skipping unreadable journal segment {}: {}", entry.getValue(), e.getMessage());
+            }
+        }
+        return replayed[0];
+    }
+
+    /**
+     * Delete closed segments whose records all have a sequence up to the
+     * given one; the active segment is always kept
+     */
+    public synchronized void truncate(long sequence) {
+        if (!enabled) {
+            return;
+        }
+
+        List<Long> obsolete = new ArrayList<>();
+        for (Long first : segments.headMap(segments.lastKey()).keySet()) {
+            if (segments.higherKey(first) - 1 <= sequence) {
+                obsolete.add(first);
+            }
+        }
+        for (Long first : obsolete) {
+            try {
+                Files.deleteIfExists(segments.remove(first));
+            } catch (IOException e) {
+                logger.warn("Could not delete journal segment starting at {}", first, e);
+            }
+        }
+        if (!obsolete.isEmpty()) {
+            logger.debug("Removed {} journal segments up to sequence {}", obsolete.size(), sequence);
+        }
+    }
+
+    /**
+     * Force appended records to disk
+     */
+    @Scheduled(fixedDelayString = "${risk.journal.flush-interval:PT1S}")
+    public void flush() {
+        JournalSegment segment;
+        synchronized (this) {
+            segment = active;
+        }
+        // Outside the lock so appends are not held up by disk latency
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        if (active != null) {
+            active.force();
+            active.close();
+            active = null;
+        }
+    }
+
+    /**
+     * Close the active segment and start a new one, sized for at least one
+     * record of the given payload length
+     */
+    private void roll(long firstSequence, int payloadLength) {
+        int size = (int) Math.max(segmentSize.toBytes(),
+                JournalSegment.HEADER_SIZE + JournalSegment.RECORD_OVERHEAD + payloadLength + 4L);
+        Path file = directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+        try {
+            if (active != null) {
+                active.force();
+                active.close();
+                // Still empty but too small for the record; a larger one replaces it
+                if (active.getFirstSequence() == firstSequence) {
+                    Files.delete(file);
+                }
+            }
+            active = JournalSegment.create(file, firstSequence, size);
+            segments.put(firstSequence, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create journal segment " + file, e);
+        }
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Score change read back from the journal
+     */
+    public record ScoreRecord(String entityId, double score, long updatedAtMillis) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.riskguard.service.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives journal records in sequence order. The payload is a read-only
+ * view into the mapped segment and is only valid during the call.
+ */
+@FunctionalInterface
+public interface JournalRecordHandler {
+
+    void handle(byte type, long sequence, ByteBuffer payload);
+}
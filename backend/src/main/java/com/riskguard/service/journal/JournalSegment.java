@@ -0,0 +1,182 @@
+package com.riskguard.service.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped journal file
+ *
+ * <pre>
+ * segment := 'R' 'J' version:u8 pad:u8 firstSequence:i64 pad:i32 record* 0:i32
+ * record  := length:i32 crc:i32 type:u8 sequence:i64 payload{length}
+ * </pre>
+ *
+ * The CRC covers type, sequence and payload. Files are preallocated and zero
+ * filled, so a zero length marks the end. A record with a bad CRC or out of
+ * sequence is a torn write from a crash and ends the segment as well.
+ * Not thread-safe; {@link EventJournal} serializes access.
+ */
+final class JournalSegment implements AutoCloseable {
+
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_OVERHEAD = 4 + 4 + 1 + 8;
+
+    private static final byte MAGIC_0 = 'R';
+    private static final byte MAGIC_1 = 'J';
+    private static final byte VERSION = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long firstSequence;
+    private long lastSequence;
+    private final CRC32 crc = new CRC32();
+
+    private JournalSegment(Path path, FileChannel channel, MappedByteBuffer buffer, long firstSequence) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.firstSequence = firstSequence;
+        this.lastSequence = firstSequence - 1;
+    }
+
+    /**
+     * Create and map a new segment of the given size
+     */
+    static JournalSegment create(Path path, long firstSequence, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte) 0).putLong(firstSequence).putInt(0);
+        return new JournalSegment(path, channel, buffer, firstSequence);
+    }
+
+    /**
+     * Map an existing segment; a writable segment is positioned after its
+     * last intact record so appends continue there
+     *
+     * @throws IllegalArgumentException if the file is not a journal segment
+     */
+    static JournalSegment open(Path path, boolean writable) throws IOException {
+        FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Not a journal segment: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.get() != MAGIC_0 || buffer.get() != MAGIC_1 || buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Not a journal segment: " + path);
+            }
+            buffer.get();
+            long firstSequence = buffer.getLong();
+            buffer.getInt();
+
+            JournalSegment segment = new JournalSegment(path, channel, buffer, firstSequence);
+            if (writable) {
+                segment.lastSequence = scan(buffer, firstSequence, segment.crc, (type, sequence, payload) -> { });
+            }
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append a record, or return false if it does not fit
+     */
+    boolean append(byte type, long sequence, ByteBuffer payload) {
+        int length = payload.remaining();
+        // Keep room for the terminating zero length
+        if (buffer.remaining() < RECORD_OVERHEAD + length + 4) {
+            return false;
+        }
+
+        int start = buffer.position();
+        buffer.position(start + 8);
+        buffer.put(type).putLong(sequence).put(payload);
+
+        crc.reset();
+        crc.update(buffer.slice(start + 8, 1 + 8 + length));
+        buffer.putInt(start + 4, (int) crc.getValue());
+        // Terminator first and length last, so a reader never runs into a
+        // partial record or stale bytes left behind a torn write
+        buffer.putInt(buffer.position(), 0);
+        buffer.putInt(start, length);
+
+        lastSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Hand every intact record to the handler, from the start of the segment
+     */
+    void read(JournalRecordHandler handler) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_SIZE);
+        scan(view, firstSequence, new CRC32(), handler);
+    }
+
+    /**
+     * Walk records from the view's position, leaving it after the last
+     * intact one; returns that record's sequence
+     */
+    private static long scan(ByteBuffer view, long firstSequence, CRC32 crc, JournalRecordHandler handler) {
+        long expected = firstSequence;
+        while (view.remaining() >= RECORD_OVERHEAD) {
+            int start = view.position();
+            int length = view.getInt(start);
+            if (length <= 0 || length > view.remaining() - RECORD_OVERHEAD) {
+                break;
+            }
+            int stored = view.getInt(start + 4);
+            byte type = view.get(start + 8);
+            long sequence = view.getLong(start + 9);
+            crc.reset();
+            crc.update(view.slice(start + 8, 1 + 8 + length));
+            if ((int) crc.getValue() != stored || sequence != expected) {
+                break;
+            }
+
+            handler.handle(type, sequence, view.slice(start + RECORD_OVERHEAD, length).asReadOnlyBuffer());
+            view.position(start + RECORD_OVERHEAD + length);
+            expected++;
+        }
+        return expected - 1;
+    }
+
+    /**
+     * Write dirty pages to disk
+     */
+    void force() {
+        buffer.force();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Sequence of the last record of a writable segment, or firstSequence - 1 if empty
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
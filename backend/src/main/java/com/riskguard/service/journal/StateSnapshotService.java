@@ -0,0 +1,291 @@
+package com.riskguard.service.journal;
+
+import com.riskguard.service.ScoreDecayService;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.ingest.BinaryEventCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * State Snapshot Service
+ *
+ * Periodically writes the in-memory scoring state (cardinality sketches and
+ * pending decay wake-ups) to a snapshot file tagged with the journal
+ * sequence it covers, then drops journal segments no snapshot needs. On
+ * startup the newest readable snapshot is loaded and the journal tail after
+ * it is replayed, so a restarted node is warm without reading risk_events.
+ *
+ * Snapshots are taken while ingestion continues, so state captured after
+ * the tagged sequence is replayed again on recovery. That is harmless:
+ * sketches ignore values they have already seen and a replayed score only
+ * reschedules its own wake-up.
+ *
+ * A snapshot is written to a temporary file and forced to disk, renamed
+ * into place and the rename forced too; only then are older snapshots and
+ * the journal segments they needed deleted. A crash at any point leaves
+ * either the new snapshot or the previous one with its journal.
+ */
+@Service
+public class StateSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StateSnapshotService.class);
+
+    private static final int MAGIC = 0x52475353; // "RGSS"
+    private static final int VERSION = 1;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    // The previous snapshot is kept as a fallback, with the journal it needs
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    @Value("${risk.journal.directory:journal}")
+    private Path directory;
+
+    private final EventJournal journal;
+    private final CardinalitySketchService cardinalitySketchService;
+    private final ScoreDecayService scoreDecayService;
+    private final ClusterService clusterService;
+
+    public StateSnapshotService(EventJournal journal, CardinalitySketchService cardinalitySketchService,
+                                ScoreDecayService scoreDecayService, ClusterService clusterService) {
+        this.journal = journal;
+        this.cardinalitySketchService = cardinalitySketchService;
+        this.scoreDecayService = scoreDecayService;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Load the newest snapshot and replay the journal after it, before
+     * ingestion starts
+     */
+    @PostConstruct
+    void recover() throws IOException {
+        if (!journal.isEnabled()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long sequence = 0;
+        for (Path snapshot : listSnapshots()) {
+            try {
+                sequence = load(snapshot);
+                break;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping unreadable snapshot {}: {}", snapshot, e.getMessage());
+            }
+        }
+
+        journal.skipTo(sequence);
+        long[] events = new long[1];
+        long records = journal.replay(sequence, (type, recordSequence, payload) -> {
+            if (type == EventJournal.EVENTS) {
+                // Entities whose shard moved while this node was down are rebuilt by their new owner
+                events[0] += BinaryEventCodec.decode(payload, ZoneId.systemDefault(), ingestEvent -> {
+                    if (clusterService.isLocal(ingestEvent.getEntityId())) {
+                        cardinalitySketchService.record(ingestEvent.getEntityId(), ingestEvent.getEvent());
+                    }
+                });
+            } else if (type == EventJournal.SCORE) {
+                EventJournal.ScoreRecord score = EventJournal.decodeScore(payload);
+                scoreDecayService.scheduleNextCrossing(score.entityId(), score.score(), score.updatedAtMillis());
+            }
+        });
+
+        logger.info("Recovered state from snapshot at sequence {} and {} journal records ({} events) in {} ms",
+                sequence, records, events[0], System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Write a snapshot of the current state and drop journal segments that
+     * the kept snapshots no longer need
+     */
+    @Scheduled(fixedDelayString = "${risk.journal.snapshot-interval:PT5M}",
+            initialDelayString = "${risk.journal.snapshot-interval:PT5M}")
+    public synchronized void snapshot() {
+        if (!journal.isEnabled()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        // Read before capturing, so everything after it is in the journal
+        long sequence = journal.getLastSequence();
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        try {
+            int entities = write(temp, sequence);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+
+            List<Path> snapshots = listSnapshots();
+            for (Path old : snapshots.subList(Math.min(SNAPSHOTS_KEPT, snapshots.size()), snapshots.size())) {
+                Files.deleteIfExists(old);
+            }
+            journal.truncate(sequenceOf(snapshots.get(Math.min(SNAPSHOTS_KEPT, snapshots.size()) - 1)));
+
+            logger.debug("Wrote snapshot at sequence {} with sketches for {} entities in {} ms",
+                    sequence, entities, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            logger.error("Error writing state snapshot {}", target, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        snapshot();
+    }
+
+    /**
+     * <pre>
+     * snapshot := magic:i32 version:i32 sequence:i64 createdAt:i64
+     *             entityCount:i32 (entityId:utf (bucketCount:i32 (bucketId:i64 length:i32 bytes){bucketCount}){dimensions})*
+     *             wakeupCount:i32 (entityId:utf dueMillis:i64)*
+     *             crc32:i64
+     * </pre>
+     */
+    private int write(Path file, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            out.writeLong(System.currentTimeMillis());
+
+            List<String> entityIds = cardinalitySketchService.entityIds();
+            out.writeInt(entityIds.size());
+            for (String entityId : entityIds) {
+                out.writeUTF(entityId);
+                for (CardinalitySketchService.Dimension dimension : CardinalitySketchService.Dimension.values()) {
+                    Map<Long, byte[]> buckets = cardinalitySketchService.export(entityId, dimension);
+                    out.writeInt(buckets.size());
+                    for (Map.Entry<Long, byte[]> bucket : buckets.entrySet()) {
+                        out.writeLong(bucket.getKey());
+                        out.writeInt(bucket.getValue().length);
+                        out.write(bucket.getValue());
+                    }
+                }
+            }
+
+            Map<String, Long> crossings = scoreDecayService.pendingCrossings();
+            out.writeInt(crossings.size());
+            for (Map.Entry<String, Long> crossing : crossings.entrySet()) {
+                out.writeUTF(crossing.getKey());
+                out.writeLong(crossing.getValue());
+            }
+
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            // On disk before the rename makes it the newest snapshot
+            channel.force(true);
+            return entityIds.size();
+        }
+    }
+
+    /**
+     * Make the rename durable before the journal it replaces is deleted
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the rename itself is still atomic
+            logger.debug("Could not force snapshot directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Verify a snapshot and apply it; returns the journal sequence it covers
+     */
+    private long load(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 8) {
+            throw new IOException("Truncated snapshot");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong()) {
+            throw new IOException("Checksum mismatch");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a snapshot or unsupported version");
+        }
+        long sequence = in.readLong();
+        in.readLong();
+
+        int entities = in.readInt();
+        for (int i = 0; i < entities; i++) {
+            String entityId = in.readUTF();
+            for (CardinalitySketchService.Dimension dimension : CardinalitySketchService.Dimension.values()) {
+                int count = in.readInt();
+                Map<Long, byte[]> buckets = new HashMap<>(count * 2);
+                for (int b = 0; b < count; b++) {
+                    long bucketId = in.readLong();
+                    byte[] sketch = new byte[in.readInt()];
+                    in.readFully(sketch);
+                    buckets.put(bucketId, sketch);
+                }
+                if (clusterService.isLocal(entityId)) {
+                    cardinalitySketchService.merge(entityId, dimension, buckets);
+                }
+            }
+        }
+
+        int crossings = in.readInt();
+        for (int i = 0; i < crossings; i++) {
+            scoreDecayService.restoreCrossing(in.readUTF(), in.readLong());
+        }
+        return sequence;
+    }
+
+    /**
+     * Snapshot files, newest first
+     */
+    private List<Path> listSnapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString()
+                            .matches(SNAPSHOT_PREFIX + "\\d{20}\\" + SNAPSHOT_SUFFIX))
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,21 @@
+package com.riskguard.service.ml;
+
+/**
+ * Anomaly Model
+ *
+ * Scores feature vectors on the isolation forest scale: close to 1 for
+ * anomalies, 0.5 or below for normal points and exactly 0.5 when the model
+ * has not seen enough data to tell.
+ */
+public interface AnomalyModel {
+
+    double score(double[] point);
+
+    /**
+     * Score and add to attribution how much each feature did to isolate the
+     * point, as relative weights; models that cannot tell add nothing
+     */
+    default double score(double[] point, double[] attribution) {
+        return score(point);
+    }
+}
@@ -0,0 +1,278 @@
+package com.riskguard.service.ml;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Isolation Forest
+ *
+ * Anomaly detector after Liu, Ting and Zhou: each tree isolates points of a
+ * random subsample by recursive random splits, and anomalies end up on
+ * short paths. All trees are stored in flat primitive arrays indexed by
+ * node, so scoring walks arrays without touching objects.
+ *
+ * Training is deterministic for a given seed: per-tree seeds are drawn up
+ * front and every tree draws its subsample and splits from its own
+ * generator, so the result does not depend on how trees are scheduled
+ * across threads. Instances are immutable and safe to share.
+ */
+public final class IsolationForest implements AnomalyModel {
+
+    /** Untrained forest; scores every point as neither normal nor anomalous */
+    public static final IsolationForest EMPTY =
+            new IsolationForest(new int[0], new int[0], new double[0], new int[0], new int[0], 0, 0);
+
+    private static final double EULER_GAMMA = 0.5772156649;
+    private static final int LEAF = -1;
+
+    private final int[] roots;
+    // Per node: split feature or LEAF; split value, or for leaves the
+    // expected remaining path length of the points that ended there
+    private final int[] feature;
+    private final double[] value;
+    private final int[] left;
+    private final int[] right;
+    private final double normalizer;
+    private final int sampleSize;
+
+    private IsolationForest(int[] roots, int[] feature, double[] value, int[] left, int[] right,
+                            double normalizer, int sampleSize) {
+        this.roots = roots;
+        this.feature = feature;
+        this.value = value;
+        this.left = left;
+        this.right = right;
+        this.normalizer = normalizer;
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public double score(double[] point) {
+        return score(point, null);
+    }
+
+    /**
+     * Score, crediting every split on the point's path to its feature;
+     * shallow splits isolate more and weigh 1 / depth
+     */
+    @Override
+    public double score(double[] point, double[] attribution) {
+        if (roots.length == 0 || normalizer == 0) {
+            return 0.5;
+        }
+
+        double total = 0.0;
+        for (int root : roots) {
+            int node = root;
+            int depth = 0;
+            while (feature[node] != LEAF) {
+                depth++;
+                if (attribution != null) {
+                    attribution[feature[node]] += 1.0 / depth;
+                }
+                node = point[feature[node]] < value[node] ? left[node] : right[node];
+            }
+            total += depth + value[node];
+        }
+        return Math.pow(2.0, -(total / roots.length) / normalizer);
+    }
+
+    public int getTreeCount() {
+        return roots.length;
+    }
+
+    public int getNodeCount() {
+        return feature.length;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Train a forest of the given number of trees, each on a reservoir sample
+     * of at most maxSamples rows, building trees in parallel on the pool
+     */
+    public static IsolationForest train(List<double[]> rows, int trees, int maxSamples, long seed,
+                                        ForkJoinPool pool) {
+        if (rows.isEmpty() || trees <= 0) {
+            return EMPTY;
+        }
+
+        int sampleSize = Math.min(maxSamples, rows.size());
+        int heightLimit = (int) Math.ceil(Math.log(Math.max(2, sampleSize)) / Math.log(2));
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long[] treeSeeds = new long[trees];
+        for (int i = 0; i < trees; i++) {
+            treeSeeds[i] = seeds.nextLong();
+        }
+
+        TreeBuilder[] built = new TreeBuilder[trees];
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, trees).parallel().forEach(i -> {
+            TreeBuilder builder = new TreeBuilder(rows, new SplittableRandom(treeSeeds[i]), heightLimit);
+            builder.build(reservoirSample(rows.size(), sampleSize, builder.random));
+            built[i] = builder;
+        })));
+
+        return flatten(built, averagePathLength(sampleSize), sampleSize);
+    }
+
+    /**
+     * Average path length of an unsuccessful search in a binary search tree
+     * of n points, used to normalize path lengths
+     */
+    static double averagePathLength(int n) {
+        if (n <= 1) {
+            return 0.0;
+        }
+        if (n == 2) {
+            return 1.0;
+        }
+        return 2.0 * (Math.log(n - 1.0) + EULER_GAMMA) - 2.0 * (n - 1.0) / n;
+    }
+
+    /**
+     * Algorithm R: uniform sample of k row indexes out of n in one pass
+     */
+    private static int[] reservoirSample(int n, int k, SplittableRandom random) {
+        int[] sample = new int[k];
+        for (int i = 0; i < k; i++) {
+            sample[i] = i;
+        }
+        for (int i = k; i < n; i++) {
+            int j = random.nextInt(i + 1);
+            if (j < k) {
+                sample[j] = i;
+            }
+        }
+        return sample;
+    }
+
+    private static IsolationForest flatten(TreeBuilder[] trees, double normalizer, int sampleSize) {
+        int nodes = 0;
+        for (TreeBuilder tree : trees) {
+            nodes += tree.size;
+        }
+
+        int[] roots = new int[trees.length];
+        int[] feature = new int[nodes];
+        double[] value = new double[nodes];
+        int[] left = new int[nodes];
+        int[] right = new int[nodes];
+
+        int offset = 0;
+        for (int t = 0; t < trees.length; t++) {
+            TreeBuilder tree = trees[t];
+            roots[t] = offset;
+            System.arraycopy(tree.feature, 0, feature, offset, tree.size);
+            System.arraycopy(tree.value, 0, value, offset, tree.size);
+            for (int i = 0; i < tree.size; i++) {
+                left[offset + i] = tree.feature[i] == LEAF ? 0 : tree.left[i] + offset;
+                right[offset + i] = tree.feature[i] == LEAF ? 0 : tree.right[i] + offset;
+            }
+            offset += tree.size;
+        }
+        return new IsolationForest(roots, feature, value, left, right, normalizer, sampleSize);
+    }
+
+    /**
+     * Grows one tree into growable node arrays; the root is node 0
+     */
+    private static final class TreeBuilder {
+        final List<double[]> rows;
+        final SplittableRandom random;
+        final int heightLimit;
+        final int dimensions;
+
+        int size;
+        int[] feature = new int[64];
+        double[] value = new double[64];
+        int[] left = new int[64];
+        int[] right = new int[64];
+
+        TreeBuilder(List<double[]> rows, SplittableRandom random, int heightLimit) {
+            this.rows = rows;
+            this.random = random;
+            this.heightLimit = heightLimit;
+            this.dimensions = rows.get(0).length;
+        }
+
+        void build(int[] sample) {
+            build(sample, 0, sample.length, 0);
+        }
+
+        private int build(int[] sample, int from, int to, int depth) {
+            int node = allocate();
+            int count = to - from;
+            if (depth >= heightLimit || count <= 1) {
+                return leaf(node, count);
+            }
+
+            // Random feature that still varies within this node
+            int splitFeature = -1;
+            double min = 0;
+            double max = 0;
+            for (int attempt = 0; attempt < dimensions && splitFeature < 0; attempt++) {
+                int f = random.nextInt(dimensions);
+                min = Double.POSITIVE_INFINITY;
+                max = Double.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    double v = rows.get(sample[i])[f];
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                if (max > min) {
+                    splitFeature = f;
+                }
+            }
+            if (splitFeature < 0) {
+                return leaf(node, count);
+            }
+
+            double split = min + random.nextDouble() * (max - min);
+            if (split <= min) {
+                split = Math.nextUp(min);
+            }
+
+            // Partition in place: values below the split to the left
+            int mid = from;
+            for (int i = from; i < to; i++) {
+                if (rows.get(sample[i])[splitFeature] < split) {
+                    int tmp = sample[i];
+                    sample[i] = sample[mid];
+                    sample[mid++] = tmp;
+                }
+            }
+
+            feature[node] = splitFeature;
+            value[node] = split;
+            int leftChild = build(sample, from, mid, depth + 1);
+            int rightChild = build(sample, mid, to, depth + 1);
+            left[node] = leftChild;
+            right[node] = rightChild;
+            return node;
+        }
+
+        private int leaf(int node, int count) {
+            feature[node] = LEAF;
+            value[node] = averagePathLength(count);
+            return node;
+        }
+
+        private int allocate() {
+            if (size == feature.length) {
+                int capacity = size * 2;
+                feature = Arrays.copyOf(feature, capacity);
+                value = Arrays.copyOf(value, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+            }
+            return size++;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.riskguard.service.ml;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random Cut Forest
+ *
+ * Streaming counterpart of {@link IsolationForest}, after the robust random
+ * cut forest of Guha et al. Every tree holds the same sliding window of the
+ * most recent points; {@link #update} inserts a point and forgets the
+ * oldest one, so the model follows drift without retraining. Cuts are
+ * drawn proportionally to the bounding box extent of each subtree, which
+ * lets points be inserted and removed in place.
+ *
+ * Per update the cost is one insertion and one deletion per tree, each
+ * proportional to the tree depth times the number of features. Memory is
+ * allocated up front for the full window and does not grow afterwards.
+ * Scores are the expected isolation depth of a point that is not inserted,
+ * normalized like the batch forest so both can back the same model key.
+ *
+ * {@link #snapshot} copies the forest for scoring against a fixed state
+ * while the original keeps learning.
+ */
+public final class RandomCutForest implements AnomalyModel {
+
+    private static final int NONE = -1;
+
+    private final int dimensions;
+    private final int windowSize;
+    // Ring buffer of the points in the window, indexed by slot
+    private final double[][] window;
+    private final Tree[] trees;
+    private final boolean readOnly;
+    private int nextSlot;
+    private int size;
+
+    public RandomCutForest(int treeCount, int windowSize, int dimensions, long seed) {
+        this.dimensions = dimensions;
+        this.windowSize = windowSize;
+        this.window = new double[windowSize][dimensions];
+        this.trees = new Tree[treeCount];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < treeCount; i++) {
+            trees[i] = new Tree(new SplittableRandom(seeds.nextLong()));
+        }
+        this.readOnly = false;
+    }
+
+    private RandomCutForest(RandomCutForest source) {
+        this.dimensions = source.dimensions;
+        this.windowSize = source.windowSize;
+        this.window = new double[windowSize][];
+        for (int i = 0; i < windowSize; i++) {
+            window[i] = source.window[i].clone();
+        }
+        this.trees = new Tree[source.trees.length];
+        for (int i = 0; i < trees.length; i++) {
+            trees[i] = new Tree(source.trees[i]);
+        }
+        this.readOnly = true;
+        this.nextSlot = source.nextSlot;
+        this.size = source.size;
+    }
+
+    /**
+     * Read-only copy of the current window and trees; scores like this
+     * forest does now, whatever it learns afterwards
+     */
+    public synchronized RandomCutForest snapshot() {
+        return new RandomCutForest(this);
+    }
+
+    @Override
+    public double score(double[] point) {
+        return score(point, null);
+    }
+
+    /**
+     * Score, crediting each dimension with its chance of cutting the point
+     * off along the path, weighted by 1 / depth like the batch forest
+     */
+    @Override
+    public synchronized double score(double[] point, double[] attribution) {
+        if (size < 2 || trees.length == 0) {
+            return 0.5;
+        }
+
+        double total = 0.0;
+        for (Tree tree : trees) {
+            total += tree.expectedDepth(point, attribution);
+        }
+        return Math.pow(2.0, -(total / trees.length) / IsolationForest.averagePathLength(size));
+    }
+
+    /**
+     * Add a point to the window, evicting the oldest once the window is full
+     */
+    public synchronized void update(double[] point) {
+        if (readOnly) {
+            throw new IllegalStateException("Snapshots of a forest do not learn");
+        }
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % windowSize;
+        if (size == windowSize) {
+            for (Tree tree : trees) {
+                tree.delete(slot);
+            }
+        } else {
+            size++;
+        }
+
+        System.arraycopy(point, 0, window[slot], 0, dimensions);
+        for (Tree tree : trees) {
+            tree.insert(slot);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * One random cut tree over the window, in flat node arrays with a free
+     * list. Leaves reference a window slot; identical points share a leaf.
+     */
+    private final class Tree {
+        private final SplittableRandom random;
+
+        // Per node: cut dimension or NONE for leaves, cut value (left is <=),
+        // links, and the number of points below
+        private final int[] cutDimension;
+        private final double[] cutValue;
+        private final int[] left;
+        private final int[] right;
+        private final int[] parent;
+        private final int[] mass;
+        // Leaves: slot of the point they hold
+        private final int[] point;
+        // Internal nodes: bounding box, node * dimensions + dimension
+        private final double[] min;
+        private final double[] max;
+        private final int[] leafOfSlot;
+
+        private int root = NONE;
+        private int free;
+
+        Tree(SplittableRandom random) {
+            int capacity = 2 * windowSize;
+            this.random = random;
+            this.cutDimension = new int[capacity];
+            this.cutValue = new double[capacity];
+            this.left = new int[capacity];
+            this.right = new int[capacity];
+            this.parent = new int[capacity];
+            this.mass = new int[capacity];
+            this.point = new int[capacity];
+            this.min = new double[capacity * dimensions];
+            this.max = new double[capacity * dimensions];
+            this.leafOfSlot = new int[windowSize];
+
+            for (int i = 0; i < capacity; i++) {
+                left[i] = i + 1 < capacity ? i + 1 : NONE;
+            }
+        }
+
+        /**
+         * Copy for a read-only snapshot, which draws no cuts
+         */
+        Tree(Tree source) {
+            this.random = null;
+            this.cutDimension = source.cutDimension.clone();
+            this.cutValue = source.cutValue.clone();
+            this.left = source.left.clone();
+            this.right = source.right.clone();
+            this.parent = source.parent.clone();
+            this.mass = source.mass.clone();
+            this.point = source.point.clone();
+            this.min = source.min.clone();
+            this.max = source.max.clone();
+            this.leafOfSlot = source.leafOfSlot.clone();
+            this.root = source.root;
+            this.free = source.free;
+        }
+
+        void insert(int slot) {
+            double[] x = window[slot];
+            if (root == NONE) {
+                root = newLeaf(slot, NONE);
+                return;
+            }
+
+            int node = root;
+            while (true) {
+                // Draw a cut over the box of the subtree extended by the point
+                double total = 0.0;
+                for (int d = 0; d < dimensions; d++) {
+                    total += Math.max(high(node, d), x[d]) - Math.min(low(node, d), x[d]);
+                }
+                if (total == 0.0) {
+                    // Same point as this leaf
+                    leafOfSlot[slot] = node;
+                    mass[node]++;
+                    for (int n = parent[node]; n != NONE; n = parent[n]) {
+                        mass[n]++;
+                    }
+                    return;
+                }
+
+                int dimension = NONE;
+                double cut = 0.0;
+                double r = random.nextDouble() * total;
+                for (int d = 0; d < dimensions; d++) {
+                    double from = Math.min(low(node, d), x[d]);
+                    double to = Math.max(high(node, d), x[d]);
+                    double span = to - from;
+                    if (span > 0.0) {
+                        dimension = d;
+                        cut = from + Math.min(r, span);
+                        if (r < span) {
+                            break;
+                        }
+                        r -= span;
+                    }
+                }
+                double upper = Math.max(high(node, dimension), x[dimension]);
+                if (cut >= upper) {
+                    cut = Math.nextDown(upper);
+                }
+
+                if (cut < low(node, dimension) || cut >= high(node, dimension)) {
+                    split(node, slot, dimension, cut);
+                    return;
+                }
+                node = x[cutDimension[node]] <= cutValue[node] ? left[node] : right[node];
+            }
+        }
+
+        /**
+         * Put a new branch in place of the node, with the node and a new leaf
+         * for the slot as its children, then grow the ancestors
+         */
+        private void split(int node, int slot, int dimension, double cut) {
+            double[] x = window[slot];
+            int above = parent[node];
+            int branch = allocate();
+            int leaf = newLeaf(slot, branch);
+
+            cutDimension[branch] = dimension;
+            cutValue[branch] = cut;
+            if (x[dimension] <= cut) {
+                left[branch] = leaf;
+                right[branch] = node;
+            } else {
+                left[branch] = node;
+                right[branch] = leaf;
+            }
+            mass[branch] = mass[node] + 1;
+            parent[branch] = above;
+            parent[node] = branch;
+            replaceChild(above, node, branch);
+            updateBox(branch);
+
+            for (int n = above; n != NONE; n = parent[n]) {
+                mass[n]++;
+                int offset = n * dimensions;
+                for (int d = 0; d < dimensions; d++) {
+                    min[offset + d] = Math.min(min[offset + d], x[d]);
+                    max[offset + d] = Math.max(max[offset + d], x[d]);
+                }
+            }
+        }
+
+        void delete(int slot) {
+            int leaf = leafOfSlot[slot];
+            leafOfSlot[slot] = NONE;
+
+            if (mass[leaf] > 1) {
+                // Other copies of the point remain; move the leaf to one of them
+                mass[leaf]--;
+                if (point[leaf] == slot) {
+                    for (int s = 0; s < windowSize; s++) {
+                        if (leafOfSlot[s] == leaf) {
+                            point[leaf] = s;
+                            break;
+                        }
+                    }
+                }
+                for (int n = parent[leaf]; n != NONE; n = parent[n]) {
+                    mass[n]--;
+                }
+                return;
+            }
+
+            int branch = parent[leaf];
+            release(leaf);
+            if (branch == NONE) {
+                root = NONE;
+                return;
+            }
+
+            // The sibling takes the place of the branch
+            int sibling = left[branch] == leaf ? right[branch] : left[branch];
+            int above = parent[branch];
+            parent[sibling] = above;
+            replaceChild(above, branch, sibling);
+            release(branch);
+
+            for (int n = above; n != NONE; n = parent[n]) {
+                mass[n]--;
+                updateBox(n);
+            }
+        }
+
+        /**
+         * Expected depth at which the point would be isolated if inserted,
+         * including the chance of being cut off above each node on its path
+         */
+        double expectedDepth(double[] x, double[] attribution) {
+            if (root == NONE) {
+                return 0.0;
+            }
+
+            double expected = 0.0;
+            double remaining = 1.0;
+            int depth = 0;
+            int node = root;
+            while (cutDimension[node] != NONE) {
+                double total = 0.0;
+                double outside = 0.0;
+                for (int d = 0; d < dimensions; d++) {
+                    double low = low(node, d);
+                    double high = high(node, d);
+                    double span = Math.max(high, x[d]) - Math.min(low, x[d]);
+                    total += span;
+                    outside += span - (high - low);
+                }
+                if (total > 0.0) {
+                    double separation = outside / total;
+                    expected += remaining * separation * (depth + 1);
+                    if (attribution != null && outside > 0.0) {
+                        for (int d = 0; d < dimensions; d++) {
+                            double span = Math.max(high(node, d), x[d]) - Math.min(low(node, d), x[d]);
+                            double beyond = span - (high(node, d) - low(node, d));
+                            attribution[d] += remaining * beyond / total / (depth + 1);
+                        }
+                    }
+                    remaining *= 1.0 - separation;
+                }
+                node = x[cutDimension[node]] <= cutValue[node] ? left[node] : right[node];
+                depth++;
+            }
+
+            boolean same = true;
+            double[] held = window[point[node]];
+            for (int d = 0; d < dimensions && same; d++) {
+                same = held[d] == x[d];
+            }
+            return expected + remaining * (same ? depth + IsolationForest.averagePathLength(mass[node]) : depth + 1);
+        }
+
+        private double low(int node, int d) {
+            return cutDimension[node] == NONE ? window[point[node]][d] : min[node * dimensions + d];
+        }
+
+        private double high(int node, int d) {
+            return cutDimension[node] == NONE ? window[point[node]][d] : max[node * dimensions + d];
+        }
+
+        private void updateBox(int node) {
+            int offset = node * dimensions;
+            for (int d = 0; d < dimensions; d++) {
+                min[offset + d] = Math.min(low(left[node], d), low(right[node], d));
+                max[offset + d] = Math.max(high(left[node], d), high(right[node], d));
+            }
+        }
+
+        private void replaceChild(int node, int child, int replacement) {
+            if (node == NONE) {
+                root = replacement;
+            } else if (left[node] == child) {
+                left[node] = replacement;
+            } else {
+                right[node] = replacement;
+            }
+        }
+
+        private int newLeaf(int slot, int above) {
+            int leaf = allocate();
+            cutDimension[leaf] = NONE;
+            point[leaf] = slot;
+            mass[leaf] = 1;
+            parent[leaf] = above;
+            leafOfSlot[slot] = leaf;
+            return leaf;
+        }
+
+        private int allocate() {
+            int node = free;
+            free = left[node];
+            return node;
+        }
+
+        private void release(int node) {
+            left[node] = free;
+            free = node;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.riskguard.service.ml;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Random Forest Classifier
+ *
+ * Binary random forest (Breiman) estimating the probability that a feature
+ * vector belongs to a confirmed incident. Trees are grown on bootstrap
+ * samples with Gini splits over a random subset of sqrt(features) features
+ * per node, and stored like {@link IsolationForest} in flat primitive
+ * arrays, so a prediction only walks arrays. Every node also keeps its
+ * share of positive samples, which splits a prediction into per-feature
+ * contributions along its path (Saabas) at no extra traversal.
+ *
+ * Training is parallel per tree and deterministic for a given seed.
+ * Instances are immutable and safe to share.
+ */
+public final class RandomForestClassifier {
+
+    private static final int LEAF = -1;
+
+    private final int[] roots;
+    // Per node: split feature or LEAF; threshold (left is below), or for
+    // leaves the fraction of positive samples
+    private final int[] feature;
+    private final double[] value;
+    private final int[] left;
+    private final int[] right;
+    private final double[] positiveShare;
+
+    private RandomForestClassifier(int[] roots, int[] feature, double[] value, int[] left, int[] right,
+                                   double[] positiveShare) {
+        this.roots = roots;
+        this.feature = feature;
+        this.value = value;
+        this.left = left;
+        this.right = right;
+        this.positiveShare = positiveShare;
+    }
+
+    /**
+     * Probability of the positive class, averaged over the trees
+     */
+    public double probability(double[] point) {
+        return probability(point, null);
+    }
+
+    /**
+     * Probability of the positive class, adding to attribution how much each
+     * feature moved it; the probability minus all contributions is the
+     * forest's prior
+     */
+    public double probability(double[] point, double[] attribution) {
+        if (roots.length == 0) {
+            return 0.5;
+        }
+
+        double total = 0.0;
+        for (int root : roots) {
+            int node = root;
+            while (feature[node] != LEAF) {
+                int next = point[feature[node]] < value[node] ? left[node] : right[node];
+                if (attribution != null) {
+                    attribution[feature[node]] += (positiveShare[next] - positiveShare[node]) / roots.length;
+                }
+                node = next;
+            }
+            total += value[node];
+        }
+        return total / roots.length;
+    }
+
+    /**
+     * Probabilities of many points, computed in parallel on the pool
+     */
+    public double[] probabilities(List<double[]> points, ForkJoinPool pool) {
+        double[] probabilities = new double[points.size()];
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, points.size()).parallel()
+                .forEach(i -> probabilities[i] = probability(points.get(i)))));
+        return probabilities;
+    }
+
+    public int getTreeCount() {
+        return roots.length;
+    }
+
+    public int getNodeCount() {
+        return feature.length;
+    }
+
+    /**
+     * Train on labelled rows, growing trees in parallel on the pool
+     */
+    public static RandomForestClassifier train(List<double[]> rows, boolean[] labels, int trees, int maxDepth,
+                                               int minSamplesSplit, long seed, ForkJoinPool pool) {
+        if (rows.isEmpty() || trees <= 0) {
+            return new RandomForestClassifier(new int[0], new int[0], new double[0], new int[0], new int[0],
+                    new double[0]);
+        }
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long[] treeSeeds = new long[trees];
+        for (int i = 0; i < trees; i++) {
+            treeSeeds[i] = seeds.nextLong();
+        }
+
+        TreeBuilder[] built = new TreeBuilder[trees];
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, trees).parallel().forEach(i -> {
+            TreeBuilder builder = new TreeBuilder(rows, labels, new SplittableRandom(treeSeeds[i]),
+                    maxDepth, Math.max(2, minSamplesSplit));
+            builder.build();
+            built[i] = builder;
+        })));
+
+        int nodes = 0;
+        for (TreeBuilder tree : built) {
+            nodes += tree.size;
+        }
+        int[] roots = new int[trees];
+        int[] feature = new int[nodes];
+        double[] value = new double[nodes];
+        int[] left = new int[nodes];
+        int[] right = new int[nodes];
+        double[] positiveShare = new double[nodes];
+
+        int offset = 0;
+        for (int t = 0; t < trees; t++) {
+            TreeBuilder tree = built[t];
+            roots[t] = offset;
+            System.arraycopy(tree.feature, 0, feature, offset, tree.size);
+            System.arraycopy(tree.value, 0, value, offset, tree.size);
+            System.arraycopy(tree.positiveShare, 0, positiveShare, offset, tree.size);
+            for (int i = 0; i < tree.size; i++) {
+                left[offset + i] = tree.feature[i] == LEAF ? 0 : tree.left[i] + offset;
+                right[offset + i] = tree.feature[i] == LEAF ? 0 : tree.right[i] + offset;
+            }
+            offset += tree.size;
+        }
+        return new RandomForestClassifier(roots, feature, value, left, right, positiveShare);
+    }
+
+    /**
+     * Grows one CART tree on a bootstrap sample; the root is node 0
+     */
+    private static final class TreeBuilder {
+        final List<double[]> rows;
+        final boolean[] labels;
+        final SplittableRandom random;
+        final int maxDepth;
+        final int minSamplesSplit;
+        final int dimensions;
+        final int candidates;
+        final int[] featureOrder;
+        // Scratch for the values of one node, split by class
+        final double[] positives;
+        final double[] negatives;
+
+        int size;
+        int[] feature = new int[64];
+        double[] value = new double[64];
+        int[] left = new int[64];
+        int[] right = new int[64];
+        double[] positiveShare = new double[64];
+
+        TreeBuilder(List<double[]> rows, boolean[] labels, SplittableRandom random, int maxDepth,
+                    int minSamplesSplit) {
+            this.rows = rows;
+            this.labels = labels;
+            this.random = random;
+            this.maxDepth = maxDepth;
+            this.minSamplesSplit = minSamplesSplit;
+            this.dimensions = rows.get(0).length;
+            this.candidates = Math.max(1, (int) Math.sqrt(dimensions));
+            this.featureOrder = IntStream.range(0, dimensions).toArray();
+            this.positives = new double[rows.size()];
+            this.negatives = new double[rows.size()];
+        }
+
+        void build() {
+            int n = rows.size();
+            int[] sample = new int[n];
+            for (int i = 0; i < n; i++) {
+                sample[i] = random.nextInt(n);
+            }
+            build(sample, 0, n, 0);
+        }
+
+        private int build(int[] sample, int from, int to, int depth) {
+            int node = allocate();
+            int count = to - from;
+            int positive = 0;
+            for (int i = from; i < to; i++) {
+                if (labels[sample[i]]) {
+                    positive++;
+                }
+            }
+            positiveShare[node] = count > 0 ? (double) positive / count : 0.5;
+            if (depth >= maxDepth || count < minSamplesSplit || positive == 0 || positive == count) {
+                return leaf(node, positive, count);
+            }
+
+            // Best Gini split over a random subset of features
+            int bestFeature = LEAF;
+            double bestThreshold = 0.0;
+            double bestImpurity = impurity(positive, count - positive);
+            for (int c = 0; c < candidates; c++) {
+                int pick = c + random.nextInt(dimensions - c);
+                int f = featureOrder[pick];
+                featureOrder[pick] = featureOrder[c];
+                featureOrder[c] = f;
+
+                int p = 0;
+                int q = 0;
+                for (int i = from; i < to; i++) {
+                    double v = rows.get(sample[i])[f];
+                    if (labels[sample[i]]) {
+                        positives[p++] = v;
+                    } else {
+                        negatives[q++] = v;
+                    }
+                }
+                Arrays.sort(positives, 0, p);
+                Arrays.sort(negatives, 0, q);
+
+                // Sweep distinct values in order, counting each class to the left
+                int i = 0;
+                int j = 0;
+                while (i < p || j < q) {
+                    double v = Math.min(i < p ? positives[i] : Double.POSITIVE_INFINITY,
+                            j < q ? negatives[j] : Double.POSITIVE_INFINITY);
+                    while (i < p && positives[i] == v) {
+                        i++;
+                    }
+                    while (j < q && negatives[j] == v) {
+                        j++;
+                    }
+                    if (i == p && j == q) {
+                        break;
+                    }
+                    double split = impurity(i, j) + impurity(p - i, q - j);
+                    if (split < bestImpurity) {
+                        double next = Math.min(i < p ? positives[i] : Double.POSITIVE_INFINITY,
+                                j < q ? negatives[j] : Double.POSITIVE_INFINITY);
+                        bestImpurity = split;
+                        bestFeature = f;
+                        bestThreshold = v + (next - v) / 2;
+                    }
+                }
+            }
+            if (bestFeature == LEAF) {
+                return leaf(node, positive, count);
+            }
+
+            int mid = from;
+            for (int i = from; i < to; i++) {
+                if (rows.get(sample[i])[bestFeature] < bestThreshold) {
+                    int tmp = sample[i];
+                    sample[i] = sample[mid];
+                    sample[mid++] = tmp;
+                }
+            }
+
+            feature[node] = bestFeature;
+            value[node] = bestThreshold;
+            int leftChild = build(sample, from, mid, depth + 1);
+            int rightChild = build(sample, mid, to, depth + 1);
+            left[node] = leftChild;
+            right[node] = rightChild;
+            return node;
+        }
+
+        /**
+         * Gini impurity weighted by the number of samples
+         */
+        private static double impurity(int positive, int negative) {
+            int n = positive + negative;
+            if (n == 0) {
+                return 0.0;
+            }
+            return n - ((double) positive * positive + (double) negative * negative) / n;
+        }
+
+        private int leaf(int node, int positive, int count) {
+            feature[node] = LEAF;
+            value[node] = count > 0 ? (double) positive / count : 0.5;
+            return node;
+        }
+
+        private int allocate() {
+            if (size == feature.length) {
+                int capacity = size * 2;
+                feature = Arrays.copyOf(feature, capacity);
+                value = Arrays.copyOf(value, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                positiveShare = Arrays.copyOf(positiveShare, capacity);
+            }
+            return size++;
+        }
+    }
+}
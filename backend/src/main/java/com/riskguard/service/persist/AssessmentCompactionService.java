@@ -0,0 +1,213 @@
+package com.riskguard.service.persist;
+
+import com.riskguard.domain.RiskAssessment.Resolution;
+import com.riskguard.service.cluster.ClusterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Assessment Compaction Service
+ *
+ * Bounds the growth of risk_assessments. Rows older than the raw retention
+ * are rolled up into one HOUR row per entity and hour, and HOUR rows older
+ * than the hourly retention into one DAY row per entity and day, keeping
+ * the last score and level plus min, max and sample count. Free-text
+ * summaries are dropped with the raw rows.
+ *
+ * Work is incremental: each run compacts a limited number of buckets,
+ * oldest first, and every bucket is processed in short transactions over
+ * ranges of entities that insert the rollups and delete their sources
+ * together, so a run can stop anywhere without losing or duplicating
+ * history. Only the node owning the job's shard runs it.
+ */
+@Service
+public class AssessmentCompactionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssessmentCompactionService.class);
+
+    private static final String SHARD_KEY = "assessment-compaction";
+
+    private static final String OLDEST = "SELECT MIN(created_at) FROM risk_assessments "
+            + "WHERE resolution = ? AND created_at < ?";
+
+    private static final String BUCKET_ENTITIES = "SELECT DISTINCT entity_id FROM risk_assessments "
+            + "WHERE resolution = ? AND created_at >= ? AND created_at < ? ORDER BY entity_id";
+
+    private static final String SELECT_SOURCE = "SELECT entity_id, score, risk_level, created_at, "
+            + "min_score, max_score, sample_count FROM risk_assessments "
+            + "WHERE resolution = ? AND created_at >= ? AND created_at < ? AND entity_id BETWEEN ? AND ? "
+            + "ORDER BY entity_id, created_at, id";
+
+    private static final String INSERT_ROLLUP = "INSERT INTO risk_assessments (entity_id, score, risk_level, "
+            + "resolution, min_score, max_score, sample_count, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_SOURCE = "DELETE FROM risk_assessments "
+            + "WHERE resolution = ? AND created_at >= ? AND created_at < ? AND entity_id BETWEEN ? AND ?";
+
+    @Value("${risk.assessments.compaction.enabled:true}")
+    private boolean enabled;
+
+    @Value("${risk.assessments.compaction.raw-retention:7d}")
+    private Duration rawRetention;
+
+    @Value("${risk.assessments.compaction.hourly-retention:90d}")
+    private Duration hourlyRetention;
+
+    @Value("${risk.assessments.compaction.max-buckets-per-run:48}")
+    private int maxBucketsPerRun;
+
+    @Value("${risk.assessments.compaction.entities-per-transaction:1000}")
+    private int entitiesPerTransaction;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterService clusterService;
+
+    public AssessmentCompactionService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                       ClusterService clusterService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Compact the oldest eligible buckets, raw rows first
+     */
+    @Scheduled(fixedDelayString = "${risk.assessments.compaction.interval:PT10M}")
+    public void compact() {
+        if (!enabled || !clusterService.isLocal(SHARD_KEY)) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int buckets = compactLevel(Resolution.RAW, Resolution.HOUR, now.minus(rawRetention), maxBucketsPerRun);
+        buckets += compactLevel(Resolution.HOUR, Resolution.DAY, now.minus(hourlyRetention),
+                maxBucketsPerRun - buckets);
+        if (buckets > 0) {
+            logger.info("Compacted {} assessment history buckets", buckets);
+        }
+    }
+
+    private int compactLevel(Resolution source, Resolution target, LocalDateTime cutoff, int budget) {
+        // Only whole buckets that lie entirely before the cutoff
+        LocalDateTime limit = bucketStart(cutoff, target);
+        int compacted = 0;
+        while (compacted < budget) {
+            Timestamp oldest = jdbcTemplate.queryForObject(OLDEST, Timestamp.class,
+                    source.name(), Timestamp.valueOf(limit));
+            if (oldest == null) {
+                break;
+            }
+            LocalDateTime start = bucketStart(oldest.toLocalDateTime(), target);
+            compactBucket(source, target, start, start.plus(1, unit(target)));
+            compacted++;
+        }
+        return compacted;
+    }
+
+    /**
+     * Roll up one bucket, a range of entities per transaction
+     */
+    private void compactBucket(Resolution source, Resolution target, LocalDateTime start, LocalDateTime end) {
+        Timestamp from = Timestamp.valueOf(start);
+        Timestamp to = Timestamp.valueOf(end);
+        List<Long> entityIds = jdbcTemplate.queryForList(BUCKET_ENTITIES, Long.class, source.name(), from, to);
+
+        int rows = 0;
+        int rollups = 0;
+        for (int i = 0; i < entityIds.size(); i += entitiesPerTransaction) {
+            long first = entityIds.get(i);
+            long last = entityIds.get(Math.min(i + entitiesPerTransaction, entityIds.size()) - 1);
+
+            int[] counts = transactionTemplate.execute(status -> {
+                List<Rollup> chunk = new ArrayList<>();
+                jdbcTemplate.query(SELECT_SOURCE, rs -> {
+                    long entityId = rs.getLong(1);
+                    Rollup current = chunk.isEmpty() ? null : chunk.get(chunk.size() - 1);
+                    if (current == null || current.entityId != entityId) {
+                        current = new Rollup(entityId);
+                        chunk.add(current);
+                    }
+                    current.add(rs);
+                }, source.name(), from, to, first, last);
+
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                jdbcTemplate.batchUpdate(INSERT_ROLLUP, chunk, Math.max(1, chunk.size()), (ps, rollup) -> {
+                    ps.setLong(1, rollup.entityId);
+                    ps.setDouble(2, rollup.lastScore);
+                    ps.setString(3, rollup.lastLevel);
+                    ps.setString(4, target.name());
+                    ps.setDouble(5, rollup.minScore);
+                    ps.setDouble(6, rollup.maxScore);
+                    ps.setInt(7, rollup.samples);
+                    ps.setTimestamp(8, rollup.lastAt);
+                    ps.setTimestamp(9, now);
+                });
+                int deleted = jdbcTemplate.update(DELETE_SOURCE, source.name(), from, to, first, last);
+                return new int[] { deleted, chunk.size() };
+            });
+            rows += counts[0];
+            rollups += counts[1];
+        }
+
+        logger.debug("Compacted {} {} assessments from {} into {} {} rows",
+                rows, source, start, rollups, target);
+    }
+
+    private static LocalDateTime bucketStart(LocalDateTime time, Resolution resolution) {
+        return time.truncatedTo(unit(resolution));
+    }
+
+    private static ChronoUnit unit(Resolution resolution) {
+        return resolution == Resolution.DAY ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+    }
+
+    /**
+     * Aggregate of one entity's rows within a bucket, fed in time order
+     */
+    private static final class Rollup {
+        final long entityId;
+        double minScore = Double.MAX_VALUE;
+        double maxScore = -Double.MAX_VALUE;
+        int samples;
+        double lastScore;
+        String lastLevel;
+        Timestamp lastAt;
+
+        Rollup(long entityId) {
+            this.entityId = entityId;
+        }
+
+        void add(ResultSet rs) throws SQLException {
+            double score = rs.getDouble(2);
+            double min = rs.getDouble(5);
+            min = rs.wasNull() ? score : min;
+            double max = rs.getDouble(6);
+            max = rs.wasNull() ? score : max;
+            int count = rs.getInt(7);
+            count = rs.wasNull() ? 1 : count;
+
+            minScore = Math.min(minScore, min);
+            maxScore = Math.max(maxScore, max);
+            samples += count;
+            lastScore = score;
+            lastLevel = rs.getString(3);
+            lastAt = rs.getTimestamp(4);
+        }
+    }
+}
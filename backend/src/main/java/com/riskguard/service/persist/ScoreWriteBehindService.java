@@ -0,0 +1,320 @@
+package com.riskguard.service.persist;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.MonitoredEntity.RiskLevel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Score Write-Behind Service
+ *
+ * Takes score persistence off the scoring path. Entity score updates are
+ * coalesced per entity so only the latest one per flush interval reaches
+ * the entities table; assessment history rows are queued in order. The
+ * persistence pool writes both as JDBC batches in one transaction.
+ *
+ * Pending updates stay visible through {@link #applyPending} until their
+ * batch has committed, so entities loaded in the meantime read their own
+ * writes. When the assessment queue is full the scoring thread requests a
+ * flush and waits for space, which slows scoring down instead of losing
+ * history; it writes itself only if the persistence pool is saturated.
+ * A batch that violates a constraint is written again row by row, so only
+ * the offending rows are dropped. Assessments of a batch that failed for
+ * another reason are kept and written first by the next flush, keeping
+ * their order. They count against the queue capacity, so while the
+ * database fails the queue fills and scoring waits instead of dropping
+ * history.
+ */
+@Service
+public class ScoreWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScoreWriteBehindService.class);
+
+    private static final String UPDATE_ENTITY = "UPDATE entities SET current_risk_score = ?, "
+            + "previous_risk_score = ?, current_risk_level = ?, last_risk_assessment = ?, updated_at = ? "
+            + "WHERE id = ?";
+
+    private static final String INSERT_ASSESSMENT = "INSERT INTO risk_assessments "
+            + "(entity_id, score, risk_level, summary, resolution, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, 'RAW', ?, ?)";
+
+    @Value("${risk.persistence.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${risk.persistence.write-behind.batch-size:500}")
+    private int batchSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // Latest unwritten score per entity primary key
+    private final Map<Long, EntityUpdate> pendingEntities = new ConcurrentHashMap<>();
+    private final BlockingQueue<AssessmentRow> pendingAssessments;
+    private final int queueCapacity;
+    // Assessments of a failed flush, ahead of the queue; guarded by flushLock
+    private final List<AssessmentRow> retryAssessments = new ArrayList<>();
+    private final ExecutorService persistenceExecutor;
+    private final ScheduledFuture<?> flushSchedule;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    public ScoreWriteBehindService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry, TaskScheduler taskScheduler,
+                                   @Qualifier("persistenceExecutor") ExecutorService persistenceExecutor,
+                                   @Value("${risk.persistence.write-behind.queue-capacity:100000}") int queueCapacity,
+                                   @Value("${risk.persistence.write-behind.flush-interval:1s}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.persistenceExecutor = persistenceExecutor;
+        this.pendingAssessments = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        Duration period = Duration.ofMillis(Math.max(1L, flushInterval.toMillis()));
+        this.flushSchedule = taskScheduler.scheduleWithFixedDelay(this::requestFlush, Instant.now().plus(period),
+                period);
+    }
+
+    /**
+     * Queue the entity's current score for the entities table and a history
+     * row with the given summary
+     */
+    public void write(MonitoredEntity entity, String summary) {
+        LocalDateTime assessedAt = entity.getLastRiskAssessment();
+        pendingEntities.put(entity.getId(), new EntityUpdate(entity.getId(), entity.getCurrentRiskScore(),
+                entity.getPreviousRiskScore(), entity.getCurrentRiskLevel(), assessedAt));
+
+        AssessmentRow row = new AssessmentRow(entity.getId(), entity.getCurrentRiskScore(),
+                entity.getCurrentRiskLevel(), summary, assessedAt);
+        if (!pendingAssessments.offer(row)) {
+            count("backpressure", 1);
+            try {
+                do {
+                    requestFlush();
+                } while (!pendingAssessments.offer(row, 100, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                while (!pendingAssessments.offer(row)) {
+                    flush();
+                }
+            }
+        }
+        if (!enabled) {
+            flush();
+        }
+    }
+
+    /**
+     * Overlay a not yet written score onto an entity loaded from the database
+     */
+    public MonitoredEntity applyPending(MonitoredEntity entity) {
+        EntityUpdate update = entity.getId() != null ? pendingEntities.get(entity.getId()) : null;
+        if (update != null) {
+            entity.restoreRiskScore(update.score(), update.previousScore(), update.level(), update.assessedAt());
+        }
+        return entity;
+    }
+
+    /**
+     * Write everything queued so far
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<AssessmentRow> rows = new ArrayList<>(retryAssessments.size() + pendingAssessments.size());
+            rows.addAll(retryAssessments);
+            pendingAssessments.drainTo(rows, Math.max(0, queueCapacity - retryAssessments.size()));
+            retryAssessments.clear();
+            List<EntityUpdate> updates = new ArrayList<>(pendingEntities.values());
+            if (rows.isEmpty() && updates.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(UPDATE_ENTITY, updates, batchSize, this::bindUpdate);
+                    jdbcTemplate.batchUpdate(INSERT_ASSESSMENT, rows, batchSize, this::bindAssessment);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // e.g. an entity deleted meanwhile; only its rows must go
+                logger.warn("Batch of {} score updates and {} assessments violates constraints, "
+                        + "writing row by row: {}", updates.size(), rows.size(), e.getMessage());
+                writeRowByRow(updates, rows);
+                return;
+            } catch (DataAccessException e) {
+                retryAssessments.addAll(rows);
+                logger.error("Error writing {} score updates and {} assessments, will retry",
+                        updates.size(), rows.size(), e);
+                return;
+            }
+
+            // Keep entries superseded during the write for the next batch
+            updates.forEach(update -> pendingEntities.remove(update.entityId(), update));
+            count("entity_updates", updates.size());
+            count("assessments", rows.size());
+        }
+    }
+
+    /**
+     * Write a failed batch one row per transaction, dropping the rows that
+     * violate constraints. After any other failure the rest is kept for the
+     * next flush, as for a failed batch.
+     */
+    private void writeRowByRow(List<EntityUpdate> updates, List<AssessmentRow> rows) {
+        int updated = 0;
+        int inserted = 0;
+        int dropped = 0;
+        boolean failed = false;
+
+        for (EntityUpdate update : updates) {
+            RowOutcome outcome = failed ? RowOutcome.FAILED : writeRow(UPDATE_ENTITY, update, this::bindUpdate);
+            if (outcome == RowOutcome.FAILED) {
+                // Stays pending for the next flush
+                failed = true;
+                continue;
+            }
+            pendingEntities.remove(update.entityId(), update);
+            if (outcome == RowOutcome.WRITTEN) {
+                updated++;
+            } else {
+                dropped++;
+            }
+        }
+
+        List<AssessmentRow> retry = new ArrayList<>();
+        for (AssessmentRow row : rows) {
+            RowOutcome outcome = failed ? RowOutcome.FAILED : writeRow(INSERT_ASSESSMENT, row, this::bindAssessment);
+            if (outcome == RowOutcome.FAILED) {
+                failed = true;
+                retry.add(row);
+            } else if (outcome == RowOutcome.WRITTEN) {
+                inserted++;
+            } else {
+                dropped++;
+            }
+        }
+        retryAssessments.addAll(retry);
+
+        count("entity_updates", updated);
+        count("assessments", inserted);
+        count("dropped", dropped);
+        if (failed) {
+            logger.error("Error writing score updates row by row, {} assessments kept for retry", retry.size());
+        }
+    }
+
+    private <T> RowOutcome writeRow(String sql, T row, ParameterizedPreparedStatementSetter<T> binder) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.update(sql, ps -> binder.setValues(ps, row)));
+            return RowOutcome.WRITTEN;
+        } catch (DataIntegrityViolationException e) {
+            logger.error("Dropping {} that violates constraints: {}", row, e.getMessage());
+            return RowOutcome.DROPPED;
+        } catch (DataAccessException e) {
+            logger.error("Error writing {}", row, e);
+            return RowOutcome.FAILED;
+        }
+    }
+
+    private void bindUpdate(PreparedStatement ps, EntityUpdate update) throws SQLException {
+        ps.setDouble(1, update.score());
+        if (update.previousScore() != null) {
+            ps.setDouble(2, update.previousScore());
+        } else {
+            ps.setNull(2, Types.DOUBLE);
+        }
+        ps.setString(3, update.level().name());
+        ps.setTimestamp(4, Timestamp.valueOf(update.assessedAt()));
+        ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+        ps.setLong(6, update.entityId());
+    }
+
+    private void bindAssessment(PreparedStatement ps, AssessmentRow row) throws SQLException {
+        ps.setLong(1, row.entityId());
+        ps.setDouble(2, row.score());
+        ps.setString(3, row.level().name());
+        ps.setString(4, row.summary());
+        ps.setTimestamp(5, Timestamp.valueOf(row.assessedAt()));
+        ps.setTimestamp(6, Timestamp.valueOf(row.assessedAt()));
+    }
+
+    /**
+     * Queue a flush on the persistence pool unless one is already queued
+     */
+    private void requestFlush() {
+        if (!flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            persistenceExecutor.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        } catch (RejectedExecutionException e) {
+            flushRequested.set(false);
+            flushQuietly();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error flushing score write-behind", e);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        flushSchedule.cancel(false);
+        flush();
+    }
+
+    private void count(String outcome, int amount) {
+        if (amount > 0) {
+            meterRegistry.counter("risk.scores.write_behind", "outcome", outcome).increment(amount);
+        }
+    }
+
+    private record EntityUpdate(long entityId, double score, Double previousScore, RiskLevel level,
+                                LocalDateTime assessedAt) {
+    }
+
+    private record AssessmentRow(long entityId, double score, RiskLevel level, String summary,
+                                 LocalDateTime assessedAt) {
+    }
+
+    private enum RowOutcome {
+        WRITTEN, DROPPED, FAILED
+    }
+}
@@ -0,0 +1,729 @@
+package com.riskguard.service.query;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.ScoreDecayService;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.cluster.ShardRebalanceEvent;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.intern.StringDictionary;
+import com.riskguard.service.time.ScoringClock;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Entity Index Service
+ *
+ * In-memory index of entity attributes, current scores and recent event
+ * counts for ad-hoc searches, so analysts can filter millions of entities
+ * without touching the database. Positions are the interned entity ids.
+ * Type, department, tenant, level, tags and event types seen in the window
+ * are Roaring bitmaps, as are the tags and metadata pairs of recent events,
+ * kept per time bucket so they expire; scores are bucketed by whole point.
+ * Filters narrow the candidates through the bitmaps first and only then
+ * check scores and event counts of what is left.
+ *
+ * Stored scores only decay, so the score bucket is an upper bound of the
+ * current score: lower bounds prune by bucket and the decayed score is
+ * checked exactly. Event counts are kept per event type in time buckets
+ * over a sliding window; a query window is rounded up to whole buckets.
+ *
+ * The index is loaded from the database once the application is ready and
+ * then follows score updates and ingested events. In a cluster each node
+ * indexes only the entities it owns, dropping and loading rows as shards
+ * move; a query is evaluated by every node over its own entities and the
+ * results merged by the node that received it.
+ */
+@Service
+public class EntityIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityIndexService.class);
+
+    // One bucket per whole point of score
+    private static final int SCORE_BUCKETS = 101;
+    public static final String QUERY_PATH = "/api/risk/cluster/query";
+
+    @Value("${risk.scoring.decay.half-life:6h}")
+    private Duration halfLife;
+
+    @Value("${risk.query.max-results:1000}")
+    private int maxResults;
+
+    private final KeyDictionaryService keyDictionaryService;
+    private final MonitoredEntityRepository entityRepository;
+    private final RiskEventRepository eventRepository;
+    private final ClusterService clusterService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ScoringClock clock;
+    private final Duration eventWindow;
+    private final int eventBuckets;
+    private final long bucketMillis;
+    private final Timer queryTimer;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final Map<MonitoredEntity.EntityType, RoaringBitmap> byType =
+            new EnumMap<>(MonitoredEntity.EntityType.class);
+    private final Map<MonitoredEntity.RiskLevel, RoaringBitmap> byLevel =
+            new EnumMap<>(MonitoredEntity.RiskLevel.class);
+    private final Map<String, RoaringBitmap> byDepartment = new HashMap<>();
+    private final Map<String, RoaringBitmap> byTenant = new HashMap<>();
+    private final Map<String, RoaringBitmap> byTag = new HashMap<>();
+    private final Map<RiskEvent.EventType, RoaringBitmap> byEventType = new EnumMap<>(RiskEvent.EventType.class);
+    private final RoaringBitmap[] byScore = new RoaringBitmap[SCORE_BUCKETS];
+    private final BucketedBitmaps byEventTag;
+    private final BucketedBitmaps byEventMetadata;
+    private Row[] rows = new Row[1024];
+
+    public EntityIndexService(KeyDictionaryService keyDictionaryService, MonitoredEntityRepository entityRepository,
+                              RiskEventRepository eventRepository, ClusterService clusterService,
+                              PlatformTransactionManager transactionManager, ScoringClock clock,
+                              MeterRegistry meterRegistry,
+                              @Value("${risk.query.events.window:24h}") Duration eventWindow,
+                              @Value("${risk.query.events.buckets:96}") int eventBuckets) {
+        this.keyDictionaryService = keyDictionaryService;
+        this.entityRepository = entityRepository;
+        this.eventRepository = eventRepository;
+        this.clusterService = clusterService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.clock = clock;
+        this.eventWindow = eventWindow;
+        this.eventBuckets = eventBuckets;
+        this.bucketMillis = Math.max(1L, eventWindow.toMillis() / eventBuckets);
+        for (int i = 0; i < SCORE_BUCKETS; i++) {
+            byScore[i] = new RoaringBitmap();
+        }
+        this.byEventTag = new BucketedBitmaps(eventBuckets);
+        this.byEventMetadata = new BucketedBitmaps(eventBuckets);
+
+        this.queryTimer = Timer.builder("risk.query.latency")
+                .description("Time to evaluate an entity query")
+                .register(meterRegistry);
+        Gauge.builder("risk.query.entities", all, RoaringBitmap::getLongCardinality)
+                .description("Entities in the query index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Index active entities owned here and the events of the last window
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.currentTimeMillis();
+        int entities = 0;
+        for (MonitoredEntity entity : entityRepository.findByIsActiveTrue()) {
+            if (clusterService.isLocal(entity.getEntityId())) {
+                index(entity);
+                entities++;
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now(clock);
+        int events = 0;
+        for (RiskEvent event : eventRepository.findAllInWindow(now.minus(eventWindow), now)) {
+            String entityId = event.getEntity().getEntityId();
+            if (clusterService.isLocal(entityId)) {
+                recordEvent(entityId, event);
+                events++;
+            }
+        }
+        logger.info("Indexed {} entities and {} events for queries in {} ms",
+                entities, events, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Drop the rows of entities whose shard moved to another node, then
+     * index the entities acquired and their events of the last window
+     */
+    @EventListener
+    public void onShardRebalance(ShardRebalanceEvent event) {
+        long start = System.currentTimeMillis();
+        RoaringBitmap dropped = new RoaringBitmap();
+        lock.writeLock().lock();
+        try {
+            for (int key = 0; key < rows.length; key++) {
+                Row row = rows[key];
+                if (row != null && !event.isLocal(row.entityId)) {
+                    if (all.contains(key)) {
+                        unindex(key, row);
+                    }
+                    rows[key] = null;
+                    dropped.add(key);
+                }
+            }
+            if (!dropped.isEmpty()) {
+                byEventType.values().forEach(bitmap -> bitmap.andNot(dropped));
+                byEventTag.removeAll(dropped);
+                byEventMetadata.removeAll(dropped);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        AtomicLong acquired = new AtomicLong();
+        AtomicLong events = new AtomicLong();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            for (MonitoredEntity entity : entityRepository.findByIsActiveTrue()) {
+                if (event.isAcquired(entity.getEntityId())) {
+                    index(entity);
+                    acquired.incrementAndGet();
+                }
+            }
+            LocalDateTime now = LocalDateTime.now(clock);
+            try (Stream<RiskEvent> recent = eventRepository.streamAllInWindow(now.minus(eventWindow), now)) {
+                recent.forEach(riskEvent -> {
+                    String entityId = riskEvent.getEntity().getEntityId();
+                    if (event.isAcquired(entityId)) {
+                        recordEvent(entityId, riskEvent);
+                        events.incrementAndGet();
+                    }
+                });
+            }
+        });
+        logger.info("Rebalanced query index: dropped {} entities, indexed {} acquired ones and {} events in {} ms",
+                dropped.getLongCardinality(), acquired.get(), events.get(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Add or refresh an entity's attributes and score; inactive entities
+     * are removed
+     */
+    public void index(MonitoredEntity entity) {
+        int key = keyDictionaryService.entityKey(entity.getEntityId());
+        if (key == StringDictionary.NOT_FOUND) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Row row = row(key, entity.getEntityId());
+            if (all.contains(key)) {
+                unindex(key, row);
+            }
+            if (!Boolean.TRUE.equals(entity.getIsActive())) {
+                return;
+            }
+
+            row.type = entity.getType();
+            row.department = entity.getDepartment();
+            row.tenantId = entity.getTenantId();
+            row.level = entity.getCurrentRiskLevel();
+            row.tags = entity.getTags().toArray(new String[0]);
+            row.score = entity.getCurrentRiskScore() != null
+                    ? entity.getCurrentRiskScore() : MonitoredEntity.MIN_RISK_SCORE;
+            row.scoredAtMillis = entity.getLastRiskAssessment() != null
+                    ? clock.toEpochMillis(entity.getLastRiskAssessment()) : Long.MIN_VALUE;
+
+            all.add(key);
+            if (row.type != null) {
+                byType.computeIfAbsent(row.type, t -> new RoaringBitmap()).add(key);
+            }
+            if (row.level != null) {
+                byLevel.computeIfAbsent(row.level, l -> new RoaringBitmap()).add(key);
+            }
+            if (row.department != null) {
+                byDepartment.computeIfAbsent(departmentKey(row.department), d -> new RoaringBitmap()).add(key);
+            }
+            byTenant.computeIfAbsent(tenantKey(row.tenantId), t -> new RoaringBitmap()).add(key);
+            for (String tag : row.tags) {
+                byTag.computeIfAbsent(tag, t -> new RoaringBitmap()).add(key);
+            }
+            byScore[scoreBucket(row.score)].add(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Count an event towards its entity's recent events
+     */
+    public void recordEvent(String entityId, RiskEvent event) {
+        if (event.getEventType() == null || event.getEventTimestamp() == null) {
+            return;
+        }
+        int key = keyDictionaryService.entityKey(entityId);
+        if (key == StringDictionary.NOT_FOUND) {
+            return;
+        }
+
+        long bucket = Math.floorDiv(clock.toEpochMillis(event.getEventTimestamp()), bucketMillis);
+        lock.writeLock().lock();
+        try {
+            Row row = row(key, entityId);
+            int type = event.getEventType().ordinal();
+            if (row.events == null) {
+                row.events = new EventCounter[RiskEvent.EventType.values().length];
+            }
+            if (row.events[type] == null) {
+                row.events[type] = new EventCounter(eventBuckets);
+            }
+            row.events[type].add(bucket);
+            byEventType.computeIfAbsent(event.getEventType(), t -> new RoaringBitmap()).add(key);
+            for (String tag : event.getTags()) {
+                byEventTag.add(bucket, tag, key);
+            }
+            for (Map.Entry<String, String> entry : event.getMetadata().entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    byEventMetadata.add(bucket, metadataKey(entry.getKey(), entry.getValue()), key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Evaluate a query on every cluster node, returning the number of
+     * matches and up to limit matching entities, highest current score
+     * first. Nodes that cannot be reached are listed as unavailable and
+     * their entities left out.
+     *
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public Map<String, Object> query(String expression, int limit) {
+        Map<String, Object> response = queryLocally(expression, limit);
+        if (!clusterService.isEnabled()) {
+            return response;
+        }
+
+        long start = System.nanoTime();
+        int size = Math.max(0, Math.min(limit, maxResults));
+        long total = ((Number) response.get("total")).longValue();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> entities = new ArrayList<>((List<Map<String, Object>>) response.get("entities"));
+        List<String> unavailable = new ArrayList<>();
+        for (String node : clusterService.getMembers()) {
+            if (node.equals(clusterService.getNodeId())) {
+                continue;
+            }
+            try {
+                Map<String, Object> remote = clusterService.get(node, QUERY_PATH + "?q={q}&limit={limit}",
+                        Map.of("q", expression, "limit", size));
+                total += ((Number) remote.get("total")).longValue();
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> remoteEntities = (List<Map<String, Object>>) remote.get("entities");
+                entities.addAll(remoteEntities);
+            } catch (RuntimeException e) {
+                logger.warn("Query of cluster node {} failed: {}", node, e.getMessage());
+                unavailable.add(node);
+            }
+        }
+        entities.sort(Comparator.comparingDouble(
+                (Map<String, Object> entity) -> ((Number) entity.get("riskScore")).doubleValue()).reversed());
+
+        response.put("total", total);
+        response.put("entities", entities.subList(0, Math.min(size, entities.size())));
+        response.put("tookMs", (double) response.get("tookMs") + (System.nanoTime() - start) / 1_000_000.0);
+        if (!unavailable.isEmpty()) {
+            response.put("unavailableNodes", unavailable);
+        }
+        return response;
+    }
+
+    /**
+     * Evaluate a query over the entities indexed on this node
+     *
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public Map<String, Object> queryLocally(String expression, int limit) {
+        EntityQuery query = EntityQuery.parse(expression);
+        int size = Math.max(0, Math.min(limit, maxResults));
+        long start = System.nanoTime();
+
+        long matches;
+        List<Map<String, Object>> entities = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long now = clock.millis();
+            RoaringBitmap result = evaluate(query.getRoot(), all, now);
+            matches = result.getLongCardinality();
+            for (Scored scored : top(result, size, now)) {
+                entities.add(toMap(scored));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        long elapsed = System.nanoTime() - start;
+        queryTimer.record(elapsed, TimeUnit.NANOSECONDS);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("query", query.getExpression());
+        response.put("total", matches);
+        response.put("entities", entities);
+        response.put("tookMs", elapsed / 1_000_000.0);
+        return response;
+    }
+
+    /**
+     * Subset of the candidates matching the node
+     */
+    private RoaringBitmap evaluate(EntityQuery.Node node, RoaringBitmap candidates, long now) {
+        if (node instanceof EntityQuery.And and) {
+            return evaluate(and.right(), evaluate(and.left(), candidates, now), now);
+        }
+        if (node instanceof EntityQuery.Or or) {
+            return RoaringBitmap.or(evaluate(or.left(), candidates, now), evaluate(or.right(), candidates, now));
+        }
+        if (node instanceof EntityQuery.Not not) {
+            return RoaringBitmap.andNot(candidates, evaluate(not.node(), candidates, now));
+        }
+        long current = Math.floorDiv(now, bucketMillis);
+        if (node instanceof EntityQuery.Match match) {
+            List<RoaringBitmap> bitmaps = new ArrayList<>();
+            for (String value : match.values()) {
+                RoaringBitmap bitmap = match.attribute() == EntityQuery.Attribute.EVENT_TAG
+                        ? byEventTag.union(value, current - eventBuckets + 1, current)
+                        : bitmap(match.attribute(), value);
+                if (bitmap != null) {
+                    bitmaps.add(bitmap);
+                }
+            }
+            return and(candidates, bitmaps);
+        }
+        if (node instanceof EntityQuery.MetadataMatch match) {
+            List<RoaringBitmap> bitmaps = new ArrayList<>();
+            for (String value : match.values()) {
+                bitmaps.add(byEventMetadata.union(metadataKey(match.key(), value), current - eventBuckets + 1,
+                        current));
+            }
+            return and(candidates, bitmaps);
+        }
+        if (node instanceof EntityQuery.ScoreFilter filter) {
+            RoaringBitmap pruned = candidates;
+            EntityQuery.Comparison comparison = filter.comparison();
+            if (comparison == EntityQuery.Comparison.GT || comparison == EntityQuery.Comparison.GE
+                    || comparison == EntityQuery.Comparison.EQ) {
+                // A current score at or above the operand needs a stored score there too
+                int lowest = scoreBucket(filter.operand());
+                if (lowest > 0) {
+                    pruned = RoaringBitmap.and(candidates,
+                            FastAggregation.or(Arrays.copyOfRange(byScore, lowest, SCORE_BUCKETS)));
+                }
+            }
+            return select(pruned, key -> comparison.test(currentScore(rows[key], now), filter.operand()));
+        }
+        EntityQuery.EventCountFilter filter = (EntityQuery.EventCountFilter) node;
+        RoaringBitmap pruned = candidates;
+        if (!filter.comparison().test(0, filter.operand())) {
+            RoaringBitmap seen = byEventType.get(filter.type());
+            if (seen == null) {
+                return new RoaringBitmap();
+            }
+            pruned = RoaringBitmap.and(candidates, seen);
+        }
+        Duration window = filter.window() != null ? filter.window() : eventWindow;
+        long buckets = Math.max(1L, Math.min(eventBuckets, (window.toMillis() + bucketMillis - 1) / bucketMillis));
+        int type = filter.type().ordinal();
+        return select(pruned, key -> {
+            EventCounter[] counters = rows[key].events;
+            long count = counters != null && counters[type] != null
+                    ? counters[type].count(current - buckets + 1, current) : 0;
+            return filter.comparison().test(count, filter.operand());
+        });
+    }
+
+    private RoaringBitmap bitmap(EntityQuery.Attribute attribute, String value) {
+        return switch (attribute) {
+            case TYPE -> byType.get(MonitoredEntity.EntityType.valueOf(value));
+            case LEVEL -> byLevel.get(MonitoredEntity.RiskLevel.valueOf(value));
+            case DEPARTMENT -> byDepartment.get(value);
+            case TENANT -> byTenant.get(value);
+            case TAG -> byTag.get(value);
+            case EVENT_TAG -> throw new IllegalStateException("Event tags are bucketed by time");
+        };
+    }
+
+    /**
+     * Candidates in any of the bitmaps
+     */
+    private static RoaringBitmap and(RoaringBitmap candidates, List<RoaringBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return new RoaringBitmap();
+        }
+        RoaringBitmap union = bitmaps.size() == 1 ? bitmaps.get(0) : FastAggregation.or(bitmaps.iterator());
+        return RoaringBitmap.and(candidates, union);
+    }
+
+    private static String metadataKey(String key, String value) {
+        return key + '\u0000' + value;
+    }
+
+    private interface KeyPredicate {
+        boolean test(int key);
+    }
+
+    private static RoaringBitmap select(RoaringBitmap candidates, KeyPredicate predicate) {
+        RoaringBitmap selected = new RoaringBitmap();
+        IntIterator keys = candidates.getIntIterator();
+        while (keys.hasNext()) {
+            int key = keys.next();
+            if (predicate.test(key)) {
+                selected.add(key);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Highest current scores among the keys. Buckets are walked from the
+     * top; since a current score never exceeds its bucket, the walk stops
+     * once the lowest score kept is above everything left.
+     */
+    private List<Scored> top(RoaringBitmap keys, int limit, long now) {
+        if (limit == 0) {
+            return List.of();
+        }
+        PriorityQueue<Scored> kept = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+        for (int bucket = SCORE_BUCKETS - 1; bucket >= 0; bucket--) {
+            if (kept.size() == limit && kept.peek().score() >= bucket + 1) {
+                break;
+            }
+            IntIterator iterator = RoaringBitmap.and(keys, byScore[bucket]).getIntIterator();
+            while (iterator.hasNext()) {
+                Row row = rows[iterator.next()];
+                double score = currentScore(row, now);
+                if (kept.size() < limit) {
+                    kept.add(new Scored(row, score));
+                } else if (score > kept.peek().score()) {
+                    kept.poll();
+                    kept.add(new Scored(row, score));
+                }
+            }
+        }
+        List<Scored> sorted = new ArrayList<>(kept);
+        sorted.sort(Comparator.comparingDouble(Scored::score).reversed());
+        return sorted;
+    }
+
+    private double currentScore(Row row, long now) {
+        if (row.scoredAtMillis == Long.MIN_VALUE) {
+            return row.score;
+        }
+        double excess = row.score - MonitoredEntity.MIN_RISK_SCORE;
+        return MonitoredEntity.MIN_RISK_SCORE
+                + excess * ScoreDecayService.decayFactor(now - row.scoredAtMillis, halfLife);
+    }
+
+    private Row row(int key, String entityId) {
+        if (key >= rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(key + 1, rows.length * 2));
+        }
+        Row row = rows[key];
+        if (row == null) {
+            row = new Row(keyDictionaryService.canonicalEntityId(entityId));
+            rows[key] = row;
+        }
+        return row;
+    }
+
+    private void unindex(int key, Row row) {
+        all.remove(key);
+        remove(byType.get(row.type), key);
+        remove(byLevel.get(row.level), key);
+        if (row.department != null) {
+            remove(byDepartment, departmentKey(row.department), key);
+        }
+        remove(byTenant, tenantKey(row.tenantId), key);
+        for (String tag : row.tags) {
+            remove(byTag, tag, key);
+        }
+        byScore[scoreBucket(row.score)].remove(key);
+    }
+
+    private static void remove(RoaringBitmap bitmap, int key) {
+        if (bitmap != null) {
+            bitmap.remove(key);
+        }
+    }
+
+    /**
+     * Remove from a value's bitmap, dropping the bitmap once empty so
+     * retired departments and tags do not accumulate
+     */
+    private static void remove(Map<String, RoaringBitmap> index, String value, int key) {
+        RoaringBitmap bitmap = index.get(value);
+        if (bitmap != null) {
+            bitmap.remove(key);
+            if (bitmap.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    private Map<String, Object> toMap(Scored scored) {
+        Row row = scored.row();
+        Map<String, Object> entity = new LinkedHashMap<>();
+        entity.put("entityId", row.entityId);
+        entity.put("type", row.type);
+        entity.put("department", row.department);
+        entity.put("tenantId", row.tenantId);
+        entity.put("riskLevel", row.level);
+        entity.put("riskScore", Math.round(scored.score() * 100.0) / 100.0);
+        entity.put("tags", row.tags);
+        return entity;
+    }
+
+    private static int scoreBucket(double score) {
+        return (int) Math.max(0, Math.min(SCORE_BUCKETS - 1, Math.floor(score)));
+    }
+
+    private static String departmentKey(String department) {
+        return EntityQuery.normalise(EntityQuery.Attribute.DEPARTMENT, department);
+    }
+
+    private static String tenantKey(String tenantId) {
+        return tenantId != null ? tenantId : MonitoredEntity.DEFAULT_TENANT;
+    }
+
+    private record Scored(Row row, double score) {
+    }
+
+    /**
+     * Bitmaps per value in a ring of time buckets; a slot is cleared when
+     * the ring comes round to it with a newer bucket
+     */
+    private static final class BucketedBitmaps {
+        final long[] bucketIds;
+        final List<Map<String, RoaringBitmap>> slots;
+
+        BucketedBitmaps(int buckets) {
+            this.bucketIds = new long[buckets];
+            Arrays.fill(bucketIds, Long.MIN_VALUE);
+            this.slots = new ArrayList<>(buckets);
+            for (int i = 0; i < buckets; i++) {
+                slots.add(new HashMap<>());
+            }
+        }
+
+        void add(long bucket, String value, int key) {
+            int slot = (int) Math.floorMod(bucket, (long) bucketIds.length);
+            if (bucket < bucketIds[slot]) {
+                return; // Older than the window
+            }
+            if (bucket > bucketIds[slot]) {
+                slots.get(slot).clear();
+                bucketIds[slot] = bucket;
+            }
+            slots.get(slot).computeIfAbsent(value, v -> new RoaringBitmap()).add(key);
+        }
+
+        void removeAll(RoaringBitmap keys) {
+            for (Map<String, RoaringBitmap> slot : slots) {
+                slot.values().removeIf(bitmap -> {
+                    bitmap.andNot(keys);
+                    return bitmap.isEmpty();
+                });
+            }
+        }
+
+        /**
+         * Keys with the value in buckets from..to, inclusive
+         */
+        RoaringBitmap union(String value, long from, long to) {
+            List<RoaringBitmap> bitmaps = new ArrayList<>();
+            for (int slot = 0; slot < bucketIds.length; slot++) {
+                if (bucketIds[slot] >= from && bucketIds[slot] <= to) {
+                    RoaringBitmap bitmap = slots.get(slot).get(value);
+                    if (bitmap != null) {
+                        bitmaps.add(bitmap);
+                    }
+                }
+            }
+            return bitmaps.isEmpty() ? new RoaringBitmap() : FastAggregation.or(bitmaps.iterator());
+        }
+    }
+
+    /**
+     * Indexed state of one entity; guarded by the lock
+     */
+    private static final class Row {
+        final String entityId;
+        MonitoredEntity.EntityType type;
+        String department;
+        String tenantId;
+        MonitoredEntity.RiskLevel level;
+        String[] tags = new String[0];
+        double score = MonitoredEntity.MIN_RISK_SCORE;
+        long scoredAtMillis = Long.MIN_VALUE;
+        // By event type ordinal, allocated on the first event
+        EventCounter[] events;
+
+        Row(String entityId) {
+            this.entityId = entityId;
+        }
+    }
+
+    /**
+     * Event counts in a ring of time buckets ending at the newest bucket
+     * seen; slots are cleared as the ring moves forward
+     */
+    private static final class EventCounter {
+        final char[] counts;
+        long head = Long.MIN_VALUE;
+
+        EventCounter(int buckets) {
+            this.counts = new char[buckets];
+        }
+
+        void add(long bucket) {
+            if (head == Long.MIN_VALUE) {
+                head = bucket;
+            } else if (bucket > head) {
+                for (long b = Math.max(head + 1, bucket - counts.length + 1); b <= bucket; b++) {
+                    counts[(int) Math.floorMod(b, (long) counts.length)] = 0;
+                }
+                head = bucket;
+            } else if (bucket <= head - counts.length) {
+                return;
+            }
+            int slot = (int) Math.floorMod(bucket, (long) counts.length);
+            if (counts[slot] < Character.MAX_VALUE) {
+                counts[slot]++;
+            }
+        }
+
+        /**
+         * Events in buckets from..to, inclusive
+         */
+        long count(long from, long to) {
+            long total = 0;
+            for (long b = Math.max(from, head - counts.length + 1); b <= Math.min(to, head); b++) {
+                total += counts[(int) Math.floorMod(b, (long) counts.length)];
+            }
+            return total;
+        }
+    }
+}
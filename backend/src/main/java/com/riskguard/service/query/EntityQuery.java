@@ -0,0 +1,356 @@
+package com.riskguard.service.query;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Entity Query
+ *
+ * Parsed filter expression over indexed entity state, e.g.
+ * <pre>
+ * type = SERVER and department = Finance and score > 35
+ *     and events(LOGIN_FAILURE, 1h) > 3 and metadata.country in (RU, KP)
+ * </pre>
+ * Attributes type, department, tenant, level, tag, event_tag and
+ * metadata.KEY compare with =, != or in (a, b); score and
+ * events(TYPE[, window]) with =, !=, &lt;, &lt;=, &gt; and &gt;=. Event tags
+ * and metadata match events within the indexed window. Terms combine with
+ * and, or, not and parentheses. Keywords and enum values are
+ * case-insensitive; values with spaces are quoted.
+ */
+public final class EntityQuery {
+
+    public enum Attribute {
+        TYPE, DEPARTMENT, TENANT, LEVEL, TAG, EVENT_TAG
+    }
+
+    public enum Comparison {
+        EQ, NE, LT, LE, GT, GE;
+
+        boolean test(double value, double operand) {
+            return switch (this) {
+                case EQ -> value == operand;
+                case NE -> value != operand;
+                case LT -> value < operand;
+                case LE -> value <= operand;
+                case GT -> value > operand;
+                case GE -> value >= operand;
+            };
+        }
+    }
+
+    public sealed interface Node permits And, Or, Not, Match, MetadataMatch, ScoreFilter, EventCountFilter {
+    }
+
+    public record And(Node left, Node right) implements Node {
+    }
+
+    public record Or(Node left, Node right) implements Node {
+    }
+
+    public record Not(Node node) implements Node {
+    }
+
+    /**
+     * Attribute equal to any of the values; department and tag values are
+     * lower-cased, enum values upper-cased
+     */
+    public record Match(Attribute attribute, Set<String> values) implements Node {
+    }
+
+    /**
+     * Some event within the window has a metadata value for the key equal to
+     * any of the values; keys and values are case-sensitive
+     */
+    public record MetadataMatch(String key, Set<String> values) implements Node {
+    }
+
+    public record ScoreFilter(Comparison comparison, double operand) implements Node {
+    }
+
+    /**
+     * Events of a type within the window, or the whole indexed window if null
+     */
+    public record EventCountFilter(RiskEvent.EventType type, Duration window, Comparison comparison,
+                                   long operand) implements Node {
+    }
+
+    private final String expression;
+    private final Node root;
+
+    private EntityQuery(String expression, Node root) {
+        this.expression = expression;
+        this.root = root;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static EntityQuery parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Query must not be empty");
+        }
+        Parser parser = new Parser(tokenize(expression));
+        Node root = parser.or();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.peek() + "' in query");
+        }
+        return new EntityQuery(expression, root);
+    }
+
+    /**
+     * Normalised form of an attribute value, as the index stores it
+     */
+    static String normalise(Attribute attribute, String value) {
+        return switch (attribute) {
+            case DEPARTMENT, TAG, EVENT_TAG -> value.trim().toLowerCase(Locale.ROOT);
+            case TENANT -> value.trim();
+            case TYPE -> parseEnum(MonitoredEntity.EntityType.class, value.trim()).name();
+            case LEVEL -> parseEnum(MonitoredEntity.RiskLevel.class, value.trim()).name();
+        };
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown " + type.getSimpleName() + " '" + value + "'");
+    }
+
+    private static List<String> tokenize(String expression) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == ',') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '<' || c == '>' || c == '!' || c == '=') {
+                boolean twoChars = i + 1 < expression.length() && expression.charAt(i + 1) == '=' && c != '=';
+                tokens.add(expression.substring(i, twoChars ? i + 2 : i + 1));
+                i += twoChars ? 2 : 1;
+            } else if (c == '\'' || c == '"') {
+                int end = expression.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated quote in query");
+                }
+                // Keep the quote so quoted keywords stay values
+                tokens.add(expression.substring(i, end));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < expression.length() && isWordChar(expression.charAt(i))) {
+                    i++;
+                }
+                if (start == i) {
+                    throw new IllegalArgumentException("Unexpected character '" + c + "' in query");
+                }
+                tokens.add(expression.substring(start, i));
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':' || c == '@';
+    }
+
+    private static final class Parser {
+        final List<String> tokens;
+        int position;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node or() {
+            Node node = and();
+            while (keyword("or")) {
+                node = new Or(node, and());
+            }
+            return node;
+        }
+
+        Node and() {
+            Node node = unary();
+            while (keyword("and")) {
+                node = new And(node, unary());
+            }
+            return node;
+        }
+
+        Node unary() {
+            if (keyword("not")) {
+                return new Not(unary());
+            }
+            if (symbol("(")) {
+                Node node = or();
+                expect(")");
+                return node;
+            }
+            return term();
+        }
+
+        Node term() {
+            String token = next();
+            String field = token.toLowerCase(Locale.ROOT);
+            if (field.startsWith("metadata.") && field.length() > "metadata.".length()) {
+                String key = token.substring("metadata.".length());
+                boolean negated = false;
+                Set<String> values = new LinkedHashSet<>();
+                if (keyword("in")) {
+                    values.addAll(list());
+                } else {
+                    negated = equality(field);
+                    values.add(value());
+                }
+                Node match = new MetadataMatch(key, values);
+                return negated ? new Not(match) : match;
+            }
+            switch (field) {
+                case "score": {
+                    Comparison comparison = comparison();
+                    return new ScoreFilter(comparison, number());
+                }
+                case "events": {
+                    expect("(");
+                    RiskEvent.EventType type = parseEnum(RiskEvent.EventType.class, value());
+                    Duration window = null;
+                    if (symbol(",")) {
+                        window = DurationStyle.detectAndParse(value());
+                    }
+                    expect(")");
+                    Comparison comparison = comparison();
+                    double operand = number();
+                    if (operand != Math.floor(operand) || operand < 0) {
+                        throw new IllegalArgumentException("Event count must be a whole number: " + operand);
+                    }
+                    return new EventCountFilter(type, window, comparison, (long) operand);
+                }
+                default: {
+                    Attribute attribute = parseEnum(Attribute.class, field);
+                    Set<String> values = new LinkedHashSet<>();
+                    boolean negated = false;
+                    if (keyword("in")) {
+                        for (String value : list()) {
+                            values.add(normalise(attribute, value));
+                        }
+                    } else {
+                        negated = equality(field);
+                        values.add(normalise(attribute, value()));
+                    }
+                    Node match = new Match(attribute, values);
+                    return negated ? new Not(match) : match;
+                }
+            }
+        }
+
+        List<String> list() {
+            List<String> values = new ArrayList<>();
+            expect("(");
+            do {
+                values.add(value().trim());
+            } while (symbol(","));
+            expect(")");
+            return values;
+        }
+
+        /**
+         * Reads = or !=, returning whether it was !=
+         */
+        boolean equality(String field) {
+            Comparison comparison = comparison();
+            if (comparison != Comparison.EQ && comparison != Comparison.NE) {
+                throw new IllegalArgumentException(field + " only supports =, != and in");
+            }
+            return comparison == Comparison.NE;
+        }
+
+        Comparison comparison() {
+            String token = next();
+            return switch (token) {
+                case "=" -> Comparison.EQ;
+                case "!=" -> Comparison.NE;
+                case "<" -> Comparison.LT;
+                case "<=" -> Comparison.LE;
+                case ">" -> Comparison.GT;
+                case ">=" -> Comparison.GE;
+                default -> throw new IllegalArgumentException("Expected a comparison but found '" + token + "'");
+            };
+        }
+
+        double number() {
+            String token = value();
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a number but found '" + token + "'");
+            }
+        }
+
+        String value() {
+            String token = next();
+            if (token.startsWith("'") || token.startsWith("\"")) {
+                return token.substring(1);
+            }
+            if (token.length() == 1 && "(),=<>!".contains(token)) {
+                throw new IllegalArgumentException("Expected a value but found '" + token + "'");
+            }
+            return token;
+        }
+
+        boolean keyword(String keyword) {
+            if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean symbol(String symbol) {
+            if (position < tokens.size() && tokens.get(position).equals(symbol)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(String symbol) {
+            if (!symbol(symbol)) {
+                throw new IllegalArgumentException("Expected '" + symbol + "' but found "
+                        + (position < tokens.size() ? "'" + peek() + "'" : "end of query"));
+            }
+        }
+
+        String peek() {
+            return tokens.get(position);
+        }
+
+        String next() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Unexpected end of query");
+            }
+            return tokens.get(position++);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.riskguard.service.query;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.Tags;
+import com.riskguard.repository.RiskEventRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Event Search Service
+ *
+ * Finds stored events by tags and metadata within a time range. On
+ * PostgreSQL the filters are JSONB containment (@>) on the GIN-indexed
+ * tag_set and metadata columns, combined with partition pruning on the
+ * time range. Other databases page through the range newest first and
+ * filter each page in memory, so at most one page is loaded at a time.
+ */
+@Service
+public class EventSearchService {
+
+    // Events loaded per page when filtering in memory
+    private static final int PAGE_SIZE = 1000;
+
+    private static final TypeReference<List<String>> TAG_LIST = new TypeReference<>() {
+    };
+    private static final TypeReference<Map<String, String>> METADATA_MAP = new TypeReference<>() {
+    };
+
+    @Value("${risk.query.max-results:1000}")
+    private int maxResults;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RiskEventRepository eventRepository;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean postgres;
+
+    public EventSearchService(JdbcTemplate jdbcTemplate, RiskEventRepository eventRepository,
+                              ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventRepository = eventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Events in [from, to) carrying all the tags and metadata entries,
+     * optionally of one entity, newest first
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> search(Set<String> tags, Map<String, String> metadata, String entityId,
+                                            LocalDateTime from, LocalDateTime to, int limit) {
+        Set<String> normalisedTags = Tags.normalise(tags);
+        int size = Math.max(0, Math.min(limit, maxResults));
+        if (isPostgres()) {
+            return searchIndexed(normalisedTags, metadata, entityId, from, to, size);
+        }
+
+        return searchPaged(normalisedTags, metadata, entityId, from, to, size);
+    }
+
+    private List<Map<String, Object>> searchPaged(Set<String> tags, Map<String, String> metadata, String entityId,
+                                                  LocalDateTime from, LocalDateTime to, int limit) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        LocalDateTime before = to;
+        long beforeId = Long.MIN_VALUE;
+        while (results.size() < limit) {
+            List<RiskEvent> page = eventRepository.findPageBefore(from, before, beforeId, entityId,
+                    PageRequest.of(0, PAGE_SIZE));
+            for (RiskEvent event : page) {
+                if (results.size() < limit && event.getTags().containsAll(tags)
+                        && event.getMetadata().entrySet().containsAll(metadata.entrySet())) {
+                    results.add(toMap(event.getId(), event.getEntity().getEntityId(), event.getEventType(),
+                            event.getSeverity(), event.getTitle(), event.getEventTimestamp(),
+                            event.getTags(), event.getMetadata()));
+                }
+            }
+            if (results.size() == limit || page.size() < PAGE_SIZE) {
+                break;
+            }
+            RiskEvent last = page.get(page.size() - 1);
+            before = last.getEventTimestamp();
+            beforeId = last.getId();
+            // Only the maps are kept, so the page can leave the persistence context
+            entityManager.clear();
+        }
+        return results;
+    }
+
+    private List<Map<String, Object>> searchIndexed(Set<String> tags, Map<String, String> metadata, String entityId,
+                                                    LocalDateTime from, LocalDateTime to, int limit) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT e.id, m.entity_id, e.event_type, e.severity, e.title, e.event_timestamp, " +
+                        "e.tag_set::text AS tag_set, e.metadata::text AS metadata " +
+                        "FROM risk_events e JOIN entities m ON m.id = e.entity_id " +
+                        "WHERE e.event_timestamp >= ? AND e.event_timestamp < ?");
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(from));
+        args.add(Timestamp.valueOf(to));
+        if (!tags.isEmpty()) {
+            sql.append(" AND e.tag_set @> ?::jsonb");
+            args.add(toJson(tags));
+        }
+        if (!metadata.isEmpty()) {
+            sql.append(" AND e.metadata @> ?::jsonb");
+            args.add(toJson(metadata));
+        }
+        if (entityId != null) {
+            sql.append(" AND m.entity_id = ?");
+            args.add(entityId);
+        }
+        sql.append(" ORDER BY e.event_timestamp DESC LIMIT ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> toMap(rs.getLong("id"),
+                rs.getString("entity_id"),
+                RiskEvent.EventType.valueOf(rs.getString("event_type")),
+                RiskEvent.Severity.valueOf(rs.getString("severity")),
+                rs.getString("title"),
+                rs.getTimestamp("event_timestamp").toLocalDateTime(),
+                fromJson(rs, "tag_set", TAG_LIST),
+                fromJson(rs, "metadata", METADATA_MAP)), args.toArray());
+    }
+
+    private static Map<String, Object> toMap(Long id, String entityId, RiskEvent.EventType type,
+                                             RiskEvent.Severity severity, String title, LocalDateTime timestamp,
+                                             Object tags, Object metadata) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("id", id);
+        event.put("entityId", entityId);
+        event.put("eventType", type);
+        event.put("severity", severity);
+        event.put("title", title);
+        event.put("eventTimestamp", timestamp);
+        event.put("tags", tags != null ? tags : List.of());
+        event.put("metadata", metadata != null ? metadata : Map.of());
+        return event;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot encode filter: " + e.getMessage(), e);
+        }
+    }
+
+    private <T> T fromJson(ResultSet rs, String column, TypeReference<T> type) throws SQLException {
+        String json = rs.getString(column);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Unreadable " + column + " JSON", e);
+        }
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(product);
+        }
+        return postgres;
+    }
+}
@@ -0,0 +1,109 @@
+package com.riskguard.service.recommendation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates recommendations with the Gemini generateContent API, asking for
+ * the JSON structure the frontend renders. The base URL can point at a local
+ * stub that answers POST /v1beta/models/{model}:generateContent with
+ * {"candidates":[{"content":{"parts":[{"text":"{\"recommendations\":[...]}"}]}}]}.
+ */
+@Component
+@ConditionalOnProperty(value = "risk.recommendations.llm.enabled", havingValue = "true")
+public class GeminiRecommendationModel implements RecommendationModel {
+
+    private static final TypeReference<List<Map<String, Object>>> RECOMMENDATION_LIST = new TypeReference<>() {
+    };
+
+    @Value("${risk.recommendations.llm.base-url:https://generativelanguage.googleapis.com}")
+    private String baseUrl;
+
+    @Value("${risk.recommendations.llm.model:gemini-1.5-flash}")
+    private String model;
+
+    @Value("${risk.recommendations.llm.api-key:}")
+    private String apiKey;
+
+    @Value("${risk.recommendations.llm.timeout:20s}")
+    private Duration timeout;
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+
+    public GeminiRecommendationModel(WebClient.Builder webClientBuilder, ObjectMapper objectMapper) {
+        this.webClient = webClientBuilder.build();
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getName() {
+        return model;
+    }
+
+    @Override
+    public List<Map<String, Object>> generate(RecommendationRequest request) {
+        Map<String, Object> body = Map.of(
+                "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt(request))))),
+                "generationConfig", Map.of("responseMimeType", "application/json", "temperature", 0.2));
+
+        JsonNode response = webClient.post()
+                .uri(baseUrl + "/v1beta/models/{model}:generateContent", model)
+                .header("x-goog-api-key", apiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .block(timeout);
+        if (response == null) {
+            throw new IllegalStateException("Empty response from " + model);
+        }
+
+        String text = response.path("candidates").path(0).path("content").path("parts").path(0).path("text").asText("");
+        int start = text.indexOf('{');
+        int end = text.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new IllegalStateException("No JSON object in response from " + model);
+        }
+        try {
+            JsonNode recommendations = objectMapper.readTree(text.substring(start, end + 1)).path("recommendations");
+            List<Map<String, Object>> items = objectMapper.convertValue(recommendations, RECOMMENDATION_LIST);
+            if (items == null || items.isEmpty()) {
+                throw new IllegalStateException("No recommendations in response from " + model);
+            }
+            return items;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable response from " + model + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String prompt(RecommendationRequest request) {
+        StringBuilder prompt = new StringBuilder()
+                .append("As a cybersecurity expert, provide 4-6 specific, actionable security recommendations ")
+                .append("to mitigate the risks of an entity with this profile.\n\n")
+                .append("Entity type: ").append(request.entityType()).append('\n')
+                .append("Risk level: ").append(request.riskLevel()).append('\n')
+                .append("Strongest risk factors (points added to a 5-50 risk score):\n");
+        for (RecommendationRequest.Factor factor : request.factors()) {
+            prompt.append("- ").append(factor.name()).append(" (").append(factor.source().toLowerCase())
+                    .append("): ").append(factor.points()).append('\n');
+        }
+        prompt.append("\nRespond with a JSON object of the form {\"recommendations\": [{\"title\": \"...\", ")
+                .append("\"description\": \"...\", \"priority\": \"High/Medium/Low\", \"effort\": \"Low/Medium/High\", ")
+                .append("\"riskReduction\": 15, \"timeline\": \"1-2 weeks\", ")
+                .append("\"category\": \"Authentication/Network/Data/Compliance/Monitoring\", ")
+                .append("\"implementationSteps\": [\"...\"], \"challenges\": \"...\", \"benefits\": \"...\"}]}");
+        return prompt.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package com.riskguard.service.recommendation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A remote model generating security recommendations for a risk profile.
+ * Calls may take seconds and may fail; RecommendationService runs them off
+ * the request path.
+ */
+public interface RecommendationModel {
+
+    String getName();
+
+    /**
+     * @return recommendations as title, description, priority, effort, category, ... maps
+     */
+    List<Map<String, Object>> generate(RecommendationRequest request);
+}
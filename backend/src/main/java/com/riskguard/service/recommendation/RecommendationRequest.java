@@ -0,0 +1,29 @@
+package com.riskguard.service.recommendation;
+
+import java.util.List;
+
+/**
+ * What a recommendation is generated from: the entity type, risk level and
+ * strongest contributions with points rounded, so similar entities make
+ * equal requests. Carries nothing that identifies the entity.
+ */
+public record RecommendationRequest(String entityType, String riskLevel, List<Factor> factors) {
+
+    public record Factor(String name, String source, long points) {
+    }
+
+    /**
+     * Cache key, e.g. USER|HIGH|Privilege Escalation Attempts:RULE:10;After-Hours Activity:RULE:5
+     */
+    public String signature() {
+        StringBuilder signature = new StringBuilder().append(entityType).append('|').append(riskLevel).append('|');
+        for (int i = 0; i < factors.size(); i++) {
+            Factor factor = factors.get(i);
+            if (i > 0) {
+                signature.append(';');
+            }
+            signature.append(factor.name()).append(':').append(factor.source()).append(':').append(factor.points());
+        }
+        return signature.toString();
+    }
+}
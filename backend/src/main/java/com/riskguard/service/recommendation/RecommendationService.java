@@ -0,0 +1,256 @@
+package com.riskguard.service.recommendation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recommendation Service
+ *
+ * Serves recommendations for an assessment without waiting on the model.
+ * Results are cached by a signature of the entity type, risk level and
+ * strongest factors with rounded points, so entities with similar risk
+ * share one model call. On a miss the call is queued on a small bounded
+ * pool and the rule-based recommendations are returned as PENDING;
+ * concurrent misses for one signature wait on the same call. Failed calls
+ * are remembered briefly so a failing model is not retried on every
+ * request. Without a configured model only the rules are used.
+ */
+@Service
+public class RecommendationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationService.class);
+
+    private static final String RULES = "rules";
+
+    @Value("${risk.recommendations.max-factors:5}")
+    private int maxFactors;
+
+    // Factor points are rounded to this step in signatures
+    @Value("${risk.recommendations.points-step:5}")
+    private int pointsStep;
+
+    private final RecommendationModel model;
+    private final Cache<String, Recommendations> cache;
+    private final Cache<String, Boolean> failures;
+    private final Map<String, CompletableFuture<Recommendations>> inFlight = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter rejected;
+    private final Counter modelFailures;
+    private final Timer modelLatency;
+
+    public RecommendationService(Optional<RecommendationModel> model, MeterRegistry meterRegistry,
+                                 @Value("${risk.recommendations.threads:2}") int threads,
+                                 @Value("${risk.recommendations.queue-capacity:100}") int queueCapacity,
+                                 @Value("${risk.recommendations.cache.max-size:10000}") long cacheSize,
+                                 @Value("${risk.recommendations.cache.ttl:6h}") Duration cacheTtl,
+                                 @Value("${risk.recommendations.cache.failure-ttl:1m}") Duration failureTtl) {
+        this.model = model.orElse(null);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+        this.failures = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(failureTtl)
+                .build();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "recommendations-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        new ExecutorServiceMetrics(executor, "recommendations", Tags.empty()).bindTo(meterRegistry);
+
+        this.hits = Counter.builder("risk.recommendations.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("risk.recommendations.cache").tag("result", "miss").register(meterRegistry);
+        this.coalesced = Counter.builder("risk.recommendations.coalesced")
+                .description("Requests that joined a model call already in flight")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("risk.recommendations.rejected")
+                .description("Model calls dropped because the queue was full")
+                .register(meterRegistry);
+        this.modelFailures = Counter.builder("risk.recommendations.failures")
+                .description("Failed model calls")
+                .register(meterRegistry);
+        this.modelLatency = Timer.builder("risk.recommendations.latency")
+                .description("Time of one model call")
+                .register(meterRegistry);
+        Gauge.builder("risk.recommendations.in-flight", inFlight, Map::size)
+                .register(meterRegistry);
+
+        logger.info("Recommendations from {}", this.model != null ? this.model.getName() : RULES);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Recommendations for an assessment (entityType, riskLevel, overallScore
+     * and factors), without blocking: the cached model result, or the rules
+     * while a model call runs
+     */
+    public Recommendations getRecommendations(Map<String, Object> assessment) {
+        return getRecommendations(assessment, Duration.ZERO);
+    }
+
+    /**
+     * As getRecommendations, waiting up to the given time for a model call
+     * to finish
+     */
+    public Recommendations getRecommendations(Map<String, Object> assessment, Duration wait) {
+        RecommendationRequest request = request(assessment);
+        String signature = request.signature();
+        double score = assessment.get("overallScore") instanceof Number number ? number.doubleValue() : 0.0;
+        if (model == null) {
+            return rules(signature, Recommendations.Status.READY, score);
+        }
+
+        Recommendations cached = cache.getIfPresent(signature);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        if (failures.getIfPresent(signature) != null) {
+            return rules(signature, Recommendations.Status.FALLBACK, score);
+        }
+
+        CompletableFuture<Recommendations> call = call(signature, request);
+        if (wait.isZero() || wait.isNegative()) {
+            return call.isDone()
+                    ? resultOf(call, signature, score) : rules(signature, Recommendations.Status.PENDING, score);
+        }
+        try {
+            Recommendations result = call.get(wait.toMillis(), TimeUnit.MILLISECONDS);
+            return result != null ? result : rules(signature, Recommendations.Status.FALLBACK, score);
+        } catch (TimeoutException e) {
+            return rules(signature, Recommendations.Status.PENDING, score);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return rules(signature, Recommendations.Status.PENDING, score);
+        } catch (ExecutionException e) {
+            return rules(signature, Recommendations.Status.FALLBACK, score);
+        }
+    }
+
+    /**
+     * The model call for a signature, joining one already in flight
+     */
+    private CompletableFuture<Recommendations> call(String signature, RecommendationRequest request) {
+        CompletableFuture<Recommendations> created = new CompletableFuture<>();
+        CompletableFuture<Recommendations> existing = inFlight.putIfAbsent(signature, created);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> generate(signature, request, created));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            inFlight.remove(signature, created);
+            created.complete(null);
+        }
+        return created;
+    }
+
+    private void generate(String signature, RecommendationRequest request, CompletableFuture<Recommendations> call) {
+        long start = System.nanoTime();
+        try {
+            Recommendations result = new Recommendations(signature, Recommendations.Status.READY, model.getName(),
+                    model.generate(request));
+            cache.put(signature, result);
+            call.complete(result);
+        } catch (RuntimeException e) {
+            modelFailures.increment();
+            failures.put(signature, Boolean.TRUE);
+            logger.warn("Recommendation model {} failed for {}: {}", model.getName(), signature, e.getMessage());
+            call.complete(null);
+        } finally {
+            modelLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.remove(signature, call);
+        }
+    }
+
+    private Recommendations resultOf(CompletableFuture<Recommendations> call, String signature, double score) {
+        Recommendations result = call.getNow(null);
+        return result != null ? result : rules(signature, Recommendations.Status.FALLBACK, score);
+    }
+
+    private RecommendationRequest request(Map<String, Object> assessment) {
+        List<RecommendationRequest.Factor> factors = new ArrayList<>();
+        if (assessment.get("factors") instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof Map<?, ?> factor && factor.get("score") instanceof Number points) {
+                    long rounded = Math.round(points.doubleValue() / pointsStep) * pointsStep;
+                    if (rounded > 0) {
+                        factors.add(new RecommendationRequest.Factor(String.valueOf(factor.get("name")),
+                                String.valueOf(factor.get("source")), rounded));
+                    }
+                }
+            }
+        }
+        factors.sort(Comparator.comparingLong(RecommendationRequest.Factor::points).reversed()
+                .thenComparing(RecommendationRequest.Factor::name));
+        return new RecommendationRequest(String.valueOf(assessment.get("entityType")),
+                String.valueOf(assessment.get("riskLevel")),
+                List.copyOf(factors.subList(0, Math.min(maxFactors, factors.size()))));
+    }
+
+    private static Recommendations rules(String signature, Recommendations.Status status, double score) {
+        long riskScore = Math.round(score);
+        List<Map<String, Object>> items = new ArrayList<>();
+        if (riskScore > 35) {
+            items.add(rule("Immediate review of user access patterns", "High"));
+            items.add(rule("Implement additional authentication measures", "High"));
+            items.add(rule("Monitor file transfer activities closely", "High"));
+        } else if (riskScore > 25) {
+            items.add(rule("Review recent login patterns", "Medium"));
+            items.add(rule("Monitor file transfer activities", "Medium"));
+            items.add(rule("Implement additional authentication for admin access", "Medium"));
+        } else {
+            items.add(rule("Continue monitoring for unusual activity", "Low"));
+            items.add(rule("Regular security training for user", "Low"));
+        }
+        return new Recommendations(signature, status, RULES, items);
+    }
+
+    private static Map<String, Object> rule(String title, String priority) {
+        return Map.of("title", title, "priority", priority);
+    }
+}
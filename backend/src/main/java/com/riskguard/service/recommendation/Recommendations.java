@@ -0,0 +1,20 @@
+package com.riskguard.service.recommendation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recommendations for one risk profile. PENDING and FALLBACK carry the
+ * rule-based list while a model result is on its way or after the model
+ * failed.
+ */
+public record Recommendations(String signature, Status status, String source, List<Map<String, Object>> items) {
+
+    public enum Status {
+        READY, PENDING, FALLBACK
+    }
+
+    public List<String> titles() {
+        return items.stream().map(item -> String.valueOf(item.get("title"))).toList();
+    }
+}
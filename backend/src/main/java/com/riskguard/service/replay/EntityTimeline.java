@@ -0,0 +1,62 @@
+package com.riskguard.service.replay;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.service.ScoreDecayService;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Replayed scores of one entity in time order, stored in parallel primitive
+ * arrays. Scores between points decay like live scores do.
+ */
+public class EntityTimeline {
+
+    private long[] times = new long[16];
+    private double[] scores = new double[16];
+    private int size;
+
+    void append(long epochMillis, double score) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        times[size] = epochMillis;
+        scores[size] = score;
+        size++;
+    }
+
+    /**
+     * Replayed score at the given time, decayed from the latest point at or
+     * before it, or NaN if the entity had no replayed score yet
+     */
+    public double scoreAt(long epochMillis, Duration halfLife) {
+        int index = Arrays.binarySearch(times, 0, size, epochMillis);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Several points may share a timestamp; take the last
+            while (index + 1 < size && times[index + 1] == epochMillis) {
+                index++;
+            }
+        }
+        if (index < 0) {
+            return Double.NaN;
+        }
+        double excess = scores[index] - MonitoredEntity.MIN_RISK_SCORE;
+        return MonitoredEntity.MIN_RISK_SCORE
+                + excess * ScoreDecayService.decayFactor(epochMillis - times[index], halfLife);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timeAt(int index) {
+        return times[index];
+    }
+
+    public double scoreAtIndex(int index) {
+        return scores[index];
+    }
+}
@@ -0,0 +1,119 @@
+package com.riskguard.service.replay;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a replay: throughput counters and the difference between
+ * replayed scores and the stored assessment history
+ */
+public class ReplayReport {
+
+    long eventsRead;
+    long eventsReplayed;
+    long eventsSkipped;
+    long outOfOrder;
+    long entities;
+    long elapsedMillis;
+
+    long assessmentsCompared;
+    long assessmentsWithoutBaseline;
+    long levelMismatches;
+    double sumAbsoluteDifference;
+    double maxAbsoluteDifference;
+
+    final Map<String, EntityDiff> entityDiffs = new HashMap<>();
+
+    void compare(String entityId, double replayed, double stored, boolean levelMatches) {
+        double difference = Math.abs(replayed - stored);
+        assessmentsCompared++;
+        sumAbsoluteDifference += difference;
+        maxAbsoluteDifference = Math.max(maxAbsoluteDifference, difference);
+        if (!levelMatches) {
+            levelMismatches++;
+        }
+        entityDiffs.computeIfAbsent(entityId, EntityDiff::new).add(difference, levelMatches);
+    }
+
+    public long getEventsReplayed() {
+        return eventsReplayed;
+    }
+
+    public double getEventsPerSecond() {
+        return elapsedMillis == 0 ? 0.0 : eventsReplayed * 1000.0 / elapsedMillis;
+    }
+
+    public double getMeanAbsoluteDifference() {
+        return assessmentsCompared == 0 ? 0.0 : sumAbsoluteDifference / assessmentsCompared;
+    }
+
+    public Map<String, Object> toMap(int topEntities) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("eventsRead", eventsRead);
+        result.put("eventsReplayed", eventsReplayed);
+        result.put("eventsSkipped", eventsSkipped);
+        result.put("outOfOrder", outOfOrder);
+        result.put("entities", entities);
+        result.put("elapsedMillis", elapsedMillis);
+        result.put("eventsPerSecond", Math.round(getEventsPerSecond()));
+
+        Map<String, Object> diff = new LinkedHashMap<>();
+        diff.put("assessmentsCompared", assessmentsCompared);
+        diff.put("assessmentsWithoutBaseline", assessmentsWithoutBaseline);
+        diff.put("meanAbsoluteDifference", getMeanAbsoluteDifference());
+        diff.put("maxAbsoluteDifference", maxAbsoluteDifference);
+        diff.put("levelMismatches", levelMismatches);
+
+        List<EntityDiff> ranked = new ArrayList<>(entityDiffs.values());
+        ranked.sort(Comparator.comparingDouble(EntityDiff::getMaxAbsoluteDifference).reversed());
+        List<Map<String, Object>> top = new ArrayList<>();
+        for (EntityDiff entityDiff : ranked.subList(0, Math.min(topEntities, ranked.size()))) {
+            top.add(entityDiff.toMap());
+        }
+        diff.put("topEntities", top);
+        result.put("diff", diff);
+        return result;
+    }
+
+    /**
+     * Per-entity difference between replayed and stored scores
+     */
+    static class EntityDiff {
+        private final String entityId;
+        private long compared;
+        private long levelMismatches;
+        private double sumAbsoluteDifference;
+        private double maxAbsoluteDifference;
+
+        EntityDiff(String entityId) {
+            this.entityId = entityId;
+        }
+
+        void add(double difference, boolean levelMatches) {
+            compared++;
+            sumAbsoluteDifference += difference;
+            maxAbsoluteDifference = Math.max(maxAbsoluteDifference, difference);
+            if (!levelMatches) {
+                levelMismatches++;
+            }
+        }
+
+        double getMaxAbsoluteDifference() {
+            return maxAbsoluteDifference;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("entityId", entityId);
+            result.put("compared", compared);
+            result.put("meanAbsoluteDifference", sumAbsoluteDifference / compared);
+            result.put("maxAbsoluteDifference", maxAbsoluteDifference);
+            result.put("levelMismatches", levelMismatches);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.riskguard.service.replay;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Parameters of a replay. Events in [from, to) are read from the database,
+ * or from an export file in the replay directory if sourceFile is set.
+ * Threshold and half-life fields override the live configuration when set.
+ */
+public class ReplayRequest {
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String sourceFile;
+    private String timelineFile;
+    private int parallelism;
+    private int topEntities = 20;
+
+    private Double criticalThreshold;
+    private Double highThreshold;
+    private Double mediumThreshold;
+    private Double hysteresis;
+    private Duration halfLife;
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public String getSourceFile() {
+        return sourceFile;
+    }
+
+    public void setSourceFile(String sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    public String getTimelineFile() {
+        return timelineFile;
+    }
+
+    public void setTimelineFile(String timelineFile) {
+        this.timelineFile = timelineFile;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getTopEntities() {
+        return topEntities;
+    }
+
+    public void setTopEntities(int topEntities) {
+        this.topEntities = topEntities;
+    }
+
+    public Double getCriticalThreshold() {
+        return criticalThreshold;
+    }
+
+    public void setCriticalThreshold(Double criticalThreshold) {
+        this.criticalThreshold = criticalThreshold;
+    }
+
+    public Double getHighThreshold() {
+        return highThreshold;
+    }
+
+    public void setHighThreshold(Double highThreshold) {
+        this.highThreshold = highThreshold;
+    }
+
+    public Double getMediumThreshold() {
+        return mediumThreshold;
+    }
+
+    public void setMediumThreshold(Double mediumThreshold) {
+        this.mediumThreshold = mediumThreshold;
+    }
+
+    public Double getHysteresis() {
+        return hysteresis;
+    }
+
+    public void setHysteresis(Double hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    public Duration getHalfLife() {
+        return halfLife;
+    }
+
+    public void setHalfLife(Duration halfLife) {
+        this.halfLife = halfLife;
+    }
+}
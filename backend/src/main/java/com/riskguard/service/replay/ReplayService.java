@@ -0,0 +1,539 @@
+package com.riskguard.service.replay;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskAssessment;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskAssessmentRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.EventWindow;
+import com.riskguard.service.MachineLearningService;
+import com.riskguard.service.ModelSnapshot;
+import com.riskguard.service.ScoreDecayService;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.ingest.BinaryEventCodec;
+import com.riskguard.service.ingest.IngestEvent;
+import com.riskguard.service.time.ManualClock;
+import com.riskguard.service.time.ScoringClock;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Replay Service
+ *
+ * Backtests scoring changes offline. Historical events are streamed in
+ * timestamp order from risk_events or from an export file and routed by
+ * entity to parallel partitions. Each partition owns its entities' state:
+ * a simulated clock driven by event time, its own cardinality sketches and
+ * a running event window per entity, so replays never touch live state.
+ * Entities are loaded by the partitions as their first events arrive and
+ * start from where they stood at the start of the replay: no risk, no
+ * activity yet. All partitions score against a snapshot of the models
+ * taken at the start. Every event rescores its entity through the scoring
+ * pipeline, building a per-entity score timeline that is then diffed
+ * against the stored assessment history.
+ */
+@Service
+public class ReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayService.class);
+
+    private static final List<IngestEvent> END_OF_STREAM = new ArrayList<>();
+    private static final int EXPORT_BATCH_SIZE = 1000;
+
+    private final MonitoredEntityRepository entityRepository;
+    private final RiskEventRepository eventRepository;
+    private final RiskAssessmentRepository assessmentRepository;
+    private final MachineLearningService mlService;
+    private final ScoreDecayService scoreDecayService;
+    private final RiskThresholds thresholds;
+    private final ScoringClock clock;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${risk.replay.directory:replay}")
+    private Path directory;
+
+    @Value("${risk.replay.batch-size:512}")
+    private int batchSize;
+
+    @Value("${risk.replay.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${risk.scoring.event-window:7d}")
+    private Duration eventWindow;
+
+    @Value("${risk.scoring.sketches.precision:10}")
+    private int sketchPrecision;
+
+    @Value("${risk.scoring.sketches.window:24h}")
+    private Duration sketchWindow;
+
+    @Value("${risk.scoring.sketches.buckets:24}")
+    private int sketchBuckets;
+
+    public ReplayService(MonitoredEntityRepository entityRepository, RiskEventRepository eventRepository,
+                         RiskAssessmentRepository assessmentRepository, MachineLearningService mlService,
+                         ScoreDecayService scoreDecayService, RiskThresholds thresholds, ScoringClock clock,
+                         PlatformTransactionManager transactionManager) {
+        this.entityRepository = entityRepository;
+        this.eventRepository = eventRepository;
+        this.assessmentRepository = assessmentRepository;
+        this.mlService = mlService;
+        this.scoreDecayService = scoreDecayService;
+        this.thresholds = thresholds;
+        this.clock = clock;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Replay events through the scoring pipeline and diff the result against
+     * the stored assessments of the same window
+     *
+     * @throws IllegalArgumentException if the request is incomplete or names a file outside the replay directory
+     */
+    public ReplayReport replay(ReplayRequest request) throws IOException {
+        if (request.getFrom() == null || request.getTo() == null || !request.getFrom().isBefore(request.getTo())) {
+            throw new IllegalArgumentException("from and to are required and from must be before to");
+        }
+        Path source = request.getSourceFile() != null ? resolve(request.getSourceFile()) : null;
+        if (source != null && !Files.isRegularFile(source)) {
+            throw new IllegalArgumentException("No such export file: " + request.getSourceFile());
+        }
+
+        RiskThresholds replayThresholds = new RiskThresholds(
+                valueOr(request.getCriticalThreshold(), thresholds.getCritical()),
+                valueOr(request.getHighThreshold(), thresholds.getHigh()),
+                valueOr(request.getMediumThreshold(), thresholds.getMedium()),
+                valueOr(request.getHysteresis(), thresholds.getHysteresis()));
+        Duration halfLife = request.getHalfLife() != null ? request.getHalfLife() : scoreDecayService.getHalfLife();
+        int parallelism = request.getParallelism() > 0
+                ? request.getParallelism() : Runtime.getRuntime().availableProcessors();
+
+        // Every partition scores against the models as they are now
+        ModelSnapshot models = mlService.snapshotModels();
+
+        ReplayReport report = new ReplayReport();
+        long started = System.currentTimeMillis();
+
+        Partition[] partitions = new Partition[parallelism];
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                runnable -> new Thread(runnable, "replay-" + threadIds.incrementAndGet()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            if (request.getTimelineFile() != null) {
+                Files.createDirectories(directory);
+            }
+            for (int i = 0; i < parallelism; i++) {
+                Writer timeline = request.getTimelineFile() != null
+                        ? Files.newBufferedWriter(resolve(request.getTimelineFile() + "." + i), StandardCharsets.UTF_8)
+                        : null;
+                partitions[i] = new Partition(models, replayThresholds, halfLife,
+                        clock.toEpochMillis(request.getFrom()), timeline);
+                futures.add(executor.submit(partitions[i]));
+            }
+
+            Router router = new Router(partitions, report);
+            if (source != null) {
+                readExport(source, request.getFrom(), request.getTo(), router);
+            } else {
+                readDatabase(request.getFrom(), request.getTo(), event -> {
+                    entityManager.detach(event.getEvent());
+                    router.accept(event);
+                });
+            }
+            router.finish();
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Replay interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replay partition failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, EntityTimeline> timelines = new HashMap<>();
+        for (Partition partition : partitions) {
+            report.eventsReplayed += partition.replayed;
+            report.eventsSkipped += partition.skipped;
+            report.outOfOrder += partition.outOfOrder;
+            partition.states.forEach((entityId, state) -> timelines.put(entityId, state.timeline));
+        }
+        report.entities = timelines.size();
+        report.elapsedMillis = System.currentTimeMillis() - started;
+
+        diffAgainstHistory(request.getFrom(), request.getTo(), timelines, replayThresholds, halfLife, report);
+
+        logger.info("Replayed {} events for {} entities in {} ms ({} events/s), mean score difference {}",
+                report.eventsReplayed, report.entities, report.elapsedMillis,
+                Math.round(report.getEventsPerSecond()), report.getMeanAbsoluteDifference());
+        return report;
+    }
+
+    /**
+     * Write events in [from, to) to a file in the replay directory, in
+     * timestamp order, as consecutive binary batches
+     *
+     * @return number of events written
+     */
+    public long exportEvents(LocalDateTime from, LocalDateTime to, String fileName) throws IOException {
+        Path target = resolve(fileName);
+        Files.createDirectories(target.getParent());
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            List<IngestEvent> batch = new ArrayList<>(EXPORT_BATCH_SIZE);
+            long[] written = new long[1];
+            // Events are detached once their batch is encoded, keeping the persistence context small
+            Consumer<List<IngestEvent>> flush = events -> {
+                try {
+                    ByteBuffer bytes = ByteBuffer.wrap(BinaryEventCodec.encode(events, ZoneId.systemDefault()));
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                written[0] += events.size();
+                for (IngestEvent event : events) {
+                    entityManager.detach(event.getEvent());
+                }
+                events.clear();
+            };
+
+            try {
+                readDatabase(from, to, event -> {
+                    batch.add(event);
+                    if (batch.size() == EXPORT_BATCH_SIZE) {
+                        flush.accept(batch);
+                    }
+                });
+                if (!batch.isEmpty()) {
+                    flush.accept(batch);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            logger.info("Exported {} events to {}", written[0], target);
+            return written[0];
+        }
+    }
+
+    /**
+     * Stream events from the database inside a read-only transaction. The
+     * consumer must detach events it is done with to keep the persistence
+     * context small.
+     */
+    private void readDatabase(LocalDateTime from, LocalDateTime to, Consumer<IngestEvent> consumer) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<RiskEvent> events = eventRepository.streamAllInWindow(from, to)) {
+                events.forEach(event -> consumer.accept(new IngestEvent(event.getEntity().getEntityId(), event)));
+            }
+        });
+    }
+
+    private void readExport(Path source, LocalDateTime from, LocalDateTime to, Consumer<IngestEvent> consumer)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            BinaryEventCodec.decode(buffer, ZoneId.systemDefault(), event -> {
+                LocalDateTime timestamp = event.getEvent().getEventTimestamp();
+                if (timestamp != null && !timestamp.isBefore(from) && timestamp.isBefore(to)) {
+                    consumer.accept(event);
+                }
+            });
+        }
+    }
+
+    private void diffAgainstHistory(LocalDateTime from, LocalDateTime to, Map<String, EntityTimeline> timelines,
+                                    RiskThresholds replayThresholds, Duration halfLife, ReplayReport report) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<RiskAssessment> assessments = assessmentRepository.streamAllInWindow(from, to)) {
+                assessments.forEach(assessment -> {
+                    String entityId = assessment.getEntity().getEntityId();
+                    EntityTimeline timeline = timelines.get(entityId);
+                    double replayed = timeline != null
+                            ? timeline.scoreAt(clock.toEpochMillis(assessment.getCreatedAt()), halfLife)
+                            : Double.NaN;
+                    if (Double.isNaN(replayed)) {
+                        report.assessmentsWithoutBaseline++;
+                    } else {
+                        report.compare(entityId, replayed, assessment.getScore(),
+                                replayThresholds.levelFor(replayed) == assessment.getRiskLevel());
+                    }
+                    entityManager.detach(assessment);
+                });
+            }
+        });
+    }
+
+    private Path resolve(String fileName) {
+        Path base = directory.toAbsolutePath().normalize();
+        Path file = base.resolve(fileName).normalize();
+        if (!file.startsWith(base) || file.equals(base)) {
+            throw new IllegalArgumentException("File must be inside the replay directory: " + fileName);
+        }
+        return file;
+    }
+
+    private static double valueOr(Double value, double fallback) {
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * Routes events to partitions by entity, in batches
+     */
+    private final class Router implements Consumer<IngestEvent> {
+        private final Partition[] partitions;
+        private final List<IngestEvent>[] pending;
+        private final ReplayReport report;
+
+        @SuppressWarnings("unchecked")
+        Router(Partition[] partitions, ReplayReport report) {
+            this.partitions = partitions;
+            this.pending = new List[partitions.length];
+            this.report = report;
+            for (int i = 0; i < partitions.length; i++) {
+                pending[i] = new ArrayList<>(batchSize);
+            }
+        }
+
+        @Override
+        public void accept(IngestEvent event) {
+            report.eventsRead++;
+            int index = Math.floorMod(event.getEntityId().hashCode(), partitions.length);
+            pending[index].add(event);
+            if (pending[index].size() >= batchSize) {
+                send(index, pending[index]);
+                pending[index] = new ArrayList<>(batchSize);
+            }
+        }
+
+        void finish() {
+            for (int i = 0; i < partitions.length; i++) {
+                if (!pending[i].isEmpty()) {
+                    send(i, pending[i]);
+                }
+                send(i, END_OF_STREAM);
+            }
+        }
+
+        private void send(int index, List<IngestEvent> batch) {
+            try {
+                while (!partitions[index].queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    if (partitions[index].failed) {
+                        throw new IllegalStateException("Replay partition " + index + " failed");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Replay interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Single-threaded owner of a subset of entities
+     */
+    private final class Partition implements Runnable {
+        final BlockingQueue<List<IngestEvent>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final Map<String, EntityState> states = new HashMap<>();
+
+        // Entities of the batch being processed and ids known to have none
+        private final Map<String, MonitoredEntity> entities = new HashMap<>();
+        private final Set<String> unknown = new HashSet<>();
+        private final ModelSnapshot models;
+        private final RiskThresholds replayThresholds;
+        private final Duration halfLife;
+        private final ManualClock partitionClock;
+        private final CardinalitySketchService sketches;
+        private final Writer timelineWriter;
+
+        long replayed;
+        long skipped;
+        long outOfOrder;
+        volatile boolean failed;
+
+        Partition(ModelSnapshot models, RiskThresholds replayThresholds, Duration halfLife, long startMillis,
+                  Writer timelineWriter) {
+            this.models = models;
+            this.replayThresholds = replayThresholds;
+            this.halfLife = halfLife;
+            this.partitionClock = new ManualClock(clock.getZone(), ZoneId.systemDefault(), startMillis);
+            this.sketches = new CardinalitySketchService(sketchPrecision, sketchWindow, sketchBuckets,
+                    partitionClock);
+            this.timelineWriter = timelineWriter;
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<IngestEvent> batch;
+                while ((batch = queue.take()) != END_OF_STREAM) {
+                    loadEntities(batch);
+                    for (IngestEvent event : batch) {
+                        process(event);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                failed = true;
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                failed = true;
+                throw e;
+            } finally {
+                closeTimeline();
+            }
+        }
+
+        /**
+         * Load the entities a batch introduces in one query, instead of
+         * every entity up front
+         */
+        private void loadEntities(List<IngestEvent> batch) {
+            entities.clear();
+            Set<String> missing = new HashSet<>();
+            for (IngestEvent event : batch) {
+                String entityId = event.getEntityId();
+                if (!states.containsKey(entityId) && !unknown.contains(entityId)) {
+                    missing.add(entityId);
+                }
+            }
+            if (missing.isEmpty()) {
+                return;
+            }
+            for (MonitoredEntity entity : entityRepository.findByEntityIdIn(missing)) {
+                entities.put(entity.getEntityId(), entity);
+            }
+            missing.removeAll(entities.keySet());
+            unknown.addAll(missing);
+        }
+
+        private void process(IngestEvent ingestEvent) throws IOException {
+            RiskEvent event = ingestEvent.getEvent();
+            String entityId = ingestEvent.getEntityId();
+            if (event.getEventTimestamp() == null) {
+                skipped++;
+                return;
+            }
+
+            EntityState state = states.get(entityId);
+            if (state == null) {
+                MonitoredEntity entity = entities.get(entityId);
+                if (entity == null) {
+                    skipped++;
+                    return;
+                }
+                state = new EntityState(entity, event.getEventTimestamp());
+                states.put(entityId, state);
+            }
+
+            long timestamp = partitionClock.toEpochMillis(event.getEventTimestamp());
+            if (timestamp < state.lastTimestamp) {
+                outOfOrder++;
+            } else {
+                state.lastTimestamp = timestamp;
+                state.entity.setLastActivity(event.getEventTimestamp());
+            }
+            partitionClock.advanceTo(timestamp);
+
+            state.window.add(event);
+            sketches.record(entityId, event);
+
+            double score = mlService.scoreAt(state.entity, state.window, sketches, models);
+            state.entity.setCurrentRiskScore(score, replayThresholds, partitionClock.storageNow());
+            state.timeline.append(timestamp, score);
+            replayed++;
+
+            if (timelineWriter != null) {
+                timelineWriter.append(entityId).append(',')
+                        .append(Long.toString(timestamp)).append(',')
+                        .append(Double.toString(score)).append(',')
+                        .append(state.entity.getCurrentRiskLevel().name()).append('\n');
+            }
+        }
+
+        private void closeTimeline() {
+            if (timelineWriter != null) {
+                try {
+                    timelineWriter.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close replay timeline", e);
+                }
+            }
+        }
+
+        /**
+         * Replay copy of an entity as it stood at the start of the replay,
+         * with its running event window. Live activity and scores come from
+         * after the replayed events and would leak into their scores, so the
+         * copy starts without them; it existed at the latest by its first
+         * replayed event.
+         */
+        private final class EntityState {
+            final MonitoredEntity entity;
+            final EventWindow window = new EventWindow(eventWindow, halfLife, partitionClock);
+            final EntityTimeline timeline = new EntityTimeline();
+            long lastTimestamp = Long.MIN_VALUE;
+
+            EntityState(MonitoredEntity source, LocalDateTime firstEvent) {
+                entity = new MonitoredEntity(source.getEntityId(), source.getName(), source.getType(),
+                        source.getDepartment());
+                entity.setTenantId(source.getTenantId());
+                LocalDateTime createdAt = source.getCreatedAt();
+                entity.setCreatedAt(createdAt == null || createdAt.isAfter(firstEvent) ? firstEvent : createdAt);
+                entity.setLastActivity(null);
+                entity.setCurrentRiskScore(MonitoredEntity.MIN_RISK_SCORE, replayThresholds,
+                        partitionClock.storageNow());
+            }
+        }
+    }
+}
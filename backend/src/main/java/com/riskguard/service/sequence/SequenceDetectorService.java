@@ -0,0 +1,306 @@
+package com.riskguard.service.sequence;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.service.ScoreDecayService;
+import com.riskguard.service.cluster.ShardRebalanceEvent;
+import com.riskguard.service.intern.IntObjectMap;
+import com.riskguard.service.time.ScoringClock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sequence Detector Service
+ *
+ * Streaming detection of multi-event attack sequences per entity, e.g.
+ * repeated failed logins followed by a login, a privilege escalation and a
+ * data export within 30 minutes. Each configured pattern is compiled once
+ * into a {@link SequencePattern} state machine; an event only visits the
+ * patterns that mention its type, and only advances the partial matches its
+ * entity already has, so the cost per event does not depend on history or
+ * on patterns that cannot be affected. Partial matches hold one timestamp
+ * per pattern state, are capped per entity and expire with their window.
+ * Completed matches are kept for a while and add decayed points to live
+ * scores. State is in memory only and starts over after a restart.
+ */
+@Service
+public class SequenceDetectorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SequenceDetectorService.class);
+
+    private static final int EVENT_TYPES = RiskEvent.EventType.values().length;
+
+    private final List<SequencePattern> patterns = new ArrayList<>();
+    // Event type ordinal -> indexes of the patterns with a step accepting it
+    private final int[][] patternsByType = new int[EVENT_TYPES][];
+    private final boolean[] startsAny = new boolean[EVENT_TYPES];
+
+    private final int maxActivePatterns;
+    private final int maxMatches;
+    private final long matchRetentionMillis;
+
+    private final ScoringClock clock;
+    private final Map<String, EntityRuns> entities = new ConcurrentHashMap<>();
+    private final AtomicLong activeRuns = new AtomicLong();
+    private final Counter[] matchCounters;
+
+    public SequenceDetectorService(@Value("${risk.sequences.patterns:}") List<String> definitions,
+                                   @Value("${risk.sequences.max-active-patterns:64}") int maxActivePatterns,
+                                   @Value("${risk.sequences.max-matches:16}") int maxMatches,
+                                   @Value("${risk.sequences.match-retention:48h}") Duration matchRetention,
+                                   ScoringClock clock, MeterRegistry meterRegistry) {
+        this.maxActivePatterns = maxActivePatterns;
+        this.maxMatches = maxMatches;
+        this.matchRetentionMillis = matchRetention.toMillis();
+        this.clock = clock;
+
+        for (String definition : definitions) {
+            if (!definition.isBlank()) {
+                patterns.add(SequencePattern.parse(definition));
+            }
+        }
+        for (RiskEvent.EventType type : RiskEvent.EventType.values()) {
+            List<Integer> involved = new ArrayList<>();
+            for (int p = 0; p < patterns.size(); p++) {
+                if (patterns.get(p).involves(type)) {
+                    involved.add(p);
+                    startsAny[type.ordinal()] |= patterns.get(p).startsWith(type);
+                }
+            }
+            patternsByType[type.ordinal()] = involved.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        this.matchCounters = new Counter[patterns.size()];
+        for (int p = 0; p < patterns.size(); p++) {
+            matchCounters[p] = Counter.builder("risk.sequences.matches")
+                    .description("Completed attack sequence matches")
+                    .tag("pattern", patterns.get(p).getName())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("risk.sequences.entities", entities, Map::size)
+                .description("Entities with partial or recent sequence matches")
+                .register(meterRegistry);
+        Gauge.builder("risk.sequences.partial-matches", activeRuns, AtomicLong::get)
+                .description("Patterns with a partial match, summed over entities")
+                .register(meterRegistry);
+
+        logger.info("Compiled {} sequence patterns", patterns.size());
+    }
+
+    /**
+     * Advance the entity's partial matches by one event
+     *
+     * @return sequences the event completed
+     */
+    public List<SequenceMatch> onEvent(String entityId, RiskEvent event) {
+        RiskEvent.EventType type = event.getEventType();
+        if (type == null || event.getEventTimestamp() == null || patternsByType[type.ordinal()].length == 0) {
+            return List.of();
+        }
+
+        EntityRuns runs = entities.get(entityId);
+        if (runs == null) {
+            if (!startsAny[type.ordinal()]) {
+                return List.of();
+            }
+            runs = entities.computeIfAbsent(entityId, id -> new EntityRuns());
+        }
+
+        long timestamp = clock.toEpochMillis(event.getEventTimestamp());
+        List<SequenceMatch> completed = List.of();
+        synchronized (runs) {
+            for (int p : patternsByType[type.ordinal()]) {
+                SequencePattern pattern = patterns.get(p);
+                long[] states = runs.active.get(p);
+                if (states == null) {
+                    if (!pattern.startsWith(type)) {
+                        continue;
+                    }
+                    states = pattern.newRuns();
+                }
+
+                long startedAt = pattern.advance(states, type, timestamp);
+                if (startedAt != SequencePattern.NONE) {
+                    SequenceMatch match = new SequenceMatch(pattern.getName(), startedAt, timestamp,
+                            pattern.getPoints());
+                    runs.addMatch(match);
+                    matchCounters[p].increment();
+                    if (completed.isEmpty()) {
+                        completed = new ArrayList<>();
+                    }
+                    completed.add(match);
+                    logger.info("Sequence {} matched for entity {}", pattern.getName(), entityId);
+                }
+                runs.update(p, states);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Points of the entity's recent matches, each decayed by its age
+     */
+    public double matchPoints(String entityId, long now, Duration halfLife) {
+        EntityRuns runs = entities.get(entityId);
+        if (runs == null) {
+            return 0.0;
+        }
+        double points = 0.0;
+        synchronized (runs) {
+            for (SequenceMatch match : runs.matches) {
+                points += match.points() * ScoreDecayService.decayFactor(now - match.matchedAt(), halfLife);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Recent matches of an entity, newest first
+     */
+    public List<SequenceMatch> getMatches(String entityId) {
+        EntityRuns runs = entities.get(entityId);
+        if (runs == null) {
+            return List.of();
+        }
+        synchronized (runs) {
+            return new ArrayList<>(runs.matches);
+        }
+    }
+
+    public List<Map<String, Object>> getPatterns() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int p = 0; p < patterns.size(); p++) {
+            SequencePattern pattern = patterns.get(p);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", pattern.getName());
+            entry.put("definition", pattern.getDefinition());
+            entry.put("window", pattern.getWindow().toString());
+            entry.put("points", pattern.getPoints());
+            entry.put("matches", (long) matchCounters[p].count());
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Drop state of entities whose shard moved to another node
+     */
+    @EventListener
+    public void onShardRebalance(ShardRebalanceEvent event) {
+        entities.entrySet().removeIf(entry -> {
+            if (event.isLocal(entry.getKey())) {
+                return false;
+            }
+            synchronized (entry.getValue()) {
+                activeRuns.addAndGet(-entry.getValue().active.size());
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Expire partial matches past their window and matches past retention,
+     * then drop entities left without either
+     */
+    @Scheduled(fixedDelayString = "${risk.sequences.sweep-interval:PT1M}")
+    public void expire() {
+        long now = clock.millis();
+        int before = entities.size();
+        entities.values().removeIf(runs -> {
+            synchronized (runs) {
+                runs.expire(now);
+                while (!runs.matches.isEmpty() && now - runs.matches.peekLast().matchedAt() > matchRetentionMillis) {
+                    runs.matches.pollLast();
+                }
+                return runs.active.isEmpty() && runs.matches.isEmpty();
+            }
+        });
+        int evicted = before - entities.size();
+        if (evicted > 0) {
+            logger.debug("Evicted sequence state for {} idle entities", evicted);
+        }
+    }
+
+    /**
+     * Partial matches per pattern index and recent matches of one entity
+     */
+    private final class EntityRuns {
+        private final IntObjectMap<long[]> active = new IntObjectMap<>();
+        private final Deque<SequenceMatch> matches = new ArrayDeque<>();
+
+        /**
+         * Store or drop the pattern's runs after an event. A new partial
+         * match beyond the cap evicts the pattern whose newest run is oldest.
+         */
+        void update(int pattern, long[] states) {
+            boolean present = active.containsKey(pattern);
+            if (SequencePattern.newestStart(states) == SequencePattern.NONE) {
+                if (present) {
+                    active.remove(pattern);
+                    activeRuns.decrementAndGet();
+                }
+                return;
+            }
+            if (present) {
+                return;
+            }
+            if (active.size() >= maxActivePatterns) {
+                evictOldest();
+            }
+            active.put(pattern, states);
+            activeRuns.incrementAndGet();
+        }
+
+        private void evictOldest() {
+            int[] oldest = {-1};
+            long[] oldestStart = {Long.MAX_VALUE};
+            active.forEach((states, pattern) -> {
+                long start = SequencePattern.newestStart(states);
+                if (start < oldestStart[0]) {
+                    oldestStart[0] = start;
+                    oldest[0] = pattern;
+                }
+            });
+            if (oldest[0] >= 0) {
+                active.remove(oldest[0]);
+                activeRuns.decrementAndGet();
+            }
+        }
+
+        void expire(long now) {
+            List<Integer> expired = new ArrayList<>();
+            active.forEach((states, pattern) -> {
+                if (!patterns.get(pattern).expire(states, now)) {
+                    expired.add(pattern);
+                }
+            });
+            for (int pattern : expired) {
+                active.remove(pattern);
+            }
+            activeRuns.addAndGet(-expired.size());
+        }
+
+        void addMatch(SequenceMatch match) {
+            matches.addFirst(match);
+            while (matches.size() > maxMatches) {
+                matches.pollLast();
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.riskguard.service.sequence;
+
+/**
+ * One completed sequence of an entity: the pattern, when its first and last
+ * events happened (epoch millis) and the risk points it adds
+ */
+public record SequenceMatch(String pattern, long startedAt, long matchedAt, double points) {
+}
@@ -0,0 +1,216 @@
+package com.riskguard.service.sequence;
+
+import com.riskguard.domain.RiskEvent;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An ordered sequence of event types that must occur for one entity within a
+ * time window, e.g.
+ * account-takeover: LOGIN_FAILURE{3} -> LOGIN_SUCCESS -> PRIVILEGE_ESCALATION -> DATA_EXPORT within 30m points 20.
+ * A step may accept alternatives (DATA_EXPORT|LARGE_FILE_TRANSFER) and
+ * repeat ({n}); events in between that the next step does not accept are
+ * skipped.
+ *
+ * Compiled into a linear state machine: state k means the first k positions
+ * of the expanded sequence matched, and each position is a bitmask over
+ * event type ordinals. The partial matches of one entity are one start time
+ * per state. Of two runs in the same state the later-started one completes
+ * whenever the other could and has more of the window left, so keeping only
+ * the latest start per state loses no match and bounds the state to the
+ * sequence length.
+ */
+public final class SequencePattern {
+
+    // Start time of a state without a run
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final Pattern DEFINITION = Pattern.compile(
+            "\\s*([\\w.-]+)\\s*:\\s*(.+?)\\s+within\\s+(\\S+)\\s+points\\s+(\\S+)\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STEP = Pattern.compile("\\s*([\\w|]+)\\s*(?:\\{(\\d+)})?\\s*");
+
+    private final String name;
+    private final String definition;
+    private final long[] positions;
+    private final long windowMillis;
+    private final double points;
+    private final long eventTypes;
+
+    private SequencePattern(String name, String definition, long[] positions, Duration window, double points) {
+        this.name = name;
+        this.definition = definition;
+        this.positions = positions;
+        this.windowMillis = window.toMillis();
+        this.points = points;
+        long mask = 0L;
+        for (long position : positions) {
+            mask |= position;
+        }
+        this.eventTypes = mask;
+    }
+
+    /**
+     * Parse and compile "name: STEP -> STEP ... within DURATION points N"
+     */
+    public static SequencePattern parse(String definition) {
+        Matcher matcher = DEFINITION.matcher(definition);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(
+                    "Sequence pattern must be 'name: STEP -> STEP ... within DURATION points N': " + definition);
+        }
+
+        List<Long> positions = new ArrayList<>();
+        for (String step : matcher.group(2).split("->")) {
+            Matcher stepMatcher = STEP.matcher(step);
+            if (!stepMatcher.matches()) {
+                throw new IllegalArgumentException("Invalid step '" + step.trim() + "' in sequence pattern: " + definition);
+            }
+            long accepted = 0L;
+            for (String type : stepMatcher.group(1).split("\\|")) {
+                accepted |= 1L << eventType(type).ordinal();
+            }
+            int repeat = stepMatcher.group(2) != null ? Integer.parseInt(stepMatcher.group(2)) : 1;
+            if (repeat < 1) {
+                throw new IllegalArgumentException("Step repeat must be at least 1: " + definition);
+            }
+            for (int i = 0; i < repeat; i++) {
+                positions.add(accepted);
+            }
+        }
+
+        Duration window = DurationStyle.detectAndParse(matcher.group(3));
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Sequence window must be positive: " + definition);
+        }
+        double points = Double.parseDouble(matcher.group(4));
+        return new SequencePattern(matcher.group(1), definition.trim(),
+                positions.stream().mapToLong(Long::longValue).toArray(), window, points);
+    }
+
+    private static RiskEvent.EventType eventType(String value) {
+        for (RiskEvent.EventType type : RiskEvent.EventType.values()) {
+            if (type.name().equalsIgnoreCase(value.trim())) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown event type: " + value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    public Duration getWindow() {
+        return Duration.ofMillis(windowMillis);
+    }
+
+    public double getPoints() {
+        return points;
+    }
+
+    /**
+     * Whether any step accepts the event type
+     */
+    boolean involves(RiskEvent.EventType type) {
+        return (eventTypes & 1L << type.ordinal()) != 0L;
+    }
+
+    /**
+     * Whether the first step accepts the event type, i.e. it can start a run
+     */
+    boolean startsWith(RiskEvent.EventType type) {
+        return (positions[0] & 1L << type.ordinal()) != 0L;
+    }
+
+    /**
+     * Empty run state: the start time of the run in each state 1..length-1
+     */
+    long[] newRuns() {
+        long[] runs = new long[positions.length - 1];
+        Arrays.fill(runs, NONE);
+        return runs;
+    }
+
+    /**
+     * Feed one event to an entity's runs. Runs older than the window are
+     * dropped first. States are visited from the last to the first so a run
+     * moves at most one position per event. On a completed match all runs are
+     * cleared, so matches do not overlap.
+     *
+     * @return start time of the completed match, or NONE
+     */
+    long advance(long[] runs, RiskEvent.EventType type, long timestamp) {
+        long bit = 1L << type.ordinal();
+        for (int state = runs.length; state >= 0; state--) {
+            long start;
+            if (state == 0) {
+                start = timestamp;
+            } else {
+                start = runs[state - 1];
+                if (start == NONE) {
+                    continue;
+                }
+                if (timestamp - start > windowMillis) {
+                    runs[state - 1] = NONE;
+                    continue;
+                }
+            }
+            if ((positions[state] & bit) == 0L) {
+                continue;
+            }
+
+            if (state == runs.length) {
+                Arrays.fill(runs, NONE);
+                return start;
+            }
+            if (state > 0) {
+                runs[state - 1] = NONE;
+            }
+            runs[state] = Math.max(runs[state], start);
+        }
+        return NONE;
+    }
+
+    /**
+     * Drop runs whose window has passed
+     *
+     * @return whether any run is left
+     */
+    boolean expire(long[] runs, long now) {
+        boolean active = false;
+        for (int state = 0; state < runs.length; state++) {
+            if (runs[state] != NONE && now - runs[state] > windowMillis) {
+                runs[state] = NONE;
+            }
+            active |= runs[state] != NONE;
+        }
+        return active;
+    }
+
+    /**
+     * Latest start of any run, NONE without runs
+     */
+    static long newestStart(long[] runs) {
+        long newest = NONE;
+        for (long start : runs) {
+            newest = Math.max(newest, start);
+        }
+        return newest;
+    }
+
+    @Override
+    public String toString() {
+        return definition;
+    }
+}
@@ -0,0 +1,85 @@
+package com.riskguard.service.tenant;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.riskguard.service.RiskScore;
+import com.riskguard.service.intern.IntObjectMap;
+import com.riskguard.service.ml.AnomalyModel;
+import com.riskguard.service.ml.RandomForestClassifier;
+
+import java.time.Duration;
+
+/**
+ * Tenant
+ *
+ * State one business unit does not share with the others: its anomaly
+ * models by model key, its classifier, and its cache of recent scores,
+ * bounded in bytes by the tenant's memory quota. Scoring threads are shared
+ * through {@link TenantScoringScheduler} according to the weight and CPU
+ * quota.
+ */
+public final class Tenant {
+
+    private final String id;
+    private final double weight;
+    private final double cpuQuota;
+    private final long memoryQuota;
+
+    // Keyed by interned type/department; guarded by synchronizing on the map
+    private final IntObjectMap<AnomalyModel> models = new IntObjectMap<>();
+    private final Cache<String, RiskScore> scores;
+    private volatile RandomForestClassifier classifier;
+
+    Tenant(String id, double weight, double cpuQuota, long memoryQuota, Duration scoreTtl) {
+        this.id = id;
+        this.weight = weight;
+        this.cpuQuota = cpuQuota;
+        this.memoryQuota = memoryQuota;
+        this.scores = CacheBuilder.newBuilder()
+                .maximumWeight(memoryQuota)
+                .<String, RiskScore>weigher((entityId, score) -> entityId.length() * 2 + score.estimatedBytes())
+                .expireAfterWrite(scoreTtl)
+                .build();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Relative share of scoring time when tenants compete for it
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Largest share of the scoring threads the tenant may occupy at once
+     */
+    public double getCpuQuota() {
+        return cpuQuota;
+    }
+
+    /**
+     * Bytes the tenant's score cache may hold
+     */
+    public long getMemoryQuota() {
+        return memoryQuota;
+    }
+
+    public IntObjectMap<AnomalyModel> models() {
+        return models;
+    }
+
+    public Cache<String, RiskScore> scores() {
+        return scores;
+    }
+
+    public RandomForestClassifier getClassifier() {
+        return classifier;
+    }
+
+    public void setClassifier(RandomForestClassifier classifier) {
+        this.classifier = classifier;
+    }
+}
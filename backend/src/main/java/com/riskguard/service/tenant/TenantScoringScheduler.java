@@ -0,0 +1,283 @@
+package com.riskguard.service.tenant;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tenant Scoring Scheduler
+ *
+ * Runs scoring work on the scoring pool with one bounded queue per tenant,
+ * so a tenant flooding events fills its own queue instead of delaying
+ * everybody else. Work for a key already waiting is coalesced.
+ *
+ * Threads pick the next task by weighted fair queuing over CPU time: each
+ * tenant accumulates the CPU time its tasks used divided by its weight,
+ * and the tenant with the least goes next. A tenant returning from idle
+ * starts level with the others rather than with saved-up credit. The CPU
+ * quota caps how many threads a tenant occupies at once. Submitting to a
+ * full queue waits for space, which slows only that tenant's ingestion.
+ * Only threads outside the scoring pool may submit: a scoring thread
+ * waiting for space would hold up the very pool that frees it.
+ *
+ * At most one pool task per pool thread is outstanding. Each runs one
+ * queued task and then resubmits itself while there is work, so idle pool
+ * threads steal the continuation and the tenant queues stay the only place
+ * where work waits.
+ */
+@Service
+public class TenantScoringScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantScoringScheduler.class);
+
+    // Cost assumed for a tenant's first task, before any was measured
+    private static final double INITIAL_COST_NANOS = 1_000_000.0;
+
+    @Value("${risk.tenants.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${risk.tenants.enqueue-timeout:PT5S}")
+    private Duration enqueueTimeout;
+
+    private final TenantService tenantService;
+    private final MeterRegistry meterRegistry;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final int threads;
+    private final ForkJoinPool scoringPool;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final Map<String, TenantQueue> queues = new HashMap<>();
+    private double virtualTime;
+    private int dispatched;
+    private volatile boolean running = true;
+
+    public TenantScoringScheduler(TenantService tenantService, MeterRegistry meterRegistry,
+                                  ForkJoinPool scoringPool) {
+        this.tenantService = tenantService;
+        this.meterRegistry = meterRegistry;
+        this.scoringPool = scoringPool;
+        this.threads = scoringPool.getParallelism();
+    }
+
+    /**
+     * Queue work for a tenant, replacing work queued under the same key;
+     * returns false if the tenant's queue stayed full for the enqueue timeout.
+     * Must not be called from the scoring pool.
+     */
+    public boolean submit(String tenantId, String key, Runnable task) {
+        if (isScoringThread()) {
+            throw new IllegalStateException("Scoring work for " + key + " submitted from scoring thread "
+                    + Thread.currentThread().getName());
+        }
+        lock.lock();
+        try {
+            TenantQueue queue = queue(tenantId);
+            if (queue.pending.containsKey(key)) {
+                queue.pending.get(key).task = task;
+                queue.coalesced.increment();
+                return true;
+            }
+
+            long remaining = enqueueTimeout.toNanos();
+            while (queue.pending.size() >= queueCapacity) {
+                if (remaining <= 0 || !running) {
+                    queue.rejected.increment();
+                    logger.warn("Scoring queue of tenant {} is full, dropping work for {}", tenantId, key);
+                    return false;
+                }
+                remaining = spaceAvailable.awaitNanos(remaining);
+            }
+
+            if (queue.pending.isEmpty() && queue.running == 0) {
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.pending.put(key, new Task(task, System.nanoTime()));
+            queue.queued.increment();
+            dispatch();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether the current thread belongs to the scoring pool
+     */
+    public boolean isScoringThread() {
+        return Thread.currentThread() instanceof ForkJoinWorkerThread worker && worker.getPool() == scoringPool;
+    }
+
+    /**
+     * Hand a pool task to the scoring pool if fewer than one per thread are
+     * outstanding; called with the lock held
+     */
+    private void dispatch() {
+        if (dispatched >= threads || !running) {
+            return;
+        }
+        dispatched++;
+        try {
+            scoringPool.execute(this::runNext);
+        } catch (RejectedExecutionException e) {
+            dispatched--;
+            logger.warn("Scoring pool rejected work: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Run the next task by weighted fair queuing, then resubmit while there
+     * is work; returns its slot when nothing can run
+     */
+    private void runNext() {
+        TenantQueue queue;
+        Task task;
+        lock.lock();
+        try {
+            queue = running ? next() : null;
+            if (queue == null) {
+                dispatched--;
+                return;
+            }
+            Iterator<Task> iterator = queue.pending.values().iterator();
+            task = iterator.next();
+            iterator.remove();
+            virtualTime = queue.pass;
+            queue.pass += queue.estimatedCost / queue.weight;
+            queue.running++;
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        long started = System.nanoTime();
+        long cpuStarted = threadMXBean.getCurrentThreadCpuTime();
+        queue.waitTime.record(started - task.queuedAt, TimeUnit.NANOSECONDS);
+        try {
+            task.task.run();
+        } catch (RuntimeException e) {
+            logger.error("Error in scoring work of tenant {}", queue.tenantId, e);
+        }
+        long cpu = cpuStarted >= 0 ? threadMXBean.getCurrentThreadCpuTime() - cpuStarted
+                : System.nanoTime() - started;
+        queue.cpuTime.record(cpu, TimeUnit.NANOSECONDS);
+
+        lock.lock();
+        try {
+            // Charge the actual cost instead of the estimate
+            queue.pass += (cpu - queue.estimatedCost) / queue.weight;
+            queue.estimatedCost = 0.8 * queue.estimatedCost + 0.2 * cpu;
+            queue.running--;
+            dispatched--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tenant with work, below its thread cap, with the least weighted CPU time
+     */
+    private TenantQueue next() {
+        TenantQueue best = null;
+        for (TenantQueue queue : queues.values()) {
+            if (!queue.pending.isEmpty() && queue.running < queue.maxRunning
+                    && (best == null || queue.pass < best.pass)) {
+                best = queue;
+            }
+        }
+        return best;
+    }
+
+    private TenantQueue queue(String tenantId) {
+        return queues.computeIfAbsent(tenantId, id -> new TenantQueue(tenantService.tenant(id)));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        lock.lock();
+        try {
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Task {
+        Runnable task;
+        final long queuedAt;
+
+        Task(Runnable task, long queuedAt) {
+            this.task = task;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    /**
+     * Pending work and scheduling state of one tenant; guarded by the lock
+     */
+    private final class TenantQueue {
+        final String tenantId;
+        final double weight;
+        final int maxRunning;
+        final Map<String, Task> pending = new LinkedHashMap<>();
+        int running;
+        double pass;
+        double estimatedCost = INITIAL_COST_NANOS;
+
+        final Counter queued;
+        final Counter coalesced;
+        final Counter rejected;
+        final Timer waitTime;
+        final Timer cpuTime;
+
+        TenantQueue(Tenant tenant) {
+            this.tenantId = tenant.getId();
+            this.weight = tenant.getWeight();
+            this.maxRunning = Math.max(1, (int) Math.round(tenant.getCpuQuota() * threads));
+
+            queued = submitted("queued");
+            coalesced = submitted("coalesced");
+            rejected = submitted("rejected");
+            waitTime = Timer.builder("risk.tenant.scoring.wait").tag("tenant", tenantId).register(meterRegistry);
+            cpuTime = Timer.builder("risk.tenant.scoring.cpu").tag("tenant", tenantId).register(meterRegistry);
+            Gauge.builder("risk.tenant.scoring.queue", this, q -> q.pending.size())
+                    .tag("tenant", tenantId)
+                    .register(meterRegistry);
+            Gauge.builder("risk.tenant.scoring.active", this, q -> q.running)
+                    .tag("tenant", tenantId)
+                    .register(meterRegistry);
+        }
+
+        private Counter submitted(String outcome) {
+            return Counter.builder("risk.tenant.scoring.submitted")
+                    .tag("tenant", tenantId)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.riskguard.service.tenant;
+
+import com.riskguard.domain.MonitoredEntity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tenant Service
+ *
+ * Registry of tenants, created on first use from the per-tenant weights
+ * and quotas in configuration. Tenants without an entry get weight 1, the
+ * whole scoring pool and the default memory quota.
+ */
+@Service
+public class TenantService {
+
+    // Entries of the form tenant=weight
+    @Value("${risk.tenants.weights:}")
+    private List<String> weights;
+
+    // Entries of the form tenant=share of the scoring threads, 0-1
+    @Value("${risk.tenants.cpu-quotas:}")
+    private List<String> cpuQuotas;
+
+    // Entries of the form tenant=size of the score cache, e.g. bu-a=128MB
+    @Value("${risk.tenants.memory-quotas:}")
+    private List<String> memoryQuotas;
+
+    @Value("${risk.tenants.memory-quota:64MB}")
+    private DataSize defaultMemoryQuota;
+
+    @Value("${risk.scoring.cache.ttl:300s}")
+    private Duration scoreTtl;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Double> tenantWeights = new HashMap<>();
+    private final Map<String, Double> tenantCpuQuotas = new HashMap<>();
+    private final Map<String, DataSize> tenantMemoryQuotas = new HashMap<>();
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+
+    public TenantService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void initialize() {
+        parse(weights, "weight").forEach((tenant, value) -> tenantWeights.put(tenant, positive(value, tenant)));
+        parse(cpuQuotas, "cpu quota").forEach((tenant, value) -> {
+            double quota = positive(value, tenant);
+            if (quota > 1.0) {
+                throw new IllegalArgumentException("CPU quota of tenant " + tenant + " must be at most 1: " + value);
+            }
+            tenantCpuQuotas.put(tenant, quota);
+        });
+        parse(memoryQuotas, "memory quota").forEach((tenant, value) ->
+                tenantMemoryQuotas.put(tenant, DataSize.parse(value)));
+    }
+
+    public Tenant tenant(String tenantId) {
+        String id = tenantId == null || tenantId.isBlank() ? MonitoredEntity.DEFAULT_TENANT : tenantId;
+        // Look up first: the method reference would be allocated on every call
+        Tenant tenant = tenants.get(id);
+        return tenant != null ? tenant : tenants.computeIfAbsent(id, this::create);
+    }
+
+    public Tenant tenantOf(MonitoredEntity entity) {
+        return tenant(entity.getTenantId());
+    }
+
+    public List<Tenant> tenants() {
+        return new ArrayList<>(tenants.values());
+    }
+
+    private Tenant create(String id) {
+        Tenant tenant = new Tenant(id,
+                tenantWeights.getOrDefault(id, 1.0),
+                tenantCpuQuotas.getOrDefault(id, 1.0),
+                tenantMemoryQuotas.getOrDefault(id, defaultMemoryQuota).toBytes(),
+                scoreTtl);
+
+        Gauge.builder("risk.tenant.cache.size", tenant, t -> t.scores().size())
+                .tag("tenant", id)
+                .register(meterRegistry);
+        Gauge.builder("risk.tenant.models", tenant, t -> {
+                    synchronized (t.models()) {
+                        return t.models().size();
+                    }
+                })
+                .tag("tenant", id)
+                .register(meterRegistry);
+        return tenant;
+    }
+
+    private static Map<String, String> parse(List<String> entries, String property) {
+        Map<String, String> parsed = new HashMap<>();
+        for (String entry : entries) {
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Tenant " + property + " must be tenant=value: " + entry);
+            }
+            parsed.put(parts[0].trim(), parts[1].trim());
+        }
+        return parsed;
+    }
+
+    private static double positive(String value, String tenant) {
+        double parsed = Double.parseDouble(value);
+        if (parsed <= 0) {
+            throw new IllegalArgumentException("Value for tenant " + tenant + " must be positive: " + value);
+        }
+        return parsed;
+    }
+}
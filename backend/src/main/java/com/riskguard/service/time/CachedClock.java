@@ -0,0 +1,40 @@
+package com.riskguard.service.time;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coarse wall clock: a daemon thread refreshes the current time every
+ * resolution interval, so reads are a single volatile load instead of a
+ * system call. Readings can lag real time by up to one interval.
+ */
+public class CachedClock extends ScoringClock implements AutoCloseable {
+
+    private final ScheduledExecutorService ticker;
+    private volatile long now = System.currentTimeMillis();
+
+    public CachedClock(ZoneId zone, ZoneId storageZone, Duration resolution) {
+        super(zone, storageZone);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scoring-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMicros = Math.max(1L, resolution.toNanos() / 1000);
+        ticker.scheduleAtFixedRate(() -> now = System.currentTimeMillis(),
+                periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,31 @@
+package com.riskguard.service.time;
+
+import java.time.ZoneId;
+
+/**
+ * Clock that only moves when told to, for replays driven by event time.
+ * Not thread-safe; each replay worker owns one.
+ */
+public class ManualClock extends ScoringClock {
+
+    private long now;
+
+    public ManualClock(ZoneId zone, ZoneId storageZone, long startMillis) {
+        super(zone, storageZone);
+        this.now = startMillis;
+    }
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    /**
+     * Move the clock forward; earlier times are ignored so time never runs backwards
+     */
+    public void advanceTo(long epochMillis) {
+        if (epochMillis > now) {
+            now = epochMillis;
+        }
+    }
+}
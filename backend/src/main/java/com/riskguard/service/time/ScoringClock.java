@@ -0,0 +1,210 @@
+package com.riskguard.service.time;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Time source for the scoring pipeline. Hot-path code works on epoch-millis
+ * longs; hour of day and day of week are derived arithmetically in the
+ * configured business zone instead of building LocalDateTime or Duration
+ * objects per event.
+ *
+ * Event timestamps are stored as LocalDateTime in the storage zone (the JVM
+ * default, as everywhere else in the service); {@link #toEpochMillis}
+ * converts them.
+ */
+public abstract class ScoringClock extends Clock {
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private final ZoneId zone;
+    private final ZoneRules zoneRules;
+    private final ZoneId storageZone;
+    private final ZoneRules storageRules;
+
+    // Offset of the business zone between two transitions, replaced on a miss
+    private volatile OffsetWindow offsetWindow;
+
+    // Offset of the storage zone between two transitions, in local seconds,
+    // replaced on a miss
+    private volatile OffsetWindow storageWindow;
+
+    protected ScoringClock(ZoneId zone, ZoneId storageZone) {
+        this.zone = zone;
+        this.zoneRules = zone.getRules();
+        this.storageZone = storageZone;
+        this.storageRules = storageZone.getRules();
+        this.offsetWindow = OffsetWindow.at(zoneRules, Instant.now());
+        this.storageWindow = OffsetWindow.local(storageRules, LocalDateTime.now(storageZone));
+    }
+
+    /**
+     * Current time in epoch milliseconds
+     */
+    @Override
+    public abstract long millis();
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * View of this clock in another zone; the business zone used for
+     * hour-of-day and day-of-week is not affected
+     */
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (zone.equals(this.zone)) {
+            return this;
+        }
+        ScoringClock source = this;
+        return new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return zone;
+            }
+
+            @Override
+            public Clock withZone(ZoneId other) {
+                return source.withZone(other);
+            }
+
+            @Override
+            public long millis() {
+                return source.millis();
+            }
+
+            @Override
+            public Instant instant() {
+                return source.instant();
+            }
+        };
+    }
+
+    /**
+     * Current time as stored, in the storage zone
+     */
+    public LocalDateTime storageNow() {
+        return LocalDateTime.ofInstant(instant(), storageZone);
+    }
+
+    /**
+     * Epoch milliseconds of a timestamp stored in the storage zone
+     */
+    public long toEpochMillis(LocalDateTime timestamp) {
+        long localSeconds = timestamp.toEpochSecond(ZoneOffset.UTC);
+        return (localSeconds - storageOffsetSeconds(timestamp, localSeconds)) * 1000L
+                + timestamp.getNano() / 1_000_000;
+    }
+
+    private int storageOffsetSeconds(LocalDateTime timestamp, long localSeconds) {
+        OffsetWindow window = storageWindow;
+        if (localSeconds >= window.from && localSeconds < window.until) {
+            return window.offsetSeconds;
+        }
+        window = OffsetWindow.local(storageRules, timestamp);
+        if (localSeconds >= window.from && localSeconds < window.until) {
+            storageWindow = window;
+        }
+        // Otherwise the timestamp falls in a gap or overlap, which has no window
+        return window.offsetSeconds;
+    }
+
+    /**
+     * Hour of day (0-23) in the business zone
+     */
+    public int hourOfDay(long epochMillis) {
+        return (int) (Math.floorMod(localSeconds(epochMillis), (long) SECONDS_PER_DAY) / 3600);
+    }
+
+    /**
+     * ISO day of week (1 = Monday ... 7 = Sunday) in the business zone
+     */
+    public int dayOfWeek(long epochMillis) {
+        long epochDay = Math.floorDiv(localSeconds(epochMillis), (long) SECONDS_PER_DAY);
+        // 1970-01-01 was a Thursday
+        return (int) Math.floorMod(epochDay + 3, 7L) + 1;
+    }
+
+    private long localSeconds(long epochMillis) {
+        return Math.floorDiv(epochMillis, 1000L) + offsetSeconds(epochMillis);
+    }
+
+    private int offsetSeconds(long epochMillis) {
+        OffsetWindow window = offsetWindow;
+        if (epochMillis >= window.from && epochMillis < window.until) {
+            return window.offsetSeconds;
+        }
+        window = OffsetWindow.at(zoneRules, Instant.ofEpochMilli(epochMillis));
+        offsetWindow = window;
+        return window.offsetSeconds;
+    }
+
+    /**
+     * Span between two transitions of a zone with its offset; bounds are
+     * epoch milliseconds, or local epoch seconds for storage windows
+     */
+    private static final class OffsetWindow {
+        final long from;
+        final long until;
+        final int offsetSeconds;
+
+        private OffsetWindow(long from, long until, int offsetSeconds) {
+            this.from = from;
+            this.until = until;
+            this.offsetSeconds = offsetSeconds;
+        }
+
+        static OffsetWindow at(ZoneRules rules, Instant instant) {
+            int offset = rules.getOffset(instant).getTotalSeconds();
+            if (rules.isFixedOffset()) {
+                return new OffsetWindow(Long.MIN_VALUE, Long.MAX_VALUE, offset);
+            }
+            ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+            return new OffsetWindow(
+                    previous != null ? previous.toEpochSecond() * 1000L : Long.MIN_VALUE,
+                    next != null ? next.toEpochSecond() * 1000L : Long.MAX_VALUE,
+                    offset);
+        }
+
+        /**
+         * Window of local times around a local timestamp, ending where a
+         * transition's gap or overlap begins
+         */
+        static OffsetWindow local(ZoneRules rules, LocalDateTime timestamp) {
+            ZoneOffset offset = rules.getOffset(timestamp);
+            if (rules.isFixedOffset()) {
+                return new OffsetWindow(Long.MIN_VALUE, Long.MAX_VALUE, offset.getTotalSeconds());
+            }
+            Instant instant = timestamp.toInstant(offset);
+            ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+            return new OffsetWindow(
+                    previous != null ? latest(previous) : Long.MIN_VALUE,
+                    next != null ? earliest(next) : Long.MAX_VALUE,
+                    offset.getTotalSeconds());
+        }
+
+        private static long latest(ZoneOffsetTransition transition) {
+            return Math.max(transition.getDateTimeBefore().toEpochSecond(ZoneOffset.UTC),
+                    transition.getDateTimeAfter().toEpochSecond(ZoneOffset.UTC));
+        }
+
+        private static long earliest(ZoneOffsetTransition transition) {
+            return Math.min(transition.getDateTimeBefore().toEpochSecond(ZoneOffset.UTC),
+                    transition.getDateTimeAfter().toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+}
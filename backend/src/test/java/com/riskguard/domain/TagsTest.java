@@ -0,0 +1,46 @@
+package com.riskguard.domain;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TagsTest {
+
+    @Test
+    void normaliseTrimsLowerCasesSplitsAndSorts() {
+        assertThat(Tags.normalise(Arrays.asList(" VPN ", "bulk,Export", "", null, "  ,", "vpn")))
+                .containsExactly("bulk", "export", "vpn");
+        assertThat(Tags.normalise(null)).isEmpty();
+    }
+
+    @Test
+    void formattedTagsParseBackToTheSameSet() {
+        Set<String> tags = Tags.normalise(List.of("Privileged", "after-hours", "geo:ru"));
+
+        assertThat(Tags.format(tags)).isEqualTo("after-hours,geo:ru,privileged");
+        assertThat(Tags.parse(Tags.format(tags))).isEqualTo(tags);
+        assertThat(Tags.parse(Tags.format(Set.of()))).isEmpty();
+        assertThat(Tags.parse(null)).isEmpty();
+    }
+
+    @Test
+    void tagsSurviveTheJsonColumn() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        RiskEvent event = new RiskEvent();
+        event.setTags(List.of("Bulk", " export "));
+
+        String json = objectMapper.writeValueAsString(event.getTags());
+        RiskEvent read = new RiskEvent();
+        read.setTags(objectMapper.readValue(json, new TypeReference<List<String>>() {
+        }));
+
+        assertThat(json).isEqualTo("[\"bulk\",\"export\"]");
+        assertThat(read.getTags()).isEqualTo(event.getTags());
+    }
+}
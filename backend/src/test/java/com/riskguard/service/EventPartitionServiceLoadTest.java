@@ -0,0 +1,157 @@
+package com.riskguard.service;
+
+import com.riskguard.service.EventPartitionService.PartitionInterval;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Partitioning against a real PostgreSQL under load: migrating a large
+ * plain table, routing new rows, retention and partition pruning. Skipped
+ * where Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class EventPartitionServiceLoadTest {
+
+    private static final int ENTITIES = 1000;
+    private static final int EVENTS = 500_000;
+    private static final int DAYS = 60;
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private JdbcTemplate jdbcTemplate;
+    private EventPartitionService service;
+
+    @BeforeEach
+    void start() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(),
+                POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        service = new EventPartitionService(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "interval", PartitionInterval.DAILY);
+        ReflectionTestUtils.setField(service, "premake", 7);
+        ReflectionTestUtils.setField(service, "retentionDays", 30);
+
+        // The plain tables Hibernate creates under ddl-auto, filled with DAYS of history
+        jdbcTemplate.execute("DROP TABLE IF EXISTS risk_event_metadata, risk_events, entities CASCADE");
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS risk_events_part_id_seq");
+        jdbcTemplate.execute("CREATE TABLE entities (id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                + " entity_id varchar(255) NOT NULL UNIQUE)");
+        jdbcTemplate.execute("CREATE TABLE risk_events (id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                + " entity_id bigint NOT NULL REFERENCES entities (id), event_type varchar(255) NOT NULL,"
+                + " severity varchar(255) NOT NULL, title varchar(255) NOT NULL,"
+                + " created_at timestamp(6) NOT NULL, event_timestamp timestamp(6) NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX idx_risk_events_entity_ts ON risk_events (entity_id, event_timestamp)");
+        jdbcTemplate.execute("CREATE TABLE risk_event_metadata (risk_event_id bigint NOT NULL"
+                + " REFERENCES risk_events (id), metadata_key varchar(255) NOT NULL, metadata_value varchar(255))");
+        jdbcTemplate.update("INSERT INTO entities (entity_id) SELECT 'user-' || i FROM generate_series(1, ?) i",
+                ENTITIES);
+        jdbcTemplate.update("INSERT INTO risk_events (entity_id, event_type, severity, title, created_at,"
+                + " event_timestamp) SELECT 1 + i % ?, 'LOGIN_FAILURE', 'HIGH', 'event ' || i, now(),"
+                + " current_date - ? + (i * interval '1 day' * ? / ?) FROM generate_series(0, ? - 1) i",
+                ENTITIES, DAYS, DAYS, EVENTS, EVENTS);
+        jdbcTemplate.update("INSERT INTO risk_event_metadata SELECT id, 'source', 'test' FROM risk_events"
+                + " WHERE id % 10 = 0");
+    }
+
+    @Test
+    void migrationKeepsEveryRowAndCoversHistory() {
+        service.initializePartitions();
+
+        assertThat(partitioned()).isTrue();
+        // Retention ran right after the migration and dropped the oldest days
+        assertThat(count("risk_events")).isEqualTo(count("risk_events WHERE event_timestamp >= ?",
+                TODAY.minusDays(30)));
+        assertThat(count("risk_events")).isBetween(EVENTS * 29L / DAYS, EVENTS * 31L / DAYS);
+        assertThat(count("risk_events_default")).isZero();
+        assertThat(partitions())
+                .contains(partition(TODAY.minusDays(30)), partition(TODAY), partition(TODAY.plusDays(7)))
+                .doesNotContain(partition(TODAY.minusDays(31)), partition(TODAY.plusDays(8)));
+        // Metadata of dropped partitions goes with them
+        assertThat(count("risk_event_metadata m WHERE NOT EXISTS (SELECT 1 FROM risk_events e"
+                + " WHERE e.id = m.risk_event_id)")).isZero();
+    }
+
+    @Test
+    void newRowsLandInTheirPartitionWithFreshIds() {
+        service.initializePartitions();
+        long maxId = jdbcTemplate.queryForObject("SELECT max(id) FROM risk_events", Long.class);
+
+        jdbcTemplate.update("INSERT INTO risk_events (entity_id, event_type, severity, title, created_at,"
+                + " event_timestamp) SELECT 1 + i % ?, 'LOGIN_SUCCESS', 'LOW', 'new ' || i, now(),"
+                + " current_date + i * interval '1 second' FROM generate_series(0, 9999) i", ENTITIES);
+
+        assertThat(count(partition(TODAY) + " WHERE event_type = 'LOGIN_SUCCESS'")).isEqualTo(10_000);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT min(id) FROM risk_events WHERE event_type = 'LOGIN_SUCCESS'", Long.class))
+                .isGreaterThan(maxId);
+    }
+
+    @Test
+    void rowsBeyondThePremadeRangeMoveOnceTheirPartitionExists() {
+        service.initializePartitions();
+        LocalDate later = TODAY.plusDays(10);
+        jdbcTemplate.update("INSERT INTO risk_events (entity_id, event_type, severity, title, created_at,"
+                + " event_timestamp) VALUES (1, 'LOGIN_FAILURE', 'HIGH', 'early', now(), ?::timestamp)",
+                later.atTime(12, 0).toString());
+        assertThat(count("risk_events_default")).isEqualTo(1);
+
+        ReflectionTestUtils.setField(service, "premake", 10);
+        service.maintainPartitions();
+
+        assertThat(count("risk_events_default")).isZero();
+        assertThat(count(partition(later))).isEqualTo(1);
+    }
+
+    @Test
+    void windowQueriesOnlyScanTheirPartitions() {
+        service.initializePartitions();
+        jdbcTemplate.execute("ANALYZE risk_events");
+
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN SELECT count(*) FROM risk_events"
+                + " WHERE event_timestamp >= '" + TODAY.minusDays(2) + "' AND event_timestamp < '"
+                + TODAY.minusDays(1) + "'", String.class);
+
+        String scanned = String.join("\n", plan);
+        assertThat(scanned).contains(partition(TODAY.minusDays(2)))
+                .doesNotContain(partition(TODAY.minusDays(3)), partition(TODAY.minusDays(1)),
+                        "risk_events_default");
+    }
+
+    private boolean partitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1"
+                + " FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid"
+                + " WHERE c.relname = 'risk_events')", Boolean.class));
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent"
+                + " WHERE p.relname = 'risk_events'", String.class);
+    }
+
+    private long count(String from, Object... args) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + from, Long.class, args);
+    }
+
+    private static String partition(LocalDate start) {
+        return "risk_events_p" + start.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+}
@@ -0,0 +1,234 @@
+package com.riskguard.service;
+
+import com.riskguard.service.EventPartitionService.PartitionInterval;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Statements the service issues against a recording JdbcTemplate. The
+ * same DDL runs against a real PostgreSQL in EventPartitionServiceLoadTest
+ * when Docker is available.
+ */
+class EventPartitionServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+    private final EventPartitionService service = new EventPartitionService(jdbcTemplate,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)));
+
+    EventPartitionServiceTest() {
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "interval", PartitionInterval.DAILY);
+        ReflectionTestUtils.setField(service, "premake", 3);
+        ReflectionTestUtils.setField(service, "retentionDays", 30);
+        jdbcTemplate.tables.addAll(List.of("risk_events", "risk_events_default", "risk_event_metadata"));
+        jdbcTemplate.partitioned = true;
+    }
+
+    @Test
+    void maintenanceCreatesUpcomingPartitions() {
+        jdbcTemplate.tables.add(partition(TODAY.plusDays(1)));
+
+        service.maintainPartitions();
+
+        assertThat(jdbcTemplate.statements).containsExactly(
+                createPartition(TODAY, TODAY.plusDays(1)),
+                createPartition(TODAY.plusDays(2), TODAY.plusDays(3)),
+                createPartition(TODAY.plusDays(3), TODAY.plusDays(4)));
+    }
+
+    @Test
+    void weeklyPartitionsStartOnMonday() {
+        ReflectionTestUtils.setField(service, "interval", PartitionInterval.WEEKLY);
+        ReflectionTestUtils.setField(service, "premake", 1);
+        LocalDate monday = TODAY.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+        service.maintainPartitions();
+
+        assertThat(jdbcTemplate.statements).containsExactly(
+                createPartition(monday, monday.plusWeeks(1)),
+                createPartition(monday.plusWeeks(1), monday.plusWeeks(2)));
+    }
+
+    @Test
+    void retentionDropsOnlyPartitionsEntirelyBeforeTheCutoff() {
+        ReflectionTestUtils.setField(service, "premake", 0);
+        jdbcTemplate.tables.addAll(List.of(partition(TODAY), partition(TODAY.minusDays(40)),
+                partition(TODAY.minusDays(31)), partition(TODAY.minusDays(30)), "risk_events_pbogus"));
+
+        service.maintainPartitions();
+
+        // The partition of the cutoff day still holds rows inside retention
+        assertThat(jdbcTemplate.tables).contains(partition(TODAY.minusDays(30)), "risk_events_pbogus")
+                .doesNotContain(partition(TODAY.minusDays(40)), partition(TODAY.minusDays(31)));
+        String expired = partition(TODAY.minusDays(40));
+        assertThat(jdbcTemplate.statements).containsSubsequence(
+                "DELETE FROM risk_event_metadata WHERE risk_event_id IN (SELECT id FROM " + expired + ")",
+                "ALTER TABLE risk_events DETACH PARTITION " + expired,
+                "DROP TABLE " + expired);
+    }
+
+    @Test
+    void rowsInTheDefaultPartitionMoveIntoANewPartition() {
+        ReflectionTestUtils.setField(service, "premake", 0);
+        jdbcTemplate.strayRows = true;
+        String name = partition(TODAY);
+
+        service.maintainPartitions();
+
+        assertThat(jdbcTemplate.statements).containsExactly(
+                "CREATE TABLE " + name + " (LIKE risk_events INCLUDING DEFAULTS INCLUDING CONSTRAINTS)",
+                "WITH moved AS (DELETE FROM risk_events_default WHERE event_timestamp >= ?::timestamp"
+                        + " AND event_timestamp < ?::timestamp RETURNING *) INSERT INTO " + name
+                        + " SELECT * FROM moved [" + TODAY + ", " + TODAY.plusDays(1) + "]",
+                "ALTER TABLE risk_events ATTACH PARTITION " + name + " FOR VALUES FROM ('" + TODAY
+                        + "') TO ('" + TODAY.plusDays(1) + "')");
+    }
+
+    @Test
+    void migrationCoversTheLegacyRowsBeforeCopyingThem() {
+        ReflectionTestUtils.setField(service, "premake", 0);
+        jdbcTemplate.partitioned = false;
+        jdbcTemplate.oldest = TODAY.minusDays(2);
+
+        service.migrateToPartitionedTable();
+
+        assertThat(jdbcTemplate.statements).containsSubsequence(
+                "ALTER TABLE risk_events RENAME TO risk_events_legacy",
+                "ALTER TABLE risk_event_metadata DROP CONSTRAINT \"fk_metadata_event\"",
+                "CREATE TABLE risk_events (LIKE risk_events_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS)"
+                        + " PARTITION BY RANGE (event_timestamp)",
+                "ALTER TABLE risk_events ADD PRIMARY KEY (id, event_timestamp)",
+                "CREATE TABLE risk_events_default PARTITION OF risk_events DEFAULT",
+                createPartition(TODAY.minusDays(2), TODAY.minusDays(1)),
+                createPartition(TODAY.minusDays(1), TODAY),
+                createPartition(TODAY, TODAY.plusDays(1)),
+                "INSERT INTO risk_events SELECT * FROM risk_events_legacy",
+                "DROP TABLE risk_events_legacy");
+    }
+
+    @Test
+    void otherDatabasesAreLeftAlone() {
+        jdbcTemplate.product = "H2";
+
+        service.initializePartitions();
+        service.maintainPartitions();
+
+        assertThat(jdbcTemplate.statements).isEmpty();
+    }
+
+    private static String partition(LocalDate start) {
+        return "risk_events_p" + start.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    private static String createPartition(LocalDate start, LocalDate end) {
+        return "CREATE TABLE " + partition(start) + " PARTITION OF risk_events FOR VALUES FROM ('" + start
+                + "') TO ('" + end + "')";
+    }
+
+    /**
+     * Records every statement and answers the catalog queries from a set
+     * of table names that CREATE and DROP statements keep up to date
+     */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        private static final Pattern CREATE = Pattern.compile("^CREATE TABLE (\\w+)");
+        private static final Pattern DROP = Pattern.compile("^DROP TABLE (\\w+)");
+        private static final Pattern RENAME = Pattern.compile("^ALTER TABLE (\\w+) RENAME TO (\\w+)");
+
+        final List<String> statements = new ArrayList<>();
+        final Set<String> tables = new HashSet<>();
+        String product = "PostgreSQL";
+        boolean partitioned;
+        boolean strayRows;
+        LocalDate oldest;
+
+        @Override
+        public void execute(String sql) {
+            statements.add(sql);
+            Matcher create = CREATE.matcher(sql);
+            Matcher drop = DROP.matcher(sql);
+            Matcher rename = RENAME.matcher(sql);
+            if (create.find()) {
+                tables.add(create.group(1));
+            } else if (drop.find()) {
+                tables.remove(drop.group(1));
+            } else if (rename.find()) {
+                tables.remove(rename.group(1));
+                tables.add(rename.group(2));
+            }
+        }
+
+        @Override
+        public int update(String sql) {
+            statements.add(sql);
+            return 0;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.add(sql + " " + List.of(args));
+            return 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(ConnectionCallback<T> action) {
+            return (T) product;
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            return queryForObject(sql, requiredType, new Object[0]);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            if (sql.startsWith("SELECT to_regclass")) {
+                return (T) Boolean.valueOf(tables.contains((String) args[0]));
+            }
+            if (sql.contains("pg_partitioned_table")) {
+                return (T) Boolean.valueOf(partitioned);
+            }
+            if (sql.contains("FROM risk_events_default")) {
+                return (T) Boolean.valueOf(strayRows);
+            }
+            if (sql.contains("min(event_timestamp)")) {
+                return (T) (oldest != null ? java.sql.Date.valueOf(oldest) : null);
+            }
+            throw new IllegalArgumentException("Unexpected query: " + sql);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            if (sql.contains("pg_constraint")) {
+                return (List<T>) List.of("fk_metadata_event");
+            }
+            if (sql.contains("pg_inherits")) {
+                String prefix = ((String) args[1]).replace("%", "");
+                return (List<T>) tables.stream().filter(table -> table.startsWith(prefix)).sorted().toList();
+            }
+            throw new IllegalArgumentException("Unexpected query: " + sql);
+        }
+    }
+}
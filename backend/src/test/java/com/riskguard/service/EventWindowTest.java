@@ -0,0 +1,109 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class EventWindowTest {
+
+    private static final Duration WINDOW = Duration.ofDays(2);
+
+    private final ScoringFixture fixture = new ScoringFixture().online();
+    private final MonitoredEntity entity = ScoringFixture.entity("user-1", 1);
+    private ModelSnapshot models;
+
+    @BeforeEach
+    void start() {
+        fixture.start();
+        for (int i = 0; i < 50; i++) {
+            MonitoredEntity other = ScoringFixture.entity("user-" + (i + 2), i + 2);
+            fixture.mlService.calculateRiskScore(other, fixture.events(other, 20, i));
+        }
+        models = fixture.mlService.snapshotModels();
+    }
+
+    @AfterEach
+    void stop() {
+        fixture.stop();
+    }
+
+    @Test
+    void scoresLikeARescanOfTheWindow() {
+        EventWindow window = new EventWindow(WINDOW, ScoringFixture.HALF_LIFE, fixture.clock);
+        List<RiskEvent> events = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(3);
+        long now = fixture.clock.millis();
+
+        for (int i = 0; i < 600; i++) {
+            now += random.nextLong(30 * 60_000L);
+            fixture.clock.advanceTo(now);
+            RiskEvent event = event(random, i, now);
+            fixture.sketches.record(entity.getEntityId(), event);
+            window.add(event);
+            events.add(event);
+
+            long cutoff = now - WINDOW.toMillis();
+            events.removeIf(e -> fixture.clock.toEpochMillis(e.getEventTimestamp()) < cutoff);
+            assertThat(window.size()).isEqualTo(events.size());
+            assertSameScore(window, events);
+        }
+
+        // Time passing alone expires and decays
+        fixture.clock.advanceTo(now + WINDOW.toMillis() / 2);
+        long cutoff = fixture.clock.millis() - WINDOW.toMillis();
+        events.removeIf(e -> fixture.clock.toEpochMillis(e.getEventTimestamp()) < cutoff);
+        assertSameScore(window, events);
+
+        fixture.clock.advanceTo(now + WINDOW.toMillis() + 1);
+        window.advanceTo(fixture.clock.millis());
+        assertThat(window.size()).isZero();
+        assertSameScore(window, List.of());
+    }
+
+    @Test
+    void lateEventsStayUntilTheEventsBeforeThemExpire() {
+        EventWindow window = new EventWindow(WINDOW, ScoringFixture.HALF_LIFE, fixture.clock);
+        SplittableRandom random = new SplittableRandom(5);
+        long start = fixture.clock.millis();
+
+        window.add(event(random, 0, start));
+        fixture.clock.advanceTo(start + WINDOW.toMillis());
+        // Arrives after a newer one; a rescan of the same list keeps it too
+        RiskEvent late = event(random, 1, start - 1);
+        window.add(late);
+        assertThat(window.size()).isEqualTo(2);
+
+        window.advanceTo(start + WINDOW.toMillis() + 1);
+        assertThat(window.size()).isZero();
+    }
+
+    private void assertSameScore(EventWindow window, List<RiskEvent> events) {
+        double rescanned = fixture.mlService.scoreAt(entity, events, fixture.clock, fixture.sketches,
+                ScoringFixture.HALF_LIFE, models);
+        double running = fixture.mlService.scoreAt(entity, window, fixture.sketches, models);
+        assertThat(running).isCloseTo(rescanned, within(1e-9));
+    }
+
+    private RiskEvent event(SplittableRandom random, int i, long epochMillis) {
+        RiskEvent.EventType[] types = RiskEvent.EventType.values();
+        RiskEvent.Severity[] severities = RiskEvent.Severity.values();
+        RiskEvent event = new RiskEvent(entity, types[random.nextInt(types.length)],
+                severities[random.nextInt(severities.length)], "event " + i);
+        event.setEventTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ScoringFixture.ZONE));
+        event.setSourceIp("10.0.0." + random.nextInt(16));
+        event.setFileSize(random.nextInt(4) == 0 ? (long) random.nextInt(50_000_000) : null);
+        return event;
+    }
+}
@@ -0,0 +1,141 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.service.ml.RandomCutForest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MachineLearningServiceTest {
+
+    private static final String[] DEPARTMENTS = {"IT", "Finance", "HR", "Sales"};
+
+    @Test
+    void retrainedModelsDoNotDependOnTrainingParallelism() {
+        double[] sequential = scoresAfterRetraining(1);
+        assertThat(scoresAfterRetraining(4)).containsExactly(sequential);
+    }
+
+    @Test
+    void entitiesAreNegativeOnlyWhenAllResolvedEventsWereFalsePositives() {
+        assertThat(MachineLearningService.label(List.of(event(false, false)))).isNull();
+        // Flagged but not resolved, so not yet a verdict
+        assertThat(MachineLearningService.label(List.of(event(false, true), event(false, false)))).isNull();
+        assertThat(MachineLearningService.label(List.of(event(true, true), event(false, false)))).isFalse();
+        assertThat(MachineLearningService.label(List.of(event(true, true), event(true, false)))).isTrue();
+        assertThat(MachineLearningService.label(List.of(event(true, false), event(true, true)))).isTrue();
+        assertThat(MachineLearningService.label(List.of(event(true, true), event(false, true)))).isFalse();
+    }
+
+    @Test
+    void readsDoNotTeachStreamingModels() {
+        ScoringFixture fixture = new ScoringFixture().online();
+        fixture.start();
+        try {
+            MonitoredEntity learned = ScoringFixture.entity("user-1", 1);
+            fixture.mlService.calculateRiskScore(learned, fixture.events(learned, 20, 1));
+            RandomCutForest forest = streamingForest(fixture, learned);
+            assertThat(forest.size()).isEqualTo(1);
+
+            for (int i = 2; i < 50; i++) {
+                MonitoredEntity entity = ScoringFixture.entity("user-" + i, i);
+                assertThat(fixture.mlService.readRiskScore(entity, fixture.events(entity, 20, i))).isNotNull();
+            }
+            assertThat(forest.size()).isEqualTo(1);
+        } finally {
+            fixture.stop();
+        }
+    }
+
+    @Test
+    void readWithoutStreamingModelCreatesNone() {
+        ScoringFixture fixture = new ScoringFixture().online();
+        fixture.start();
+        try {
+            MonitoredEntity entity = ScoringFixture.entity("user-1", 1);
+            fixture.mlService.readRiskScore(entity, fixture.events(entity, 20, 1));
+            assertThat(fixture.tenantService.tenantOf(entity).models().isEmpty()).isTrue();
+        } finally {
+            fixture.stop();
+        }
+    }
+
+    @Test
+    void replayScoresDoNotFollowModelsLearningAfterTheSnapshot() {
+        ScoringFixture fixture = new ScoringFixture().online();
+        fixture.start();
+        try {
+            List<MonitoredEntity> entities = new ArrayList<>();
+            List<List<RiskEvent>> events = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                MonitoredEntity entity = ScoringFixture.entity("user-" + i, i + 1);
+                entities.add(entity);
+                events.add(fixture.events(entity, 1 + i % 30, i));
+                if (i < 50) {
+                    fixture.mlService.calculateRiskScore(entity, events.get(i));
+                }
+            }
+            ModelSnapshot models = fixture.mlService.snapshotModels();
+            double[] before = replayScores(fixture, entities, events, models);
+
+            for (int i = 50; i < 100; i++) {
+                fixture.mlService.calculateRiskScore(entities.get(i), events.get(i));
+            }
+
+            assertThat(replayScores(fixture, entities, events, models)).containsExactly(before);
+            assertThat(replayScores(fixture, entities, events, fixture.mlService.snapshotModels()))
+                    .isNotEqualTo(before);
+        } finally {
+            fixture.stop();
+        }
+    }
+
+    /**
+     * Retrain one model per department, then score every entity against them
+     */
+    private static double[] scoresAfterRetraining(int parallelism) {
+        ScoringFixture fixture = new ScoringFixture().trainingParallelism(parallelism);
+        fixture.start();
+        try {
+            List<MonitoredEntity> entities = new ArrayList<>();
+            List<List<RiskEvent>> events = new ArrayList<>();
+            List<RiskEvent> allEvents = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                MonitoredEntity entity = ScoringFixture.entity("user-" + i, i + 1, DEPARTMENTS[i % DEPARTMENTS.length]);
+                entities.add(entity);
+                events.add(fixture.events(entity, 1 + i % 30, i));
+                allEvents.addAll(events.get(i));
+            }
+            fixture.mlService.retrainModels(entities, allEvents);
+            return replayScores(fixture, entities, events, fixture.mlService.snapshotModels());
+        } finally {
+            fixture.stop();
+        }
+    }
+
+    private static double[] replayScores(ScoringFixture fixture, List<MonitoredEntity> entities,
+                                         List<List<RiskEvent>> events, ModelSnapshot models) {
+        double[] scores = new double[entities.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = fixture.mlService.scoreAt(entities.get(i), events.get(i), fixture.clock, fixture.sketches,
+                    ScoringFixture.HALF_LIFE, models);
+        }
+        return scores;
+    }
+
+    private static RandomCutForest streamingForest(ScoringFixture fixture, MonitoredEntity entity) {
+        return (RandomCutForest) fixture.tenantService.tenantOf(entity).models()
+                .get(fixture.keyDictionaryService.modelKey(entity));
+    }
+
+    private static RiskEvent event(boolean resolved, boolean falsePositive) {
+        RiskEvent event = new RiskEvent(null, RiskEvent.EventType.FILE_ACCESS, RiskEvent.Severity.LOW, "event");
+        event.setIsResolved(resolved);
+        event.setIsFalsePositive(falsePositive);
+        return event;
+    }
+}
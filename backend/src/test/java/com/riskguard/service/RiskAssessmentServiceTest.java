@@ -0,0 +1,257 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.alert.AlertService;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.graph.NeighbourRiskChangedEvent;
+import com.riskguard.service.ingest.EventsIngestedEvent;
+import com.riskguard.service.journal.EventJournal;
+import com.riskguard.service.persist.ScoreWriteBehindService;
+import com.riskguard.service.query.EntityIndexService;
+import com.riskguard.service.tenant.TenantScoringScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RiskAssessmentServiceTest {
+
+    private final ScoringFixture fixture = new ScoringFixture();
+    private final Map<String, MonitoredEntity> entities = new HashMap<>();
+    private final Map<Long, List<RiskEvent>> events = new HashMap<>();
+
+    private final MonitoredEntityRepository entityRepository = mock(MonitoredEntityRepository.class);
+    private final RiskEventRepository eventRepository = mock(RiskEventRepository.class);
+    private final ScoreWriteBehindService scoreWriter = mock(ScoreWriteBehindService.class);
+    private final ClusterService clusterService = mock(ClusterService.class);
+
+    // Thread names of each kind of work, as it happens
+    private final Queue<String> loadThreads = new ConcurrentLinkedQueue<>();
+    private final Queue<String> forwardThreads = new ConcurrentLinkedQueue<>();
+    private final Queue<String> scoreThreads = new ConcurrentLinkedQueue<>();
+
+    private ExecutorService loaderExecutor;
+    private ForkJoinPool scoringPool;
+    private TenantScoringScheduler scoringScheduler;
+    private RiskAssessmentService service;
+
+    @BeforeEach
+    void start() {
+        fixture.start();
+        for (int i = 0; i < 10; i++) {
+            MonitoredEntity entity = ScoringFixture.entity("user-" + i, i + 1);
+            entities.put(entity.getEntityId(), entity);
+            events.put(entity.getId(), fixture.events(entity, 20, i));
+        }
+
+        when(entityRepository.findByEntityId(anyString())).thenAnswer(invocation -> {
+            loadThreads.add(Thread.currentThread().getName());
+            return Optional.ofNullable(entities.get(invocation.<String>getArgument(0)));
+        });
+        when(eventRepository.findRecentByEntity(anyLong(), any()))
+                .thenAnswer(invocation -> events.get(invocation.<Long>getArgument(0)));
+        when(scoreWriter.applyPending(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(clusterService.isLocal(anyString())).thenAnswer(invocation -> !"user-9".equals(invocation.getArgument(0)));
+        when(clusterService.forwardPost(anyString(), anyString())).thenAnswer(invocation -> {
+            forwardThreads.add(Thread.currentThread().getName());
+            return null;
+        });
+
+        // Recording writes behind, so its write marks where scoring ran
+        ScoreDecayService scoreDecayService = new ScoreDecayService(entityRepository, scoreWriter,
+                RiskThresholds.DEFAULT, mock(AlertService.class), clusterService, fixture.clock,
+                mock(EventJournal.class), mock(EntityIndexService.class), mock(EntityGraphService.class));
+        ReflectionTestUtils.setField(scoreDecayService, "halfLife", ScoringFixture.HALF_LIFE);
+
+        AtomicInteger loaders = new AtomicInteger();
+        loaderExecutor = Executors.newFixedThreadPool(2,
+                runnable -> new Thread(runnable, "loader-" + loaders.incrementAndGet()));
+        scoringPool = new ForkJoinPool(2, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("scoring-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+        scoringScheduler = new TenantScoringScheduler(fixture.tenantService, fixture.meterRegistry, scoringPool);
+        ReflectionTestUtils.setField(scoringScheduler, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(scoringScheduler, "enqueueTimeout", Duration.ofSeconds(5));
+
+        service = new RiskAssessmentService();
+        ReflectionTestUtils.setField(service, "entityRepository", entityRepository);
+        ReflectionTestUtils.setField(service, "eventRepository", eventRepository);
+        ReflectionTestUtils.setField(service, "mlService", fixture.mlService);
+        ReflectionTestUtils.setField(service, "scoreDecayService", scoreDecayService);
+        ReflectionTestUtils.setField(service, "clusterService", clusterService);
+        ReflectionTestUtils.setField(service, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "scoreWriter", scoreWriter);
+        ReflectionTestUtils.setField(service, "scoringScheduler", scoringScheduler);
+        ReflectionTestUtils.setField(service, "loaderExecutor", loaderExecutor);
+        ReflectionTestUtils.setField(service, "eventWindow", Duration.ofDays(7));
+        ReflectionTestUtils.invokeMethod(service, "initialize");
+    }
+
+    @AfterEach
+    void stop() {
+        loaderExecutor.shutdownNow();
+        ReflectionTestUtils.invokeMethod(scoringScheduler, "shutdown");
+        scoringPool.shutdownNow();
+        fixture.stop();
+    }
+
+    @Test
+    void scoringPoolOnlyScores() throws InterruptedException {
+        CountDownLatch recorded = countRecordedScores(9);
+
+        service.onEventsIngested(new EventsIngestedEvent(this, Map.of("default", entities.keySet())));
+
+        assertThat(recorded.await(30, TimeUnit.SECONDS)).isTrue();
+        loaderExecutor.shutdown();
+        assertThat(loaderExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(loadThreads).hasSize(9).allMatch(name -> name.startsWith("loader-"));
+        assertThat(forwardThreads).hasSize(1).allMatch(name -> name.startsWith("loader-"));
+        assertThat(scoreThreads).hasSize(9).allMatch(name -> name.startsWith("scoring-"));
+    }
+
+    @Test
+    void rescoringRequestedWhileLoadingLoadsOnceMore() throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> loadedEventCounts = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<RiskEvent> loaded = List.copyOf(events.get(invocation.<Long>getArgument(0)));
+            loadedEventCounts.add(loaded.size());
+            loading.countDown();
+            release.await();
+            return loaded;
+        }).when(eventRepository).findRecentByEntity(anyLong(), any());
+        countRecordedScores(0);
+        Map<String, Set<String>> user0 = Map.of("default", Set.of("user-0"));
+
+        service.onEventsIngested(new EventsIngestedEvent(this, user0));
+        assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+        // More events arrive while the first load runs
+        MonitoredEntity entity = entities.get("user-0");
+        events.get(entity.getId()).addAll(fixture.events(entity, 5, 100));
+        for (int i = 0; i < 3; i++) {
+            service.onEventsIngested(new EventsIngestedEvent(this, user0));
+        }
+        release.countDown();
+
+        loaderExecutor.shutdown();
+        assertThat(loaderExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        scoringPool.awaitQuiescence(10, TimeUnit.SECONDS);
+
+        // One load for the requests made while the first one ran, and it saw the new events
+        assertThat(loadedEventCounts).containsExactly(20, 25);
+        // Scoring of the first load is replaced if still queued when the second one lands
+        assertThat(scoreThreads).hasSizeBetween(1, 2);
+    }
+
+    @Test
+    void aFullTenantQueueHoldsBackLoadersNotScoring() throws InterruptedException {
+        ReflectionTestUtils.setField(scoringScheduler, "queueCapacity", 1);
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            scoringScheduler.submit("default", "block-" + i, () -> {
+                blocked.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+        CountDownLatch recorded = countRecordedScores(3);
+
+        service.onEventsIngested(new EventsIngestedEvent(this, Map.of("default", Set.of("user-0", "user-1", "user-2"))));
+
+        // One scoring fills the queue, and both loaders wait for space with the next one loaded
+        while (loadThreads.size() < 3) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        assertThat(fixture.meterRegistry.get("risk.tenant.scoring.queue").tag("tenant", "default").gauge().value())
+                .isEqualTo(1.0);
+        assertThat(scoreThreads).isEmpty();
+
+        gate.countDown();
+        assertThat(recorded.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(loadThreads).hasSize(3).allMatch(name -> name.startsWith("loader-"));
+        assertThat(scoreThreads).hasSize(3).allMatch(name -> name.startsWith("scoring-"));
+    }
+
+    @Test
+    void neighbourRescoringPushedBackOntoAScoringThreadScoresInPlace() throws InterruptedException {
+        // A loader pool with its only thread busy and no queue runs loads on the caller
+        loaderExecutor.shutdownNow();
+        loaderExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+                runnable -> new Thread(runnable, "loader-1"), new ThreadPoolExecutor.CallerRunsPolicy());
+        ReflectionTestUtils.setField(service, "loaderExecutor", loaderExecutor);
+        CountDownLatch gate = new CountDownLatch(1);
+        loaderExecutor.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CountDownLatch recorded = countRecordedScores(1);
+
+        // Score propagation publishes neighbour rescoring from the scoring thread that recorded the jump
+        scoringScheduler.submit("default", "user-5", () -> service.onNeighbourRiskChanged(
+                new NeighbourRiskChangedEvent(this, Map.of("default", Set.of("user-0")))));
+
+        assertThat(recorded.await(10, TimeUnit.SECONDS)).isTrue();
+        gate.countDown();
+        assertThat(loadThreads).hasSize(1).allMatch(name -> name.startsWith("scoring-"));
+        assertThat(scoreThreads).containsExactlyElementsOf(loadThreads);
+    }
+
+    /**
+     * Latch counted down by each recorded score, noting the recording thread
+     */
+    private CountDownLatch countRecordedScores(int scores) {
+        CountDownLatch recorded = new CountDownLatch(scores);
+        doAnswer(invocation -> {
+            scoreThreads.add(Thread.currentThread().getName());
+            recorded.countDown();
+            return null;
+        }).when(scoreWriter).write(any(), anyString());
+        return recorded;
+    }
+}
@@ -0,0 +1,113 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.MonitoredEntity.RiskLevel;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.service.alert.AlertService;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.journal.EventJournal;
+import com.riskguard.service.persist.ScoreWriteBehindService;
+import com.riskguard.service.query.EntityIndexService;
+import com.riskguard.service.time.ManualClock;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScoreDecayServiceTest {
+
+    // Alerts de-escalate from HIGH below 55 and from MEDIUM below 35
+    private static final RiskThresholds THRESHOLDS = new RiskThresholds(80, 60, 40, 5);
+    private static final Duration HALF_LIFE = Duration.ofHours(24);
+
+    private final ManualClock clock = new ManualClock(ScoringFixture.ZONE, ScoringFixture.ZONE,
+            ScoringFixture.START.atZone(ScoringFixture.ZONE).toInstant().toEpochMilli());
+    private final MonitoredEntityRepository entityRepository = mock(MonitoredEntityRepository.class);
+    private final ScoreWriteBehindService scoreWriter = mock(ScoreWriteBehindService.class);
+    private final AlertService alertService = mock(AlertService.class);
+    private final ClusterService clusterService = mock(ClusterService.class);
+    private final ScoreDecayService service = new ScoreDecayService(entityRepository, scoreWriter, THRESHOLDS,
+            alertService, clusterService, clock, mock(EventJournal.class), mock(EntityIndexService.class),
+            mock(EntityGraphService.class));
+
+    ScoreDecayServiceTest() {
+        ReflectionTestUtils.setField(service, "halfLife", HALF_LIFE);
+        when(clusterService.isLocal(anyString())).thenReturn(true);
+        when(scoreWriter.applyPending(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void wakeUpIsAHysteresisBandBelowTheThreshold() {
+        long now = clock.millis();
+
+        service.scheduleNextCrossing("high", 70, now);
+        // Already under the HIGH threshold, but alerting still holds HIGH
+        service.scheduleNextCrossing("in-band", 58, now);
+        service.scheduleNextCrossing("medium", 50, now);
+        service.scheduleNextCrossing("low-in-band", 38, now);
+        service.scheduleNextCrossing("low", 30, now);
+
+        assertThat(service.pendingCrossings()).containsOnlyKeys("high", "in-band", "medium", "low-in-band");
+        assertCrossesAt("high", 70, now, 55);
+        assertCrossesAt("in-band", 58, now, 55);
+        assertCrossesAt("medium", 50, now, 35);
+        assertCrossesAt("low-in-band", 38, now, 35);
+    }
+
+    @Test
+    void scoresAreStampedFromTheScoringClock() {
+        MonitoredEntity entity = ScoringFixture.entity("user-1", 1);
+
+        service.recordScore(entity, 70, "Assessed");
+
+        assertThat(entity.getLastRiskAssessment()).isEqualTo(ScoringFixture.START);
+        assertCrossesAt("user-1", 70, clock.millis(), 55);
+    }
+
+    @Test
+    void dueWakeUpDeEscalatesTheAlertLevel() {
+        MonitoredEntity entity = ScoringFixture.entity("user-1", 1);
+        when(entityRepository.findByEntityId("user-1")).thenReturn(Optional.of(entity));
+        service.recordScore(entity, 70, "Assessed");
+        long due = service.pendingCrossings().get("user-1");
+
+        clock.advanceTo(due - 2);
+        service.processDueCrossings();
+        verify(scoreWriter, never()).write(entity, "Score decayed");
+        assertThat(THRESHOLDS.levelFor(service.currentScore(entity), RiskLevel.HIGH)).isEqualTo(RiskLevel.HIGH);
+
+        clock.advanceTo(due);
+        service.processDueCrossings();
+
+        verify(scoreWriter).write(entity, "Score decayed");
+        assertThat(THRESHOLDS.levelFor(entity.getCurrentRiskScore(), RiskLevel.HIGH)).isEqualTo(RiskLevel.MEDIUM);
+        // The next one waits for the MEDIUM band
+        assertCrossesAt("user-1", entity.getCurrentRiskScore(), due, 35);
+    }
+
+    /**
+     * The pending wake-up is the first millisecond the score, set at the
+     * given time, has decayed below the crossing
+     */
+    private void assertCrossesAt(String entityId, double score, long updatedAtMillis, double crossing) {
+        long due = service.pendingCrossings().get(entityId);
+        assertThat(decayed(score, due - updatedAtMillis)).isLessThan(crossing);
+        assertThat(decayed(score, due - updatedAtMillis - 2)).isGreaterThanOrEqualTo(crossing);
+    }
+
+    private static double decayed(double score, long ageMillis) {
+        return MonitoredEntity.MIN_RISK_SCORE + (score - MonitoredEntity.MIN_RISK_SCORE)
+                * ScoreDecayService.decayFactor(ageMillis, HALF_LIFE);
+    }
+}
@@ -0,0 +1,104 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Steady-state scoring must not allocate: replay scores nothing at all,
+ * live scores only the RiskScore they return. Measured with the thread's
+ * allocation counter; ScoringBenchmark checks the same with JMH's gc
+ * profiler.
+ */
+class ScoringAllocationTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int MEASURED = 10_000;
+    private static final int ROUNDS = 5;
+
+    // RiskScore plus its points array, with headroom for compressed oops being off
+    private static final long LIVE_RESULT_BYTES = 512;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final ScoringFixture fixture = new ScoringFixture();
+    private final List<MonitoredEntity> entities = new ArrayList<>();
+    private final List<List<RiskEvent>> events = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        fixture.stop();
+    }
+
+    @Test
+    void replayScoringAllocatesNothing() {
+        fixture.start();
+        populate();
+        List<RiskEvent> allEvents = new ArrayList<>();
+        events.forEach(allEvents::addAll);
+        fixture.mlService.retrainModels(entities, allEvents);
+        ModelSnapshot models = fixture.mlService.snapshotModels();
+
+        long bytes = measure(i -> fixture.mlService.scoreAt(entities.get(i % entities.size()),
+                events.get(i % entities.size()), fixture.clock, fixture.sketches, ScoringFixture.HALF_LIFE, models));
+
+        assertThat(bytes).isZero();
+    }
+
+    @Test
+    void liveScoringAllocatesOnlyItsResult() {
+        fixture.online().start();
+        populate();
+
+        long bytes = measure(i -> fixture.mlService.score(entities.get(i % entities.size()),
+                events.get(i % entities.size()), fixture.clock, fixture.sketches, ScoringFixture.HALF_LIFE, true)
+                .getScore());
+
+        assertThat(bytes / MEASURED).isLessThanOrEqualTo(LIVE_RESULT_BYTES);
+    }
+
+    private void populate() {
+        for (int i = 0; i < 50; i++) {
+            MonitoredEntity entity = ScoringFixture.entity("user-" + i, i + 1);
+            entities.add(entity);
+            events.add(fixture.events(entity, 40, i));
+        }
+    }
+
+    /**
+     * Bytes allocated by the measured calls, after enough warmup calls for
+     * the JIT to settle. The lowest of a few rounds is taken, since a
+     * compilation still queued behind other work shows up as allocation.
+     */
+    private static long measure(Scorer scorer) {
+        double sink = 0.0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += scorer.score(i);
+        }
+
+        long bytes = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS && bytes > 0; round++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < MEASURED; i++) {
+                sink += scorer.score(i);
+            }
+            bytes = Math.min(bytes, THREADS.getCurrentThreadAllocatedBytes() - before);
+        }
+
+        assertThat(sink).isPositive();
+        return bytes;
+    }
+
+    @FunctionalInterface
+    private interface Scorer {
+        double score(int iteration);
+    }
+}
@@ -0,0 +1,140 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per score, checked with JMH's gc profiler: replay scoring must
+ * allocate nothing, live scoring only the RiskScore it returns. Run after
+ * {@code mvn test-compile} with
+ *
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.riskguard.service.ScoringBenchmark
+ * </pre>
+ *
+ * which exits non-zero when a limit is exceeded. ScoringAllocationTest
+ * checks the same limits in the regular build.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+    // Bytes per operation, from gc.alloc.rate.norm
+    private static final double REPLAY_LIMIT = 1.0;
+    private static final double LIVE_LIMIT = 512.0;
+
+    @Param({"batch", "streaming"})
+    public String model;
+
+    @Param({"40"})
+    public int eventsPerEntity;
+
+    private ScoringFixture fixture;
+    private final List<MonitoredEntity> entities = new ArrayList<>();
+    private final List<List<RiskEvent>> events = new ArrayList<>();
+    private ModelSnapshot models;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new ScoringFixture();
+        if (model.equals("streaming")) {
+            fixture.online();
+        }
+        fixture.start();
+        List<RiskEvent> allEvents = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            MonitoredEntity entity = ScoringFixture.entity("user-" + i, i + 1);
+            entities.add(entity);
+            events.add(fixture.events(entity, eventsPerEntity, i));
+            allEvents.addAll(events.get(i));
+        }
+        // Trains the batch forest; streaming ones start on the first learning score
+        fixture.mlService.retrainModels(entities, allEvents);
+        for (int i = 0; i < entities.size(); i++) {
+            fixture.mlService.score(entities.get(i), events.get(i), fixture.clock, fixture.sketches,
+                    ScoringFixture.HALF_LIFE, true);
+        }
+        models = fixture.mlService.snapshotModels();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.stop();
+    }
+
+    @Benchmark
+    public double replay() {
+        int i = next();
+        return fixture.mlService.scoreAt(entities.get(i), events.get(i), fixture.clock, fixture.sketches,
+                ScoringFixture.HALF_LIFE, models);
+    }
+
+    @Benchmark
+    public RiskScore live() {
+        int i = next();
+        return fixture.mlService.score(entities.get(i), events.get(i), fixture.clock, fixture.sketches,
+                ScoringFixture.HALF_LIFE, true);
+    }
+
+    private int next() {
+        int i = next;
+        next = i + 1 == entities.size() ? 0 : i + 1;
+        return i;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ScoringBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        boolean failed = false;
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            double limit = benchmark.endsWith(".replay") ? REPLAY_LIMIT : LIVE_LIMIT;
+            Result<?> allocated = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (allocated == null) {
+                throw new IllegalStateException("No allocation rate reported for " + benchmark);
+            }
+            if (allocated.getScore() > limit) {
+                System.err.printf("%s allocates %.1f bytes/op, limit %.1f%n", benchmark, allocated.getScore(), limit);
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.riskguard.service;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.sequence.SequenceDetectorService;
+import com.riskguard.service.tenant.TenantService;
+import com.riskguard.service.time.ManualClock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * A MachineLearningService wired by hand to real in-memory collaborators,
+ * with repositories and the cluster mocked out. Times are in a zone with
+ * daylight saving so offset lookups are exercised.
+ */
+public class ScoringFixture {
+
+    public static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    public static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 9, 0);
+    public static final Duration HALF_LIFE = Duration.ofHours(24);
+
+    public final ManualClock clock = new ManualClock(ZONE, ZONE, START.atZone(ZONE).toInstant().toEpochMilli());
+    public final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    public final KeyDictionaryService keyDictionaryService = new KeyDictionaryService(10_000, 10_000, 100);
+    public final CardinalitySketchService sketches = new CardinalitySketchService(10, Duration.ofHours(24), 24, clock);
+    public final TenantService tenantService = new TenantService(meterRegistry);
+    public final MachineLearningService mlService = new MachineLearningService();
+    // Scoring only reads the half-life, the collaborators are never reached
+    public final ScoreDecayService scoreDecayService = new ScoreDecayService(null, null, null, null, null, clock,
+            null, null, null);
+
+    public ScoringFixture() {
+        ReflectionTestUtils.setField(tenantService, "weights", List.of());
+        ReflectionTestUtils.setField(tenantService, "cpuQuotas", List.of());
+        ReflectionTestUtils.setField(tenantService, "memoryQuotas", List.of());
+        ReflectionTestUtils.setField(tenantService, "defaultMemoryQuota", DataSize.ofMegabytes(64));
+        ReflectionTestUtils.setField(tenantService, "scoreTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.invokeMethod(tenantService, "initialize");
+
+        EntityGraphService entityGraphService = new EntityGraphService(keyDictionaryService,
+                mock(MonitoredEntityRepository.class), mock(RiskEventRepository.class), mock(ClusterService.class),
+                mock(ApplicationEventPublisher.class), clock, meterRegistry, 256, 1000, Duration.ofHours(1));
+        SequenceDetectorService sequenceDetectorService = new SequenceDetectorService(List.of(), 64, 16,
+                Duration.ofHours(48), clock, meterRegistry);
+
+        ReflectionTestUtils.setField(mlService, "nEstimators", 100);
+        ReflectionTestUtils.setField(mlService, "maxSamples", 256);
+        ReflectionTestUtils.setField(mlService, "classifierEstimators", 50);
+        ReflectionTestUtils.setField(mlService, "classifierMaxDepth", 10);
+        ReflectionTestUtils.setField(mlService, "classifierMinSamplesSplit", 2);
+        ReflectionTestUtils.setField(mlService, "classifierWeight", 0.5);
+        ReflectionTestUtils.setField(mlService, "validationFraction", 0.2);
+        ReflectionTestUtils.setField(mlService, "seed", 42L);
+        ReflectionTestUtils.setField(mlService, "trainingParallelism", 2);
+        ReflectionTestUtils.setField(mlService, "onlineModels", Set.of());
+        ReflectionTestUtils.setField(mlService, "onlineTrees", 32);
+        ReflectionTestUtils.setField(mlService, "onlineWindowSize", 256);
+        ReflectionTestUtils.setField(scoreDecayService, "halfLife", HALF_LIFE);
+        ReflectionTestUtils.setField(mlService, "scoreDecayService", scoreDecayService);
+        ReflectionTestUtils.setField(mlService, "cardinalitySketchService", sketches);
+        ReflectionTestUtils.setField(mlService, "tenantService", tenantService);
+        ReflectionTestUtils.setField(mlService, "keyDictionaryService", keyDictionaryService);
+        ReflectionTestUtils.setField(mlService, "sequenceDetectorService", sequenceDetectorService);
+        ReflectionTestUtils.setField(mlService, "entityGraphService", entityGraphService);
+        ReflectionTestUtils.setField(mlService, "clock", clock);
+    }
+
+    /**
+     * Score streaming models for all entity types instead of batch ones
+     */
+    public ScoringFixture online() {
+        ReflectionTestUtils.setField(mlService, "onlineModels", Set.of("*"));
+        return this;
+    }
+
+    public ScoringFixture trainingParallelism(int parallelism) {
+        ReflectionTestUtils.setField(mlService, "trainingParallelism", parallelism);
+        return this;
+    }
+
+    public void start() {
+        ReflectionTestUtils.invokeMethod(mlService, "initialize");
+    }
+
+    public void stop() {
+        ReflectionTestUtils.invokeMethod(mlService, "shutdown");
+    }
+
+    public static MonitoredEntity entity(String entityId, long id) {
+        return entity(entityId, id, "IT");
+    }
+
+    public static MonitoredEntity entity(String entityId, long id, String department) {
+        MonitoredEntity entity = new MonitoredEntity(entityId, entityId, MonitoredEntity.EntityType.USER, department);
+        entity.setId(id);
+        entity.setCreatedAt(START.minusDays(30));
+        entity.setLastActivity(START.minusHours(2));
+        return entity;
+    }
+
+    /**
+     * Events of varied type, severity and address over the two days before
+     * {@link #START}, recorded into the fixture's sketches
+     */
+    public List<RiskEvent> events(MonitoredEntity entity, int count, long seed) {
+        RiskEvent.EventType[] types = RiskEvent.EventType.values();
+        RiskEvent.Severity[] severities = RiskEvent.Severity.values();
+        SplittableRandom random = new SplittableRandom(seed);
+        List<RiskEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            RiskEvent event = new RiskEvent(entity, types[random.nextInt(types.length)],
+                    severities[random.nextInt(severities.length)], "event " + i);
+            event.setEventTimestamp(START.minusMinutes(random.nextInt(48 * 60)));
+            event.setSourceIp("10.0." + random.nextInt(4) + "." + random.nextInt(16));
+            event.setDestinationIp("192.168.1." + random.nextInt(8));
+            event.setPort(random.nextInt(2) == 0 ? 443 : 22);
+            event.setSessionId("session-" + random.nextInt(5));
+            event.setFileSize(random.nextInt(4) == 0 ? (long) random.nextInt(50_000_000) : null);
+            sketches.record(entity.getEntityId(), event);
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,119 @@
+package com.riskguard.service.alert;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.MonitoredEntity.RiskLevel;
+import com.riskguard.domain.RiskThresholds;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertServiceTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final RecordingSink sink = new RecordingSink(2.0);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void alertsOverTheRateWaitForTheNextFlush() throws InterruptedException {
+        AlertService service = alertService(Duration.ofSeconds(1));
+        for (int i = 0; i < 4; i++) {
+            service.onScoreUpdate(entity("e" + i, null, 47.0));
+        }
+
+        service.flush();
+        assertThat(sink.delivered).hasSize(2);
+
+        Thread.sleep(1100);
+        service.flush();
+        assertThat(sink.delivered).extracting(RiskAlert::getEntityId).containsExactly("e0", "e1", "e2", "e3");
+    }
+
+    @Test
+    void failedDeliveriesAreRetried() {
+        AlertService service = alertService(Duration.ofSeconds(1));
+        service.onScoreUpdate(entity("e0", null, 47.0));
+
+        sink.failing = true;
+        service.flush();
+        assertThat(sink.delivered).isEmpty();
+
+        sink.failing = false;
+        service.flush();
+        assertThat(sink.delivered).extracting(RiskAlert::getNewLevel).containsExactly(RiskLevel.CRITICAL);
+    }
+
+    @Test
+    void entityAlreadyAtItsStoredLevelDoesNotAlertAgain() {
+        AlertService service = alertService(Duration.ofSeconds(1));
+
+        // As after a restart: stored at 43 (HIGH), rescored to 42
+        service.onScoreUpdate(entity("e0", 43.0, 42.0));
+        service.flush();
+        assertThat(sink.delivered).isEmpty();
+
+        service.onScoreUpdate(entity("e0", 42.0, 47.0));
+        service.flush();
+        assertThat(sink.delivered).extracting(RiskAlert::getPreviousLevel).containsExactly(RiskLevel.HIGH);
+    }
+
+    private AlertService alertService(Duration flushInterval) {
+        AlertService service = new AlertService(RiskThresholds.DEFAULT, List.of(sink), new SimpleMeterRegistry(),
+                executor, 100, flushInterval);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "dedupWindow", Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        ReflectionTestUtils.setField(service, "backlogCapacity", 100);
+        return service;
+    }
+
+    private static MonitoredEntity entity(String entityId, Double previousScore, double score) {
+        MonitoredEntity entity = new MonitoredEntity(entityId, entityId, MonitoredEntity.EntityType.USER, "IT");
+        if (previousScore != null) {
+            entity.setCurrentRiskScore(previousScore, RiskThresholds.DEFAULT, LocalDateTime.now());
+        }
+        entity.setCurrentRiskScore(score, RiskThresholds.DEFAULT, LocalDateTime.now());
+        return entity;
+    }
+
+    private static class RecordingSink implements AlertSink {
+        private final double ratePerSecond;
+        private final List<RiskAlert> delivered = new ArrayList<>();
+        private volatile boolean failing;
+
+        RecordingSink(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+
+        @Override
+        public void deliver(List<RiskAlert> alerts) {
+            if (failing) {
+                throw new IllegalStateException("Sink unavailable");
+            }
+            delivered.addAll(alerts);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.riskguard.service.cluster;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.ingest.IngestEvent;
+import com.riskguard.service.ingest.IngestResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterIngestTest {
+
+    private List<ClusterNode> nodes;
+    private ClusterNode a;
+    private ClusterNode b;
+
+    @BeforeEach
+    void start() {
+        nodes = ClusterNode.start(Map.of("risk.sequences.patterns",
+                "scan-login: PORT_SCAN -> LOGIN_FAILURE -> LOGIN_SUCCESS within 1h points 10"), "node-a", "node-b");
+        a = nodes.get(0);
+        b = nodes.get(1);
+    }
+
+    @AfterEach
+    void stop() {
+        nodes.forEach(ClusterNode::close);
+    }
+
+    @Test
+    void eventsUpdateOnlyTheOwnersState() {
+        String ownedByA = ClusterNode.ownedBy(a, "user");
+        String ownedByB = ClusterNode.ownedBy(b, "user");
+
+        List<IngestEvent> batch = new ArrayList<>();
+        batch.addAll(events(ownedByA, 3));
+        batch.addAll(events(ownedByB, 5));
+        IngestResult result = a.ingestion().ingest(batch);
+
+        assertThat(result.getAccepted()).isEqualTo(8);
+        assertThat(a.sketches().entityIds()).containsExactly(ownedByA);
+        assertThat(b.sketches().entityIds()).containsExactly(ownedByB);
+        assertThat(b.sketches().estimate(ownedByB, CardinalitySketchService.Dimension.SOURCE_IP).getEstimate())
+                .isEqualTo(5);
+        // Each node rescores what it owns
+        assertThat(a.ingestedEntityIds()).containsExactly(ownedByA);
+        assertThat(b.ingestedEntityIds()).containsExactly(ownedByB);
+    }
+
+    @Test
+    void eventsFromSeveralReceiversMeetOnTheOwner() {
+        String ownedByB = ClusterNode.ownedBy(b, "user");
+
+        a.ingestion().ingest(events(ownedByB, 4));
+        b.ingestion().ingest(events(ownedByB, 8));
+
+        assertThat(a.sketches().entityIds()).isEmpty();
+        assertThat(b.sketches().estimate(ownedByB, CardinalitySketchService.Dimension.SOURCE_IP).getEstimate())
+                .isEqualTo(8);
+    }
+
+    @Test
+    void sequenceSplitAcrossReceiversCompletesOnTheOwner() {
+        String ownedByB = ClusterNode.ownedBy(b, "user");
+
+        a.ingestion().ingest(List.of(event(ownedByB, RiskEvent.EventType.PORT_SCAN, 30)));
+        b.ingestion().ingest(List.of(event(ownedByB, RiskEvent.EventType.LOGIN_FAILURE, 20)));
+        a.ingestion().ingest(List.of(event(ownedByB, RiskEvent.EventType.LOGIN_SUCCESS, 10)));
+
+        assertThat(b.sequences().getMatches(ownedByB)).singleElement()
+                .satisfies(match -> assertThat(match.pattern()).isEqualTo("scan-login"));
+        assertThat(a.sequences().getMatches(ownedByB)).isEmpty();
+    }
+
+    @Test
+    void unreachableOwnerLeavesTheStateOnTheReceiver() {
+        String ownedByB = ClusterNode.ownedBy(b, "user");
+        b.stop();
+
+        IngestResult result = a.ingestion().ingest(events(ownedByB, 2));
+
+        assertThat(result.getAccepted()).isEqualTo(2);
+        assertThat(a.sketches().entityIds()).containsExactly(ownedByB);
+        assertThat(a.ingestedEntityIds()).containsExactly(ownedByB);
+    }
+
+    private static IngestEvent event(String entityId, RiskEvent.EventType type, int minutesAgo) {
+        RiskEvent event = new RiskEvent(null, type, RiskEvent.Severity.MEDIUM, null);
+        event.setEventTimestamp(ClusterNode.START.minusMinutes(minutesAgo));
+        return new IngestEvent(entityId, event, 1);
+    }
+
+    /**
+     * Events with distinct source addresses 10.0.0.1 up to 10.0.0.count
+     */
+    static List<IngestEvent> events(String entityId, int count) {
+        List<IngestEvent> events = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            RiskEvent event = new RiskEvent(null, RiskEvent.EventType.LOGIN_FAILURE, RiskEvent.Severity.LOW, null);
+            event.setEventTimestamp(ClusterNode.START.minusMinutes(i));
+            event.setSourceIp("10.0.0." + i);
+            events.add(new IngestEvent(entityId, event, i));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,262 @@
+package com.riskguard.service.cluster;
+
+import com.riskguard.controller.ClusterController;
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.RiskAssessmentService;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.ingest.EventIngestionService;
+import com.riskguard.service.ingest.EventsIngestedEvent;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.journal.EventJournal;
+import com.riskguard.service.query.EntityIndexService;
+import com.riskguard.service.sequence.SequenceDetectorService;
+import com.riskguard.service.time.ManualClock;
+import com.riskguard.service.time.ScoringClock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A cluster member running in-process: a servlet container on a localhost
+ * port serving the real ClusterController, with the real cluster, ingestion,
+ * sketch and sequence services behind it. Storage, the journal, the query
+ * index, the graph and rescoring are mocks. Every entity exists, in tenant
+ * "default".
+ */
+public class ClusterNode implements AutoCloseable {
+
+    public static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    public static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 9, 0);
+    public static final int VIRTUAL_NODES = 128;
+
+    private final String nodeId;
+    private final int port;
+    private final List<String> members;
+    private final Map<String, String> properties;
+    private final Queue<ApplicationEvent> published = new ConcurrentLinkedQueue<>();
+    private ConfigurableApplicationContext context;
+
+    private ClusterNode(String nodeId, int port, List<String> members, Map<String, String> properties) {
+        this.nodeId = nodeId;
+        this.port = port;
+        this.members = members;
+        this.properties = properties;
+    }
+
+    /**
+     * Start one node per id, each knowing all of them
+     *
+     * @param properties extra properties set on every node
+     */
+    public static List<ClusterNode> start(Map<String, String> properties, String... nodeIds) {
+        Map<String, Integer> ports = new LinkedHashMap<>();
+        for (String nodeId : nodeIds) {
+            ports.put(nodeId, freePort());
+        }
+        List<String> members = ports.entrySet().stream()
+                .map(entry -> entry.getKey() + "=http://localhost:" + entry.getValue())
+                .toList();
+
+        List<ClusterNode> nodes = new ArrayList<>();
+        ports.forEach((nodeId, port) -> nodes.add(new ClusterNode(nodeId, port, members, properties)));
+        nodes.forEach(ClusterNode::start);
+        return nodes;
+    }
+
+    /**
+     * Start the node, again after {@link #stop()}, on the same port
+     */
+    public void start() {
+        Map<String, String> args = new LinkedHashMap<>();
+        // Keep application.yml and its datasource settings out
+        args.put("spring.config.name", "cluster-node");
+        args.put("spring.main.banner-mode", "off");
+        args.put("server.port", String.valueOf(port));
+        args.put("risk.cluster.enabled", "true");
+        args.put("risk.cluster.node-id", nodeId);
+        args.put("risk.cluster.nodes", String.join(",", members));
+        args.put("risk.cluster.virtual-nodes", String.valueOf(VIRTUAL_NODES));
+        args.put("risk.cluster.failure-threshold", "1");
+        args.put("risk.cluster.username", "");
+        args.putAll(properties);
+
+        context = new SpringApplicationBuilder(NodeConfiguration.class, ClusterController.class,
+                ClusterService.class, EventIngestionService.class, CardinalitySketchService.class,
+                SequenceDetectorService.class, KeyDictionaryService.class)
+                .web(WebApplicationType.SERVLET)
+                // Registered as instances, so the container leaves the mocks' fields alone
+                .initializers(context -> {
+                    ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+                    beanFactory.registerSingleton("monitoredEntityRepository", entityRepository());
+                    beanFactory.registerSingleton("riskEventRepository", mock(RiskEventRepository.class));
+                    beanFactory.registerSingleton("eventJournal", mock(EventJournal.class));
+                    beanFactory.registerSingleton("entityIndexService", mock(EntityIndexService.class));
+                    beanFactory.registerSingleton("entityGraphService", mock(EntityGraphService.class));
+                    beanFactory.registerSingleton("riskAssessmentService", mock(RiskAssessmentService.class));
+                })
+                .listeners((ApplicationListener<ApplicationEvent>) published::add)
+                .run(args.entrySet().stream()
+                        .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                        .toArray(String[]::new));
+    }
+
+    /**
+     * Shut the node down; its peers notice on their next heartbeat
+     */
+    public void stop() {
+        if (context != null) {
+            context.close();
+            context = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public ClusterService cluster() {
+        return bean(ClusterService.class);
+    }
+
+    public EventIngestionService ingestion() {
+        return bean(EventIngestionService.class);
+    }
+
+    public CardinalitySketchService sketches() {
+        return bean(CardinalitySketchService.class);
+    }
+
+    public SequenceDetectorService sequences() {
+        return bean(SequenceDetectorService.class);
+    }
+
+    /**
+     * Application events of a type published on this node, in order
+     */
+    public <T extends ApplicationEvent> List<T> published(Class<T> type) {
+        return published.stream().filter(type::isInstance).map(type::cast).collect(Collectors.toList());
+    }
+
+    /**
+     * Entities announced for rescoring on this node, in order
+     */
+    public List<String> ingestedEntityIds() {
+        return published(EventsIngestedEvent.class).stream()
+                .flatMap(event -> event.getEntityIdsByTenant().values().stream())
+                .flatMap(ids -> ids.stream())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * First of the candidate ids owned by the given node
+     */
+    public static String ownedBy(ClusterNode owner, String prefix) {
+        ConsistentHashRing ring = new ConsistentHashRing(owner.cluster().getMembers(), VIRTUAL_NODES);
+        for (int i = 0; ; i++) {
+            String entityId = prefix + "-" + i;
+            if (ring.ownerOf(entityId).equals(owner.getNodeId())) {
+                return entityId;
+            }
+        }
+    }
+
+    private static MonitoredEntityRepository entityRepository() {
+        MonitoredEntityRepository repository = mock(MonitoredEntityRepository.class);
+        when(repository.findByEntityId(anyString())).thenAnswer(invocation -> {
+            String entityId = invocation.getArgument(0);
+            MonitoredEntity entity = new MonitoredEntity(entityId, entityId, MonitoredEntity.EntityType.USER, "IT");
+            entity.setId((long) (entityId.hashCode() & Integer.MAX_VALUE));
+            return Optional.of(entity);
+        });
+        return repository;
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({PropertyPlaceholderAutoConfiguration.class, JacksonAutoConfiguration.class,
+            HttpMessageConvertersAutoConfiguration.class, ServletWebServerFactoryAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class, WebMvcAutoConfiguration.class})
+    static class NodeConfiguration {
+
+        @Bean
+        ScoringClock scoringClock() {
+            return new ManualClock(ZONE, ZONE, START.atZone(ZONE).toInstant().toEpochMilli());
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        WebClient.Builder webClientBuilder() {
+            return WebClient.builder();
+        }
+
+        @Bean
+        TransactionTemplate transactionTemplate() {
+            return new TransactionTemplate(mock(PlatformTransactionManager.class));
+        }
+
+        @Bean(destroyMethod = "shutdownNow")
+        ExecutorService ingestExecutor() {
+            return Executors.newSingleThreadExecutor();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.riskguard.service.cluster;
+
+import com.riskguard.service.RiskAssessmentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class ClusterServiceTest {
+
+    private List<ClusterNode> nodes;
+    private ClusterNode a;
+    private ClusterNode b;
+
+    @BeforeEach
+    void start() {
+        nodes = ClusterNode.start(Map.of(), "node-a", "node-b");
+        a = nodes.get(0);
+        b = nodes.get(1);
+    }
+
+    @AfterEach
+    void stop() {
+        nodes.forEach(ClusterNode::close);
+    }
+
+    @Test
+    void nodesAgreeOnOwnership() {
+        for (int i = 0; i < 100; i++) {
+            String entityId = "user-" + i;
+            assertThat(a.cluster().ownerOf(entityId)).isEqualTo(b.cluster().ownerOf(entityId));
+            assertThat(a.cluster().isLocal(entityId)).isNotEqualTo(b.cluster().isLocal(entityId));
+        }
+    }
+
+    @Test
+    void forwardedRescoreRunsOnTheOwnerOnly() {
+        String ownedByB = ClusterNode.ownedBy(b, "user");
+
+        Map<String, Object> response = a.cluster().forwardPost(ownedByB, "/api/risk/cluster/rescore/" + ownedByB);
+
+        assertThat(response).containsEntry("entityId", ownedByB).containsEntry("rescored", true);
+        verify(b.bean(RiskAssessmentService.class)).rescoreEntityLocally(ownedByB);
+        verifyNoInteractions(a.bean(RiskAssessmentService.class));
+    }
+
+    @Test
+    void failedForwardingIsReportedToTheCaller() {
+        String ownedByB = ClusterNode.ownedBy(b, "user");
+        b.stop();
+
+        assertThatThrownBy(() -> a.cluster().forwardPost(ownedByB, "/api/risk/cluster/rescore/" + ownedByB))
+                .isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void heartbeatRebalancesWhenANodeLeavesAndReturns() {
+        String ownedByA = ClusterNode.ownedBy(a, "user");
+        String ownedByB = ClusterNode.ownedBy(b, "user");
+
+        a.cluster().heartbeat();
+        assertThat(a.published(ShardRebalanceEvent.class)).isEmpty();
+
+        b.stop();
+        a.cluster().heartbeat();
+
+        assertThat(a.cluster().getMembers()).containsExactly("node-a");
+        assertThat(a.cluster().isLocal(ownedByB)).isTrue();
+        ShardRebalanceEvent left = a.published(ShardRebalanceEvent.class).get(0);
+        assertThat(left.isAcquired(ownedByB)).isTrue();
+        assertThat(left.isAcquired(ownedByA)).isFalse();
+
+        // a now keeps the state of b's entities
+        a.ingestion().ingest(ClusterIngestTest.events(ownedByB, 3));
+        assertThat(a.sketches().entityIds()).containsExactly(ownedByB);
+
+        b.start();
+        a.cluster().heartbeat();
+
+        assertThat(a.cluster().getMembers()).containsExactlyInAnyOrder("node-a", "node-b");
+        assertThat(a.cluster().isLocal(ownedByB)).isFalse();
+        ShardRebalanceEvent returned = a.published(ShardRebalanceEvent.class).get(1);
+        assertThat(returned.isLocal(ownedByB)).isFalse();
+        assertThat(returned.isAcquired(ownedByA)).isFalse();
+        // and hands it back
+        assertThat(a.sketches().entityIds()).isEmpty();
+    }
+}
@@ -0,0 +1,73 @@
+package com.riskguard.service.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    @Test
+    void emptyRingOwnsNothing() {
+        assertThat(new ConsistentHashRing(Set.of(), 128).ownerOf("user-1")).isNull();
+    }
+
+    @Test
+    void ownershipDoesNotDependOnMembershipOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 128);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("node-c", "node-a", "node-b"), 128);
+
+        for (int i = 0; i < KEYS; i++) {
+            assertThat(reordered.ownerOf("user-" + i)).isEqualTo(ring.ownerOf("user-" + i));
+        }
+    }
+
+    @Test
+    void keysSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(Set.of("node-a", "node-b", "node-c"), 128);
+
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.ownerOf("user-" + i), 1, Integer::sum);
+        }
+
+        assertThat(owned).containsOnlyKeys("node-a", "node-b", "node-c");
+        assertThat(owned.values()).allSatisfy(count -> assertThat(count).isBetween(KEYS / 3 * 3 / 4, KEYS / 3 * 5 / 4));
+    }
+
+    @Test
+    void joiningNodeTakesKeysOnlyForItself() {
+        ConsistentHashRing before = new ConsistentHashRing(Set.of("node-a", "node-b", "node-c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(Set.of("node-a", "node-b", "node-c", "node-d"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String owner = after.ownerOf("user-" + i);
+            if (!owner.equals(before.ownerOf("user-" + i))) {
+                assertThat(owner).isEqualTo("node-d");
+                moved++;
+            }
+        }
+        // About a quarter of the keys, not a reshuffle
+        assertThat(moved).isBetween(KEYS / 4 * 3 / 4, KEYS / 4 * 5 / 4);
+    }
+
+    @Test
+    void leavingNodeHandsOnlyItsOwnKeysOver() {
+        ConsistentHashRing before = new ConsistentHashRing(Set.of("node-a", "node-b", "node-c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(Set.of("node-a", "node-c"), 128);
+
+        for (int i = 0; i < KEYS; i++) {
+            String owner = before.ownerOf("user-" + i);
+            if (!owner.equals("node-b")) {
+                assertThat(after.ownerOf("user-" + i)).isEqualTo(owner);
+            }
+        }
+    }
+}
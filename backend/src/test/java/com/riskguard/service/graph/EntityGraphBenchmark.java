@@ -0,0 +1,121 @@
+package com.riskguard.service.graph;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.time.ManualClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Time to push a score jump through graphs of millions of edges, with an
+ * average degree of 20 and skewed edge weights. The work should follow the
+ * neighbourhood reached within the maximum depth, not the graph size. Run
+ * after {@code mvn test-compile} with
+ *
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.riskguard.service.graph.EntityGraphBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class EntityGraphBenchmark {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 2, 9, 0);
+    private static final int AVERAGE_DEGREE = 20;
+
+    @Param({"1000000", "10000000"})
+    public int edgeCount;
+
+    @Param({"2", "3"})
+    public int maxDepth;
+
+    private EntityGraphService service;
+    private MonitoredEntity[] entities;
+    private final SplittableRandom random = new SplittableRandom(29);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int nodes = edgeCount * 2 / AVERAGE_DEGREE;
+        ManualClock clock = new ManualClock(ZONE, ZONE, NOW.atZone(ZONE).toInstant().toEpochMilli());
+        // Stub-only, so calls are not recorded over millions of invocations
+        ClusterService clusterService = mock(ClusterService.class, withSettings().stubOnly());
+        when(clusterService.isLocal(anyString())).thenReturn(true);
+        service = new EntityGraphService(new KeyDictionaryService(nodes, 1000, 1000),
+                mock(MonitoredEntityRepository.class), mock(RiskEventRepository.class), clusterService,
+                event -> { }, clock, new SimpleMeterRegistry(), 256, 100_000, Duration.ofHours(1));
+        ReflectionTestUtils.setField(service, "damping", 0.3);
+        ReflectionTestUtils.setField(service, "maxDepth", maxDepth);
+        ReflectionTestUtils.setField(service, "minJump", 5.0);
+        ReflectionTestUtils.setField(service, "minShare", 0.05);
+        ReflectionTestUtils.setField(service, "maxInheritedPoints", 15.0);
+        ReflectionTestUtils.setField(service, "rescoreThreshold", 1.0);
+        ReflectionTestUtils.setField(service, "halfLife", Duration.ofHours(6));
+
+        entities = new MonitoredEntity[nodes];
+        for (int i = 0; i < nodes; i++) {
+            MonitoredEntity entity = new MonitoredEntity("entity-" + i, "entity-" + i,
+                    MonitoredEntity.EntityType.USER, "IT");
+            entity.restoreRiskScore(20.0, null, RiskThresholds.DEFAULT.levelFor(20.0), NOW);
+            service.register(entity);
+            entities[i] = entity;
+        }
+        // Events build edges one at a time; the graph itself is filled directly
+        EntityGraph graph = (EntityGraph) ReflectionTestUtils.getField(service, "graph");
+        for (int i = 0; i < edgeCount; i++) {
+            int a = random.nextInt(nodes);
+            int b = random.nextInt(nodes);
+            graph.addEdge(a, b, 1.0f + (float) -Math.log(1.0 - random.nextDouble()) * 4.0f);
+        }
+        for (MonitoredEntity entity : entities) {
+            service.onScoreUpdate(entity);
+        }
+    }
+
+    @Benchmark
+    public void propagate() {
+        MonitoredEntity entity = entities[random.nextInt(entities.length)];
+        // Past anything it may have inherited, so every update is a jump
+        entity.setCurrentRiskScore(entity.getCurrentRiskScore() + 25.0, RiskThresholds.DEFAULT, NOW);
+        service.onScoreUpdate(entity);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EntityGraphBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,227 @@
+package com.riskguard.service.graph;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.time.ManualClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EntityGraphServiceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 2, 9, 0);
+    private static final String TENANT = "acme";
+
+    private final ManualClock clock = new ManualClock(ZONE, ZONE, NOW.atZone(ZONE).toInstant().toEpochMilli());
+    private final ClusterService clusterService = mock(ClusterService.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final EntityGraphService service = new EntityGraphService(new KeyDictionaryService(1000, 1000, 100),
+            mock(MonitoredEntityRepository.class), mock(RiskEventRepository.class), clusterService, eventPublisher,
+            clock, new SimpleMeterRegistry(), 256, 1000, Duration.ofHours(1));
+    private int sessions;
+
+    EntityGraphServiceTest() {
+        ReflectionTestUtils.setField(service, "damping", 0.3);
+        ReflectionTestUtils.setField(service, "maxDepth", 2);
+        ReflectionTestUtils.setField(service, "minJump", 5.0);
+        ReflectionTestUtils.setField(service, "minShare", 0.05);
+        ReflectionTestUtils.setField(service, "maxInheritedPoints", 100.0);
+        ReflectionTestUtils.setField(service, "rescoreThreshold", 1.0);
+        ReflectionTestUtils.setField(service, "edgeHalfLife", Duration.ofDays(7));
+        ReflectionTestUtils.setField(service, "minEdgeWeight", 0.05f);
+        ReflectionTestUtils.setField(service, "halfLife", Duration.ofHours(6));
+        when(clusterService.isLocal(anyString())).thenReturn(true);
+    }
+
+    @Test
+    void jumpsAreSplitByEdgeWeightAndDamped() {
+        link("a", "b", 3);
+        link("a", "c", 1);
+        MonitoredEntity a = baseline("a", 20);
+
+        jump(a, 60);
+
+        assertThat(inherited("b")).isCloseTo(0.3 * 40 * 3 / 4, within(1e-9));
+        assertThat(inherited("c")).isCloseTo(0.3 * 40 * 1 / 4, within(1e-9));
+        assertThat(inherited("a")).isZero();
+        assertThat(rescored()).isEqualTo(Map.of(TENANT, Set.of("b", "c")));
+    }
+
+    @Test
+    void propagationStopsAtTheMaximumDepth() {
+        link("a", "b", 1);
+        link("b", "c", 1);
+        link("c", "d", 1);
+        MonitoredEntity a = baseline("a", 10);
+
+        jump(a, 60);
+
+        // b splits what it passes on across both its edges; the half back to a is dropped
+        assertThat(inherited("b")).isCloseTo(15.0, within(1e-9));
+        assertThat(inherited("c")).isCloseTo(0.3 * 15 / 2, within(1e-9));
+        assertThat(inherited("d")).isZero();
+
+        ReflectionTestUtils.setField(service, "maxDepth", 3);
+        jump(a, 110);
+        assertThat(inherited("d")).isCloseTo(0.3 * 0.3 * 15 / 2 / 2, within(1e-9));
+    }
+
+    @Test
+    void sharesBelowTheMinimumAreNotPassedOn() {
+        ReflectionTestUtils.setField(service, "minShare", 2.5);
+        ReflectionTestUtils.setField(service, "maxDepth", 3);
+        link("a", "b", 1);
+        link("b", "c", 1);
+        link("c", "d", 1);
+        MonitoredEntity a = baseline("a", 10);
+
+        jump(a, 60);
+
+        assertThat(inherited("b")).isCloseTo(15.0, within(1e-9));
+        assertThat(inherited("c")).isZero();
+        assertThat(inherited("d")).isZero();
+    }
+
+    @Test
+    void smallJumpsAndIsolatedEntitiesDoNotPropagate() {
+        link("a", "b", 1);
+        MonitoredEntity a = baseline("a", 10);
+        MonitoredEntity lonely = baseline("lonely", 10);
+
+        jump(a, 14);
+        jump(lonely, 90);
+
+        assertThat(inherited("b")).isZero();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void inheritedPointsAreCappedAndDecay() {
+        ReflectionTestUtils.setField(service, "maxInheritedPoints", 15.0);
+        link("a", "b", 1);
+        MonitoredEntity a = baseline("a", 10);
+
+        jump(a, 70);
+        assertThat(inherited("b")).isEqualTo(15.0);
+        // A second jump gains nothing past the cap, so b is not rescored again
+        jump(a, 100);
+        assertThat(inherited("b")).isEqualTo(15.0);
+        verify(eventPublisher, times(1)).publishEvent(any(NeighbourRiskChangedEvent.class));
+
+        clock.advanceTo(clock.millis() + Duration.ofHours(6).toMillis());
+        assertThat(inherited("b")).isCloseTo(7.5, within(1e-9));
+    }
+
+    @Test
+    void inheritedRiskNeverPropagatesFurther() {
+        link("a", "b", 1);
+        link("b", "c", 1);
+        MonitoredEntity a = baseline("a", 10);
+        MonitoredEntity b = baseline("b", 20);
+        jump(a, 60);
+        double reachedC = inherited("c");
+
+        // b is rescored with what it inherited; its own score has not moved
+        jump(b, 20 + inherited("b"));
+
+        assertThat(inherited("c")).isEqualTo(reachedC);
+        verify(eventPublisher, times(1)).publishEvent(any(NeighbourRiskChangedEvent.class));
+    }
+
+    @Test
+    void onlyLocalNeighboursInheritButRemoteOnesStillRelay() {
+        when(clusterService.isLocal("b")).thenReturn(false);
+        link("a", "b", 1);
+        link("b", "c", 1);
+        MonitoredEntity a = baseline("a", 10);
+
+        jump(a, 60);
+
+        assertThat(inherited("b")).isZero();
+        assertThat(inherited("c")).isCloseTo(0.3 * 15 / 2, within(1e-9));
+        assertThat(rescored()).isEqualTo(Map.of(TENANT, Set.of("c")));
+    }
+
+    @Test
+    void edgesStayWithinATenantAndFade() {
+        link("a", "b", 1);
+        service.recordEvent("x", "other", event("shared"));
+        service.recordEvent("a", TENANT, event("shared"));
+        assertThat(service.edgeCount()).isEqualTo(1);
+
+        clock.advanceTo(clock.millis() + Duration.ofDays(7).toMillis());
+        service.decayEdges();
+        assertThat(service.getNeighbours("a", 10)).singleElement()
+                .satisfies(neighbour -> assertThat((float) neighbour.get("weight")).isCloseTo(0.5f, within(1e-6f)));
+
+        clock.advanceTo(clock.millis() + Duration.ofDays(28).toMillis());
+        service.decayEdges();
+        assertThat(service.edgeCount()).isZero();
+    }
+
+    /**
+     * Adds weight to the edge between two entities through a shared session
+     */
+    private void link(String first, String second, int times) {
+        for (int i = 0; i < times; i++) {
+            String session = "session-" + sessions++;
+            service.recordEvent(first, TENANT, event(session));
+            service.recordEvent(second, TENANT, event(session));
+        }
+    }
+
+    private MonitoredEntity baseline(String entityId, double score) {
+        MonitoredEntity entity = new MonitoredEntity(entityId, entityId, MonitoredEntity.EntityType.USER, "IT");
+        entity.setTenantId(TENANT);
+        // No previous score, so this only sets the baseline
+        entity.restoreRiskScore(score, null, RiskThresholds.DEFAULT.levelFor(score), NOW);
+        service.onScoreUpdate(entity);
+        return entity;
+    }
+
+    private void jump(MonitoredEntity entity, double score) {
+        entity.setCurrentRiskScore(score, RiskThresholds.DEFAULT, NOW);
+        service.onScoreUpdate(entity);
+    }
+
+    private double inherited(String entityId) {
+        return service.inheritedPoints(entityId, clock.millis());
+    }
+
+    private Map<String, Set<String>> rescored() {
+        ArgumentCaptor<NeighbourRiskChangedEvent> captor = ArgumentCaptor.forClass(NeighbourRiskChangedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        return captor.getValue().getEntityIdsByTenant();
+    }
+
+    private static RiskEvent event(String sessionId) {
+        RiskEvent event = new RiskEvent(null, RiskEvent.EventType.LOGIN_SUCCESS, RiskEvent.Severity.LOW, "login");
+        event.setEventTimestamp(NOW);
+        event.setSessionId(sessionId);
+        return event;
+    }
+}
@@ -0,0 +1,130 @@
+package com.riskguard.service.ingest;
+
+import com.riskguard.domain.RiskEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryEventCodecTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+    @Test
+    void eventsRoundTripWithTagsAndMetadata() {
+        RiskEvent tagged = event(RiskEvent.EventType.FILE_DOWNLOAD);
+        tagged.setTags(List.of("Bulk", "export", "geo:RU"));
+        tagged.addMetadata("country", "RU");
+        tagged.addMetadata("bytes", "1048576");
+        tagged.setSourceIp("10.0.0.7");
+        tagged.setPort(443);
+        tagged.setFileSize(1_048_576L);
+        RiskEvent plain = event(RiskEvent.EventType.LOGIN_FAILURE);
+
+        List<IngestEvent> decoded = roundTrip(List.of(new IngestEvent("user-1", tagged, 0),
+                new IngestEvent("user-2", plain, 1)));
+
+        assertThat(decoded).extracting(IngestEvent::getEntityId).containsExactly("user-1", "user-2");
+        RiskEvent first = decoded.get(0).getEvent();
+        assertThat(first.getTags()).containsExactly("bulk", "export", "geo:ru");
+        assertThat(first.getMetadata()).isEqualTo(Map.of("country", "RU", "bytes", "1048576"));
+        assertThat(first.getEventTimestamp()).isEqualTo(tagged.getEventTimestamp());
+        assertThat(first.getSourceIp()).isEqualTo("10.0.0.7");
+        assertThat(first.getPort()).isEqualTo(443);
+        assertThat(first.getFileSize()).isEqualTo(1_048_576L);
+
+        RiskEvent second = decoded.get(1).getEvent();
+        assertThat(second.getTags()).isEmpty();
+        assertThat(second.getMetadata()).isEmpty();
+        assertThat(second.getSourceIp()).isNull();
+    }
+
+    @Test
+    void truncatedPayloadIsRejected() {
+        byte[] bytes = BinaryEventCodec.encode(List.of(new IngestEvent("user-1",
+                event(RiskEvent.EventType.LOGIN_FAILURE), 0)), ZONE);
+        ByteBuffer truncated = ByteBuffer.wrap(bytes, 0, bytes.length - 1);
+
+        assertThatThrownBy(() -> BinaryEventCodec.decode(truncated, ZONE, event -> {
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void stringTagsBeyondIntRangeAreRejected() {
+        // Lengths and references whose value wraps to a small or negative int
+        long[] tags = {
+                (1L << 32) << 1 | 1, (1L << 31) << 1 | 1, -1L >>> 1 | 1,
+                (1L << 32) << 1, (1L << 32 | 1) << 1, (1L << 31) << 1};
+        for (long tag : tags) {
+            assertThatThrownBy(() -> decode(payload(1, tag)))
+                    .as("tag %d", tag)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void unknownStringReferencesAreRejected() {
+        // The first reference in a batch has nothing to point to yet
+        assertThatThrownBy(() -> decode(payload(1, 1L << 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown string reference");
+    }
+
+    @Test
+    void countsBeyondIntRangeAreRejected() {
+        assertThatThrownBy(() -> decode(payload(1L << 32, 0)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("out of int range");
+    }
+
+    private static RiskEvent event(RiskEvent.EventType type) {
+        RiskEvent event = new RiskEvent();
+        event.setEventType(type);
+        event.setSeverity(RiskEvent.Severity.HIGH);
+        event.setTitle(type.name());
+        event.setEventTimestamp(LocalDateTime.of(2026, 3, 28, 22, 30, 15, 250_000_000));
+        return event;
+    }
+
+    /**
+     * Batch of the given event count whose first event has the given
+     * entity id tag and no other fields
+     */
+    private static ByteBuffer payload(long count, long entityTag) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        // Header of an empty batch, without its count
+        buffer.put(BinaryEventCodec.encode(List.of(), ZONE), 0, 3);
+        putVarLong(buffer, count);
+        buffer.put((byte) 0).put((byte) 0);
+        putVarLong(buffer, 0);
+        putVarLong(buffer, 0);
+        putVarLong(buffer, entityTag);
+        return buffer.flip();
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int decode(ByteBuffer buffer) {
+        return BinaryEventCodec.decode(buffer, ZONE, event -> {
+        });
+    }
+
+    private static List<IngestEvent> roundTrip(List<IngestEvent> events) {
+        List<IngestEvent> decoded = new ArrayList<>();
+        BinaryEventCodec.decode(ByteBuffer.wrap(BinaryEventCodec.encode(events, ZONE)), ZONE, decoded::add);
+        return decoded;
+    }
+}
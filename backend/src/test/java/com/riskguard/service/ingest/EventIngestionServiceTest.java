@@ -0,0 +1,172 @@
+package com.riskguard.service.ingest;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.graph.EntityGraphService;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.journal.EventJournal;
+import com.riskguard.service.query.EntityIndexService;
+import com.riskguard.service.sequence.SequenceDetectorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class EventIngestionServiceTest {
+
+    private static final long BODY_BYTES = 100L * 1024 * 1024;
+
+    private final ExecutorService ingestExecutor = Executors.newSingleThreadExecutor();
+    private final MonitoredEntityRepository entityRepository = stub(MonitoredEntityRepository.class);
+    private final RiskEventRepository eventRepository = stub(RiskEventRepository.class);
+    private final EventIngestionService service = new EventIngestionService(entityRepository, eventRepository,
+            stub(CardinalitySketchService.class), new TransactionTemplate(stub(PlatformTransactionManager.class)),
+            stub(ApplicationEventPublisher.class),
+            JsonMapper.builder().findAndAddModules()
+                    .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).build(),
+            new KeyDictionaryService(1000, 1000, 100), stub(EventJournal.class), stub(EntityIndexService.class),
+            stub(SequenceDetectorService.class), stub(EntityGraphService.class), localCluster(), ingestExecutor);
+
+    EventIngestionServiceTest() {
+        ReflectionTestUtils.setField(service, "batchSize", 1000);
+        ReflectionTestUtils.setField(service, "maxLineBytes", 65536);
+        ReflectionTestUtils.setField(service, "maxErrors", 1000);
+
+        when(entityRepository.findByEntityId(anyString())).thenAnswer(invocation -> {
+            MonitoredEntity entity = new MonitoredEntity(invocation.getArgument(0), "name",
+                    MonitoredEntity.EntityType.USER, "IT");
+            entity.setId(1L);
+            return Optional.of(entity);
+        });
+    }
+
+    @AfterEach
+    void shutdown() {
+        ingestExecutor.shutdownNow();
+    }
+
+    @Test
+    void hundredMegabyteBodyIsStreamedInBatches() throws IOException {
+        GeneratedBody body = new GeneratedBody(BODY_BYTES);
+        AtomicLong stored = new AtomicLong();
+        AtomicLong maxReadAhead = new AtomicLong();
+        when(eventRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            List<RiskEvent> events = invocation.getArgument(0);
+            long bytesStored = stored.addAndGet(events.size()) * body.lineBytes;
+            maxReadAhead.accumulateAndGet(body.served - bytesStored, Math::max);
+            return events;
+        });
+
+        IngestResult result = service.ingestNdjson(body);
+
+        assertThat(result.getRejected()).isZero();
+        assertThat(result.getAccepted()).isEqualTo(body.lines).isEqualTo(stored.get());
+        // At most the batch being stored, the one being parsed and one read chunk
+        assertThat(maxReadAhead.get()).isLessThan(2L * 1000 * body.lineBytes + 64 * 1024);
+    }
+
+    @Test
+    void invalidLinesAreReportedByLineNumber() throws IOException {
+        String body = """
+                {"entityId":"user-1","eventType":"FILE_ACCESS","severity":"LOW","tags":"bulk"}
+                {"entityId":"user-1","eventType":"NOT_A_TYPE","severity":"LOW"}
+
+                [1, 2]
+                {"entityId":"user-2","eventType":"FILE_ACCESS"}
+                {"entityId":"user-2","eventType":"LOGIN_FAILURE","severity":"HIGH"} {}
+                null
+                """;
+
+        IngestResult result = service.ingestNdjson(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(result.getAccepted()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(error -> error.get("index"))
+                .containsExactlyInAnyOrder(2L, 4L, 5L, 6L, 7L);
+    }
+
+    private static ClusterService localCluster() {
+        ClusterService clusterService = stub(ClusterService.class);
+        when(clusterService.isLocal(anyString())).thenReturn(true);
+        return clusterService;
+    }
+
+    private static <T> T stub(Class<T> type) {
+        // Stub-only mocks keep no invocation history, which would otherwise
+        // hold on to every stored event
+        return mock(type, withSettings().stubOnly());
+    }
+
+    /**
+     * Produces NDJSON lines of a fixed length on demand, counting the bytes
+     * handed out so far
+     */
+    private static class GeneratedBody extends InputStream {
+
+        private final byte[] line;
+        private final int lineBytes;
+        private final long lines;
+        private volatile long served;
+
+        GeneratedBody(long size) {
+            String padding = "x".repeat(400);
+            this.line = ("{\"entityId\":\"user-00\",\"eventType\":\"FILE_ACCESS\",\"severity\":\"LOW\","
+                    + "\"eventTimestamp\":\"2026-01-01T00:00:00\",\"tags\":[\"bulk\"],"
+                    + "\"description\":\"" + padding + "\"}\n").getBytes(StandardCharsets.UTF_8);
+            this.lineBytes = line.length;
+            this.lines = size / lineBytes;
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0];
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            long total = lines * lineBytes;
+            if (served == total) {
+                return -1;
+            }
+            int count = (int) Math.min(length, total - served);
+            for (int i = 0; i < count; i++) {
+                long position = served + i;
+                byte b = line[(int) (position % lineBytes)];
+                // Spread the lines over 100 entities
+                if (position % lineBytes == 18 || position % lineBytes == 19) {
+                    long digits = (position / lineBytes) % 100;
+                    b = (byte) ('0' + (position % lineBytes == 18 ? digits / 10 : digits % 10));
+                }
+                buffer[offset + i] = b;
+            }
+            served += count;
+            return count;
+        }
+    }
+}
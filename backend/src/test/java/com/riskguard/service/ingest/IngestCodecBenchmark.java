@@ -0,0 +1,127 @@
+package com.riskguard.service.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.riskguard.domain.RiskEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events decoded per second from an NDJSON body, the way ingestNdjson
+ * reads it, and from the same events in the binary format. Storing is left
+ * out; this is the part the format decides. Run after
+ * {@code mvn test-compile} with
+ *
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.riskguard.service.ingest.IngestCodecBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestCodecBenchmark {
+
+    private static final int EVENTS = 1000;
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 9, 0);
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final ObjectReader payloadReader = objectMapper.readerFor(EventPayload.class);
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<IngestEvent> events = new ArrayList<>(EVENTS);
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        SplittableRandom random = new SplittableRandom(17);
+        for (int i = 0; i < EVENTS; i++) {
+            RiskEvent event = new RiskEvent();
+            event.setEventType(RiskEvent.EventType.values()[random.nextInt(RiskEvent.EventType.values().length)]);
+            event.setSeverity(RiskEvent.Severity.values()[random.nextInt(RiskEvent.Severity.values().length)]);
+            event.setTitle("event " + i);
+            event.setEventTimestamp(START.plusSeconds(i));
+            event.setSourceIp("10.0." + random.nextInt(4) + "." + random.nextInt(16));
+            event.setDestinationIp("192.168.1." + random.nextInt(8));
+            event.setPort(random.nextInt(2) == 0 ? 443 : 22);
+            event.setSessionId("session-" + random.nextInt(5));
+            event.setAction("read");
+            String entityId = "user-" + random.nextInt(100);
+            events.add(new IngestEvent(entityId, event));
+
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("entityId", entityId);
+            line.put("eventType", event.getEventType());
+            line.put("severity", event.getSeverity());
+            line.put("title", event.getTitle());
+            line.put("eventTimestamp", event.getEventTimestamp().toString());
+            line.put("sourceIp", event.getSourceIp());
+            line.put("destinationIp", event.getDestinationIp());
+            line.put("port", event.getPort());
+            line.put("sessionId", event.getSessionId());
+            line.put("action", event.getAction());
+            lines.write(objectMapper.writeValueAsBytes(line));
+            lines.write('\n');
+        }
+        json = lines.toByteArray();
+        binary = BinaryEventCodec.encode(events, ZONE);
+        System.out.printf("%d events: %d bytes as NDJSON, %d bytes binary%n", EVENTS, json.length, binary.length);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void json(Blackhole blackhole) throws IOException {
+        NdjsonLineReader reader = new NdjsonLineReader(new ByteArrayInputStream(json), 64 * 1024);
+        while (reader.next()) {
+            try (JsonParser parser = objectMapper.getFactory()
+                    .createParser(reader.getBuffer(), 0, reader.getLength())) {
+                EventPayload payload = payloadReader.readValue(parser);
+                blackhole.consume(payload.toIngestEvent(reader.getLineNumber()));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int binary(Blackhole blackhole) {
+        return BinaryEventCodec.decode(ByteBuffer.wrap(binary), ZONE, blackhole::consume);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IngestCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,62 @@
+package com.riskguard.service.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KafkaEventListenerTest {
+
+    private final EventIngestionService ingestionService = mock(EventIngestionService.class);
+    private final KafkaEventListener listener = new KafkaEventListener(ingestionService, new ObjectMapper());
+
+    @Test
+    void malformedRecordIsSkipped() {
+        when(ingestionService.decodeBinary(any(ByteBuffer.class)))
+                .thenThrow(new IllegalArgumentException("Truncated event payload"));
+
+        assertThatCode(() -> listener.onRecord(record(new byte[]{1, 2, 3}, false))).doesNotThrowAnyException();
+        verify(ingestionService, never()).ingest(any());
+    }
+
+    @Test
+    void malformedJsonIsSkipped() throws IOException {
+        when(ingestionService.readPayload(any(JsonParser.class))).thenAnswer(invocation ->
+                new ObjectMapper().readerFor(EventPayload.class).readValue(invocation.<JsonParser>getArgument(0)));
+        byte[] value = "{not json".getBytes(StandardCharsets.UTF_8);
+
+        assertThatCode(() -> listener.onRecord(record(value, true))).doesNotThrowAnyException();
+        verify(ingestionService, never()).ingest(any());
+    }
+
+    @Test
+    void storageFailurePropagatesForRetry() {
+        when(ingestionService.decodeBinary(any(ByteBuffer.class))).thenReturn(List.of());
+        when(ingestionService.ingest(any())).thenThrow(new DataAccessResourceFailureException("Database down"));
+
+        assertThatThrownBy(() -> listener.onRecord(record(new byte[]{1}, false)))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    private static ConsumerRecord<String, byte[]> record(byte[] value, boolean json) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("risk-events", 0, 42L, "key", value);
+        if (json) {
+            record.headers().add("content-type", "application/json".getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+}
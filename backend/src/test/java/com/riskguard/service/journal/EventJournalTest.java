@@ -0,0 +1,184 @@
+package com.riskguard.service.journal;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.service.ingest.BinaryEventCodec;
+import com.riskguard.service.ingest.IngestEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventJournalTest {
+
+    // Room for five score records per segment
+    private static final DataSize SMALL_SEGMENTS = DataSize.ofBytes(256);
+
+    @TempDir
+    Path directory;
+
+    private EventJournal journal;
+
+    @AfterEach
+    void close() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void recordsReplayInOrderAcrossSegments() throws IOException {
+        journal = open(SMALL_SEGMENTS);
+        for (int i = 1; i <= 20; i++) {
+            journal.appendScore("user-" + i, i, 1000L * i);
+        }
+
+        assertThat(segments()).hasSizeGreaterThan(3);
+        List<EventJournal.ScoreRecord> scores = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        assertThat(journal.replay(0, (type, sequence, payload) -> {
+            assertThat(type).isEqualTo(EventJournal.SCORE);
+            sequences.add(sequence);
+            scores.add(EventJournal.decodeScore(payload));
+        })).isEqualTo(20);
+        assertThat(sequences).containsExactlyElementsOf(LongStream.rangeClosed(1, 20).boxed().toList());
+        assertThat(scores.get(6)).isEqualTo(new EventJournal.ScoreRecord("user-7", 7.0, 7000L));
+
+        assertThat(replayed(12)).containsExactlyElementsOf(LongStream.rangeClosed(13, 20).boxed().toList());
+        assertThat(replayed(20)).isEmpty();
+    }
+
+    @Test
+    void eventBatchesRoundTrip() throws IOException {
+        journal = open(SMALL_SEGMENTS);
+        List<IngestEvent> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            RiskEvent event = new RiskEvent(null, RiskEvent.EventType.FILE_ACCESS, RiskEvent.Severity.LOW,
+                    "event " + i);
+            event.setEventTimestamp(LocalDateTime.of(2026, 3, 2, 9, 0).plusSeconds(i));
+            event.setSourceIp("10.0.0." + i);
+            batch.add(new IngestEvent("user-" + i % 7, event));
+        }
+        journal.appendEvents(batch);
+        journal.appendEvents(List.of());
+
+        List<IngestEvent> replayed = new ArrayList<>();
+        journal.replay(0, (type, sequence, payload) ->
+                BinaryEventCodec.decode(payload, ZoneId.systemDefault(), replayed::add));
+
+        assertThat(journal.getLastSequence()).isEqualTo(1);
+        assertThat(replayed).extracting(IngestEvent::getEntityId)
+                .containsExactlyElementsOf(batch.stream().map(IngestEvent::getEntityId).toList());
+        assertThat(replayed.get(42).getEvent().getSourceIp()).isEqualTo("10.0.0.42");
+    }
+
+    @Test
+    void reopeningContinuesAfterTheLastRecord() throws IOException {
+        journal = open(SMALL_SEGMENTS);
+        for (int i = 1; i <= 7; i++) {
+            journal.appendScore("user-" + i, i, i);
+        }
+        journal.close();
+
+        journal = open(SMALL_SEGMENTS);
+        assertThat(journal.getLastSequence()).isEqualTo(7);
+        journal.appendScore("user-8", 8, 8);
+
+        assertThat(replayed(0)).containsExactlyElementsOf(LongStream.rangeClosed(1, 8).boxed().toList());
+    }
+
+    @Test
+    void aTornRecordEndsTheJournalAndIsOverwritten() throws IOException {
+        journal = open(DataSize.ofKilobytes(4));
+        for (int i = 1; i <= 3; i++) {
+            journal.appendScore("user-" + i, i, i);
+        }
+        journal.close();
+
+        // Header, then records of 17 bytes overhead and a 26 byte payload
+        int third = JournalSegment.HEADER_SIZE + 2 * (JournalSegment.RECORD_OVERHEAD + 26);
+        try (RandomAccessFile file = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+            file.seek(third + JournalSegment.RECORD_OVERHEAD + 5);
+            int value = file.read();
+            file.seek(third + JournalSegment.RECORD_OVERHEAD + 5);
+            file.write(value ^ 0xff);
+        }
+
+        journal = open(DataSize.ofKilobytes(4));
+        assertThat(journal.getLastSequence()).isEqualTo(2);
+        journal.appendScore("user-9", 9, 9);
+
+        List<String> entityIds = new ArrayList<>();
+        journal.replay(0, (type, sequence, payload) -> entityIds.add(EventJournal.decodeScore(payload).entityId()));
+        assertThat(entityIds).containsExactly("user-1", "user-2", "user-9");
+    }
+
+    @Test
+    void truncationDropsOnlyClosedSegmentsItCovers() throws IOException {
+        journal = open(SMALL_SEGMENTS);
+        for (int i = 1; i <= 20; i++) {
+            journal.appendScore("user-" + i, i, i);
+        }
+        int before = segments().size();
+
+        journal.truncate(10);
+
+        assertThat(segments()).hasSizeLessThan(before);
+        // Everything after the truncation point is still there
+        List<Long> remaining = replayed(0);
+        assertThat(remaining.get(0)).isLessThanOrEqualTo(11);
+        assertThat(remaining).endsWith(20L);
+        assertThat(replayed(10)).containsExactlyElementsOf(LongStream.rangeClosed(11, 20).boxed().toList());
+
+        journal.truncate(1000);
+        assertThat(segments()).hasSize(1);
+        journal.appendScore("user-21", 21, 21);
+        assertThat(replayed(20)).containsExactly(21L);
+    }
+
+    @Test
+    void skippingAheadContinuesTheNumbering() throws IOException {
+        journal = open(SMALL_SEGMENTS);
+        journal.appendScore("user-1", 1, 1);
+
+        journal.skipTo(100);
+        journal.appendScore("user-2", 2, 2);
+        journal.close();
+
+        journal = open(SMALL_SEGMENTS);
+        assertThat(journal.getLastSequence()).isEqualTo(101);
+        assertThat(replayed(0)).containsExactly(1L, 101L);
+    }
+
+    private EventJournal open(DataSize segmentSize) throws IOException {
+        EventJournal opened = new EventJournal();
+        ReflectionTestUtils.setField(opened, "enabled", true);
+        ReflectionTestUtils.setField(opened, "directory", directory);
+        ReflectionTestUtils.setField(opened, "segmentSize", segmentSize);
+        opened.open();
+        return opened;
+    }
+
+    private List<Long> replayed(long afterSequence) {
+        List<Long> sequences = new ArrayList<>();
+        journal.replay(afterSequence, (type, sequence, payload) -> sequences.add(sequence));
+        return sequences;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.riskguard.service.journal;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.service.ScoreDecayService;
+import com.riskguard.service.ScoringFixture;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.feature.CardinalitySketchService;
+import com.riskguard.service.ingest.IngestEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StateSnapshotServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final ScoringFixture fixture = new ScoringFixture();
+    private final ClusterService clusterService = mock(ClusterService.class);
+    private ScoreDecayService scoreDecayService = mock(ScoreDecayService.class);
+    private EventJournal journal;
+    private StateSnapshotService service;
+    private int batches;
+
+    @BeforeEach
+    void start() throws IOException {
+        when(clusterService.isLocal(anyString())).thenReturn(true);
+        journal = openJournal();
+        service = snapshotService(fixture.sketches);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        journal.close();
+    }
+
+    @Test
+    void snapshotAndJournalTailRestoreTheState() throws IOException {
+        ingest("user-1");
+        when(scoreDecayService.pendingCrossings()).thenReturn(Map.of("user-1", 1234L));
+        service.snapshot();
+        ingest("user-2");
+        journal.appendScore("user-3", 42.0, 99L);
+
+        CardinalitySketchService recovered = restart();
+
+        assertSameSketches(recovered, fixture.sketches);
+        verify(scoreDecayService).restoreCrossing("user-1", 1234L);
+        // Only the score after the snapshot comes from the journal
+        verify(scoreDecayService).scheduleNextCrossing("user-3", 42.0, 99L);
+        assertThat(snapshots()).hasSize(1);
+    }
+
+    @Test
+    void entitiesOwnedElsewhereAreNotRestored() throws IOException {
+        ingest("user-1");
+        service.snapshot();
+        ingest("user-2");
+        when(clusterService.isLocal("user-1")).thenReturn(false);
+        when(clusterService.isLocal("user-2")).thenReturn(false);
+
+        assertThat(restart().entityIds()).isEmpty();
+    }
+
+    @Test
+    void aSnapshotCutShortBeforeItsRenameIsIgnored() throws IOException {
+        ingest("user-1");
+        service.snapshot();
+        ingest("user-2");
+        // A crash while writing the next snapshot leaves only its temporary file
+        Path temp = directory.resolve(String.format("snapshot-%020d.snap.tmp", journal.getLastSequence()));
+        Files.write(temp, new byte[]{1, 2, 3});
+
+        assertSameSketches(restart(), fixture.sketches);
+
+        service.snapshot();
+        assertThat(temp).doesNotExist();
+        assertThat(snapshots()).hasSize(2);
+    }
+
+    @Test
+    void aTornNewestSnapshotFallsBackToThePreviousOneAndItsJournal() throws IOException {
+        ingest("user-1");
+        service.snapshot();
+        ingest("user-2");
+        service.snapshot();
+        long previousSequence = journal.getLastSequence();
+        Path previous = directory.resolve(String.format("snapshot-%020d.snap", previousSequence));
+        ingest("user-3");
+        service.snapshot();
+        ingest("user-4");
+
+        // Two snapshots are kept and the journal only back to the older one
+        assertThat(snapshots()).hasSize(2).first().isEqualTo(previous);
+        assertThat(journalFirstSequence()).isGreaterThan(1).isLessThanOrEqualTo(previousSequence + 1);
+
+        Path newest = snapshots().get(1);
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+
+        assertSameSketches(restart(), fixture.sketches);
+    }
+
+    @Test
+    void recoveryWithoutASnapshotReplaysTheWholeJournal() throws IOException {
+        ingest("user-1");
+        ingest("user-2");
+
+        assertSameSketches(restart(), fixture.sketches);
+        verify(scoreDecayService, never()).restoreCrossing(anyString(), anyLong());
+    }
+
+    /**
+     * Events of a new batch, recorded into the sketches and journalled the
+     * way ingestion does
+     */
+    private void ingest(String entityId) {
+        MonitoredEntity entity = ScoringFixture.entity(entityId, 1);
+        List<IngestEvent> batch = fixture.events(entity, 20, batches++).stream()
+                .map(event -> new IngestEvent(entityId, event))
+                .toList();
+        journal.appendEvents(batch);
+    }
+
+    /**
+     * Stop the node and start it from disk with empty state
+     */
+    private CardinalitySketchService restart() throws IOException {
+        journal.close();
+        journal = openJournal();
+        scoreDecayService = mock(ScoreDecayService.class);
+        CardinalitySketchService sketches = new CardinalitySketchService(10, Duration.ofHours(24), 24,
+                fixture.clock);
+        service = snapshotService(sketches);
+        service.recover();
+        return sketches;
+    }
+
+    private EventJournal openJournal() throws IOException {
+        EventJournal opened = new EventJournal();
+        ReflectionTestUtils.setField(opened, "enabled", true);
+        ReflectionTestUtils.setField(opened, "directory", directory);
+        // One batch per segment, so truncation has segments to drop
+        ReflectionTestUtils.setField(opened, "segmentSize", DataSize.ofBytes(256));
+        opened.open();
+        return opened;
+    }
+
+    private StateSnapshotService snapshotService(CardinalitySketchService sketches) {
+        StateSnapshotService snapshots = new StateSnapshotService(journal, sketches, scoreDecayService,
+                clusterService);
+        ReflectionTestUtils.setField(snapshots, "directory", directory);
+        return snapshots;
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".snap")).sorted().toList();
+        }
+    }
+
+    private long journalFirstSequence() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".journal"))
+                    .mapToLong(name -> Long.parseLong(name.substring(0, name.indexOf('.'))))
+                    .min().orElseThrow();
+        }
+    }
+
+    private static void assertSameSketches(CardinalitySketchService actual, CardinalitySketchService expected) {
+        assertThat(actual.entityIds()).containsExactlyInAnyOrderElementsOf(expected.entityIds());
+        for (String entityId : expected.entityIds()) {
+            for (CardinalitySketchService.Dimension dimension : CardinalitySketchService.Dimension.values()) {
+                assertThat(encoded(actual.export(entityId, dimension)))
+                        .as("%s %s", entityId, dimension)
+                        .isEqualTo(encoded(expected.export(entityId, dimension)));
+            }
+        }
+    }
+
+    private static Map<Long, String> encoded(Map<Long, byte[]> buckets) {
+        Map<Long, String> encoded = new TreeMap<>();
+        buckets.forEach((bucket, bytes) -> encoded.put(bucket, Arrays.toString(bytes)));
+        return encoded;
+    }
+}
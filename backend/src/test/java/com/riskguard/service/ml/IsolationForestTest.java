@@ -0,0 +1,109 @@
+package com.riskguard.service.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsolationForestTest {
+
+    private static final int DIMENSIONS = 20;
+
+    @Test
+    void sameSeedTrainsTheSameForestOnAnyPoolSize() {
+        List<double[]> rows = rows(5_000, 1);
+        List<double[]> probes = rows(500, 2);
+
+        double[] expected = null;
+        int expectedNodes = 0;
+        for (int parallelism : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                IsolationForest forest = IsolationForest.train(rows, 100, 256, 42L, pool);
+                double[] scores = scores(forest, probes);
+                if (expected == null) {
+                    expected = scores;
+                    expectedNodes = forest.getNodeCount();
+                } else {
+                    assertThat(scores).as("parallelism %d", parallelism).containsExactly(expected);
+                    assertThat(forest.getNodeCount()).isEqualTo(expectedNodes);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void differentSeedsTrainDifferentForests() {
+        List<double[]> rows = rows(5_000, 1);
+        List<double[]> probes = rows(100, 2);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertThat(scores(IsolationForest.train(rows, 50, 256, 1L, pool), probes))
+                    .isNotEqualTo(scores(IsolationForest.train(rows, 50, 256, 2L, pool), probes));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void treesUseAtMostMaxSamplesRows() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            IsolationForest forest = IsolationForest.train(rows(5_000, 1), 10, 256, 42L, pool);
+            assertThat(forest.getTreeCount()).isEqualTo(10);
+            assertThat(forest.getSampleSize()).isEqualTo(256);
+            // A binary tree over 256 points has fewer than 512 nodes
+            assertThat(forest.getNodeCount()).isLessThan(10 * 2 * 256);
+
+            assertThat(IsolationForest.train(rows(100, 1), 10, 256, 42L, pool).getSampleSize()).isEqualTo(100);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void outlierScoresHigherThanInlier() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            IsolationForest forest = IsolationForest.train(rows(5_000, 1), 100, 256, 42L, pool);
+            double[] inlier = new double[DIMENSIONS];
+            double[] outlier = new double[DIMENSIONS];
+            Arrays.fill(outlier, 10.0);
+            assertThat(forest.score(outlier)).isGreaterThan(forest.score(inlier));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static double[] scores(IsolationForest forest, List<double[]> probes) {
+        double[] scores = new double[probes.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = forest.score(probes.get(i));
+        }
+        return scores;
+    }
+
+    /**
+     * Standard normal rows
+     */
+    static List<double[]> rows(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<double[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double[] row = new double[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                double u = 1.0 - random.nextDouble();
+                row[d] = Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * random.nextDouble());
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
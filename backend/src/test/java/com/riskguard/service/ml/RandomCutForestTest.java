@@ -0,0 +1,42 @@
+package com.riskguard.service.ml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RandomCutForestTest {
+
+    @Test
+    void snapshotKeepsScoringLikeTheForestDidWhenTaken() {
+        RandomCutForest forest = new RandomCutForest(16, 64, 20, 42L);
+        List<double[]> rows = IsolationForestTest.rows(200, 1);
+        rows.subList(0, 100).forEach(forest::update);
+        List<double[]> probes = IsolationForestTest.rows(50, 2);
+
+        RandomCutForest snapshot = forest.snapshot();
+        double[] scores = scores(forest, probes);
+        assertThat(scores(snapshot, probes)).containsExactly(scores);
+
+        rows.subList(100, 200).forEach(forest::update);
+        assertThat(scores(snapshot, probes)).containsExactly(scores);
+        assertThat(scores(forest, probes)).isNotEqualTo(scores);
+        assertThat(snapshot.size()).isEqualTo(64);
+    }
+
+    @Test
+    void snapshotDoesNotLearn() {
+        RandomCutForest snapshot = new RandomCutForest(4, 16, 20, 42L).snapshot();
+        assertThatThrownBy(() -> snapshot.update(new double[20])).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static double[] scores(RandomCutForest forest, List<double[]> probes) {
+        double[] scores = new double[probes.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = forest.score(probes.get(i));
+        }
+        return scores;
+    }
+}
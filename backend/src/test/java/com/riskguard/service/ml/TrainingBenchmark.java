@@ -0,0 +1,91 @@
+package com.riskguard.service.ml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forest training time by pool size. Run after {@code mvn test-compile}
+ * on a machine with at least as many cores as the largest pool with
+ *
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.riskguard.service.ml.TrainingBenchmark
+ * </pre>
+ *
+ * which prints the speedup and parallel efficiency of each pool size over
+ * a single thread. IsolationForestTest checks that the trained forest is
+ * the same whatever the pool size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainingBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private List<double[]> rows;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rows = IsolationForestTest.rows(20_000, 1);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public IsolationForest train() {
+        return IsolationForest.train(rows, 100, 256, 42L, pool);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TrainingBenchmark.class.getSimpleName())
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        TreeMap<Integer, Double> millis = new TreeMap<>();
+        for (RunResult result : results) {
+            millis.put(Integer.parseInt(result.getParams().getParam("threads")),
+                    result.getPrimaryResult().getScore());
+        }
+        Double single = millis.get(1);
+        if (single == null) {
+            throw new IllegalStateException("No single-thread result to compare against");
+        }
+        System.out.printf("%nAvailable processors: %d%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %12s %8s %10s%n", "threads", "ms/op", "speedup", "efficiency");
+        millis.forEach((threads, time) -> System.out.printf("%8d %12.1f %8.2f %9.0f%%%n",
+                threads, time, single / time, 100.0 * single / time / threads));
+    }
+}
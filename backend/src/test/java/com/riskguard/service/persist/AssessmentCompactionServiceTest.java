@@ -0,0 +1,196 @@
+package com.riskguard.service.persist;
+
+import com.riskguard.service.cluster.ClusterService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AssessmentCompactionServiceTest {
+
+    // Far enough back for raw rows to compact, not yet for hourly ones
+    private static final LocalDateTime HOUR = LocalDateTime.now().minusDays(10).truncatedTo(ChronoUnit.HOURS);
+    // Past the hourly retention
+    private static final LocalDateTime DAY = LocalDateTime.now().minusDays(100).truncatedTo(ChronoUnit.DAYS);
+
+    private final SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+            "jdbc:h2:mem:compaction-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    private final FailingJdbcTemplate jdbcTemplate = new FailingJdbcTemplate(dataSource);
+    private final ClusterService clusterService = mock(ClusterService.class);
+    private final AssessmentCompactionService service = new AssessmentCompactionService(jdbcTemplate,
+            new TransactionTemplate(new DataSourceTransactionManager(dataSource)), clusterService);
+
+    AssessmentCompactionServiceTest() {
+        jdbcTemplate.execute("CREATE TABLE risk_assessments (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "entity_id BIGINT NOT NULL, score DOUBLE, risk_level VARCHAR(20), summary VARCHAR(255), "
+                + "resolution VARCHAR(20), min_score DOUBLE, max_score DOUBLE, sample_count INT, "
+                + "created_at TIMESTAMP, updated_at TIMESTAMP)");
+        when(clusterService.isLocal(anyString())).thenReturn(true);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "rawRetention", Duration.ofDays(7));
+        ReflectionTestUtils.setField(service, "hourlyRetention", Duration.ofDays(90));
+        ReflectionTestUtils.setField(service, "maxBucketsPerRun", 48);
+        ReflectionTestUtils.setField(service, "entitiesPerTransaction", 2);
+    }
+
+    @AfterEach
+    void shutdown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void rawRowsRollUpIntoOneRowPerEntityAndHour() {
+        raw(1, 10.0, "LOW", HOUR.plusMinutes(5));
+        raw(1, 30.0, "MEDIUM", HOUR.plusMinutes(20));
+        raw(1, 20.0, "MEDIUM", HOUR.plusMinutes(50));
+        raw(2, 45.0, "HIGH", HOUR.plusMinutes(30));
+        raw(1, 50.0, "CRITICAL", HOUR.plusHours(1));
+        // Within the raw retention
+        raw(1, 15.0, "LOW", LocalDateTime.now().minusDays(1));
+
+        service.compact();
+
+        assertThat(rows("HOUR")).containsExactly(
+                row(1, 20.0, "MEDIUM", 10.0, 30.0, 3, HOUR.plusMinutes(50)),
+                row(1, 50.0, "CRITICAL", 50.0, 50.0, 1, HOUR.plusHours(1)),
+                row(2, 45.0, "HIGH", 45.0, 45.0, 1, HOUR.plusMinutes(30)));
+        assertThat(rows("RAW")).hasSize(1);
+    }
+
+    @Test
+    void hourlyRowsRollUpIntoDaysCarryingTheirRanges() {
+        hourly(1, 20.0, "MEDIUM", 10.0, 30.0, 3, DAY.plusHours(2).plusMinutes(50));
+        hourly(1, 12.0, "LOW", 8.0, 60.0, 4, DAY.plusHours(9).plusMinutes(10));
+        // Raw rows of the same day are rolled up to hours first, then into the day
+        raw(1, 40.0, "HIGH", DAY.plusHours(23).plusMinutes(59));
+        hourly(1, 70.0, "CRITICAL", 70.0, 70.0, 1, DAY.plusDays(1).plusHours(1));
+
+        service.compact();
+
+        assertThat(rows("RAW")).isEmpty();
+        assertThat(rows("HOUR")).isEmpty();
+        assertThat(rows("DAY")).containsExactly(
+                row(1, 40.0, "HIGH", 8.0, 60.0, 8, DAY.plusHours(23).plusMinutes(59)),
+                row(1, 70.0, "CRITICAL", 70.0, 70.0, 1, DAY.plusDays(1).plusHours(1)));
+    }
+
+    @Test
+    void repeatedAndInterruptedRunsEndInTheSameHistory() {
+        for (int entity = 1; entity <= 5; entity++) {
+            for (int sample = 0; sample < 6; sample++) {
+                raw(entity, entity * 10 + sample, "LOW", HOUR.plusMinutes(sample * 25L));
+                hourly(entity, sample, "LOW", sample, sample + 1, 2, DAY.plusHours(sample * 5L));
+            }
+        }
+        // One bucket per run, as if every run had been cut short by its budget
+        ReflectionTestUtils.setField(service, "maxBucketsPerRun", 1);
+        for (int run = 0; run < 10; run++) {
+            service.compact();
+        }
+        List<Map<String, Object>> stepwise = rows(null);
+        service.compact();
+
+        assertThat(rows(null)).isEqualTo(stepwise);
+        assertThat(rows("RAW")).isEmpty();
+        // Three hours and two days per entity
+        assertThat(rows("HOUR")).hasSize(15);
+        assertThat(rows("DAY")).hasSize(10);
+        assertThat(rows("DAY").get(0)).isEqualTo(row(1, 4.0, "LOW", 0.0, 5.0, 10, DAY.plusHours(20)));
+    }
+
+    @Test
+    void rollupsAndTheirSourcesChangeInOneTransactionPerChunk() {
+        for (int entity = 1; entity <= 5; entity++) {
+            raw(entity, entity, "LOW", HOUR.plusMinutes(5));
+            raw(entity, entity + 1, "LOW", HOUR.plusMinutes(10));
+        }
+        // The second chunk, entities 3 and 4, fails after inserting its rollups
+        jdbcTemplate.failDeleteNumber = 2;
+
+        assertThatThrownBy(service::compact).isInstanceOf(IllegalStateException.class);
+
+        assertThat(rows("HOUR")).extracting(row -> row.get("ENTITY_ID")).containsExactly(1L, 2L);
+        assertThat(rows("RAW")).extracting(row -> row.get("ENTITY_ID")).containsExactly(3L, 3L, 4L, 4L, 5L, 5L);
+
+        service.compact();
+
+        assertThat(rows("RAW")).isEmpty();
+        assertThat(rows("HOUR")).extracting(row -> row.get("SAMPLE_COUNT")).containsOnly(2);
+        assertThat(rows("HOUR")).extracting(row -> row.get("ENTITY_ID")).containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    void onlyTheOwningNodeCompacts() {
+        raw(1, 10.0, "LOW", HOUR);
+        when(clusterService.isLocal("assessment-compaction")).thenReturn(false);
+
+        service.compact();
+
+        assertThat(rows("RAW")).hasSize(1);
+    }
+
+    private void raw(long entityId, double score, String level, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO risk_assessments (entity_id, score, risk_level, summary, resolution, "
+                + "created_at) VALUES (?, ?, ?, 'summary', 'RAW', ?)", entityId, score, level,
+                Timestamp.valueOf(createdAt));
+    }
+
+    private void hourly(long entityId, double score, String level, double min, double max, int samples,
+                        LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO risk_assessments (entity_id, score, risk_level, resolution, min_score, "
+                + "max_score, sample_count, created_at) VALUES (?, ?, ?, 'HOUR', ?, ?, ?, ?)", entityId, score,
+                level, min, max, samples, Timestamp.valueOf(createdAt));
+    }
+
+    /**
+     * Rows of a resolution, or all, without ids and write times
+     */
+    private List<Map<String, Object>> rows(String resolution) {
+        return jdbcTemplate.queryForList("SELECT entity_id, score, risk_level, min_score, max_score, sample_count, "
+                + "created_at FROM risk_assessments WHERE CAST(? AS VARCHAR) IS NULL OR resolution = ? "
+                + "ORDER BY resolution, entity_id, created_at", resolution, resolution);
+    }
+
+    private static Map<String, Object> row(long entityId, double score, String level, double min, double max,
+                                           int samples, LocalDateTime createdAt) {
+        return Map.of("ENTITY_ID", entityId, "SCORE", score, "RISK_LEVEL", level, "MIN_SCORE", min,
+                "MAX_SCORE", max, "SAMPLE_COUNT", samples, "CREATED_AT", Timestamp.valueOf(createdAt));
+    }
+
+    /**
+     * Fails the given delete of source rows, after the rollups of its
+     * chunk were inserted
+     */
+    private static final class FailingJdbcTemplate extends JdbcTemplate {
+        int failDeleteNumber;
+        int deletes;
+
+        FailingJdbcTemplate(SimpleDriverDataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (sql.startsWith("DELETE") && ++deletes == failDeleteNumber) {
+                throw new IllegalStateException("Connection lost");
+            }
+            return super.update(sql, args);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.riskguard.service.persist;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskThresholds;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScoreWriteBehindServiceTest {
+
+    private final SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+            "jdbc:h2:mem:write-behind-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    private final FailingJdbcTemplate jdbcTemplate = new FailingJdbcTemplate(dataSource);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+    private final ExecutorService persistenceExecutor = Executors.newSingleThreadExecutor();
+    private final ScoreWriteBehindService service;
+
+    ScoreWriteBehindServiceTest() {
+        jdbcTemplate.execute("CREATE TABLE entities (id BIGINT PRIMARY KEY, current_risk_score DOUBLE, "
+                + "previous_risk_score DOUBLE, current_risk_level VARCHAR(20), last_risk_assessment TIMESTAMP, "
+                + "updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE risk_assessments (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "entity_id BIGINT NOT NULL REFERENCES entities (id), score DOUBLE, risk_level VARCHAR(20), "
+                + "summary VARCHAR(255), resolution VARCHAR(20), created_at TIMESTAMP, updated_at TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO entities (id) VALUES (1), (2)");
+
+        taskScheduler.initialize();
+        service = service(100);
+    }
+
+    @AfterEach
+    void shutdown() {
+        taskScheduler.shutdown();
+        persistenceExecutor.shutdownNow();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void batchIsWrittenInOneGo() {
+        service.write(entity(1, 30.0), "first");
+        service.write(entity(2, 45.0), "second");
+
+        service.flush();
+
+        assertThat(assessedEntities()).containsExactly(1L, 2L);
+        assertThat(scoreOf(2)).isEqualTo(45.0);
+        assertThat(count("assessments")).isEqualTo(2.0);
+    }
+
+    @Test
+    void rowViolatingConstraintsIsDroppedAlone() {
+        service.write(entity(1, 30.0), "first");
+        // Deleted after scoring: its assessment violates the foreign key
+        service.write(entity(3, 20.0), "deleted");
+        service.write(entity(2, 45.0), "second");
+
+        service.flush();
+
+        assertThat(assessedEntities()).containsExactly(1L, 2L);
+        assertThat(scoreOf(1)).isEqualTo(30.0);
+        assertThat(scoreOf(2)).isEqualTo(45.0);
+        assertThat(count("assessments")).isEqualTo(2.0);
+        assertThat(count("dropped")).isEqualTo(1.0);
+
+        // Nothing is left to retry
+        service.flush();
+        assertThat(assessedEntities()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void failedBatchIsWrittenFirstByTheNextFlush() {
+        service.write(entity(1, 30.0), "first");
+        jdbcTemplate.failing = true;
+        service.flush();
+        assertThat(assessedEntities()).isEmpty();
+
+        jdbcTemplate.failing = false;
+        service.write(entity(2, 45.0), "second");
+        service.flush();
+
+        assertThat(summaries()).containsExactly("first", "second");
+        assertThat(count("dropped")).isZero();
+    }
+
+    @Test
+    void heldRowsSlowWritersDownInsteadOfBeingDropped() throws InterruptedException {
+        ScoreWriteBehindService small = service(2);
+        jdbcTemplate.failing = true;
+        small.write(entity(1, 10.0), "a");
+        small.write(entity(2, 20.0), "b");
+        small.flush();
+        small.write(entity(1, 30.0), "c");
+        small.write(entity(2, 40.0), "d");
+        // The held rows fill the capacity, so this flush takes nothing from the queue
+        small.flush();
+
+        Thread writer = new Thread(() -> small.write(entity(1, 50.0), "e"));
+        writer.start();
+        writer.join(300);
+        assertThat(writer.isAlive()).isTrue();
+
+        jdbcTemplate.failing = false;
+        writer.join(10_000);
+        assertThat(writer.isAlive()).isFalse();
+        small.flush();
+
+        assertThat(summaries()).containsExactly("a", "b", "c", "d", "e");
+        assertThat(count("dropped")).isZero();
+        assertThat(count("backpressure")).isEqualTo(1.0);
+    }
+
+    private ScoreWriteBehindService service(int queueCapacity) {
+        ScoreWriteBehindService created = new ScoreWriteBehindService(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), meterRegistry,
+                taskScheduler, persistenceExecutor, queueCapacity, Duration.ofHours(1));
+        ReflectionTestUtils.setField(created, "enabled", true);
+        ReflectionTestUtils.setField(created, "batchSize", 500);
+        return created;
+    }
+
+    private List<String> summaries() {
+        return jdbcTemplate.queryForList("SELECT summary FROM risk_assessments ORDER BY id", String.class);
+    }
+
+    private List<Long> assessedEntities() {
+        return jdbcTemplate.queryForList("SELECT entity_id FROM risk_assessments ORDER BY id", Long.class);
+    }
+
+    private Double scoreOf(long entityId) {
+        return jdbcTemplate.queryForObject("SELECT current_risk_score FROM entities WHERE id = ?", Double.class,
+                entityId);
+    }
+
+    private double count(String outcome) {
+        Counter counter = meterRegistry.find("risk.scores.write_behind").tag("outcome", outcome).counter();
+        return counter != null ? counter.count() : 0.0;
+    }
+
+    private static MonitoredEntity entity(long id, double score) {
+        MonitoredEntity entity = new MonitoredEntity("entity-" + id, "Entity " + id, MonitoredEntity.EntityType.USER,
+                "IT");
+        entity.setId(id);
+        entity.setCurrentRiskScore(score, RiskThresholds.DEFAULT, LocalDateTime.now());
+        return entity;
+    }
+
+    /**
+     * Fails batch writes while failing is set, as a lost connection would
+     */
+    private static final class FailingJdbcTemplate extends JdbcTemplate {
+        volatile boolean failing;
+
+        FailingJdbcTemplate(SimpleDriverDataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            if (failing) {
+                throw new DataAccessResourceFailureException("Connection lost");
+            }
+            return super.batchUpdate(sql, batchArgs, batchSize, pss);
+        }
+    }
+}
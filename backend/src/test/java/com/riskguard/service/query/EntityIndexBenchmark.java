@@ -0,0 +1,128 @@
+package com.riskguard.service.query;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.time.ManualClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Query latency over millions of indexed entities, each with a few events
+ * in the window: attribute filters answered by bitmaps alone, score
+ * filters that check decayed scores, event counts and a broad top query.
+ * Run after {@code mvn test-compile} with
+ *
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.riskguard.service.query.EntityIndexBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+public class EntityIndexBenchmark {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 2, 9, 0);
+    private static final int EVENTS_PER_ENTITY = 3;
+
+    @Param({"1000000", "5000000"})
+    public int entityCount;
+
+    private EntityIndexService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ManualClock clock = new ManualClock(ZONE, ZONE, NOW.atZone(ZONE).toInstant().toEpochMilli());
+        service = new EntityIndexService(new KeyDictionaryService(entityCount, 1000, 1000),
+                mock(MonitoredEntityRepository.class), mock(RiskEventRepository.class), mock(ClusterService.class),
+                mock(PlatformTransactionManager.class), clock, new SimpleMeterRegistry(), Duration.ofHours(24), 96);
+        ReflectionTestUtils.setField(service, "halfLife", Duration.ofHours(6));
+        ReflectionTestUtils.setField(service, "maxResults", 1000);
+
+        MonitoredEntity.EntityType[] types = MonitoredEntity.EntityType.values();
+        RiskEvent.EventType[] eventTypes = RiskEvent.EventType.values();
+        SplittableRandom random = new SplittableRandom(23);
+        for (int i = 0; i < entityCount; i++) {
+            String entityId = "entity-" + i;
+            MonitoredEntity entity = new MonitoredEntity(entityId, entityId, types[random.nextInt(types.length)],
+                    "department-" + random.nextInt(200));
+            entity.setIsActive(true);
+            if (random.nextInt(20) == 0) {
+                entity.setTags(List.of(random.nextBoolean() ? "vip" : "contractor"));
+            }
+            // Mostly low scores with a long tail, assessed over the last day
+            double score = Math.min(100.0, 5.0 + random.nextDouble() * random.nextDouble() * 95.0);
+            entity.setCurrentRiskScore(score, RiskThresholds.DEFAULT, NOW.minusMinutes(random.nextInt(24 * 60)));
+            service.index(entity);
+
+            for (int e = 0; e < EVENTS_PER_ENTITY; e++) {
+                RiskEvent event = new RiskEvent(entity, eventTypes[random.nextInt(eventTypes.length)],
+                        RiskEvent.Severity.MEDIUM, "event");
+                event.setEventTimestamp(NOW.minusMinutes(random.nextInt(24 * 60)));
+                if (random.nextInt(100) == 0) {
+                    event.addMetadata("country", "RU");
+                }
+                service.recordEvent(entityId, event);
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> attributes() {
+        return service.queryLocally("type = user and department in (department-1, department-2) and tag = vip", 100);
+    }
+
+    @Benchmark
+    public Map<String, Object> score() {
+        return service.queryLocally("score >= 70 and not type = container", 100);
+    }
+
+    @Benchmark
+    public Map<String, Object> eventCount() {
+        return service.queryLocally("events(LOGIN_FAILURE, 1h) >= 1 and metadata.country = RU", 100);
+    }
+
+    @Benchmark
+    public Map<String, Object> top() {
+        return service.queryLocally("department != department-0", 1000);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EntityIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
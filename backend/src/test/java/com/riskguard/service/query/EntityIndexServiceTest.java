@@ -0,0 +1,278 @@
+package com.riskguard.service.query;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.cluster.ClusterService;
+import com.riskguard.service.cluster.ConsistentHashRing;
+import com.riskguard.service.cluster.ShardRebalanceEvent;
+import com.riskguard.service.intern.KeyDictionaryService;
+import com.riskguard.service.time.ManualClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EntityIndexServiceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    // A quarter into the current hour bucket
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 2, 9, 15);
+
+    private final ManualClock clock = new ManualClock(ZONE, ZONE, NOW.atZone(ZONE).toInstant().toEpochMilli());
+    private final MonitoredEntityRepository entityRepository = mock(MonitoredEntityRepository.class);
+    private final RiskEventRepository eventRepository = mock(RiskEventRepository.class);
+    private final ClusterService clusterService = mock(ClusterService.class);
+    private final EntityIndexService service = new EntityIndexService(new KeyDictionaryService(1000, 1000, 100),
+            entityRepository, eventRepository, clusterService, mock(PlatformTransactionManager.class), clock,
+            new SimpleMeterRegistry(), Duration.ofHours(24), 24);
+
+    EntityIndexServiceTest() {
+        ReflectionTestUtils.setField(service, "halfLife", Duration.ofHours(6));
+        ReflectionTestUtils.setField(service, "maxResults", 1000);
+        when(clusterService.isLocal(anyString())).thenReturn(true);
+    }
+
+    @Test
+    void attributesMatchThroughTheirBitmaps() {
+        service.index(entity("alice", MonitoredEntity.EntityType.USER, "IT", 30, "vip"));
+        service.index(entity("bob", MonitoredEntity.EntityType.USER, "HR", 10));
+        service.index(entity("web-1", MonitoredEntity.EntityType.SERVER, "it", 42, "dmz"));
+        service.index(entity("carol", MonitoredEntity.EntityType.USER, "Finance", 50, "contractor"));
+
+        assertThat(ids("type = user and department = IT")).containsExactly("alice");
+        assertThat(ids("department = it")).containsExactly("web-1", "alice");
+        assertThat(ids("tag in (vip, contractor)")).containsExactly("carol", "alice");
+        assertThat(ids("level = critical")).containsExactly("carol");
+        assertThat(ids("not department = it")).containsExactly("carol", "bob");
+        assertThat(ids("type = server or tag = vip")).containsExactly("web-1", "alice");
+        assertThat(ids("department != hr and (type = server or tag = contractor)")).containsExactly("carol", "web-1");
+        assertThat(ids("department = sales")).isEmpty();
+    }
+
+    @Test
+    void reindexingMovesAnEntityBetweenBitmaps() {
+        MonitoredEntity alice = entity("alice", MonitoredEntity.EntityType.USER, "IT", 30, "vip");
+        service.index(alice);
+
+        alice.setDepartment("HR");
+        alice.setTags(List.of("leaver"));
+        alice.setCurrentRiskScore(60.0, RiskThresholds.DEFAULT, NOW);
+        service.index(alice);
+        assertThat(ids("department = it or tag = vip or score < 50")).isEmpty();
+        assertThat(ids("department = hr and tag = leaver and score >= 60")).containsExactly("alice");
+
+        alice.setIsActive(false);
+        service.index(alice);
+        assertThat(service.query("type = user", 10).get("total")).isEqualTo(0L);
+    }
+
+    @Test
+    void scoresAreComparedAfterDecay() {
+        // 85 six hours ago has halved its excess over the floor to 45
+        MonitoredEntity old = entity("old", MonitoredEntity.EntityType.USER, "IT", 85);
+        old.setCurrentRiskScore(85.0, RiskThresholds.DEFAULT, NOW.minusHours(6));
+        service.index(old);
+        service.index(entity("fresh", MonitoredEntity.EntityType.USER, "IT", 50));
+        service.index(entity("low", MonitoredEntity.EntityType.USER, "IT", 20));
+
+        assertThat(ids("score > 44.9")).containsExactly("fresh", "old");
+        assertThat(ids("score > 45.1")).containsExactly("fresh");
+        assertThat(ids("score <= 45")).containsExactly("old", "low");
+        assertThat(ids("score = 50")).containsExactly("fresh");
+        assertThat(scores("score > 0")).containsExactly(50.0, 45.0, 20.0);
+    }
+
+    @Test
+    void eventCountsCoverOnlyTheirWindow() {
+        service.index(entity("alice", MonitoredEntity.EntityType.USER, "IT", 30));
+        service.index(entity("bob", MonitoredEntity.EntityType.USER, "IT", 20));
+        service.index(entity("carol", MonitoredEntity.EntityType.USER, "IT", 10));
+        for (int i = 0; i < 3; i++) {
+            service.recordEvent("alice", event("alice", RiskEvent.EventType.LOGIN_FAILURE, NOW.minusMinutes(5)));
+        }
+        service.recordEvent("alice", event("alice", RiskEvent.EventType.LOGIN_FAILURE, NOW.minusHours(3)));
+        service.recordEvent("bob", event("bob", RiskEvent.EventType.LOGIN_FAILURE, NOW.minusHours(3)));
+        service.recordEvent("bob", event("bob", RiskEvent.EventType.FILE_ACCESS, NOW.minusMinutes(5)));
+        // Outside the indexed window
+        service.recordEvent("carol", event("carol", RiskEvent.EventType.LOGIN_FAILURE, NOW.minusDays(2)));
+
+        assertThat(ids("events(LOGIN_FAILURE, 1h) >= 3")).containsExactly("alice");
+        assertThat(ids("events(LOGIN_FAILURE, 1h) > 3")).isEmpty();
+        assertThat(ids("events(LOGIN_FAILURE, 4h) = 4")).containsExactly("alice");
+        assertThat(ids("events(LOGIN_FAILURE) >= 1")).containsExactly("alice", "bob");
+        assertThat(ids("events(LOGIN_FAILURE) = 0")).containsExactly("carol");
+        assertThat(ids("events(FILE_ACCESS, 1h) = 1 and events(LOGIN_FAILURE, 1h) = 0")).containsExactly("bob");
+    }
+
+    @Test
+    void eventTagsAndMetadataMatchRecentEvents() {
+        service.index(entity("alice", MonitoredEntity.EntityType.USER, "IT", 30));
+        service.index(entity("bob", MonitoredEntity.EntityType.USER, "IT", 20));
+        RiskEvent tagged = event("alice", RiskEvent.EventType.FILE_ACCESS, NOW.minusMinutes(5));
+        tagged.setTags(List.of("Bulk"));
+        tagged.addMetadata("country", "RU");
+        service.recordEvent("alice", tagged);
+        RiskEvent other = event("bob", RiskEvent.EventType.FILE_ACCESS, NOW.minusHours(2));
+        other.addMetadata("country", "DE");
+        service.recordEvent("bob", other);
+
+        assertThat(ids("event_tag = bulk")).containsExactly("alice");
+        assertThat(ids("metadata.country = RU")).containsExactly("alice");
+        assertThat(ids("metadata.country in (RU, DE)")).containsExactly("alice", "bob");
+        assertThat(ids("metadata.country != RU")).containsExactly("bob");
+
+        // Once the window has passed the events no longer match
+        clock.advanceTo(clock.millis() + Duration.ofHours(25).toMillis());
+        assertThat(ids("event_tag = bulk or metadata.country in (RU, DE)")).isEmpty();
+    }
+
+    @Test
+    void topEntitiesComeFirstUpToTheLimit() {
+        for (int i = 0; i < 50; i++) {
+            service.index(entity("user-" + i, MonitoredEntity.EntityType.USER, "IT", 10 + i));
+        }
+
+        Map<String, Object> response = service.query("type = user", 5);
+
+        assertThat(response.get("total")).isEqualTo(50L);
+        assertThat(scores(response)).containsExactly(59.0, 58.0, 57.0, 56.0, 55.0);
+        ReflectionTestUtils.setField(service, "maxResults", 2);
+        assertThat(scores(service.query("type = user", 5))).containsExactly(59.0, 58.0);
+        assertThat(scores(service.query("type = user", 0))).isEmpty();
+    }
+
+    @Test
+    void malformedQueriesAreRejected() {
+        assertThatThrownBy(() -> service.query("score >", 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.query("colour = red", 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void loadIndexesOnlyOwnedEntitiesAndTheirEvents() {
+        List<MonitoredEntity> entities = List.of(entity("alice", MonitoredEntity.EntityType.USER, "IT", 30),
+                entity("bob", MonitoredEntity.EntityType.USER, "IT", 20));
+        when(entityRepository.findByIsActiveTrue()).thenReturn(entities);
+        when(eventRepository.findAllInWindow(any(), any())).thenReturn(List.of(
+                event(entities.get(0), RiskEvent.EventType.LOGIN_FAILURE, NOW.minusMinutes(5)),
+                event(entities.get(1), RiskEvent.EventType.LOGIN_FAILURE, NOW.minusMinutes(5))));
+        when(clusterService.isLocal("bob")).thenReturn(false);
+
+        service.load();
+
+        assertThat(ids("type = user")).containsExactly("alice");
+        assertThat(ids("events(LOGIN_FAILURE) > 0")).containsExactly("alice");
+    }
+
+    @Test
+    void rebalanceDropsMovedEntitiesAndLoadsAcquiredOnes() {
+        ConsistentHashRing alone = new ConsistentHashRing(List.of("a"), 64);
+        ConsistentHashRing shared = new ConsistentHashRing(List.of("a", "b"), 64);
+        List<MonitoredEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            MonitoredEntity entity = entity("user-" + i, MonitoredEntity.EntityType.USER, "IT", 10 + i % 50);
+            entities.add(entity);
+            service.index(entity);
+            service.recordEvent(entity.getEntityId(),
+                    event(entity, RiskEvent.EventType.LOGIN_FAILURE, NOW.minusMinutes(5)));
+        }
+        List<String> kept = entities.stream().map(MonitoredEntity::getEntityId)
+                .filter(id -> "a".equals(shared.ownerOf(id))).toList();
+        assertThat(kept).isNotEmpty().hasSizeLessThan(100);
+
+        service.onShardRebalance(new ShardRebalanceEvent(this, alone, shared, "a"));
+
+        assertThat(service.query("type = user", 1000).get("total")).isEqualTo((long) kept.size());
+        assertThat(ids("events(LOGIN_FAILURE) = 1")).containsExactlyInAnyOrderElementsOf(kept);
+        assertThat(ids("events(LOGIN_FAILURE) = 0")).isEmpty();
+
+        // The shards come back; entities kept are not loaded twice
+        when(entityRepository.findByIsActiveTrue()).thenReturn(entities);
+        when(eventRepository.streamAllInWindow(any(), any())).thenAnswer(invocation -> entities.stream()
+                .map(entity -> event(entity, RiskEvent.EventType.LOGIN_FAILURE, NOW.minusMinutes(5))));
+
+        service.onShardRebalance(new ShardRebalanceEvent(this, shared, alone, "a"));
+
+        assertThat(service.query("type = user", 1000).get("total")).isEqualTo(100L);
+        assertThat(service.query("events(LOGIN_FAILURE) = 1", 1000).get("total")).isEqualTo(100L);
+    }
+
+    @Test
+    void queriesMergeTheShareOfEveryMember() {
+        when(clusterService.isEnabled()).thenReturn(true);
+        when(clusterService.getNodeId()).thenReturn("a");
+        when(clusterService.getMembers()).thenReturn(Set.of("a", "b", "c"));
+        when(clusterService.get(eq("b"), eq(EntityIndexService.QUERY_PATH + "?q={q}&limit={limit}"),
+                eq(Map.of("q", "type = user", "limit", 2)))).thenReturn(Map.of("total", 7, "entities", List.of(
+                        Map.of("entityId", "remote-1", "riskScore", 90.0),
+                        Map.of("entityId", "remote-2", "riskScore", 15.5))));
+        when(clusterService.get(eq("c"), anyString(), any())).thenThrow(new IllegalStateException("unreachable"));
+        service.index(entity("alice", MonitoredEntity.EntityType.USER, "IT", 30));
+        service.index(entity("bob", MonitoredEntity.EntityType.USER, "IT", 20));
+
+        Map<String, Object> response = service.query("type = user", 2);
+
+        assertThat(response.get("total")).isEqualTo(9L);
+        assertThat(entityIds(response)).containsExactly("remote-1", "alice");
+        assertThat(response.get("unavailableNodes")).isEqualTo(List.of("c"));
+        // What the other members are asked for stays local to them
+        assertThat(service.queryLocally("type = user", 2).get("total")).isEqualTo(2L);
+    }
+
+    private List<String> ids(String query) {
+        return entityIds(service.query(query, 1000));
+    }
+
+    private List<Double> scores(String query) {
+        return scores(service.query(query, 1000));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> entityIds(Map<String, Object> response) {
+        return ((List<Map<String, Object>>) response.get("entities")).stream()
+                .map(entity -> (String) entity.get("entityId")).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Double> scores(Map<String, Object> response) {
+        return ((List<Map<String, Object>>) response.get("entities")).stream()
+                .map(entity -> (Double) entity.get("riskScore")).toList();
+    }
+
+    private static MonitoredEntity entity(String id, MonitoredEntity.EntityType type, String department,
+                                          double score, String... tags) {
+        MonitoredEntity entity = new MonitoredEntity(id, id, type, department);
+        entity.setIsActive(true);
+        entity.setTags(List.of(tags));
+        entity.setCurrentRiskScore(score, RiskThresholds.DEFAULT, NOW);
+        return entity;
+    }
+
+    private static RiskEvent event(String entityId, RiskEvent.EventType type, LocalDateTime timestamp) {
+        return event(new MonitoredEntity(entityId, entityId, MonitoredEntity.EntityType.USER, "IT"), type, timestamp);
+    }
+
+    private static RiskEvent event(MonitoredEntity entity, RiskEvent.EventType type, LocalDateTime timestamp) {
+        RiskEvent event = new RiskEvent(entity, type, RiskEvent.Severity.MEDIUM, type.name());
+        event.setEventTimestamp(timestamp);
+        return event;
+    }
+}
@@ -0,0 +1,92 @@
+package com.riskguard.service.query;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.service.query.EntityQuery.And;
+import com.riskguard.service.query.EntityQuery.Attribute;
+import com.riskguard.service.query.EntityQuery.Comparison;
+import com.riskguard.service.query.EntityQuery.EventCountFilter;
+import com.riskguard.service.query.EntityQuery.Match;
+import com.riskguard.service.query.EntityQuery.MetadataMatch;
+import com.riskguard.service.query.EntityQuery.Not;
+import com.riskguard.service.query.EntityQuery.Or;
+import com.riskguard.service.query.EntityQuery.ScoreFilter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EntityQueryTest {
+
+    @Test
+    void parsesTheDocumentedExample() {
+        EntityQuery query = EntityQuery.parse("type = SERVER and department = Finance and score > 35\n"
+                + "    and events(LOGIN_FAILURE, 1h) > 3 and metadata.country in (RU, KP)");
+
+        assertThat(query.getRoot()).isEqualTo(new And(new And(new And(new And(
+                new Match(Attribute.TYPE, Set.of("SERVER")),
+                new Match(Attribute.DEPARTMENT, Set.of("finance"))),
+                new ScoreFilter(Comparison.GT, 35.0)),
+                new EventCountFilter(RiskEvent.EventType.LOGIN_FAILURE, Duration.ofHours(1), Comparison.GT, 3)),
+                new MetadataMatch("country", Set.of("RU", "KP"))));
+    }
+
+    @Test
+    void andBindsTighterThanOrAndParenthesesGroup() {
+        assertThat(EntityQuery.parse("level = high or tag = vpn and score >= 20").getRoot())
+                .isEqualTo(new Or(new Match(Attribute.LEVEL, Set.of("HIGH")),
+                        new And(new Match(Attribute.TAG, Set.of("vpn")), new ScoreFilter(Comparison.GE, 20.0))));
+
+        assertThat(EntityQuery.parse("(level = high or tag = vpn) and score >= 20").getRoot())
+                .isEqualTo(new And(new Or(new Match(Attribute.LEVEL, Set.of("HIGH")),
+                        new Match(Attribute.TAG, Set.of("vpn"))), new ScoreFilter(Comparison.GE, 20.0)));
+    }
+
+    @Test
+    void notAndInequalityNegateMatches() {
+        assertThat(EntityQuery.parse("NOT tenant = acme").getRoot())
+                .isEqualTo(new Not(new Match(Attribute.TENANT, Set.of("acme"))));
+        assertThat(EntityQuery.parse("event_tag != Bulk").getRoot())
+                .isEqualTo(new Not(new Match(Attribute.EVENT_TAG, Set.of("bulk"))));
+        assertThat(EntityQuery.parse("metadata.Country != RU").getRoot())
+                .isEqualTo(new Not(new MetadataMatch("Country", Set.of("RU"))));
+    }
+
+    @Test
+    void keywordsAndEnumsAreCaseInsensitiveAndQuotesKeepSpaces() {
+        assertThat(EntityQuery.parse("TYPE IN (server, User) AND department = 'Human Resources'").getRoot())
+                .isEqualTo(new And(new Match(Attribute.TYPE, Set.of("SERVER", "USER")),
+                        new Match(Attribute.DEPARTMENT, Set.of("human resources"))));
+        // A quoted keyword is a value
+        assertThat(EntityQuery.parse("tag = \"and\"").getRoot()).isEqualTo(new Match(Attribute.TAG, Set.of("and")));
+    }
+
+    @Test
+    void eventCountWithoutWindowCoversTheIndexedWindow() {
+        assertThat(EntityQuery.parse("events(file_download) <= 10").getRoot())
+                .isEqualTo(new EventCountFilter(RiskEvent.EventType.FILE_DOWNLOAD, null, Comparison.LE, 10));
+    }
+
+    @Test
+    void malformedQueriesAreRejected() {
+        assertRejected("", "must not be empty");
+        assertRejected("type = ", "Unexpected end of query");
+        assertRejected("type > SERVER", "only supports =, != and in");
+        assertRejected("type = SPACESHIP", "Unknown EntityType 'SPACESHIP'");
+        assertRejected("colour = red", "Unknown Attribute 'colour'");
+        assertRejected("score > high", "Expected a number but found 'high'");
+        assertRejected("events(LOGIN_FAILURE) > 2.5", "whole number");
+        assertRejected("(score > 1", "Expected ')' but found end of query");
+        assertRejected("score > 1 score > 2", "Unexpected 'score' in query");
+        assertRejected("tag = 'vpn", "Unterminated quote");
+        assertRejected("tag = vpn; drop", "Unexpected character ';'");
+    }
+
+    private static void assertRejected(String expression, String message) {
+        assertThatThrownBy(() -> EntityQuery.parse(expression))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(message);
+    }
+}
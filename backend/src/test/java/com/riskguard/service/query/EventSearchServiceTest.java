@@ -0,0 +1,98 @@
+package com.riskguard.service.query;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.repository.RiskEventRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventSearchServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2026, 3, 1, 0, 0);
+    private static final LocalDateTime TO = FROM.plusDays(1);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final RiskEventRepository eventRepository = mock(RiskEventRepository.class);
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final EventSearchService service = new EventSearchService(jdbcTemplate, eventRepository,
+            new ObjectMapper());
+    // Newest first, several events per timestamp so pages split ties
+    private final List<RiskEvent> stored = new ArrayList<>();
+
+    EventSearchServiceTest() {
+        ReflectionTestUtils.setField(service, "maxResults", 1000);
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+        when(jdbcTemplate.execute(ArgumentMatchers.<ConnectionCallback<Object>>any())).thenReturn("H2");
+
+        MonitoredEntity entity = new MonitoredEntity("user-1", "User 1", MonitoredEntity.EntityType.USER, "IT");
+        for (int i = 0; i < 3500; i++) {
+            RiskEvent event = new RiskEvent(entity, RiskEvent.EventType.FILE_ACCESS, RiskEvent.Severity.LOW,
+                    "event " + i);
+            event.setId((long) i);
+            event.setEventTimestamp(FROM.plusSeconds(i / 3));
+            if (i % 100 == 0) {
+                event.setTags(List.of("bulk"));
+                event.addMetadata("country", i % 200 == 0 ? "RU" : "DE");
+            }
+            stored.add(event);
+        }
+        stored.sort(Comparator.comparing(RiskEvent::getEventTimestamp).thenComparing(RiskEvent::getId).reversed());
+
+        when(eventRepository.findPageBefore(eq(FROM), any(), anyLong(), isNull(), any())).thenAnswer(invocation -> {
+            LocalDateTime before = invocation.getArgument(1);
+            long beforeId = invocation.getArgument(2);
+            Pageable page = invocation.getArgument(4);
+            return stored.stream()
+                    .filter(event -> event.getEventTimestamp().isBefore(before)
+                            || event.getEventTimestamp().equals(before) && event.getId() < beforeId)
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+    }
+
+    @Test
+    void pagesThroughTheWholeRangeWithoutSkippingTies() {
+        List<Map<String, Object>> found = service.search(Set.of("BULK"), Map.of("country", "RU"), null, FROM, TO,
+                100);
+
+        assertThat(found).extracting(event -> event.get("id"))
+                .containsExactly(3400L, 3200L, 3000L, 2800L, 2600L, 2400L, 2200L, 2000L, 1800L, 1600L, 1400L,
+                        1200L, 1000L, 800L, 600L, 400L, 200L, 0L);
+        // Four pages, each cleared from the persistence context before the next
+        verify(entityManager, times(3)).clear();
+    }
+
+    @Test
+    void stopsPagingOnceTheLimitIsReached() {
+        List<Map<String, Object>> found = service.search(Set.of(), Map.of(), null, FROM, TO, 10);
+
+        assertThat(found).extracting(event -> event.get("id"))
+                .containsExactly(3499L, 3498L, 3497L, 3496L, 3495L, 3494L, 3493L, 3492L, 3491L, 3490L);
+        verify(eventRepository).findPageBefore(eq(FROM), eq(TO), eq(Long.MIN_VALUE), isNull(), any());
+        verify(entityManager, never()).clear();
+    }
+}
@@ -0,0 +1,134 @@
+package com.riskguard.service.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StubModel model = new StubModel();
+    private final RecommendationService service = new RecommendationService(Optional.of(model), meterRegistry,
+            2, 10, 100, Duration.ofHours(1), Duration.ofMinutes(1));
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    RecommendationServiceTest() {
+        ReflectionTestUtils.setField(service, "maxFactors", 5);
+        ReflectionTestUtils.setField(service, "pointsStep", 5);
+    }
+
+    @AfterEach
+    void shutdown() {
+        model.release.countDown();
+        callers.shutdownNow();
+        service.shutdown();
+    }
+
+    @Test
+    void concurrentMissesForOneSignatureShareOneModelCall() throws Exception {
+        List<Future<Recommendations>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // Points differing below the rounding step give the same signature
+            Map<String, Object> assessment = assessment(20.0 + i % 3 * 0.5);
+            results.add(callers.submit(() -> service.getRecommendations(assessment, Duration.ofSeconds(10))));
+        }
+        awaitCoalesced(7);
+        model.release.countDown();
+
+        List<Recommendations> recommendations = new ArrayList<>();
+        for (Future<Recommendations> result : results) {
+            recommendations.add(result.get(10, TimeUnit.SECONDS));
+        }
+        assertThat(model.calls.get()).isEqualTo(1);
+        assertThat(recommendations).allSatisfy(result -> {
+            assertThat(result.status()).isEqualTo(Recommendations.Status.READY);
+            assertThat(result.source()).isEqualTo("stub");
+        });
+        assertThat(recommendations).extracting(Recommendations::signature).containsOnly(
+                recommendations.get(0).signature());
+
+        // Later requests are served from the cache
+        assertThat(service.getRecommendations(assessment(20.0)).status()).isEqualTo(Recommendations.Status.READY);
+        assertThat(model.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void missReturnsPendingRulesWithoutWaiting() throws Exception {
+        Recommendations pending = service.getRecommendations(assessment(30.0));
+
+        assertThat(pending.status()).isEqualTo(Recommendations.Status.PENDING);
+        assertThat(pending.source()).isEqualTo("rules");
+        model.release.countDown();
+        assertThat(service.getRecommendations(assessment(30.0), Duration.ofSeconds(10)).status())
+                .isEqualTo(Recommendations.Status.READY);
+        assertThat(model.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void failedCallIsNotRetriedWhileRemembered() {
+        model.failing = true;
+        model.release.countDown();
+
+        assertThat(service.getRecommendations(assessment(40.0), Duration.ofSeconds(10)).status())
+                .isEqualTo(Recommendations.Status.FALLBACK);
+        assertThat(service.getRecommendations(assessment(40.0), Duration.ofSeconds(10)).status())
+                .isEqualTo(Recommendations.Status.FALLBACK);
+        assertThat(model.calls.get()).isEqualTo(1);
+    }
+
+    private void awaitCoalesced(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.get("risk.recommendations.coalesced").counter().count() < expected) {
+            assertThat(System.nanoTime()).as("requests joining the call in flight").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static Map<String, Object> assessment(double points) {
+        return Map.of("entityType", "USER", "riskLevel", "MEDIUM", "overallScore", points,
+                "factors", List.of(Map.of("name", "failed_logins", "source", "MODEL", "score", points)));
+    }
+
+    /**
+     * Model that answers once released, counting its calls
+     */
+    private static final class StubModel implements RecommendationModel {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean failing;
+
+        @Override
+        public String getName() {
+            return "stub";
+        }
+
+        @Override
+        public List<Map<String, Object>> generate(RecommendationRequest request) {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new IllegalStateException("model unavailable");
+            }
+            return List.of(Map.of("title", "Review " + request.factors().get(0).name(), "priority", "Medium"));
+        }
+    }
+}
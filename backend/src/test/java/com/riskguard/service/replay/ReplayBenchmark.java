@@ -0,0 +1,171 @@
+package com.riskguard.service.replay;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskAssessmentRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.ScoringFixture;
+import com.riskguard.service.ingest.BinaryEventCodec;
+import com.riskguard.service.ingest.IngestEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Events replayed per second, end to end from an export file: decoding,
+ * routing, entity loading and a rescore per event. Every event stays in
+ * its entity's window, so fewer entities means larger windows; with
+ * running windows throughput should not fall as windows grow. Run after
+ * {@code mvn test-compile} with
+ *
+ * <pre>
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.riskguard.service.replay.ReplayBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReplayBenchmark {
+
+    private static final int EVENTS = 100_000;
+    private static final LocalDateTime FROM = ScoringFixture.START.minusDays(7);
+
+    @Param({"100", "10000"})
+    public int entityCount;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private ScoringFixture fixture;
+    private Path directory;
+    private ReplayService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new ScoringFixture().online();
+        fixture.start();
+        directory = Files.createTempDirectory("replay-benchmark");
+
+        Map<String, MonitoredEntity> entities = new HashMap<>();
+        for (int i = 0; i < entityCount; i++) {
+            MonitoredEntity entity = ScoringFixture.entity("user-" + i, i + 1);
+            entities.put(entity.getEntityId(), entity);
+            if (i < 100) {
+                // Gives the streaming models something to score against
+                fixture.mlService.calculateRiskScore(entity, fixture.events(entity, 20, i));
+            }
+        }
+        Files.write(directory.resolve("events"), BinaryEventCodec.encode(events(), ZoneId.systemDefault()));
+
+        MonitoredEntityRepository entityRepository = mock(MonitoredEntityRepository.class);
+        RiskAssessmentRepository assessmentRepository = mock(RiskAssessmentRepository.class);
+        when(entityRepository.findByEntityIdIn(any())).thenAnswer(invocation -> {
+            Collection<String> entityIds = invocation.getArgument(0);
+            return entityIds.stream().map(entities::get).toList();
+        });
+        when(assessmentRepository.streamAllInWindow(any(), any())).thenAnswer(invocation -> Stream.empty());
+
+        service = new ReplayService(entityRepository, mock(RiskEventRepository.class), assessmentRepository,
+                fixture.mlService, fixture.scoreDecayService, RiskThresholds.DEFAULT, fixture.clock,
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "directory", directory);
+        ReflectionTestUtils.setField(service, "batchSize", 512);
+        ReflectionTestUtils.setField(service, "queueCapacity", 64);
+        ReflectionTestUtils.setField(service, "eventWindow", Duration.ofDays(7));
+        ReflectionTestUtils.setField(service, "sketchPrecision", 10);
+        ReflectionTestUtils.setField(service, "sketchWindow", Duration.ofHours(24));
+        ReflectionTestUtils.setField(service, "sketchBuckets", 24);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.stop();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public ReplayReport replay() throws IOException {
+        ReplayRequest request = new ReplayRequest();
+        request.setFrom(FROM);
+        request.setTo(ScoringFixture.START);
+        request.setSourceFile("events");
+        request.setParallelism(parallelism);
+        request.setHalfLife(ScoringFixture.HALF_LIFE);
+        return service.replay(request);
+    }
+
+    /**
+     * Events spread over the week before the fixture's start, in timestamp
+     * order
+     */
+    private List<IngestEvent> events() {
+        RiskEvent.EventType[] types = RiskEvent.EventType.values();
+        RiskEvent.Severity[] severities = RiskEvent.Severity.values();
+        SplittableRandom random = new SplittableRandom(11);
+        long stepMillis = Duration.ofDays(7).toMillis() / EVENTS;
+        List<IngestEvent> events = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            RiskEvent event = new RiskEvent(null, types[random.nextInt(types.length)],
+                    severities[random.nextInt(severities.length)], "event " + i);
+            event.setEventTimestamp(FROM.plusNanos(TimeUnit.MILLISECONDS.toNanos(i * stepMillis)));
+            event.setSourceIp("10.0." + random.nextInt(4) + "." + random.nextInt(16));
+            event.setDestinationIp("192.168.1." + random.nextInt(8));
+            event.setPort(random.nextInt(2) == 0 ? 443 : 22);
+            event.setSessionId("session-" + random.nextInt(5));
+            event.setFileSize(random.nextInt(4) == 0 ? (long) random.nextInt(50_000_000) : null);
+            events.add(new IngestEvent("user-" + random.nextInt(entityCount), event));
+        }
+        return events;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ReplayBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,204 @@
+package com.riskguard.service.replay;
+
+import com.riskguard.domain.MonitoredEntity;
+import com.riskguard.domain.RiskAssessment;
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskThresholds;
+import com.riskguard.repository.MonitoredEntityRepository;
+import com.riskguard.repository.RiskAssessmentRepository;
+import com.riskguard.repository.RiskEventRepository;
+import com.riskguard.service.MachineLearningService;
+import com.riskguard.service.ModelSnapshot;
+import com.riskguard.service.ScoringFixture;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+class ReplayServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final ScoringFixture fixture = new ScoringFixture().online();
+    private final List<MonitoredEntity> entities = new ArrayList<>();
+    private final List<RiskEvent> events = new ArrayList<>();
+    private final List<RiskAssessment> assessments = new ArrayList<>();
+    // Entity ids the replay loaded, each expected once
+    private final List<String> loaded = new ArrayList<>();
+
+    @BeforeEach
+    void start() {
+        fixture.start();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 60; i++) {
+            MonitoredEntity entity = ScoringFixture.entity("user-" + i, i + 1, i % 2 == 0 ? "IT" : "Finance");
+            entity.setTenantId(i % 3 == 0 ? "acme" : MonitoredEntity.DEFAULT_TENANT);
+            entities.add(entity);
+            List<RiskEvent> entityEvents = fixture.events(entity, 1 + random.nextInt(40), i);
+            events.addAll(entityEvents);
+            // Gives the streaming models of both tenants something to score against
+            fixture.mlService.calculateRiskScore(entity, entityEvents);
+
+            RiskAssessment assessment = new RiskAssessment(entity, 20.0, MonitoredEntity.RiskLevel.LOW, "stored");
+            ReflectionTestUtils.setField(assessment, "createdAt", ScoringFixture.START.minusHours(1));
+            assessments.add(assessment);
+        }
+        events.sort(Comparator.comparing(RiskEvent::getEventTimestamp));
+    }
+
+    @AfterEach
+    void stop() {
+        fixture.stop();
+    }
+
+    @Test
+    void sameInputReplaysToTheSameTimelinesAndReport() throws IOException {
+        ReplayService service = replayService(fixture.mlService);
+
+        ReplayReport first = service.replay(request(4, "first"));
+        ReplayReport second = service.replay(request(4, "second"));
+        ReplayReport sequential = service.replay(request(1, "sequential"));
+
+        assertThat(first.getEventsReplayed()).isEqualTo(events.size());
+        assertThat(first.assessmentsCompared).isEqualTo(assessments.size());
+        List<String> timeline = timeline("first");
+        assertThat(timeline).hasSize(events.size());
+        assertThat(timeline("second")).isEqualTo(timeline);
+        assertThat(timeline("sequential")).isEqualTo(timeline);
+        assertThat(comparable(second)).isEqualTo(comparable(first));
+        assertThat(comparable(sequential)).isEqualTo(comparable(first));
+    }
+
+    @Test
+    void modelsLearningDuringAReplayDoNotChangeIt() throws Exception {
+        ReplayReport quiet = replayService(fixture.mlService).replay(request(2, "quiet"));
+
+        // Live rescoring keeps the streaming models learning from the moment the replay took its snapshot
+        MachineLearningService mlService = spy(fixture.mlService);
+        Thread learner = new Thread(() -> {
+            for (int round = 0; round < 10; round++) {
+                for (MonitoredEntity entity : entities) {
+                    fixture.mlService.calculateRiskScore(entity, fixture.events(entity, 5, 1000 + round));
+                }
+            }
+        });
+        doAnswer(invocation -> {
+            ModelSnapshot snapshot = fixture.mlService.snapshotModels();
+            learner.start();
+            return snapshot;
+        }).when(mlService).snapshotModels();
+
+        ReplayReport busy = replayService(mlService).replay(request(2, "busy"));
+        learner.join();
+
+        assertThat(timeline("busy")).isEqualTo(timeline("quiet"));
+        assertThat(comparable(busy)).isEqualTo(comparable(quiet));
+    }
+
+    @Test
+    void entitiesStartFromTheirStateAtTheStartOfTheReplay() throws IOException {
+        ReplayReport before = replayService(fixture.mlService).replay(request(2, "before"));
+
+        // Live state written after the replayed events must not reach their scores
+        MonitoredEntity untouched = ScoringFixture.entity("user-untouched", 1000);
+        entities.add(untouched);
+        for (MonitoredEntity entity : entities) {
+            entity.setLastActivity(ScoringFixture.START.plusDays(5));
+            entity.setCurrentRiskScore(90.0, RiskThresholds.DEFAULT, ScoringFixture.START.plusDays(5));
+        }
+        ReplayReport after = replayService(fixture.mlService).replay(request(2, "after"));
+
+        assertThat(timeline("after")).isEqualTo(timeline("before"));
+        assertThat(comparable(after)).isEqualTo(comparable(before));
+        assertThat(loaded).doesNotContain(untouched.getEntityId())
+                .containsExactlyInAnyOrderElementsOf(entities.stream()
+                        .filter(entity -> entity != untouched).map(MonitoredEntity::getEntityId).toList());
+    }
+
+    private ReplayService replayService(MachineLearningService mlService) {
+        loaded.clear();
+        MonitoredEntityRepository entityRepository = mock(MonitoredEntityRepository.class);
+        RiskEventRepository eventRepository = mock(RiskEventRepository.class);
+        RiskAssessmentRepository assessmentRepository = mock(RiskAssessmentRepository.class);
+        when(entityRepository.findByEntityIdIn(any())).thenAnswer(invocation -> {
+            Collection<String> entityIds = invocation.getArgument(0);
+            synchronized (loaded) {
+                loaded.addAll(entityIds);
+            }
+            return entities.stream().filter(entity -> entityIds.contains(entity.getEntityId())).toList();
+        });
+        when(eventRepository.streamAllInWindow(any(), any())).thenAnswer(invocation -> events.stream());
+        when(assessmentRepository.streamAllInWindow(any(), any())).thenAnswer(invocation -> assessments.stream());
+
+        ReplayService service = new ReplayService(entityRepository, eventRepository, assessmentRepository,
+                mlService, fixture.scoreDecayService,
+                RiskThresholds.DEFAULT, fixture.clock, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
+        ReflectionTestUtils.setField(service, "directory", directory);
+        ReflectionTestUtils.setField(service, "batchSize", 16);
+        ReflectionTestUtils.setField(service, "queueCapacity", 4);
+        ReflectionTestUtils.setField(service, "eventWindow", Duration.ofDays(7));
+        ReflectionTestUtils.setField(service, "sketchPrecision", 10);
+        ReflectionTestUtils.setField(service, "sketchWindow", Duration.ofHours(24));
+        ReflectionTestUtils.setField(service, "sketchBuckets", 24);
+        return service;
+    }
+
+    private static ReplayRequest request(int parallelism, String timelineFile) {
+        ReplayRequest request = new ReplayRequest();
+        request.setFrom(ScoringFixture.START.minusDays(3));
+        request.setTo(ScoringFixture.START);
+        request.setParallelism(parallelism);
+        request.setTimelineFile(timelineFile);
+        request.setHalfLife(ScoringFixture.HALF_LIFE);
+        return request;
+    }
+
+    /**
+     * Timeline lines of all partitions grouped by entity; each entity's
+     * lines keep the order they were written in
+     */
+    private List<String> timeline(String name) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith(name + ".")).toList()) {
+                lines.addAll(Files.readAllLines(file));
+            }
+        }
+        lines.sort(Comparator.comparing(line -> line.substring(0, line.indexOf(','))));
+        return lines;
+    }
+
+    /**
+     * Report without the timing figures
+     */
+    private static Map<String, Object> comparable(ReplayReport report) {
+        Map<String, Object> map = report.toMap(100);
+        map.remove("elapsedMillis");
+        map.remove("eventsPerSecond");
+        return map;
+    }
+}
@@ -0,0 +1,140 @@
+package com.riskguard.service.sequence;
+
+import com.riskguard.domain.RiskEvent;
+import com.riskguard.domain.RiskEvent.EventType;
+import com.riskguard.service.time.ManualClock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SequenceDetectorServiceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 9, 0);
+    private static final List<String> PATTERNS = List.of(
+            "scan-login: PORT_SCAN -> LOGIN_SUCCESS within 1h points 10",
+            "role-admin: ROLE_CHANGE -> ADMIN_ACCESS within 1h points 12",
+            "access-export: SENSITIVE_DATA_ACCESS -> DATA_EXPORT within 1h points 8");
+
+    private final ManualClock clock = new ManualClock(ZONE, ZONE, START.atZone(ZONE).toInstant().toEpochMilli());
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void completedSequenceIsRecordedAndScored() {
+        SequenceDetectorService detector = detector(64);
+
+        assertThat(detector.onEvent("user-1", event(EventType.PORT_SCAN, 0))).isEmpty();
+        assertThat(detector.onEvent("user-1", event(EventType.LOGIN_FAILURE, 5))).isEmpty();
+        List<SequenceMatch> completed = detector.onEvent("user-1", event(EventType.LOGIN_SUCCESS, 10));
+
+        assertThat(completed).singleElement().satisfies(match -> {
+            assertThat(match.pattern()).isEqualTo("scan-login");
+            assertThat(match.matchedAt() - match.startedAt()).isEqualTo(Duration.ofMinutes(10).toMillis());
+        });
+        assertThat(detector.getMatches("user-1")).isEqualTo(completed);
+        assertThat(detector.getMatches("user-2")).isEmpty();
+
+        long matchedAt = completed.get(0).matchedAt();
+        assertThat(detector.matchPoints("user-1", matchedAt, Duration.ofHours(6))).isCloseTo(10.0, within(1e-9));
+        assertThat(detector.matchPoints("user-1", matchedAt + Duration.ofHours(6).toMillis(), Duration.ofHours(6)))
+                .isCloseTo(5.0, within(1e-9));
+        assertThat(meterRegistry.get("risk.sequences.matches").tag("pattern", "scan-login").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void eventsThatStartNothingKeepNoState() {
+        SequenceDetectorService detector = detector(64);
+
+        detector.onEvent("user-1", event(EventType.LOGIN_SUCCESS, 0));
+        detector.onEvent("user-1", event(EventType.LOGOUT, 1));
+
+        assertThat(gauge("risk.sequences.entities")).isZero();
+    }
+
+    @Test
+    void partialMatchesBeyondTheCapEvictTheOldest() {
+        SequenceDetectorService detector = detector(2);
+
+        detector.onEvent("user-1", event(EventType.PORT_SCAN, 0));
+        detector.onEvent("user-1", event(EventType.ROLE_CHANGE, 10));
+        assertThat(gauge("risk.sequences.partial-matches")).isEqualTo(2);
+
+        // A third partial match evicts the one started first
+        detector.onEvent("user-1", event(EventType.SENSITIVE_DATA_ACCESS, 20));
+        assertThat(gauge("risk.sequences.partial-matches")).isEqualTo(2);
+
+        assertThat(detector.onEvent("user-1", event(EventType.LOGIN_SUCCESS, 30))).isEmpty();
+        assertThat(detector.onEvent("user-1", event(EventType.ADMIN_ACCESS, 31))).hasSize(1);
+        assertThat(detector.onEvent("user-1", event(EventType.DATA_EXPORT, 32))).hasSize(1);
+        assertThat(gauge("risk.sequences.partial-matches")).isZero();
+    }
+
+    @Test
+    void capIsPerEntity() {
+        SequenceDetectorService detector = detector(1);
+
+        detector.onEvent("user-1", event(EventType.PORT_SCAN, 0));
+        detector.onEvent("user-2", event(EventType.ROLE_CHANGE, 10));
+
+        assertThat(detector.onEvent("user-1", event(EventType.LOGIN_SUCCESS, 20))).hasSize(1);
+        assertThat(detector.onEvent("user-2", event(EventType.ADMIN_ACCESS, 20))).hasSize(1);
+    }
+
+    @Test
+    void expireDropsPartialMatchesPastTheWindow() {
+        SequenceDetectorService detector = detector(64);
+        detector.onEvent("user-1", event(EventType.PORT_SCAN, 0));
+        detector.onEvent("user-2", event(EventType.ROLE_CHANGE, 30));
+
+        advance(Duration.ofMinutes(75));
+        detector.expire();
+
+        assertThat(gauge("risk.sequences.partial-matches")).isEqualTo(1);
+        assertThat(gauge("risk.sequences.entities")).isEqualTo(1);
+        assertThat(detector.onEvent("user-2", event(EventType.ADMIN_ACCESS, 75))).hasSize(1);
+    }
+
+    @Test
+    void matchesAreKeptUntilRetentionPasses() {
+        SequenceDetectorService detector = detector(64);
+        detector.onEvent("user-1", event(EventType.PORT_SCAN, 0));
+        detector.onEvent("user-1", event(EventType.LOGIN_SUCCESS, 1));
+
+        advance(Duration.ofHours(47));
+        detector.expire();
+        assertThat(detector.getMatches("user-1")).hasSize(1);
+
+        advance(Duration.ofHours(2));
+        detector.expire();
+        assertThat(detector.getMatches("user-1")).isEmpty();
+        assertThat(gauge("risk.sequences.entities")).isZero();
+    }
+
+    private SequenceDetectorService detector(int maxActivePatterns) {
+        return new SequenceDetectorService(PATTERNS, maxActivePatterns, 16, Duration.ofHours(48), clock,
+                meterRegistry);
+    }
+
+    private void advance(Duration duration) {
+        clock.advanceTo(clock.millis() + duration.toMillis());
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private static RiskEvent event(EventType type, int minutes) {
+        RiskEvent event = new RiskEvent(null, type, RiskEvent.Severity.MEDIUM, type.name());
+        event.setEventTimestamp(START.plusMinutes(minutes));
+        return event;
+    }
+}
@@ -0,0 +1,106 @@
+package com.riskguard.service.sequence;
+
+import com.riskguard.domain.RiskEvent.EventType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SequencePatternTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    void parsesStepsWithAlternativesAndRepeats() {
+        SequencePattern pattern = SequencePattern.parse(
+                " takeover : login_failure{2} -> LOGIN_SUCCESS|ADMIN_ACCESS within 30m points 7.5 ");
+
+        assertThat(pattern.getName()).isEqualTo("takeover");
+        assertThat(pattern.getWindow()).isEqualTo(Duration.ofMinutes(30));
+        assertThat(pattern.getPoints()).isEqualTo(7.5);
+        assertThat(pattern.involves(EventType.LOGIN_FAILURE)).isTrue();
+        assertThat(pattern.involves(EventType.ADMIN_ACCESS)).isTrue();
+        assertThat(pattern.involves(EventType.DATA_EXPORT)).isFalse();
+        assertThat(pattern.startsWith(EventType.LOGIN_FAILURE)).isTrue();
+        assertThat(pattern.startsWith(EventType.LOGIN_SUCCESS)).isFalse();
+        // Three positions, so two states between start and completion
+        assertThat(pattern.newRuns()).containsExactly(SequencePattern.NONE, SequencePattern.NONE);
+    }
+
+    @Test
+    void rejectsMalformedDefinitions() {
+        assertThatThrownBy(() -> SequencePattern.parse("p: LOGIN_FAILURE -> LOGIN_SUCCESS points 5"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("must be");
+        assertThatThrownBy(() -> SequencePattern.parse("p: LOGIN_FAILURE -> NOT_A_TYPE within 1h points 5"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("NOT_A_TYPE");
+        assertThatThrownBy(() -> SequencePattern.parse("p: LOGIN_FAILURE LOGOUT -> LOGIN_SUCCESS within 1h points 5"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Invalid step");
+        assertThatThrownBy(() -> SequencePattern.parse("p: LOGIN_FAILURE{0} -> LOGIN_SUCCESS within 1h points 5"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("repeat");
+        assertThatThrownBy(() -> SequencePattern.parse("p: LOGIN_FAILURE -> LOGIN_SUCCESS within 0s points 5"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("positive");
+    }
+
+    @Test
+    void completesInOrderSkippingUnrelatedEvents() {
+        SequencePattern pattern = SequencePattern.parse(
+                "p: LOGIN_FAILURE{2} -> LOGIN_SUCCESS|ADMIN_ACCESS within 30m points 5");
+        long[] runs = pattern.newRuns();
+
+        assertThat(pattern.advance(runs, EventType.LOGIN_FAILURE, 0)).isEqualTo(SequencePattern.NONE);
+        // The last step is not accepted before the repeat is complete
+        assertThat(pattern.advance(runs, EventType.ADMIN_ACCESS, MINUTE)).isEqualTo(SequencePattern.NONE);
+        assertThat(pattern.advance(runs, EventType.LOGOUT, 2 * MINUTE)).isEqualTo(SequencePattern.NONE);
+        assertThat(pattern.advance(runs, EventType.LOGIN_FAILURE, 3 * MINUTE)).isEqualTo(SequencePattern.NONE);
+        assertThat(pattern.advance(runs, EventType.ADMIN_ACCESS, 4 * MINUTE)).isEqualTo(0);
+
+        // Matches do not overlap: completion clears every run
+        assertThat(runs).containsOnly(SequencePattern.NONE);
+        assertThat(pattern.advance(runs, EventType.LOGIN_SUCCESS, 5 * MINUTE)).isEqualTo(SequencePattern.NONE);
+    }
+
+    @Test
+    void latestStartIsKeptPerState() {
+        SequencePattern pattern = SequencePattern.parse("p: PORT_SCAN -> LOGIN_SUCCESS within 30m points 5");
+        long[] runs = pattern.newRuns();
+
+        pattern.advance(runs, EventType.PORT_SCAN, 0);
+        pattern.advance(runs, EventType.PORT_SCAN, 20 * MINUTE);
+
+        // Too late for the first scan, within the window of the second
+        assertThat(pattern.advance(runs, EventType.LOGIN_SUCCESS, 40 * MINUTE)).isEqualTo(20 * MINUTE);
+    }
+
+    @Test
+    void runsOutsideTheWindowDoNotComplete() {
+        SequencePattern pattern = SequencePattern.parse("p: PORT_SCAN -> LOGIN_SUCCESS within 30m points 5");
+        long[] runs = pattern.newRuns();
+
+        pattern.advance(runs, EventType.PORT_SCAN, 0);
+
+        assertThat(pattern.advance(runs, EventType.LOGIN_SUCCESS, 30 * MINUTE + 1)).isEqualTo(SequencePattern.NONE);
+        assertThat(runs).containsOnly(SequencePattern.NONE);
+    }
+
+    @Test
+    void expireDropsRunsPastTheWindow() {
+        SequencePattern pattern = SequencePattern.parse(
+                "p: PORT_SCAN -> LOGIN_FAILURE -> LOGIN_SUCCESS within 30m points 5");
+        long[] runs = pattern.newRuns();
+        pattern.advance(runs, EventType.PORT_SCAN, 0);
+        pattern.advance(runs, EventType.LOGIN_FAILURE, 5 * MINUTE);
+        pattern.advance(runs, EventType.PORT_SCAN, 10 * MINUTE);
+        assertThat(SequencePattern.newestStart(runs)).isEqualTo(10 * MINUTE);
+
+        assertThat(pattern.expire(runs, 30 * MINUTE)).isTrue();
+        assertThat(runs).containsExactly(10 * MINUTE, 0);
+
+        assertThat(pattern.expire(runs, 35 * MINUTE)).isTrue();
+        assertThat(runs).containsExactly(10 * MINUTE, SequencePattern.NONE);
+
+        assertThat(pattern.expire(runs, 41 * MINUTE)).isFalse();
+        assertThat(SequencePattern.newestStart(runs)).isEqualTo(SequencePattern.NONE);
+    }
+}
@@ -0,0 +1,195 @@
+package com.riskguard.service.tenant;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TenantScoringSchedulerTest {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private ForkJoinPool pool;
+    private TenantScoringScheduler scheduler;
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+        pool.shutdownNow();
+    }
+
+    @Test
+    void cpuTimeIsSharedInProportionToWeight() throws InterruptedException {
+        start(1, List.of("light=1", "heavy=3"), List.of());
+        List<String> completed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = block("gate");
+        CountDownLatch done = new CountDownLatch(600);
+
+        for (int i = 0; i < 300; i++) {
+            submit("light", "light-" + i, completed, done);
+            submit("heavy", "heavy-" + i, completed, done);
+        }
+        gate.countDown();
+        assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+
+        // While both tenants have work, three of every four tasks are heavy's
+        long heavy = completed.subList(0, 200).stream().filter("heavy"::equals).count();
+        assertThat(heavy).isBetween(135L, 165L);
+    }
+
+    @Test
+    void floodingTenantDoesNotDelayAnotherOne() throws InterruptedException {
+        start(1, List.of(), List.of());
+        List<String> completed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = block("gate");
+        CountDownLatch done = new CountDownLatch(510);
+
+        for (int i = 0; i < 500; i++) {
+            submit("flood", "flood-" + i, completed, done);
+        }
+        for (int i = 0; i < 10; i++) {
+            submit("quiet", "quiet-" + i, completed, done);
+        }
+        gate.countDown();
+        assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+
+        // Equal weights alternate, so the quiet tenant is done within its first twenty tasks
+        assertThat(completed.lastIndexOf("quiet")).isLessThan(25);
+    }
+
+    @Test
+    void cpuQuotaCapsConcurrentThreads() throws InterruptedException {
+        start(4, List.of(), List.of("capped=0.5"));
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(40);
+
+        for (int i = 0; i < 40; i++) {
+            scheduler.submit("capped", "capped-" + i, () -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(maxActive.get()).isEqualTo(2);
+    }
+
+    @Test
+    void workQueuedUnderTheSameKeyIsCoalesced() throws InterruptedException {
+        start(1, List.of(), List.of());
+        CountDownLatch gate = block("gate");
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger lastRun = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 1; i <= 5; i++) {
+            int version = i;
+            scheduler.submit("tenant", "entity-1", () -> {
+                runs.incrementAndGet();
+                lastRun.set(version);
+                done.countDown();
+            });
+        }
+        gate.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        pool.awaitQuiescence(10, TimeUnit.SECONDS);
+
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(lastRun.get()).isEqualTo(5);
+    }
+
+    @Test
+    void scoringThreadsCannotSubmit() throws InterruptedException {
+        start(1, List.of(), List.of());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean scoringThread = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+
+        scheduler.submit("tenant", "outer", () -> {
+            scoringThread.set(scheduler.isScoringThread());
+            try {
+                scheduler.submit("tenant", "inner", () -> { });
+            } catch (IllegalStateException e) {
+                failure.set(e);
+            }
+            done.countDown();
+        });
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(scoringThread.get()).isTrue();
+        assertThat(scheduler.isScoringThread()).isFalse();
+        assertThat(failure.get()).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void start(int threads, List<String> weights, List<String> cpuQuotas) {
+        TenantService tenantService = new TenantService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tenantService, "weights", weights);
+        ReflectionTestUtils.setField(tenantService, "cpuQuotas", cpuQuotas);
+        ReflectionTestUtils.setField(tenantService, "memoryQuotas", List.of());
+        ReflectionTestUtils.setField(tenantService, "defaultMemoryQuota", DataSize.ofMegabytes(64));
+        ReflectionTestUtils.setField(tenantService, "scoreTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.invokeMethod(tenantService, "initialize");
+
+        pool = new ForkJoinPool(threads);
+        scheduler = new TenantScoringScheduler(tenantService, new SimpleMeterRegistry(), pool);
+        ReflectionTestUtils.setField(scheduler, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(scheduler, "enqueueTimeout", Duration.ofSeconds(5));
+    }
+
+    /**
+     * Occupy the single pool thread until the returned latch is released,
+     * so that everything submitted meanwhile competes from the same start
+     */
+    private CountDownLatch block(String tenantId) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        scheduler.submit(tenantId, "block", () -> {
+            started.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        return gate;
+    }
+
+    private void submit(String tenantId, String key, List<String> completed, CountDownLatch done) {
+        scheduler.submit(tenantId, key, () -> {
+            burnCpu(TimeUnit.MILLISECONDS.toNanos(1));
+            completed.add(tenantId);
+            done.countDown();
+        });
+    }
+
+    private static void burnCpu(long nanos) {
+        long until = THREADS.getCurrentThreadCpuTime() + nanos;
+        while (THREADS.getCurrentThreadCpuTime() < until) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.riskguard.service.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScoringClockTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    @Test
+    void storedTimestampsConvertLikeTheStorageZone() {
+        ManualClock clock = new ManualClock(ZoneId.of("UTC"), BERLIN, 0L);
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        SplittableRandom random = new SplittableRandom(7);
+
+        // Random order over two years, so cached windows are left in both directions
+        for (int i = 0; i < 100_000; i++) {
+            LocalDateTime timestamp = start.plusMinutes(random.nextInt(2 * 366 * 24 * 60));
+            assertThat(clock.toEpochMillis(timestamp))
+                    .as("%s", timestamp)
+                    .isEqualTo(timestamp.atZone(BERLIN).toInstant().toEpochMilli());
+        }
+    }
+
+    @Test
+    void gapAndOverlapConvertLikeTheStorageZone() {
+        ManualClock clock = new ManualClock(ZoneId.of("UTC"), BERLIN, 0L);
+        LocalDateTime springForward = LocalDateTime.of(2026, 3, 29, 1, 0);
+        LocalDateTime fallBack = LocalDateTime.of(2026, 10, 25, 1, 0);
+
+        for (int minute = 0; minute < 180; minute += 5) {
+            for (LocalDateTime timestamp : new LocalDateTime[]{
+                    springForward.plusMinutes(minute), fallBack.plusMinutes(minute)}) {
+                assertThat(clock.toEpochMillis(timestamp))
+                        .as("%s", timestamp)
+                        .isEqualTo(timestamp.atZone(BERLIN).toInstant().toEpochMilli());
+            }
+        }
+    }
+
+    @Test
+    void businessZoneHourAndDayFollowDaylightSaving() {
+        ManualClock clock = new ManualClock(BERLIN, ZoneId.of("UTC"), 0L);
+        LocalDateTime start = LocalDateTime.of(2026, 3, 28, 0, 0);
+
+        for (int hour = 0; hour < 72; hour++) {
+            long millis = start.plusHours(hour).atZone(ZoneId.of("UTC")).toInstant().toEpochMilli();
+            LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), BERLIN);
+            assertThat(clock.hourOfDay(millis)).isEqualTo(local.getHour());
+            assertThat(clock.dayOfWeek(millis)).isEqualTo(local.getDayOfWeek().getValue());
+        }
+    }
+}